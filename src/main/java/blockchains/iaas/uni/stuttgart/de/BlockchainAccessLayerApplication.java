@@ -3,8 +3,10 @@ package blockchains.iaas.uni.stuttgart.de;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 @Log4j2
 public class BlockchainAccessLayerApplication {
 
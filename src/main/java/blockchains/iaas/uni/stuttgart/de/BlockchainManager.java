@@ -17,16 +17,22 @@ import blockchains.iaas.uni.stuttgart.de.api.interfaces.BlockchainAdapter;
 import blockchains.iaas.uni.stuttgart.de.api.model.*;
 import blockchains.iaas.uni.stuttgart.de.api.utils.MathUtils;
 import blockchains.iaas.uni.stuttgart.de.callback.CallbackRouter;
+import blockchains.iaas.uni.stuttgart.de.connectionprofiles.ConnectionProfilesManager;
 import blockchains.iaas.uni.stuttgart.de.history.RequestHistoryManager;
 import blockchains.iaas.uni.stuttgart.de.history.model.RequestDetails;
 import blockchains.iaas.uni.stuttgart.de.history.model.RequestType;
 import blockchains.iaas.uni.stuttgart.de.scip.model.exceptions.AsynchronousBalException;
+import blockchains.iaas.uni.stuttgart.de.scip.query.EventIndexManager;
+import blockchains.iaas.uni.stuttgart.de.scip.query.QueryResultCache;
 
+import blockchains.iaas.uni.stuttgart.de.subscription.SharedObservableRegistry;
 import blockchains.iaas.uni.stuttgart.de.subscription.SubscriptionManager;
+import blockchains.iaas.uni.stuttgart.de.subscription.SubscriptionStore;
 import blockchains.iaas.uni.stuttgart.de.subscription.model.*;
 import com.google.common.base.Strings;
 import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
+import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Component;
@@ -37,14 +43,29 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 @Log4j2
 @Component
 public class BlockchainManager {
     private final AdapterManager adapterManager;
+    private final SharedObservableRegistry<EventStreamKey, Occurrence> eventStreams = new SharedObservableRegistry<>();
+    private final SharedObservableRegistry<TransactionStreamKey, Transaction> transactionStreams = new SharedObservableRegistry<>();
+    /**
+     * Runs the continuations of the futures returned by the adapters. By default, they run on the thread that completes
+     * the future.
+     */
+    @Setter
+    private volatile Executor continuationExecutor = Runnable::run;
 
     public BlockchainManager(AdapterManager adapterManager) {
         this.adapterManager = adapterManager;
+        // the shared streams belong to the adapters of the previous profiles, so new subscribers must not join them
+        ConnectionProfilesManager.getInstance().addListener(() -> {
+            eventStreams.clear();
+            transactionStreams.clear();
+        });
     }
 
     private static @NotNull AsynchronousBalException generateAsynchronousBalException(String correlationId, Transaction tx) {
@@ -93,9 +114,9 @@ public class BlockchainManager {
             final CompletableFuture<Transaction> future = adapter.submitTransaction(to, new BigDecimal(value), minimumConfidenceAsProbability);
 
             future.
-                    thenAccept(tx -> {
+                    thenAcceptAsync(tx -> {
                         if (tx != null) {
-                            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setTransaction(tx);
+                            RequestHistoryManager.getInstance().setTransaction(correlationId, tx);
 
                             if (tx.getState() != TransactionState.CONFIRMED) {
                                 CallbackRouter.getInstance().sendAsyncError(correlationId, epUrl, callbackBinding, tx.getState(), new InvalidTransactionException("The transaction is not confirmed"));
@@ -103,14 +124,14 @@ public class BlockchainManager {
                                 CallbackRouter.getInstance().sendSubmitTransactionResponse(correlationId, epUrl, callbackBinding, tx);
                             }
                         } else {
-                            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setTxState(TransactionState.UNKNOWN);
+                            RequestHistoryManager.getInstance().setTxState(correlationId, TransactionState.UNKNOWN);
                             log.warn("Resulting transaction is null");
                             // todo must return some callback
                         }
-                    }).
+                    }, continuationExecutor).
                     exceptionally((e) -> {
                         log.error("Failed to submit a transaction.", e);
-                        RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(e);
+                        RequestHistoryManager.getInstance().setException(correlationId, e);
 
                         if (e.getCause() instanceof BlockchainNodeUnreachableException || e.getCause() instanceof InvalidTransactionException) {
                             TransactionState state = e.getCause() instanceof BlockchainNodeUnreachableException ? TransactionState.UNKNOWN : TransactionState.INVALID;
@@ -130,7 +151,7 @@ public class BlockchainManager {
             final Subscription subscription = new CompletableFutureSubscription<>(future, SubscriptionType.SUBMIT_TRANSACTION);
             SubscriptionManager.getInstance().createSubscription(correlationId, blockchainId, subscription);
         } catch (InvalidTransactionException | BlockchainIdNotFoundException | NotSupportedException e) {
-            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(e);
+            RequestHistoryManager.getInstance().setException(correlationId, e);
             // This (should only) happen when something is wrong with the transaction data or the blockchainId is not found
             throw e;
         }
@@ -164,17 +185,27 @@ public class BlockchainManager {
         try {
             RequestHistoryManager.getInstance().addRequestDetails(correlationId, new RequestDetails(RequestType.ReceiveTxs, blockchainId));
             final BlockchainAdapter adapter = adapterManager.getAdapter(blockchainId);
-            final Disposable subscription = adapter.receiveTransactions(from, minimumConfidenceAsProbability)
+            SubscriptionStore.getInstance().save(SubscriptionDescriptor.builder()
+                    .type(SubscriptionType.RECEIVE_TRANSACTIONS)
+                    .correlationId(correlationId)
+                    .blockchainId(blockchainId)
+                    .from(from)
+                    .degreeOfConfidence(requiredConfidence)
+                    .callbackUrl(epUrl)
+                    .build());
+            final Disposable subscription = this.receiveTransactions(adapter, blockchainId, from, minimumConfidenceAsProbability)
                     .doFinally(() -> {
                         // remove subscription from subscription list
                         SubscriptionManager.getInstance().removeSubscription(correlationId, blockchainId);
                     })
+                    .doOnComplete(() -> SubscriptionStore.getInstance().remove(correlationId, blockchainId))
                     .doOnError(throwable -> {
                         log.error("Failed to receive transaction.", throwable);
-                        RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(throwable);
+                        RequestHistoryManager.getInstance().setException(correlationId, throwable);
+                        SubscriptionStore.getInstance().removeAfterFailure(correlationId, blockchainId, throwable);
                     }).subscribe(transaction -> {
                         if (transaction != null) {
-                            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setTransaction(transaction);
+                            RequestHistoryManager.getInstance().setTransaction(correlationId, transaction);
                             CallbackRouter.getInstance().sendReceiveTransactionsResponse(correlationId, epUrl, null, transaction);
                         } else {
                             log.error("received transaction is null!");
@@ -185,7 +216,8 @@ public class BlockchainManager {
             final Subscription sub = new ObservableSubscription(subscription, SubscriptionType.RECEIVE_TRANSACTIONS);
             SubscriptionManager.getInstance().createSubscription(correlationId, blockchainId, sub);
         } catch (BlockchainIdNotFoundException | NotSupportedException e) {
-            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(e);
+            RequestHistoryManager.getInstance().setException(correlationId, e);
+            SubscriptionStore.getInstance().removeAfterFailure(correlationId, blockchainId, e);
             // This (should only) happen when the blockchainId is not found or the blockchain does not support operation, for example:
             // trying to receive monetary transactions on, e.g., Fabric.
             log.error("blockchainId ({}) is not recognized", blockchainId, e);
@@ -223,13 +255,13 @@ public class BlockchainManager {
         try {
             RequestHistoryManager.getInstance().addRequestDetails(correlationId, new RequestDetails(RequestType.ReceiveTx, blockchainId));
             final BlockchainAdapter adapter = adapterManager.getAdapter(blockchainId);
-            final Disposable subscription = adapter.receiveTransactions(from, minimumConfidenceAsProbability)
+            final Disposable subscription = this.receiveTransactions(adapter, blockchainId, from, minimumConfidenceAsProbability)
                     .doFinally(() -> {
                         // remove subscription from subscription list
                         SubscriptionManager.getInstance().removeSubscription(correlationId, blockchainId);
                     })
                     .doOnError(throwable -> {
-                        RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(throwable);
+                        RequestHistoryManager.getInstance().setException(correlationId, throwable);
                         log.error("Failed to receive transaction.", throwable);
 
                         if (throwable instanceof BlockchainNodeUnreachableException e) {
@@ -243,7 +275,7 @@ public class BlockchainManager {
                     .take(1)
                     .subscribe(transaction -> {
                         if (transaction != null) {
-                            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setTransaction(transaction);
+                            RequestHistoryManager.getInstance().setTransaction(correlationId, transaction);
                             CallbackRouter.getInstance().sendReceiveTransactionResponse(correlationId, epUrl, callbackBinding, transaction);
                         } else {
                             log.error("Received transaction is null!");
@@ -254,7 +286,7 @@ public class BlockchainManager {
             final Subscription sub = new ObservableSubscription(subscription, SubscriptionType.RECEIVE_TRANSACTION);
             SubscriptionManager.getInstance().createSubscription(correlationId, blockchainId, sub);
         } catch (BlockchainIdNotFoundException | NotSupportedException e) {
-            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(e);
+            RequestHistoryManager.getInstance().setException(correlationId, e);
             // This (should only) happen when the blockchainId is not found Or
             // if trying to receive a monetary transaction via, e.g., Fabric
             log.error(e);
@@ -284,15 +316,15 @@ public class BlockchainManager {
             final BlockchainAdapter adapter = adapterManager.getAdapter(blockchainId);
             final CompletableFuture<TransactionState> future = adapter.detectOrphanedTransaction(transactionId);
             future.
-                    thenAccept(txState -> {
+                    thenAcceptAsync(txState -> {
                         if (txState != null) {
-                            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setTxState(txState);
+                            RequestHistoryManager.getInstance().setTxState(correlationId, txState);
                             CallbackRouter.getInstance().sendDetectOrphanedTransactionResponse(correlationId, epUrl, null, txState);
                         } else // we should never reach here!
                             log.error("Resulting transactionState is null");
-                    }).
+                    }, continuationExecutor).
                     exceptionally((e) -> {
-                        RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(e);
+                        RequestHistoryManager.getInstance().setException(correlationId, e);
                         log.error("Failed to monitor a transaction.", e);
                         // This happens when a communication error, or an error with the tx exist.
                         if (e.getCause() instanceof BlockchainNodeUnreachableException ee) {
@@ -310,7 +342,7 @@ public class BlockchainManager {
             final Subscription subscription = new CompletableFutureSubscription<>(future, SubscriptionType.DETECT_ORPHANED_TRANSACTION);
             SubscriptionManager.getInstance().createSubscription(correlationId, blockchainId, subscription);
         } catch (BlockchainIdNotFoundException | NotSupportedException e) {
-            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(e);
+            RequestHistoryManager.getInstance().setException(correlationId, e);
             // This (should only) happen when the blockchainId is not found Or
             // if trying to receive a monetary transaction via, e.g., Fabric
             log.error(e);
@@ -354,11 +386,27 @@ public class BlockchainManager {
         try {
             RequestHistoryManager.getInstance().addRequestDetails(correlationId, new RequestDetails(RequestType.EnsureState, blockchainId));
             final BlockchainAdapter adapter = adapterManager.getAdapter(blockchainId);
+            SubscriptionStore.getInstance().save(SubscriptionDescriptor.builder()
+                    .type(SubscriptionType.ENSURE_TRANSACTION_STATE)
+                    .correlationId(correlationId)
+                    .blockchainId(blockchainId)
+                    .transactionId(transactionId)
+                    .degreeOfConfidence(requiredConfidence)
+                    .callbackBinding(callbackBinding)
+                    .callbackUrl(epUrl)
+                    .build());
             final CompletableFuture<TransactionState> future = adapter.ensureTransactionState(transactionId, minimumConfidenceAsProbability);
+            future.whenComplete((txState, e) -> {
+                if (e == null) {
+                    SubscriptionStore.getInstance().remove(correlationId, blockchainId);
+                } else {
+                    SubscriptionStore.getInstance().removeAfterFailure(correlationId, blockchainId, e);
+                }
+            });
             future.
-                    thenAccept(txState -> {
+                    thenAcceptAsync(txState -> {
                         if (txState != null) {
-                            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setTxState(txState);
+                            RequestHistoryManager.getInstance().setTxState(correlationId, txState);
 
                             if (txState == TransactionState.CONFIRMED) {
                                 CallbackRouter.getInstance().sendEnsureTransactionStateResponse(correlationId, epUrl, callbackBinding, txState);
@@ -370,9 +418,9 @@ public class BlockchainManager {
                             // todo must return some callback
                             log.error("resulting transactionState is null");
                         }
-                    }).
+                    }, continuationExecutor).
                     exceptionally((e) -> {
-                        RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(e);
+                        RequestHistoryManager.getInstance().setException(correlationId, e);
                         log.error("Failed to monitor a transaction.", e);
                         // This happens when a communication error, or an error with the tx exist.
                         if (e.getCause() instanceof BlockchainNodeUnreachableException ee) {
@@ -391,7 +439,8 @@ public class BlockchainManager {
             final Subscription subscription = new CompletableFutureSubscription<>(future, SubscriptionType.ENSURE_TRANSACTION_STATE);
             SubscriptionManager.getInstance().createSubscription(correlationId, blockchainId, subscription);
         } catch (BlockchainIdNotFoundException | NotSupportedException e) {
-            RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(e);
+            RequestHistoryManager.getInstance().setException(correlationId, e);
+            SubscriptionStore.getInstance().removeAfterFailure(correlationId, blockchainId, e);
             // This (should only) happen when the blockchainId is not found Or
             // if trying to monitor a monetary transaction via, e.g., Fabric
             log.error(e);
@@ -442,9 +491,9 @@ public class BlockchainManager {
         RequestHistoryManager.getInstance().addRequestDetails(correlationId, new RequestDetails(RequestType.InvokeSCFunction, blockchainIdentifier));
         final CompletableFuture<Transaction> future = this.invokeSmartContractFunction(blockchainIdentifier, smartContractPath,
                 functionIdentifier, inputs, outputs, requiredConfidence, timeoutMillis, signature, sideEffects);
-        future.thenAccept(tx -> {
+        future.thenAcceptAsync(tx -> {
                     if (tx != null) {
-                        RequestHistoryManager.getInstance().getRequestDetails(correlationId).setTransaction(tx);
+                        RequestHistoryManager.getInstance().setTransaction(correlationId, tx);
                         if (callbackUrl != null) {
                             if (tx.getState() == TransactionState.CONFIRMED || tx.getState() == TransactionState.RETURN_VALUE) {
                                 CallbackRouter.getInstance().sendInvokeSCFunctionResponse(correlationId, callbackUrl, callbackBinding, tx);
@@ -461,9 +510,9 @@ public class BlockchainManager {
                         // todo must return callback
                         log.error("Resulting transaction is null");
                     }
-                }).
+                }, continuationExecutor).
                 exceptionally((e) -> {
-                    RequestHistoryManager.getInstance().getRequestDetails(correlationId).setException(e);
+                    RequestHistoryManager.getInstance().setException(correlationId, e);
                     log.info("Failed to invoke smart contract function.", e);
                     // happens if the node is unreachable, or something goes wrong while trying to invoke the sc function.
                     if (e.getCause() instanceof BalException) {
@@ -531,21 +580,36 @@ public class BlockchainManager {
         // first, we cancel previous identical subscriptions.
         this.cancelEventSubscriptions(blockchainIdentifier, smartContractPath, correlationIdentifier, eventIdentifier, outputParameters);
 
-        Disposable result = this.subscribeToEvent(blockchainIdentifier, smartContractPath, eventIdentifier, outputParameters, degreeOfConfidence, filter)
+        final Observable<Occurrence> occurrences = this.subscribeToEvent(blockchainIdentifier, smartContractPath, eventIdentifier, outputParameters, degreeOfConfidence, filter);
+        SubscriptionStore.getInstance().save(SubscriptionDescriptor.builder()
+                .type(SubscriptionType.EVENT_OCCURRENCES)
+                .correlationId(correlationIdentifier)
+                .blockchainId(blockchainIdentifier)
+                .smartContractPath(smartContractPath)
+                .eventIdentifier(eventIdentifier)
+                .outputParameters(outputParameters)
+                .degreeOfConfidence(degreeOfConfidence)
+                .filter(filter)
+                .callbackBinding(callbackBinding)
+                .callbackUrl(callbackUrl)
+                .build());
+        Disposable result = occurrences
                 .doFinally(() -> {
                     // remove subscription from subscription list
                     SubscriptionManager.getInstance().removeSubscription(correlationIdentifier, blockchainIdentifier, smartContractPath);
                 })
+                .doOnComplete(() -> SubscriptionStore.getInstance().remove(correlationIdentifier, blockchainIdentifier, smartContractPath))
                 .doOnError(throwable -> {
                     log.error("Failed to detect an occurrence.", throwable);
-                    RequestHistoryManager.getInstance().getRequestDetails(correlationIdentifier).setException(throwable);
+                    RequestHistoryManager.getInstance().setException(correlationIdentifier, throwable);
+                    SubscriptionStore.getInstance().removeAfterFailure(correlationIdentifier, blockchainIdentifier, smartContractPath, throwable);
                 })
                 .subscribe(occurrence -> {
                     if (occurrence != null) {
                         LinearChainTransaction dummy = new LinearChainTransaction();
                         dummy.setReturnValues(occurrence.getParameters());
                         dummy.setState(TransactionState.RETURN_VALUE);
-                        RequestHistoryManager.getInstance().getRequestDetails(correlationIdentifier).setTransaction(dummy);
+                        RequestHistoryManager.getInstance().setTransaction(correlationIdentifier, dummy);
                         CallbackRouter.getInstance().sendSubscribeResponse(correlationIdentifier, callbackUrl, callbackBinding, occurrence, dummy);
                     } else {
                         // todo must return callback
@@ -574,9 +638,15 @@ public class BlockchainManager {
         }
 
         final double minimumConfidenceAsProbability = degreeOfConfidence / 100.0;
-        BlockchainAdapter adapter = adapterManager.getAdapter(blockchainIdentifier);
+        final EventStreamKey key = new EventStreamKey(blockchainIdentifier, smartContractPath, eventIdentifier,
+                signatureOf(outputParameters), degreeOfConfidence, filter);
 
-        return adapter.subscribeToEvent(smartContractPath, eventIdentifier, outputParameters, minimumConfidenceAsProbability, filter);
+        // resolved before entering the registry, since it may connect to the node or fail
+        final BlockchainAdapter adapter = adapterManager.getAdapter(blockchainIdentifier);
+
+        // identical subscriptions share a single upstream subscription at the adapter
+        return eventStreams.get(key, () ->
+                adapter.subscribeToEvent(smartContractPath, eventIdentifier, outputParameters, minimumConfidenceAsProbability, filter));
     }
 
     public void cancelEventSubscriptions(String blockchainId, String smartContractId, String correlationId, String eventIdentifier, List<Parameter> parameters) {
@@ -607,6 +677,46 @@ public class BlockchainManager {
                                    final List<Parameter> outputParameters,
                                    final String filter,
                                    final TimeFrame timeFrame) {
+        try {
+            return queryEventsAsync(blockchainIdentifier, smartContractPath, eventIdentifier, outputParameters, filter, timeFrame)
+                    .join();
+        } catch (CompletionException e) {
+            throw (BalException) e.getCause();
+        }
+    }
+
+    /**
+     * Queries the occurrences of an event without blocking the calling thread. The results of queries over final time
+     * frames are served from the {@link QueryResultCache} if enabled, and unfiltered queries are answered from the
+     * local event indexes of the {@link EventIndexManager} if enabled.
+     *
+     * @return a future that completes with the query result once the adapter returns it, or fails with a
+     * {@link BalException} (failures that are not BalExceptions are reported as {@link UnknownException}s).
+     * @throws InvalidScipParameterException if the blockchain id, the smart contract path, or the event identifier is missing.
+     */
+    public CompletableFuture<QueryResult> queryEventsAsync(final String blockchainIdentifier,
+                                                           final String smartContractPath,
+                                                           final String eventIdentifier,
+                                                           final List<Parameter> outputParameters,
+                                                           final String filter,
+                                                           final TimeFrame timeFrame) {
+        return queryEventsAsync(blockchainIdentifier, smartContractPath, eventIdentifier, outputParameters, filter, timeFrame, true);
+    }
+
+    /**
+     * Like {@link #queryEventsAsync(String, String, String, List, String, TimeFrame)}.
+     *
+     * @param useEventIndex whether the query may be answered from a local event index. Indexes only contain
+     *                      occurrences that reached their degree of confidence, so queries that must see the latest
+     *                      occurrences of the node pass false.
+     */
+    public CompletableFuture<QueryResult> queryEventsAsync(final String blockchainIdentifier,
+                                                           final String smartContractPath,
+                                                           final String eventIdentifier,
+                                                           final List<Parameter> outputParameters,
+                                                           final String filter,
+                                                           final TimeFrame timeFrame,
+                                                           final boolean useEventIndex) {
         // Validate scip parameters!
         if (Strings.isNullOrEmpty(blockchainIdentifier)
                 || Strings.isNullOrEmpty(smartContractPath)
@@ -614,18 +724,43 @@ public class BlockchainManager {
             throw new InvalidScipParameterException();
         }
 
-        try {
-            return adapterManager
-                    .getAdapter(blockchainIdentifier)
-                    .queryEvents(smartContractPath, eventIdentifier, outputParameters, filter, timeFrame)
-                    .join();
-        } catch (CompletionException e) {
-            if (e.getCause() instanceof BalException)
-                throw (BalException) e.getCause();
+        final QueryResultCache cache = QueryResultCache.getInstance();
+        final QueryResultCache.Key key = cache.keyOf(blockchainIdentifier, smartContractPath, eventIdentifier, outputParameters, filter, timeFrame);
 
-            log.error("caught a non-BALException!", e);
-            throw new UnknownException();
+        if (key != null) {
+            final QueryResult cached = cache.get(key);
+
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
         }
+
+        final BlockchainAdapter adapter = adapterManager.getAdapter(blockchainIdentifier);
+        final CompletableFuture<QueryResult> indexed = !useEventIndex ? null : EventIndexManager.getInstance().queryEvents(blockchainIdentifier,
+                smartContractPath, eventIdentifier, outputParameters, filter, timeFrame, new EventIndexManager.EventSource() {
+                    @Override
+                    public CompletableFuture<QueryResult> queryEvents(TimeFrame frame) {
+                        return adapter.queryEvents(smartContractPath, eventIdentifier, outputParameters, filter, frame);
+                    }
+
+                    @Override
+                    public Observable<Occurrence> subscribe(double degreeOfConfidence) {
+                        return subscribeToEvent(blockchainIdentifier, smartContractPath, eventIdentifier, outputParameters, degreeOfConfidence, filter);
+                    }
+                });
+
+        return (indexed != null ? indexed : adapter.queryEvents(smartContractPath, eventIdentifier, outputParameters, filter, timeFrame))
+                .handle((result, e) -> {
+                    if (e == null) {
+                        if (key != null) {
+                            cache.put(key, result);
+                        }
+
+                        return result;
+                    }
+
+                    throw asBalException(e);
+                });
     }
 
     /**
@@ -643,17 +778,53 @@ public class BlockchainManager {
         }
     }
 
+    private static BalException asBalException(Throwable e) {
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+        if (cause instanceof BalException balException) {
+            return balException;
+        }
+
+        log.error("caught a non-BALException!", cause);
+        return new UnknownException();
+    }
+
     private void cancelSubscriptions(String correlationId, Collection<SubscriptionKey> keys) {
         // here, we just unsubscribe. The Blockchain Manager removes subscriptions from the list.
         for (SubscriptionKey key : keys) {
             // if the correlation id is provided, only remove subscriptions that has it.
-            if (!Strings.isNullOrEmpty(correlationId)) {
-                if (key.getCorrelationId().equals(correlationId)) {
-                    SubscriptionManager.getInstance().getSubscription(key.getCorrelationId(), key.getBlockchainId(), key.getSmartContractPath()).unsubscribe();
-                }
-            } else {
+            if (Strings.isNullOrEmpty(correlationId) || key.getCorrelationId().equals(correlationId)) {
+                // an explicit cancellation, so the subscription is not re-established after a restart
+                SubscriptionStore.getInstance().remove(key.getCorrelationId(), key.getBlockchainId(), key.getSmartContractPath());
                 SubscriptionManager.getInstance().getSubscription(key.getCorrelationId(), key.getBlockchainId(), key.getSmartContractPath()).unsubscribe();
             }
         }
     }
+
+    /**
+     * Gets the stream of transactions addressed to us from the given sender. Concurrent receivers with the same
+     * blockchain id, sender, and degree-of-confidence share a single upstream subscription at the adapter.
+     */
+    private Observable<Transaction> receiveTransactions(BlockchainAdapter adapter, String blockchainId, String from, double minimumConfidenceAsProbability) {
+        return transactionStreams.get(new TransactionStreamKey(blockchainId, from, minimumConfidenceAsProbability),
+                () -> adapter.receiveTransactions(from, minimumConfidenceAsProbability));
+    }
+
+    private static String signatureOf(List<Parameter> parameters) {
+        if (parameters == null) {
+            return "";
+        }
+
+        return parameters
+                .stream()
+                .map(parameter -> parameter.getName() + ":" + parameter.getType())
+                .collect(Collectors.joining(","));
+    }
+
+    private record TransactionStreamKey(String blockchainId, String from, double minimumConfidence) {
+    }
+
+    private record EventStreamKey(String blockchainId, String smartContractPath, String eventIdentifier,
+                                  String outputParameters, double degreeOfConfidence, String filter) {
+    }
 }
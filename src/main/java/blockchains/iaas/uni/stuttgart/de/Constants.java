@@ -5,4 +5,65 @@ public class Constants {
 
     public final static String PF4J_PLUGIN_DIR_PROPERTY = "pf4j.pluginsDir";
     public final static String PF4J_AUTOLOAD_PROPERTY = "pf4j.autoLoadPlugins";
+    public final static String HISTORY_MAX_ENTRIES_PROPERTY = "history.maxEntries";
+    public final static String HISTORY_TERMINAL_TTL_SECONDS_PROPERTY = "history.terminalTtlSeconds";
+    public final static String HISTORY_EVICTION_INTERVAL_MILLIS_PROPERTY = "history.evictionIntervalMillis";
+    public final static String HISTORY_JOURNAL_ENABLED_PROPERTY = "history.journal.enabled";
+    public final static String HISTORY_JOURNAL_DIR_PROPERTY = "history.journal.dir";
+    public final static String HISTORY_JOURNAL_SEGMENT_SIZE_PROPERTY = "history.journal.segmentSizeBytes";
+    public final static String HISTORY_JOURNAL_FLUSH_INTERVAL_MILLIS_PROPERTY = "history.journal.flushIntervalMillis";
+    public final static String HISTORY_JOURNAL_COMPACTION_INTERVAL_MILLIS_PROPERTY = "history.journal.compactionIntervalMillis";
+    public final static String SUBSCRIPTIONS_PERSISTENCE_ENABLED_PROPERTY = "subscriptions.persistence.enabled";
+    public final static String SUBSCRIPTIONS_PERSISTENCE_DIR_PROPERTY = "subscriptions.persistence.dir";
+    public final static String SUBSCRIPTIONS_RESTORE_MAX_CONCURRENCY_PROPERTY = "subscriptions.restore.maxConcurrency";
+    public final static String CALLBACKS_THREADS_PER_HOST_PROPERTY = "callbacks.threadsPerHost";
+    public final static String CALLBACKS_QUEUE_CAPACITY_PROPERTY = "callbacks.queueCapacity";
+    public final static String CALLBACKS_OVERLOAD_POLICY_PROPERTY = "callbacks.overloadPolicy";
+    public final static String CALLBACKS_SPILL_DIR_PROPERTY = "callbacks.spillDir";
+    public final static String CALLBACKS_BLOCK_TIMEOUT_MILLIS_PROPERTY = "callbacks.blockTimeoutMillis";
+    public final static String CALLBACKS_METRICS_LOG_INTERVAL_MILLIS_PROPERTY = "callbacks.metricsLogIntervalMillis";
+    public final static String EXECUTOR_MODE_PROPERTY = "executor.mode";
+    public final static String CALLBACKS_VIRTUAL_THREADS_PER_HOST_PROPERTY = "callbacks.virtualThreadsPerHost";
+    public final static String CALLBACKS_HTTP_CONNECT_TIMEOUT_MILLIS_PROPERTY = "callbacks.http.connectTimeoutMillis";
+    public final static String CALLBACKS_HTTP_READ_TIMEOUT_MILLIS_PROPERTY = "callbacks.http.readTimeoutMillis";
+    public final static String CALLBACKS_HTTP_MAX_CONNECTIONS_PER_HOST_PROPERTY = "callbacks.http.maxConnectionsPerHost";
+    public final static String CALLBACKS_HTTP_VERSION_PROPERTY = "callbacks.http.version";
+    public final static String CALLBACKS_OUTBOX_ENABLED_PROPERTY = "callbacks.outbox.enabled";
+    public final static String CALLBACKS_OUTBOX_DIR_PROPERTY = "callbacks.outbox.dir";
+    public final static String CALLBACKS_OUTBOX_SEGMENT_SIZE_PROPERTY = "callbacks.outbox.segmentSizeBytes";
+    public final static String CALLBACKS_OUTBOX_COMPACTION_INTERVAL_MILLIS_PROPERTY = "callbacks.outbox.compactionIntervalMillis";
+    public final static String CALLBACKS_RETRY_MAX_ATTEMPTS_PROPERTY = "callbacks.retry.maxAttempts";
+    public final static String CALLBACKS_RETRY_INITIAL_BACKOFF_MILLIS_PROPERTY = "callbacks.retry.initialBackoffMillis";
+    public final static String CALLBACKS_RETRY_MAX_BACKOFF_MILLIS_PROPERTY = "callbacks.retry.maxBackoffMillis";
+    public final static String CALLBACKS_RETRY_THREADS_PROPERTY = "callbacks.retry.threads";
+    public final static String CALLBACKS_CIRCUIT_BREAKER_FAILURE_THRESHOLD_PROPERTY = "callbacks.circuitBreaker.failureThreshold";
+    public final static String CALLBACKS_CIRCUIT_BREAKER_OPEN_MILLIS_PROPERTY = "callbacks.circuitBreaker.openMillis";
+    public final static String CALLBACKS_ADAPTIVE_ENABLED_PROPERTY = "callbacks.adaptive.enabled";
+    public final static String CALLBACKS_ADAPTIVE_INITIAL_LIMIT_PROPERTY = "callbacks.adaptive.initialLimit";
+    public final static String CALLBACKS_ADAPTIVE_MAX_LIMIT_PROPERTY = "callbacks.adaptive.maxLimit";
+    public final static String CALLBACKS_ADAPTIVE_LATENCY_THRESHOLD_MILLIS_PROPERTY = "callbacks.adaptive.latencyThresholdMillis";
+    public final static String JSON_RPC_BATCHING_ENABLED_PROPERTY = "scip.jsonrpc.batching.enabled";
+    public final static String JSON_RPC_BATCHING_MAX_SIZE_PROPERTY = "scip.jsonrpc.batching.maxSize";
+    public final static String JSON_RPC_BATCHING_LINGER_MILLIS_PROPERTY = "scip.jsonrpc.batching.lingerMillis";
+    public final static String JSON_RPC_BATCH_REQUESTS_MAX_SIZE_PROPERTY = "scip.jsonrpc.batchRequests.maxSize";
+    public final static String JSON_RPC_BATCH_REQUESTS_MAX_PARALLELISM_PROPERTY = "scip.jsonrpc.batchRequests.maxParallelism";
+    public final static String QUERY_CURSORS_MAX_PROPERTY = "scip.query.cursors.max";
+    public final static String QUERY_CURSORS_TTL_MILLIS_PROPERTY = "scip.query.cursors.ttlMillis";
+    public final static String QUERY_CURSORS_MAX_OCCURRENCES_PROPERTY = "scip.query.cursors.maxOccurrences";
+    public final static String QUERY_MAX_PAGE_SIZE_PROPERTY = "scip.query.maxPageSize";
+    public final static String QUERY_CACHE_ENABLED_PROPERTY = "scip.query.cache.enabled";
+    public final static String QUERY_CACHE_FINALITY_DEPTH_SECONDS_PROPERTY = "scip.query.cache.finalityDepthSeconds";
+    public final static String QUERY_CACHE_MAX_OCCURRENCES_PROPERTY = "scip.query.cache.maxOccurrences";
+    public final static String EVENT_INDEX_ENABLED_PROPERTY = "scip.query.eventIndex.enabled";
+    public final static String EVENT_INDEX_DIRECTORY_PROPERTY = "scip.query.eventIndex.dir";
+    public final static String EVENT_INDEX_SEGMENT_SIZE_BYTES_PROPERTY = "scip.query.eventIndex.segmentSizeBytes";
+    public final static String EVENT_INDEX_MAX_INDEXES_PROPERTY = "scip.query.eventIndex.maxIndexes";
+    public final static String EVENT_INDEX_DEGREE_OF_CONFIDENCE_PROPERTY = "scip.query.eventIndex.degreeOfConfidence";
+    public final static String DTX_RETENTION_ENABLED_PROPERTY = "dtx.retention.enabled";
+    public final static String DTX_RETENTION_TERMINAL_AGE_SECONDS_PROPERTY = "dtx.retention.terminalAgeSeconds";
+    public final static String DTX_RETENTION_INTERVAL_MILLIS_PROPERTY = "dtx.retention.intervalMillis";
+    public final static String DTX_ARCHIVE_DIR_PROPERTY = "dtx.archive.dir";
+    public final static String CAMUNDA_DELIVERY_DELAY_MILLIS_PROPERTY = "scip.camunda.deliveryDelayMillis";
+    public final static String CAMUNDA_READINESS_PROBE_ENABLED_PROPERTY = "scip.camunda.readinessProbe.enabled";
+    public final static String CAMUNDA_READINESS_PROBE_INTERVAL_MILLIS_PROPERTY = "scip.camunda.readinessProbe.intervalMillis";
 }
@@ -0,0 +1,72 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.net.http.HttpClient;
+import java.nio.file.Paths;
+import java.util.List;
+
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import blockchains.iaas.uni.stuttgart.de.callback.model.OverloadPolicy;
+import blockchains.iaas.uni.stuttgart.de.restapi.callback.RestCallbackManager;
+import blockchains.iaas.uni.stuttgart.de.scip.callback.ScipCallbackManager;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the callback dispatch, adaptive concurrency and HTTP client settings of the application properties to the REST and SCIP callback
+ * managers, and periodically logs the dispatch metrics.
+ */
+@Log4j2
+@Component
+public class CallbackConfiguration {
+
+    public CallbackConfiguration(@Value("${" + Constants.CALLBACKS_THREADS_PER_HOST_PROPERTY + ":" + CallbackDispatcher.DEFAULT_THREADS_PER_HOST + "}") int threadsPerHost,
+                                 @Value("${" + Constants.CALLBACKS_QUEUE_CAPACITY_PROPERTY + ":" + CallbackDispatcher.DEFAULT_QUEUE_CAPACITY + "}") int queueCapacity,
+                                 @Value("${" + Constants.CALLBACKS_OVERLOAD_POLICY_PROPERTY + ":BLOCK}") OverloadPolicy overloadPolicy,
+                                 @Value("${" + Constants.CALLBACKS_SPILL_DIR_PROPERTY + ":}") String spillDir,
+                                 @Value("${" + Constants.CALLBACKS_BLOCK_TIMEOUT_MILLIS_PROPERTY + ":" + CallbackDispatcher.DEFAULT_BLOCK_TIMEOUT_MILLIS + "}") long blockTimeoutMillis,
+                                 @Value("${" + Constants.CALLBACKS_HTTP_CONNECT_TIMEOUT_MILLIS_PROPERTY + ":" + CallbackHttpClient.DEFAULT_CONNECT_TIMEOUT_MILLIS + "}") long connectTimeoutMillis,
+                                 @Value("${" + Constants.CALLBACKS_HTTP_READ_TIMEOUT_MILLIS_PROPERTY + ":" + CallbackHttpClient.DEFAULT_READ_TIMEOUT_MILLIS + "}") long readTimeoutMillis,
+                                 @Value("${" + Constants.CALLBACKS_HTTP_MAX_CONNECTIONS_PER_HOST_PROPERTY + ":" + CallbackHttpClient.DEFAULT_MAX_CONNECTIONS_PER_HOST + "}") int maxConnectionsPerHost,
+                                 @Value("${" + Constants.CALLBACKS_HTTP_VERSION_PROPERTY + ":HTTP_1_1}") HttpClient.Version httpVersion,
+                                 @Value("${" + Constants.CALLBACKS_ADAPTIVE_ENABLED_PROPERTY + ":false}") boolean adaptiveEnabled,
+                                 @Value("${" + Constants.CALLBACKS_ADAPTIVE_INITIAL_LIMIT_PROPERTY + ":" + CallbackDispatcher.DEFAULT_INITIAL_CONCURRENCY_LIMIT + "}") int initialLimit,
+                                 @Value("${" + Constants.CALLBACKS_ADAPTIVE_MAX_LIMIT_PROPERTY + ":" + CallbackDispatcher.DEFAULT_MAX_CONCURRENCY_LIMIT + "}") int maxLimit,
+                                 @Value("${" + Constants.CALLBACKS_ADAPTIVE_LATENCY_THRESHOLD_MILLIS_PROPERTY + ":" + CallbackDispatcher.DEFAULT_LATENCY_THRESHOLD_MILLIS + "}") long latencyThresholdMillis,
+                                 @Value("${" + Constants.CALLBACKS_CIRCUIT_BREAKER_FAILURE_THRESHOLD_PROPERTY + ":" + CircuitBreaker.DEFAULT_FAILURE_THRESHOLD + "}") int failureThreshold,
+                                 @Value("${" + Constants.CALLBACKS_CIRCUIT_BREAKER_OPEN_MILLIS_PROPERTY + ":" + CircuitBreaker.DEFAULT_OPEN_MILLIS + "}") long openMillis) {
+        CallbackHttpClient.getInstance().configure(connectTimeoutMillis, readTimeoutMillis, maxConnectionsPerHost, httpVersion);
+
+        for (CallbackDispatcher dispatcher : getDispatchers()) {
+            dispatcher.configure(threadsPerHost, queueCapacity, overloadPolicy,
+                    spillDir == null || spillDir.isBlank() ? null : Paths.get(spillDir));
+            dispatcher.setBlockTimeoutMillis(blockTimeoutMillis);
+            dispatcher.configureAdaptiveConcurrency(adaptiveEnabled, initialLimit, maxLimit, latencyThresholdMillis,
+                    failureThreshold, openMillis);
+        }
+    }
+
+    public static List<CallbackDispatcher> getDispatchers() {
+        return List.of(RestCallbackManager.getInstance().getDispatcher(), ScipCallbackManager.getInstance().getDispatcher());
+    }
+
+    @Scheduled(fixedDelayString = "${" + Constants.CALLBACKS_METRICS_LOG_INTERVAL_MILLIS_PROPERTY + ":60000}")
+    public void logMetrics() {
+        for (CallbackDispatcher dispatcher : getDispatchers()) {
+            dispatcher.getMetrics().forEach(metrics -> log.debug("Callback dispatch ({}): {}", dispatcher.getName(), metrics));
+            dispatcher.getEndpointMetrics().forEach(metrics -> log.debug("Callback endpoint ({}): {}", dispatcher.getName(), metrics));
+        }
+    }
+}
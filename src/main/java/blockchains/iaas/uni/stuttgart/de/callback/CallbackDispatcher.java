@@ -0,0 +1,538 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import blockchains.iaas.uni.stuttgart.de.callback.EndpointGuard.AdaptiveConcurrencySettings;
+import blockchains.iaas.uni.stuttgart.de.callback.model.CallbackEndpointMetrics;
+import blockchains.iaas.uni.stuttgart.de.callback.model.CallbackPartitionMetrics;
+import blockchains.iaas.uni.stuttgart.de.callback.model.OverloadPolicy;
+import blockchains.iaas.uni.stuttgart.de.concurrency.ExecutorMode;
+import blockchains.iaas.uni.stuttgart.de.concurrency.VirtualThreads;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Sends callbacks asynchronously using a separate pool per endpoint host, so that a slow endpoint only delays its own
+ * callbacks. All callbacks of a host that wait to be sent share one queue budget, whether they wait in the pool, in an
+ * ordering lane or in an endpoint guard. When the budget is used up, the configured {@link OverloadPolicy} applies.
+ * With {@link OverloadPolicy#BLOCK}, the dispatching thread (e.g., the thread of a blockchain adapter that emits an
+ * event) stalls until the budget has room again. If a block timeout is configured, the callback is dropped once it
+ * elapses, so only {@link OverloadPolicy#SPILL} writes callbacks to disk.
+ * <p>
+ * In {@link ExecutorMode#VIRTUAL} mode, the pools run virtual threads instead, so many more callbacks per host can
+ * block on their endpoints at the same time without tying up platform threads.
+ * <p>
+ * If adaptive concurrency is enabled, each endpoint additionally gets an {@link EndpointGuard}, which adapts the number
+ * of its concurrent callbacks to how the endpoint copes and isolates it with a circuit breaker when it keeps failing.
+ * <p>
+ * Callbacks dispatched with an ordering key are sent one after the other in dispatch order, while callbacks with
+ * different keys are sent in parallel: each key is mapped to one of several single-threaded lanes of its host.
+ */
+@Log4j2
+public class CallbackDispatcher {
+    public static final int DEFAULT_THREADS_PER_HOST = 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_VIRTUAL_THREADS_PER_HOST = 1000;
+    public static final int DEFAULT_INITIAL_CONCURRENCY_LIMIT = 4;
+    public static final int DEFAULT_MAX_CONCURRENCY_LIMIT = 256;
+    public static final long DEFAULT_LATENCY_THRESHOLD_MILLIS = 5_000;
+    /**
+     * Dispatching threads wait for room in the queue budget without a time limit.
+     */
+    public static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 0;
+    private static final Path DEFAULT_SPILL_DIR = Paths.get(System.getProperty("user.home"), ".bal", "callbacks-spill");
+    private static final ObjectMapper mapper = new ObjectMapper();
+    @Getter
+    private final String name;
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+    private final Map<String, EndpointGuard> guards = new ConcurrentHashMap<>();
+    private volatile int threadsPerHost = DEFAULT_THREADS_PER_HOST;
+    private volatile int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private volatile OverloadPolicy overloadPolicy = OverloadPolicy.BLOCK;
+    private volatile long blockTimeoutMillis = DEFAULT_BLOCK_TIMEOUT_MILLIS;
+    private volatile Path spillDirectory = DEFAULT_SPILL_DIR;
+    private volatile ExecutorMode executorMode = ExecutorMode.PLATFORM;
+    private volatile int virtualThreadsPerHost = DEFAULT_VIRTUAL_THREADS_PER_HOST;
+    private volatile AdaptiveConcurrencySettings adaptiveConcurrency;
+
+    public CallbackDispatcher(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Changes the dispatch settings. Pools that already exist keep their threads and queue capacity.
+     */
+    public void configure(int threadsPerHost, int queueCapacity, OverloadPolicy overloadPolicy, Path spillDirectory) {
+        if (threadsPerHost <= 0 || queueCapacity <= 0 || overloadPolicy == null) {
+            throw new IllegalArgumentException("Invalid callback dispatch settings!");
+        }
+
+        this.threadsPerHost = threadsPerHost;
+        this.queueCapacity = queueCapacity;
+        this.overloadPolicy = overloadPolicy;
+
+        if (spillDirectory != null) {
+            this.spillDirectory = spillDirectory;
+        }
+    }
+
+    /**
+     * Changes how long a dispatching thread waits for room in the queue budget of a host with the
+     * {@link OverloadPolicy#BLOCK} policy before the callback is dropped, or 0 to wait without a time limit.
+     */
+    public void setBlockTimeoutMillis(long blockTimeoutMillis) {
+        if (blockTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Invalid callback block timeout!");
+        }
+
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    /**
+     * Changes the kind of threads used by the pools created from now on.
+     *
+     * @param executorMode          the kind of threads to use. Falls back to platform threads if virtual threads are not
+     *                              supported by the running JVM.
+     * @param virtualThreadsPerHost the maximum number of virtual threads per endpoint host.
+     */
+    public void setExecutorMode(ExecutorMode executorMode, int virtualThreadsPerHost) {
+        if (virtualThreadsPerHost <= 0) {
+            throw new IllegalArgumentException("Invalid number of virtual threads per host!");
+        }
+
+        if (executorMode == ExecutorMode.VIRTUAL && !VirtualThreads.isSupported()) {
+            log.warn("Virtual threads are not supported by this JVM ({}). Using platform threads for {} callbacks.",
+                    System.getProperty("java.version"), name);
+            executorMode = ExecutorMode.PLATFORM;
+        }
+
+        this.executorMode = executorMode;
+        this.virtualThreadsPerHost = virtualThreadsPerHost;
+    }
+
+    /**
+     * Enables or disables per-endpoint adaptive concurrency limits and circuit breakers. Endpoints that already have a
+     * guard keep their settings.
+     *
+     * @param initialLimit           the number of concurrent callbacks an endpoint starts with.
+     * @param maxLimit               the maximum number of concurrent callbacks per endpoint.
+     * @param latencyThresholdMillis callbacks that take longer than this count as a sign of overload.
+     * @param failureThreshold       the number of consecutive failures that opens the circuit of an endpoint.
+     * @param openMillis             how long an open circuit rejects callbacks.
+     */
+    public void configureAdaptiveConcurrency(boolean enabled, int initialLimit, int maxLimit, long latencyThresholdMillis,
+                                             int failureThreshold, long openMillis) {
+        if (!enabled) {
+            this.adaptiveConcurrency = null;
+            return;
+        }
+
+        if (initialLimit <= 0 || maxLimit < initialLimit || latencyThresholdMillis <= 0 || failureThreshold <= 0 || openMillis < 0) {
+            throw new IllegalArgumentException("Invalid adaptive concurrency settings!");
+        }
+
+        this.adaptiveConcurrency = new AdaptiveConcurrencySettings(initialLimit, maxLimit, latencyThresholdMillis,
+                failureThreshold, openMillis);
+    }
+
+    public ExecutorMode getExecutorMode() {
+        return executorMode;
+    }
+
+    /**
+     * Asynchronously sends a callback.
+     *
+     * @param endpointUrl the url of the callback endpoint. Callbacks are partitioned by its host.
+     * @param payload     the callback message. Only used for spilling callbacks to disk.
+     * @param send        sends the callback and reports whether the endpoint handled it.
+     */
+    public void dispatch(String endpointUrl, Object payload, CallbackSend send) {
+        this.dispatch(endpointUrl, null, payload, send);
+    }
+
+    /**
+     * Asynchronously sends a callback after all callbacks with the same ordering key that were dispatched before it.
+     *
+     * @param endpointUrl the url of the callback endpoint. Callbacks are partitioned by its host.
+     * @param orderingKey the key (e.g., the correlation id) of the callbacks that must be sent in order, or null if
+     *                    the callback can be sent in any order.
+     * @param payload     the callback message. Only used for spilling callbacks to disk.
+     * @param send        sends the callback and reports whether the endpoint handled it.
+     */
+    public void dispatch(String endpointUrl, String orderingKey, Object payload, CallbackSend send) {
+        final Partition partition = partitions.computeIfAbsent(hostOf(endpointUrl), Partition::new);
+        final ThreadPoolExecutor executor = orderingKey == null ? partition.executor : partition.laneOf(orderingKey);
+        final AdaptiveConcurrencySettings settings = adaptiveConcurrency;
+        final CallbackTask task = new CallbackTask(partition, endpointUrl, payload, send);
+
+        if (!partition.admit(task)) {
+            return;
+        }
+
+        if (settings == null) {
+            executor.execute(task);
+            return;
+        }
+
+        final EndpointGuard guard = guards.computeIfAbsent(endpointUrl, url -> new EndpointGuard(url, settings));
+        guard.submit(send, guardedSend -> executor.execute(task.guardedBy(guardedSend, guard::release)));
+    }
+
+    public List<CallbackEndpointMetrics> getEndpointMetrics() {
+        return guards.values()
+                .stream()
+                .map(EndpointGuard::toMetrics)
+                .sorted(Comparator.comparing(CallbackEndpointMetrics::getEndpointUrl))
+                .toList();
+    }
+
+    public List<CallbackPartitionMetrics> getMetrics() {
+        return partitions.values()
+                .stream()
+                .map(Partition::toMetrics)
+                .sorted(Comparator.comparing(CallbackPartitionMetrics::getHost))
+                .toList();
+    }
+
+    public void shutdown() {
+        partitions.values().forEach(Partition::shutdown);
+    }
+
+    static String hostOf(String endpointUrl) {
+        try {
+            final URI uri = URI.create(endpointUrl);
+
+            if (uri.getHost() != null) {
+                return uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+            }
+        } catch (RuntimeException e) {
+            log.debug("Cannot determine the host of the callback endpoint: {}", endpointUrl);
+        }
+
+        return "unknown";
+    }
+
+    private void spill(CallbackTask task) {
+        final Map<String, Object> record = new LinkedHashMap<>();
+        record.put("endpointUrl", task.endpointUrl);
+        record.put("payloadType", task.payload == null ? null : task.payload.getClass().getName());
+        record.put("payload", task.payload instanceof CallbackPayload payload ? StreamingJson.toJson(payload) : task.payload);
+        final Path file = spillDirectory.resolve("callbacks-" + name + ".ndjson");
+        String line;
+
+        try {
+            line = mapper.writeValueAsString(record);
+        } catch (IOException e) {
+            record.put("payload", String.valueOf(task.payload));
+            line = String.valueOf(record);
+        }
+
+        synchronized (this) {
+            try {
+                Files.createDirectories(spillDirectory);
+                Files.writeString(file, line + System.lineSeparator(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                task.partition.spilled.increment();
+                log.warn("The callback queue of {} is full. Spilled a callback to {}", task.partition.host, file);
+            } catch (IOException e) {
+                task.partition.dropped.increment();
+                log.error("The callback queue of {} is full and spilling failed. Dropping the callback to {}", task.partition.host, task.endpointUrl, e);
+            }
+        }
+    }
+
+    private class Partition {
+        private final String host;
+        private final ThreadPoolExecutor executor;
+        private final ThreadFactory threadFactory;
+        private final AtomicReferenceArray<ThreadPoolExecutor> lanes;
+        private final int capacity = queueCapacity;
+        /**
+         * The callbacks that were admitted but have not started yet, in the order they were admitted. Guarded by the
+         * partition.
+         */
+        private final LinkedHashSet<CallbackTask> queued = new LinkedHashSet<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder spilled = new LongAdder();
+        private final LongAdder totalLatencyNanos = new LongAdder();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+        Partition(String host) {
+            this.host = host;
+            final String threadPrefix = "callback-" + name + "-" + host + "-";
+            final ThreadFactory virtualThreadFactory = executorMode == ExecutorMode.VIRTUAL ? VirtualThreads.factory(threadPrefix) : null;
+            final int threads = virtualThreadFactory != null ? virtualThreadsPerHost : threadsPerHost;
+
+            if (virtualThreadFactory != null) {
+                this.threadFactory = virtualThreadFactory;
+            } else {
+                final AtomicInteger threadNumber = new AtomicInteger();
+                this.threadFactory = runnable -> {
+                    Thread thread = new Thread(runnable, threadPrefix + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                };
+            }
+
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), threadFactory, new ShutdownHandler());
+            this.executor.allowCoreThreadTimeOut(true);
+            this.lanes = new AtomicReferenceArray<>(threads);
+        }
+
+        /**
+         * @return the single-threaded executor that sends all callbacks with the given ordering key. Lanes are created
+         * when they are first used.
+         */
+        ThreadPoolExecutor laneOf(String orderingKey) {
+            final int index = Math.floorMod(orderingKey.hashCode(), lanes.length());
+            ThreadPoolExecutor lane = lanes.get(index);
+
+            if (lane == null) {
+                final ThreadPoolExecutor created = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(), threadFactory, new ShutdownHandler());
+                created.allowCoreThreadTimeOut(true);
+
+                if (lanes.compareAndSet(index, null, created)) {
+                    lane = created;
+                } else {
+                    created.shutdown();
+                    lane = lanes.get(index);
+                }
+            }
+
+            return lane;
+        }
+
+        /**
+         * Reserves room for a callback in the queue budget of the host. If the budget is used up, the overload policy
+         * applies.
+         *
+         * @return true if the callback was admitted, false if it was spilled or dropped instead.
+         */
+        boolean admit(CallbackTask task) {
+            CallbackTask oldest = null;
+            boolean admitted = true;
+            boolean interrupted = false;
+            boolean timedOut = false;
+
+            synchronized (this) {
+                if (queued.size() >= capacity) {
+                    switch (overloadPolicy) {
+                        case BLOCK -> {
+                            final long timeout = blockTimeoutMillis;
+                            final long deadline = System.currentTimeMillis() + timeout;
+
+                            try {
+                                if (timeout == 0) {
+                                    while (queued.size() >= capacity) {
+                                        wait();
+                                    }
+                                } else {
+                                    for (long remaining = timeout; queued.size() >= capacity && remaining > 0;
+                                         remaining = deadline - System.currentTimeMillis()) {
+                                        wait(remaining);
+                                    }
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                interrupted = true;
+                            }
+
+                            admitted = !interrupted && queued.size() < capacity;
+                            timedOut = !interrupted && !admitted;
+                        }
+                        case DROP_OLDEST -> {
+                            final Iterator<CallbackTask> iterator = queued.iterator();
+                            oldest = iterator.next();
+                            iterator.remove();
+                        }
+                        case SPILL -> admitted = false;
+                    }
+                }
+
+                if (admitted) {
+                    queued.add(task);
+                }
+            }
+
+            if (oldest != null) {
+                dropped.increment();
+                log.warn("The callback queue of {} is full. Dropping the oldest callback to {}", host, oldest.endpointUrl);
+            } else if (interrupted) {
+                dropped.increment();
+                log.error("Interrupted while waiting for room in the callback queue of {}. Dropping the callback.", host);
+            } else if (timedOut) {
+                dropped.increment();
+                log.error("The callback queue of {} stayed full for {} millis. Dropping the callback to {}",
+                        host, blockTimeoutMillis, task.endpointUrl);
+            } else if (!admitted) {
+                spill(task);
+            }
+
+            return admitted;
+        }
+
+        /**
+         * Frees the room of a callback in the queue budget once it starts or is discarded.
+         *
+         * @return false if the callback was dropped in the meantime.
+         */
+        synchronized boolean leave(CallbackTask task) {
+            final boolean removed = queued.remove(task);
+
+            if (removed) {
+                notifyAll();
+            }
+
+            return removed;
+        }
+
+        void shutdown() {
+            executor.shutdown();
+
+            for (int i = 0; i < lanes.length(); i++) {
+                final ThreadPoolExecutor lane = lanes.get(i);
+
+                if (lane != null) {
+                    lane.shutdown();
+                }
+            }
+        }
+
+        synchronized int queueDepth() {
+            return queued.size();
+        }
+
+        CallbackPartitionMetrics toMetrics() {
+            final long count = completed.sum() + failed.sum();
+
+            return CallbackPartitionMetrics.builder()
+                    .host(host)
+                    .queueDepth(queueDepth())
+                    .inFlight(inFlight.get())
+                    .completed(completed.sum())
+                    .failed(failed.sum())
+                    .dropped(dropped.sum())
+                    .spilled(spilled.sum())
+                    .averageLatencyMillis(count == 0 ? 0 : totalLatencyNanos.sum() / (count * 1_000_000.0))
+                    .maxLatencyMillis(maxLatencyNanos.get() / 1_000_000.0)
+                    .build();
+        }
+    }
+
+    /**
+     * The queues of the pools are unbounded, since the queue budget of the host bounds them, so callbacks are only
+     * rejected once the dispatcher is shut down.
+     */
+    private static class ShutdownHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            final CallbackTask task = (CallbackTask) runnable;
+            task.partition.leave(task);
+            task.partition.dropped.increment();
+            task.discarded();
+            log.error("The callback dispatcher is shut down. Dropping the callback to {}", task.endpointUrl);
+        }
+    }
+
+    private static class CallbackTask implements Runnable {
+        private final Partition partition;
+        private final String endpointUrl;
+        private final Object payload;
+        private final long createdAt = System.nanoTime();
+        private volatile CallbackSend send;
+        private volatile Runnable onDiscard;
+
+        CallbackTask(Partition partition, String endpointUrl, Object payload, CallbackSend send) {
+            this.partition = partition;
+            this.endpointUrl = endpointUrl;
+            this.payload = payload;
+            this.send = send;
+        }
+
+        /**
+         * Replaces the send with the one an endpoint guard hands over.
+         *
+         * @param onDiscard frees the slot of the callback in the guard if the callback is not sent.
+         */
+        CallbackTask guardedBy(CallbackSend guardedSend, Runnable onDiscard) {
+            this.send = guardedSend;
+            this.onDiscard = onDiscard;
+
+            return this;
+        }
+
+        void discarded() {
+            final Runnable current = onDiscard;
+
+            if (current != null) {
+                current.run();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!partition.leave(this)) {
+                // dropped by the overload policy while it was waiting
+                discarded();
+                return;
+            }
+
+            partition.inFlight.incrementAndGet();
+
+            try {
+                if (send.send()) {
+                    partition.completed.increment();
+                } else {
+                    partition.failed.increment();
+                }
+            } catch (RuntimeException e) {
+                partition.failed.increment();
+                log.error("Failed to send the callback to {}", endpointUrl, e);
+            } finally {
+                partition.inFlight.decrementAndGet();
+                final long latency = System.nanoTime() - createdAt;
+                partition.totalLatencyNanos.add(latency);
+                partition.maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            }
+        }
+    }
+}
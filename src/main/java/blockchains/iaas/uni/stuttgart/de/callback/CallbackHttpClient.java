@@ -0,0 +1,197 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Holds the HTTP client shared by all outbound callbacks and bindings. The underlying JDK client keeps connections
+ * alive and reuses them across requests (HTTP/1.1 keep-alive, or HTTP/2 multiplexing when negotiated). The number of
+ * concurrent requests per endpoint host is limited, and connect and read timeouts apply to every request.
+ * <p>
+ * Request interceptors buffer the whole request body, so {@link #postStreaming(String, String, CallbackPayload)}
+ * applies the per-host limit itself and writes the payload straight into the request.
+ */
+@Log4j2
+public class CallbackHttpClient {
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 5_000;
+    public static final long DEFAULT_READ_TIMEOUT_MILLIS = 30_000;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 64;
+    private volatile Clients clients;
+
+    private CallbackHttpClient() {
+        this.configure(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS, DEFAULT_MAX_CONNECTIONS_PER_HOST, HttpClient.Version.HTTP_1_1);
+    }
+
+    public static CallbackHttpClient getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Replaces the shared client. Requests that are already running keep using the previous client.
+     *
+     * @param connectTimeoutMillis  the maximum time to establish a connection.
+     * @param readTimeoutMillis     the maximum time to wait for a response.
+     * @param maxConnectionsPerHost the maximum number of concurrent requests to a single endpoint host.
+     * @param version               the preferred HTTP version. HTTP/2 falls back to HTTP/1.1 if the endpoint does not support it.
+     */
+    public void configure(long connectTimeoutMillis, long readTimeoutMillis, int maxConnectionsPerHost, HttpClient.Version version) {
+        if (connectTimeoutMillis <= 0 || readTimeoutMillis <= 0 || maxConnectionsPerHost <= 0) {
+            throw new IllegalArgumentException("Invalid HTTP client settings!");
+        }
+
+        final HttpClient httpClient = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        final JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMillis));
+        final PerHostLimiter limiter = new PerHostLimiter(maxConnectionsPerHost, connectTimeoutMillis + readTimeoutMillis);
+        this.clients = new Clients(
+                RestClient.builder()
+                        .requestFactory(requestFactory)
+                        .requestInterceptor(limiter)
+                        .build(),
+                RestClient.builder()
+                        .requestFactory(requestFactory)
+                        .build(),
+                limiter);
+    }
+
+    public RestClient getRestClient() {
+        return clients.restClient();
+    }
+
+    /**
+     * Posts a JSON payload by writing it straight into the request body.
+     *
+     * @param endpointUrl    the url to post to.
+     * @param idempotencyKey the value of the {@value CallbackOutbox#IDEMPOTENCY_KEY_HEADER} header, or null to omit it.
+     * @param payload        the body of the request.
+     * @return the response body.
+     */
+    public String postStreaming(String endpointUrl, String idempotencyKey, CallbackPayload payload) {
+        final Clients current = clients;
+        final URI uri = URI.create(endpointUrl);
+
+        try {
+            current.limiter().acquire(uri);
+        } catch (IOException e) {
+            throw new ResourceAccessException(e.getMessage(), e);
+        }
+
+        try {
+            final ResponseEntity<String> response = current.streamingRestClient()
+                    .post()
+                    .uri(uri)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .headers(headers -> {
+                        if (idempotencyKey != null) {
+                            headers.set(CallbackOutbox.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+                        }
+                    })
+                    .body((StreamingHttpOutputMessage.Body) outputStream -> StreamingJson.write(payload, outputStream))
+                    .retrieve()
+                    .toEntity(String.class);
+
+            return response.getBody();
+        } finally {
+            current.limiter().release(uri);
+        }
+    }
+
+    /**
+     * @return true if a request failed because of its endpoint: with an I/O error, a timeout, or a status code that
+     * indicates an overloaded or broken endpoint (5xx, 408 and 429).
+     */
+    public static boolean isEndpointFailure(Throwable e) {
+        if (e instanceof RestClientResponseException responseException) {
+            return isFailureStatus(responseException.getStatusCode().value());
+        }
+
+        return e instanceof ResourceAccessException || e instanceof IOException;
+    }
+
+    private static boolean isFailureStatus(int status) {
+        return status >= 500 || status == 408 || status == 429;
+    }
+
+    private static class PerHostLimiter implements ClientHttpRequestInterceptor {
+        private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+        private final int maxConnectionsPerHost;
+        private final long acquireTimeoutMillis;
+
+        PerHostLimiter(int maxConnectionsPerHost, long acquireTimeoutMillis) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            this.acquireTimeoutMillis = acquireTimeoutMillis;
+        }
+
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+            final URI uri = request.getURI();
+            acquire(uri);
+
+            try {
+                return execution.execute(request, body);
+            } finally {
+                release(uri);
+            }
+        }
+
+        void acquire(URI uri) throws IOException {
+            try {
+                if (!semaphoreOf(uri).tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Timed out waiting for a free connection to " + uri.getHost());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a free connection to " + uri.getHost(), e);
+            }
+        }
+
+        void release(URI uri) {
+            semaphoreOf(uri).release();
+        }
+
+        private Semaphore semaphoreOf(URI uri) {
+            return permits.computeIfAbsent(uri.getHost() + ":" + uri.getPort(), host -> new Semaphore(maxConnectionsPerHost));
+        }
+    }
+
+    private record Clients(RestClient restClient, RestClient streamingRestClient, PerHostLimiter limiter) {
+    }
+
+    private static class InstanceHolder {
+        private static final CallbackHttpClient INSTANCE = new CallbackHttpClient();
+    }
+}
@@ -0,0 +1,378 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import blockchains.iaas.uni.stuttgart.de.callback.model.OutboxEntry;
+import blockchains.iaas.uni.stuttgart.de.callback.model.OutboxMetrics;
+import blockchains.iaas.uni.stuttgart.de.callback.outbox.OutboxLog;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Sends the HTTP POST requests of all callback paths. Without an outbox, a callback is sent once and failures are
+ * thrown to the caller.
+ * <p>
+ * Once {@link #open(Path, long)} is called, every callback is first recorded in a persistent {@link OutboxLog} and then
+ * delivered at least once: failed attempts are retried with exponential backoff and jitter until the maximum number of
+ * attempts is reached, after which the callback is dead-lettered. Callbacks rejected with a client error (except 408,
+ * 425 and 429) are dead-lettered right away. Every request carries an {@value #IDEMPOTENCY_KEY_HEADER} header, which
+ * stays the same for all attempts of a callback, so endpoints can discard duplicates.
+ * <p>
+ * The retry threads only wait for the backoff to elapse. The retries themselves are dispatched with the ordering key of
+ * the callback to the {@link CallbackDispatcher} the callback was sent with, so they are subject to its per-host limits
+ * and, if enabled, to the adaptive concurrency limit and circuit breaker of the endpoint. A retry is sent after the
+ * callbacks with the same key that were dispatched before it, so callbacks dispatched while a callback waits for its
+ * retry overtake it. A retry that the dispatcher drops or spills because of its overload policy stays in the outbox
+ * until the outbox is opened again.
+ */
+@Log4j2
+public class CallbackOutbox {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 300_000;
+    public static final int DEFAULT_RETRY_THREADS = 4;
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, OutboxEntry> pending = new ConcurrentHashMap<>();
+    private final Map<String, CallbackDispatcher> dispatchers = new ConcurrentHashMap<>();
+    /**
+     * Sends the retries of callbacks whose dispatcher is not registered (anymore).
+     */
+    private final CallbackDispatcher defaultDispatcher = new CallbackDispatcher("outbox");
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final ScheduledThreadPoolExecutor retryScheduler;
+    private volatile OutboxLog outboxLog;
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+    private volatile long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+
+    private CallbackOutbox() {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.retryScheduler = new ScheduledThreadPoolExecutor(DEFAULT_RETRY_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "callback-outbox-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static CallbackOutbox getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Changes the retry settings.
+     */
+    public void configure(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, int retryThreads) {
+        if (maxAttempts <= 0 || initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis || retryThreads <= 0) {
+            throw new IllegalArgumentException("Invalid callback outbox settings!");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.retryScheduler.setCorePoolSize(retryThreads);
+    }
+
+    /**
+     * Makes a dispatcher known by its name, so the callbacks recovered by {@link #open(Path, long)} are retried with
+     * the dispatcher they were sent with.
+     */
+    public void registerDispatcher(CallbackDispatcher dispatcher) {
+        dispatchers.put(dispatcher.getName(), dispatcher);
+    }
+
+    /**
+     * Enables the outbox and schedules the delivery of all callbacks that were pending when the outbox was last closed.
+     *
+     * @param directory   the directory of the outbox segments.
+     * @param segmentSize the size (in bytes) after which a new segment is started.
+     * @throws IOException if the outbox cannot be read or a new segment cannot be created.
+     */
+    public synchronized void open(Path directory, long segmentSize) throws IOException {
+        if (outboxLog != null) {
+            throw new IllegalStateException("The callback outbox is already open!");
+        }
+
+        final OutboxLog opened = new OutboxLog(directory, segmentSize);
+        final Map<String, OutboxEntry> recovered = opened.replay();
+        opened.start();
+        pending.putAll(recovered);
+        // the recovered callbacks become the first snapshot of the outbox
+        opened.compact(pending::values);
+        this.outboxLog = opened;
+        recovered.values().forEach(this::dispatchRetry);
+    }
+
+    public boolean isOpen() {
+        return outboxLog != null;
+    }
+
+    /**
+     * Sends a callback that can be sent in any order. Its retries are sent by the default dispatcher of the outbox.
+     */
+    public SendResult send(String endpointUrl, Object body) {
+        return this.send(defaultDispatcher, endpointUrl, null, body);
+    }
+
+    /**
+     * Sends a callback.
+     *
+     * @param dispatcher  the dispatcher the callback is sent with, which also sends its retries.
+     * @param endpointUrl the url of the callback endpoint.
+     * @param orderingKey the key (e.g., the correlation id) that orders the retries of the callback with the other
+     *                    callbacks of the same key, or null if the callback can be sent in any order.
+     * @param body        the JSON body of the callback, a {@link CallbackPayload}, or an object that is serialized to
+     *                    JSON. Payloads are streamed into the request unless they must be stored in the outbox.
+     * @return the response body if the callback was delivered right away, and whether the endpoint failed to handle
+     * the attempt, in which case the outbox retries the callback.
+     */
+    public SendResult send(CallbackDispatcher dispatcher, String endpointUrl, String orderingKey, Object body) {
+        final OutboxLog current = outboxLog;
+
+        if (current == null) {
+            if (body instanceof CallbackPayload payload) {
+                return SendResult.delivered(logResponse(CallbackHttpClient.getInstance().postStreaming(endpointUrl, null, payload)));
+            }
+
+            return SendResult.delivered(post(endpointUrl, toJson(body), null));
+        }
+
+        final String json = toJson(body);
+
+        dispatchers.putIfAbsent(dispatcher.getName(), dispatcher);
+        final OutboxEntry entry = new OutboxEntry(UUID.randomUUID().toString(), endpointUrl, orderingKey,
+                dispatcher.getName(), json, System.currentTimeMillis(), 0);
+        pending.put(entry.getId(), entry);
+
+        try {
+            current.appendEnqueued(entry);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to persist the callback to {}. It will only be retried until the gateway stops.", endpointUrl, e);
+        }
+
+        return attempt(entry);
+    }
+
+    public OutboxMetrics getMetrics() {
+        return OutboxMetrics.builder()
+                .pending(pending.size())
+                .delivered(delivered.sum())
+                .retried(retried.sum())
+                .deadLettered(deadLettered.sum())
+                .build();
+    }
+
+    public void compact() throws IOException {
+        final OutboxLog current = outboxLog;
+
+        if (current != null) {
+            current.compact(() -> List.copyOf(pending.values()));
+        }
+    }
+
+    /**
+     * Stops retrying and closes the outbox. Pending callbacks stay in the outbox and are delivered after the next
+     * {@link #open(Path, long)}.
+     */
+    public synchronized void close() throws IOException {
+        final OutboxLog current = outboxLog;
+
+        if (current != null) {
+            retryScheduler.getQueue().clear();
+            outboxLog = null;
+            pending.clear();
+            current.close();
+        }
+    }
+
+    private SendResult attempt(OutboxEntry entry) {
+        if (outboxLog == null || !pending.containsKey(entry.getId())) {
+            // the outbox was closed while the retry waited in the dispatcher
+            return SendResult.delivered(null);
+        }
+
+        try {
+            final String response = post(entry.getEndpointUrl(), entry.getBody(), entry.getId());
+            onDelivered(entry);
+
+            return SendResult.delivered(response);
+        } catch (RestClientResponseException e) {
+            if (isPermanent(e.getStatusCode().value())) {
+                // the endpoint is reachable, but it will not accept the callback however often it is sent
+                onDeadLettered(entry, "Rejected with code " + e.getStatusCode().value());
+            } else {
+                onFailed(entry, e);
+            }
+
+            return new SendResult(null, CallbackHttpClient.isEndpointFailure(e));
+        } catch (RuntimeException e) {
+            onFailed(entry, e);
+
+            return new SendResult(null, CallbackHttpClient.isEndpointFailure(e));
+        }
+    }
+
+    private void onDelivered(OutboxEntry entry) {
+        if (pending.remove(entry.getId()) == null) {
+            return;
+        }
+
+        delivered.increment();
+        appendSafely(outbox -> outbox.appendDelivered(entry));
+    }
+
+    private void onFailed(OutboxEntry entry, Exception e) {
+        final int attempts = entry.incrementAttempts();
+
+        if (attempts >= maxAttempts) {
+            onDeadLettered(entry, e.getMessage());
+            return;
+        }
+
+        final long backoff = backoffOf(attempts);
+        retried.increment();
+        log.warn("Failed to send the callback {} to {} (attempt {}/{}). Retrying in {} millis. Reason: {}",
+                entry.getId(), entry.getEndpointUrl(), attempts, maxAttempts, backoff, e.getMessage());
+        appendSafely(outbox -> outbox.appendAttemptFailed(entry));
+        schedule(entry, backoff);
+    }
+
+    private void onDeadLettered(OutboxEntry entry, String reason) {
+        if (pending.remove(entry.getId()) == null) {
+            return;
+        }
+
+        deadLettered.increment();
+        log.error("Giving up on the callback {} to {} after {} attempt(s). Reason: {}",
+                entry.getId(), entry.getEndpointUrl(), entry.getAttempts() + 1, reason);
+        appendSafely(outbox -> outbox.appendDeadLettered(entry, reason));
+    }
+
+    private void schedule(OutboxEntry entry, long delayMillis) {
+        if (outboxLog != null) {
+            retryScheduler.schedule(() -> dispatchRetry(entry), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void dispatchRetry(OutboxEntry entry) {
+        final CallbackDispatcher dispatcher = entry.getDispatcher() == null ? null : dispatchers.get(entry.getDispatcher());
+        (dispatcher == null ? defaultDispatcher : dispatcher)
+                .dispatch(entry.getEndpointUrl(), entry.getOrderingKey(), entry.getBody(), () -> !attempt(entry).endpointFailed());
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": the delay is chosen at random from the upper half of the current
+     * backoff window, so retries of callbacks that failed together spread out.
+     */
+    long backoffOf(int attempts) {
+        final long window = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts - 1, 30));
+        final long half = window / 2;
+
+        return half + ThreadLocalRandom.current().nextLong(window - half + 1);
+    }
+
+    private void appendSafely(LogAppender appender) {
+        final OutboxLog current = outboxLog;
+
+        if (current != null) {
+            try {
+                appender.append(current);
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to update the callback outbox.", e);
+            }
+        }
+    }
+
+    private static boolean isPermanent(int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 408 && statusCode != 425 && statusCode != 429;
+    }
+
+    private static String toJson(Object body) {
+        if (body instanceof String json) {
+            return json;
+        }
+
+        if (body instanceof CallbackPayload payload) {
+            return StreamingJson.toJson(payload);
+        }
+
+        try {
+            return mapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize the callback message: " + body, e);
+        }
+    }
+
+    private static String post(String endpointUrl, String body, String idempotencyKey) {
+        final ResponseEntity<String> response = CallbackHttpClient.getInstance().getRestClient()
+                .post()
+                .uri(endpointUrl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers -> {
+                    if (idempotencyKey != null) {
+                        headers.set(IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+                    }
+                })
+                .body(body)
+                .retrieve()
+                .toEntity(String.class);
+
+        log.info("Callback client responded with {} (code: {})",
+                () -> response.getBody(), () -> response.getStatusCode());
+
+        return response.getBody();
+    }
+
+    private static String logResponse(String response) {
+        log.info("Callback client responded with {}", response);
+
+        return response;
+    }
+
+    /**
+     * The outcome of sending a callback.
+     *
+     * @param response       the response body, or null if the callback was not delivered (yet).
+     * @param endpointFailed whether the endpoint failed to handle the callback (see {@link CallbackSend#send()}).
+     */
+    public record SendResult(String response, boolean endpointFailed) {
+        static SendResult delivered(String response) {
+            return new SendResult(response, false);
+        }
+    }
+
+    private interface LogAppender {
+        void append(OutboxLog outbox) throws IOException;
+    }
+
+    private static class InstanceHolder {
+        private static final CallbackOutbox INSTANCE = new CallbackOutbox();
+    }
+}
@@ -0,0 +1,71 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the callback retry settings of the application properties and, if enabled, opens the callback outbox,
+ * periodically compacts it, and closes it on shutdown.
+ */
+@Log4j2
+@Component
+public class CallbackOutboxConfiguration {
+    private static final String DEFAULT_OUTBOX_DIR = Paths.get(System.getProperty("user.home"), ".bal", "outbox").toString();
+
+    public CallbackOutboxConfiguration(@Value("${" + Constants.CALLBACKS_OUTBOX_ENABLED_PROPERTY + ":false}") boolean outboxEnabled,
+                                       @Value("${" + Constants.CALLBACKS_OUTBOX_DIR_PROPERTY + ":}") String outboxDir,
+                                       @Value("${" + Constants.CALLBACKS_OUTBOX_SEGMENT_SIZE_PROPERTY + ":16777216}") long segmentSize,
+                                       @Value("${" + Constants.CALLBACKS_RETRY_MAX_ATTEMPTS_PROPERTY + ":" + CallbackOutbox.DEFAULT_MAX_ATTEMPTS + "}") int maxAttempts,
+                                       @Value("${" + Constants.CALLBACKS_RETRY_INITIAL_BACKOFF_MILLIS_PROPERTY + ":" + CallbackOutbox.DEFAULT_INITIAL_BACKOFF_MILLIS + "}") long initialBackoffMillis,
+                                       @Value("${" + Constants.CALLBACKS_RETRY_MAX_BACKOFF_MILLIS_PROPERTY + ":" + CallbackOutbox.DEFAULT_MAX_BACKOFF_MILLIS + "}") long maxBackoffMillis,
+                                       @Value("${" + Constants.CALLBACKS_RETRY_THREADS_PROPERTY + ":" + CallbackOutbox.DEFAULT_RETRY_THREADS + "}") int retryThreads) throws IOException {
+        final CallbackOutbox outbox = CallbackOutbox.getInstance();
+        outbox.configure(maxAttempts, initialBackoffMillis, maxBackoffMillis, retryThreads);
+        // the recovered callbacks are retried with the dispatchers they were sent with
+        CallbackConfiguration.getDispatchers().forEach(outbox::registerDispatcher);
+
+        if (outboxEnabled) {
+            final Path dir = Paths.get(outboxDir == null || outboxDir.isBlank() ? DEFAULT_OUTBOX_DIR : outboxDir);
+            log.info("Opening the callback outbox at: {}", dir);
+            outbox.open(dir, segmentSize);
+            log.info("Callback outbox: {}", outbox.getMetrics());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${" + Constants.CALLBACKS_OUTBOX_COMPACTION_INTERVAL_MILLIS_PROPERTY + ":600000}",
+            initialDelayString = "${" + Constants.CALLBACKS_OUTBOX_COMPACTION_INTERVAL_MILLIS_PROPERTY + ":600000}")
+    public void compactOutbox() {
+        final CallbackOutbox outbox = CallbackOutbox.getInstance();
+
+        try {
+            outbox.compact();
+            log.debug("Callback outbox: {}", outbox.getMetrics());
+        } catch (IOException e) {
+            log.error("Failed to compact the callback outbox.", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        CallbackOutbox.getInstance().close();
+    }
+}
@@ -0,0 +1,25 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * A callback body that writes itself as JSON. It can be streamed straight into an HTTP request, without building an
+ * intermediate object graph or String first.
+ */
+@FunctionalInterface
+public interface CallbackPayload {
+    void writeTo(JsonGenerator generator) throws IOException;
+}
@@ -17,7 +17,9 @@ import blockchains.iaas.uni.stuttgart.de.tccsci.model.responses.AbortResponse;
 import blockchains.iaas.uni.stuttgart.de.tccsci.model.responses.CommitResponse;
 
 /**
- * Routes callbacks to the correct CallbackManager
+ * Routes callbacks to the correct CallbackManager. All callbacks are sent asynchronously through the callback
+ * dispatchers, so a slow or failing endpoint never blocks the caller, and the per-endpoint concurrency limits and
+ * circuit breakers of the dispatchers apply to every route.
  */
 public class CallbackRouter {
 
@@ -37,8 +39,8 @@ public class CallbackRouter {
 
     public void sendAsyncError(String correlationId, String endpointUrl, String bindingType, TransactionState txState, BalException exception) {
         if (bindingType == null || bindingType.isEmpty()) {
-            RestCallbackManager.getInstance().sendCallbackAsync(endpointUrl,
-                    CamundaMessageTranslator.convert(correlationId, txState, true, exception.getCode()));
+            RestCallbackManager.getInstance().sendCallbackAsync(endpointUrl, correlationId,
+                    CamundaMessageTranslator.stream(correlationId, txState, true, exception.getCode()));
         } else {
             ScipCallbackManager.getInstance().sendAsyncErrorResponse(endpointUrl, bindingType, new AsynchronousBalException(exception, correlationId));
         }
@@ -46,7 +48,7 @@ public class CallbackRouter {
 
     public void sendSubmitTransactionResponse(String correlationId, String endpointUrl, String bindingType, Transaction tx) {
         if (bindingType == null || bindingType.isEmpty()) {
-            RestCallbackManager.getInstance().sendCallback(endpointUrl, CamundaMessageTranslator.convert(correlationId, tx, false));
+            RestCallbackManager.getInstance().sendCallbackAsync(endpointUrl, correlationId, CamundaMessageTranslator.stream(correlationId, tx, false));
         } else {
             SendTxResponse response = SendTxResponse.builder()
                     .correlationId(correlationId)
@@ -57,7 +59,7 @@ public class CallbackRouter {
 
     public void sendReceiveTransactionsResponse(String correlationId, String endpointUrl, String bindingType, Transaction tx) {
         if (bindingType == null || bindingType.isEmpty()) {
-            RestCallbackManager.getInstance().sendCallback(endpointUrl, CamundaMessageTranslator.convert(correlationId, tx, false));
+            RestCallbackManager.getInstance().sendCallbackAsync(endpointUrl, correlationId, CamundaMessageTranslator.stream(correlationId, tx, false));
         } else {
             throw new IllegalStateException("SCIP does not include the ReceiveTransactions method");
         }
@@ -65,7 +67,7 @@ public class CallbackRouter {
 
     public void sendReceiveTransactionResponse(String correlationId, String endpointUrl, String bindingType, Transaction tx) {
         if (bindingType == null || bindingType.isEmpty()) {
-            RestCallbackManager.getInstance().sendCallback(endpointUrl, CamundaMessageTranslator.convert(correlationId, tx, false));
+            RestCallbackManager.getInstance().sendCallbackAsync(endpointUrl, correlationId, CamundaMessageTranslator.stream(correlationId, tx, false));
         } else if (tx instanceof LinearChainTransaction ltx){
             ReceiveTxResponse response = ReceiveTxResponse.builder()
                     .correlationId(correlationId)
@@ -80,7 +82,7 @@ public class CallbackRouter {
 
     public void sendDetectOrphanedTransactionResponse(String correlationId, String endpointUrl, String bindingType, TransactionState txState) {
         if (bindingType == null || bindingType.isEmpty()) {
-            RestCallbackManager.getInstance().sendCallback(endpointUrl, CamundaMessageTranslator.convert(correlationId, txState, false, 0));
+            RestCallbackManager.getInstance().sendCallbackAsync(endpointUrl, correlationId, CamundaMessageTranslator.stream(correlationId, txState, false, 0));
         } else {
             throw new IllegalStateException("SCIP does not include the DetectOrphanedTransaction method");
         }
@@ -88,7 +90,7 @@ public class CallbackRouter {
 
     public void sendEnsureTransactionStateResponse(String correlationId, String endpointUrl, String bindingType, TransactionState txState) {
         if (bindingType == null || bindingType.isEmpty()) {
-            RestCallbackManager.getInstance().sendCallback(endpointUrl, CamundaMessageTranslator.convert(correlationId, txState, false, 0));
+            RestCallbackManager.getInstance().sendCallbackAsync(endpointUrl, correlationId, CamundaMessageTranslator.stream(correlationId, txState, false, 0));
         } else {
             EnsureStateResponse response = EnsureStateResponse.builder().correlationId(correlationId).build();
             ScipCallbackManager.getInstance().sendAsyncResponse(endpointUrl, bindingType, response);
@@ -97,8 +99,8 @@ public class CallbackRouter {
 
     public void sendInvokeSCFunctionResponse(String correlationId, String endpointUrl, String bindingType, Transaction tx) {
         if (bindingType == null || bindingType.isEmpty()) {
-            RestCallbackManager.getInstance().sendCallback(endpointUrl,
-                    CamundaMessageTranslator.convert(correlationId, tx, false));
+            RestCallbackManager.getInstance().sendCallbackAsync(endpointUrl, correlationId,
+                    CamundaMessageTranslator.stream(correlationId, tx, false));
         } else {
             InvokeResponse response = InvokeResponse
                     .builder()
@@ -115,8 +117,8 @@ public class CallbackRouter {
 
     public void sendSubscribeResponse(String correlationId, String endpointUrl, String bindingType, Occurrence occurrence, LinearChainTransaction tx) {
         if (bindingType == null || bindingType.isEmpty()) {
-            RestCallbackManager.getInstance().sendCallback(endpointUrl,
-                    CamundaMessageTranslator.convert(correlationId, tx, false));
+            RestCallbackManager.getInstance().sendCallbackAsync(endpointUrl, correlationId,
+                    CamundaMessageTranslator.stream(correlationId, tx, false));
         } else {
             SubscribeResponse response = SubscribeResponse
                     .builder()
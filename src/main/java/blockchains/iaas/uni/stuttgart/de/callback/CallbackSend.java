@@ -0,0 +1,27 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+/**
+ * Sends a callback and reports how its endpoint coped with it, so the dispatcher can adapt the concurrency limit and
+ * circuit breaker of the endpoint.
+ */
+@FunctionalInterface
+public interface CallbackSend {
+    /**
+     * @return false if the endpoint failed to handle the callback, i.e., it was unreachable, timed out, or answered
+     * with a status code that indicates an overloaded or broken endpoint (see
+     * {@link CallbackHttpClient#isEndpointFailure(Throwable)}). Exceptions thrown by the send are classified the same
+     * way.
+     */
+    boolean send();
+}
@@ -0,0 +1,102 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import blockchains.iaas.uni.stuttgart.de.callback.model.CircuitState;
+import lombok.Getter;
+
+/**
+ * A circuit breaker for a single callback endpoint. After a number of consecutive failures the circuit opens and
+ * rejects requests for a while. Afterwards, a single trial request is let through: the circuit closes if it succeeds,
+ * and opens again if it fails.
+ */
+public class CircuitBreaker {
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_MILLIS = 30_000;
+    private final int failureThreshold;
+    private final long openMillis;
+    @Getter
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold <= 0 || openMillis < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings!");
+        }
+
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return true if a request may be sent now. Every permitted request must be followed by a call to
+     * {@link #onSuccess()}, {@link #onFailure()}, or {@link #cancelTrial()}.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return true;
+            }
+            case OPEN -> {
+                if (System.currentTimeMillis() < openUntil) {
+                    return false;
+                }
+
+                state = CircuitState.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            }
+            default -> {
+                if (trialInFlight) {
+                    return false;
+                }
+
+                trialInFlight = true;
+                return true;
+            }
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = CircuitState.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+
+        if (state == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = CircuitState.OPEN;
+            openUntil = System.currentTimeMillis() + openMillis;
+        }
+    }
+
+    /**
+     * Gives back a permit that was not used, e.g., because the request was discarded before it was sent. If it was the
+     * trial of the half-open circuit, the next request may become the trial. Counts neither as a success nor as a
+     * failure.
+     */
+    public synchronized void cancelTrial() {
+        trialInFlight = false;
+    }
+
+    /**
+     * @return the time (in millis) until the open period ends, or 0 if the circuit is not open.
+     */
+    public synchronized long getRemainingOpenMillis() {
+        return state == CircuitState.OPEN ? Math.max(0, openUntil - System.currentTimeMillis()) : 0;
+    }
+}
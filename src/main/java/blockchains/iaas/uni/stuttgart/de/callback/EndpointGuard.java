@@ -0,0 +1,204 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import blockchains.iaas.uni.stuttgart.de.callback.model.CallbackEndpointMetrics;
+import blockchains.iaas.uni.stuttgart.de.callback.model.CircuitState;
+
+/**
+ * Limits the number of concurrent callbacks to a single endpoint with an AIMD (additive increase, multiplicative
+ * decrease) limit, and stops sending to the endpoint while its {@link CircuitBreaker} is open.
+ * <p>
+ * Every callback that completes within the latency threshold raises the limit by 1/limit, i.e., by about one per
+ * round of callbacks. A failed or slow callback halves the limit, where the {@link CallbackSend} reports whether a
+ * callback failed. Callbacks beyond the limit wait in the guard, so they do not occupy dispatch threads that callbacks
+ * to healthy endpoints need. The waiting callbacks count against the queue budget of their host in the dispatcher,
+ * so its overload policy applies when too many of them wait.
+ */
+class EndpointGuard {
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "callback-endpoint-guard-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final String endpointUrl;
+    private final AdaptiveConcurrencySettings settings;
+    private final CircuitBreaker circuitBreaker;
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long succeeded;
+    private long failed;
+    private boolean drainScheduled;
+    private boolean draining;
+
+    EndpointGuard(String endpointUrl, AdaptiveConcurrencySettings settings) {
+        this.endpointUrl = endpointUrl;
+        this.settings = settings;
+        this.circuitBreaker = new CircuitBreaker(settings.failureThreshold(), settings.openMillis());
+        this.limit = settings.initialLimit();
+    }
+
+    /**
+     * @param send    sends the callback.
+     * @param execute hands the guarded callback over to a dispatch thread.
+     */
+    void submit(CallbackSend send, Consumer<CallbackSend> execute) {
+        synchronized (this) {
+            queue.add(new Pending(send, execute));
+        }
+
+        drain();
+    }
+
+    synchronized CallbackEndpointMetrics toMetrics() {
+        return CallbackEndpointMetrics.builder()
+                .endpointUrl(endpointUrl)
+                .concurrencyLimit(limit)
+                .inFlight(inFlight)
+                .queued(queue.size())
+                .succeeded(succeeded)
+                .failed(failed)
+                .circuitState(circuitBreaker.getState())
+                .build();
+    }
+
+    /**
+     * Hands waiting callbacks over while the limit allows it. Only one thread drains at a time, so callbacks are handed
+     * over in the order they were submitted.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+
+            draining = true;
+        }
+
+        while (true) {
+            Pending next = null;
+
+            synchronized (this) {
+                if (!queue.isEmpty() && inFlight < (int) limit) {
+                    if (circuitBreaker.tryAcquire()) {
+                        next = queue.poll();
+                        inFlight++;
+                    } else if (circuitBreaker.getState() == CircuitState.OPEN) {
+                        scheduleDrain(circuitBreaker.getRemainingOpenMillis());
+                    }
+                    // otherwise, the trial of the half-open circuit is in flight and drains when it completes
+                }
+
+                if (next == null) {
+                    draining = false;
+                    return;
+                }
+            }
+
+            try {
+                next.execute.accept(guarded(next.send));
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    draining = false;
+                }
+
+                throw e;
+            }
+        }
+    }
+
+    private CallbackSend guarded(CallbackSend send) {
+        return () -> {
+            final long start = System.nanoTime();
+            boolean success = false;
+
+            try {
+                success = send.send();
+
+                return success;
+            } catch (RuntimeException e) {
+                success = !CallbackHttpClient.isEndpointFailure(e);
+                throw e;
+            } finally {
+                complete(success, (System.nanoTime() - start) / 1_000_000);
+            }
+        };
+    }
+
+    private void complete(boolean success, long latencyMillis) {
+        synchronized (this) {
+            inFlight--;
+
+            if (success) {
+                succeeded++;
+                circuitBreaker.onSuccess();
+
+                if (latencyMillis > settings.latencyThresholdMillis()) {
+                    decrease();
+                } else {
+                    limit = Math.min(settings.maxLimit(), limit + 1 / limit);
+                }
+            } else {
+                failed++;
+                circuitBreaker.onFailure();
+                decrease();
+            }
+        }
+
+        drain();
+    }
+
+    /**
+     * Frees the slot of a callback that was handed over to a dispatch thread but discarded before it was sent. If it
+     * was the trial of the half-open circuit, the next callback becomes the trial.
+     */
+    void release() {
+        synchronized (this) {
+            inFlight--;
+            circuitBreaker.cancelTrial();
+        }
+
+        drain();
+    }
+
+    private void decrease() {
+        limit = Math.max(1, limit / 2);
+    }
+
+    private void scheduleDrain(long delayMillis) {
+        if (!drainScheduled) {
+            drainScheduled = true;
+            timer.schedule(() -> {
+                synchronized (this) {
+                    drainScheduled = false;
+                }
+
+                drain();
+            }, Math.max(delayMillis, 1), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private record Pending(CallbackSend send, Consumer<CallbackSend> execute) {
+    }
+
+    record AdaptiveConcurrencySettings(int initialLimit, int maxLimit, long latencyThresholdMillis, int failureThreshold,
+                                       long openMillis) {
+    }
+}
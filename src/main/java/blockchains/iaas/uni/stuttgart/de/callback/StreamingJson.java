@@ -0,0 +1,65 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes {@link CallbackPayload}s as UTF-8 JSON. Payloads that must be materialized (e.g., to be stored in the callback
+ * outbox) are written into a per-thread buffer that is reused across calls.
+ */
+public final class StreamingJson {
+    private static final int MAX_POOLED_BUFFER_SIZE = 1 << 20;
+    private static final JsonFactory factory = new ObjectMapper().getFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ThreadLocal<ByteArrayOutputStream> buffers = ThreadLocal.withInitial(() -> new ByteArrayOutputStream(1024));
+
+    private StreamingJson() {
+    }
+
+    /**
+     * Writes the payload into the stream. The stream is flushed but not closed.
+     */
+    public static void write(CallbackPayload payload, OutputStream out) throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            payload.writeTo(generator);
+        }
+    }
+
+    public static String toJson(CallbackPayload payload) {
+        final ByteArrayOutputStream buffer = buffers.get();
+        buffer.reset();
+
+        try {
+            write(payload, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize the callback payload", e);
+        }
+
+        final String json = buffer.toString(StandardCharsets.UTF_8);
+
+        if (buffer.size() > MAX_POOLED_BUFFER_SIZE) {
+            // do not keep exceptionally large buffers alive
+            buffers.remove();
+        }
+
+        return json;
+    }
+}
@@ -0,0 +1,19 @@
+package blockchains.iaas.uni.stuttgart.de.callback.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A snapshot of the adaptive concurrency limit and the circuit breaker of a single callback endpoint.
+ */
+@Value
+@Builder
+public class CallbackEndpointMetrics {
+    String endpointUrl;
+    double concurrencyLimit;
+    int inFlight;
+    int queued;
+    long succeeded;
+    long failed;
+    CircuitState circuitState;
+}
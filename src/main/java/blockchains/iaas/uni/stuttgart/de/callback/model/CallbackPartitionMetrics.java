@@ -0,0 +1,21 @@
+package blockchains.iaas.uni.stuttgart.de.callback.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A snapshot of the metrics of the callbacks dispatched to a single endpoint host.
+ */
+@Value
+@Builder
+public class CallbackPartitionMetrics {
+    String host;
+    int queueDepth;
+    int inFlight;
+    long completed;
+    long failed;
+    long dropped;
+    long spilled;
+    double averageLatencyMillis;
+    double maxLatencyMillis;
+}
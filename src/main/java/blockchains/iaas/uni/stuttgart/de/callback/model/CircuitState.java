@@ -0,0 +1,19 @@
+package blockchains.iaas.uni.stuttgart.de.callback.model;
+
+/**
+ * The states of a per-endpoint circuit breaker.
+ */
+public enum CircuitState {
+    /**
+     * Requests pass through.
+     */
+    CLOSED,
+    /**
+     * The endpoint failed repeatedly. Requests are rejected until the open period ends.
+     */
+    OPEN,
+    /**
+     * The open period ended. A single trial request decides whether the circuit closes or opens again.
+     */
+    HALF_OPEN
+}
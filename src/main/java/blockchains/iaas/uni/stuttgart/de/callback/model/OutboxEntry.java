@@ -0,0 +1,39 @@
+package blockchains.iaas.uni.stuttgart.de.callback.model;
+
+import lombok.Getter;
+
+/**
+ * A callback that is waiting in the outbox until its endpoint acknowledges it. The id doubles as the idempotency key
+ * of the callback, so it stays the same across retries and restarts. The ordering key (e.g., the correlation id) is
+ * null if the callback can be sent in any order. The dispatcher is the name of the callback dispatcher that sends the
+ * retries of the callback.
+ */
+@Getter
+public class OutboxEntry {
+    private final String id;
+    private final String endpointUrl;
+    private final String orderingKey;
+    private final String dispatcher;
+    private final String body;
+    private final long enqueuedAt;
+    private volatile int attempts;
+
+    public OutboxEntry(String id, String endpointUrl, String orderingKey, String dispatcher, String body, long enqueuedAt,
+                       int attempts) {
+        this.id = id;
+        this.endpointUrl = endpointUrl;
+        this.orderingKey = orderingKey;
+        this.dispatcher = dispatcher;
+        this.body = body;
+        this.enqueuedAt = enqueuedAt;
+        this.attempts = attempts;
+    }
+
+    public synchronized int incrementAttempts() {
+        return ++attempts;
+    }
+
+    public synchronized void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+}
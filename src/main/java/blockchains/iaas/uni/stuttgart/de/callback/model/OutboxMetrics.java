@@ -0,0 +1,16 @@
+package blockchains.iaas.uni.stuttgart.de.callback.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A snapshot of the metrics of the callback outbox.
+ */
+@Value
+@Builder
+public class OutboxMetrics {
+    int pending;
+    long delivered;
+    long retried;
+    long deadLettered;
+}
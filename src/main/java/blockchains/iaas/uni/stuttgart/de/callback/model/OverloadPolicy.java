@@ -0,0 +1,20 @@
+package blockchains.iaas.uni.stuttgart.de.callback.model;
+
+/**
+ * Decides what happens to a callback when the dispatch queue budget of its endpoint host is used up.
+ */
+public enum OverloadPolicy {
+    /**
+     * The calling thread waits until the queue has room. If the dispatcher has a block timeout, the callback is
+     * dropped once it elapses.
+     */
+    BLOCK,
+    /**
+     * The oldest queued callback is discarded to make room for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * The new callback is written to a spill file on disk instead of being sent.
+     */
+    SPILL
+}
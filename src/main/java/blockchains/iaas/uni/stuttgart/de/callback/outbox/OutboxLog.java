@@ -0,0 +1,305 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.callback.outbox;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import blockchains.iaas.uni.stuttgart.de.callback.model.OutboxEntry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * An append-only log of callback outbox transitions. The log is made of segment files with one JSON record per line.
+ * A new segment is started once the current one exceeds the segment size. Enqueued callbacks are forced to disk before
+ * their first delivery attempt, while the other transitions are only written, since losing them merely causes a
+ * callback to be delivered again.
+ * <p>
+ * Compaction writes the pending callbacks into a fresh segment and deletes all older segments. Callbacks that cannot
+ * be delivered are additionally appended to a dead-letter file in the same directory.
+ */
+@Log4j2
+public class OutboxLog implements Closeable {
+    public static final String DEAD_LETTER_FILE = "dead-letters.ndjson";
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".ndjson";
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private final Path directory;
+    private final long segmentSize;
+    private final Object lock = new Object();
+    private FileChannel currentChannel;
+    private long currentSegmentIndex = -1;
+    private boolean closed;
+
+    public OutboxLog(Path directory, long segmentSize) throws IOException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Invalid outbox segment size!");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Reads all existing segments in order and rebuilds the callbacks that were not delivered yet.
+     *
+     * @return the pending callbacks in the order they were enqueued.
+     * @throws IOException if a segment cannot be read.
+     */
+    public Map<String, OutboxEntry> replay() throws IOException {
+        final Map<String, OutboxEntry> result = new LinkedHashMap<>();
+
+        for (Path segment : listSegments()) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        applyRecord(segment, line, result);
+                    }
+                }
+            }
+        }
+
+        log.info("Replayed {} pending callbacks from the outbox at {}", result.size(), directory);
+
+        return result;
+    }
+
+    /**
+     * Opens a fresh segment for appending.
+     *
+     * @throws IOException if the segment cannot be created.
+     */
+    public void start() throws IOException {
+        synchronized (lock) {
+            final List<Path> existing = listSegments();
+            currentSegmentIndex = existing.isEmpty() ? -1 : segmentIndexOf(existing.get(existing.size() - 1));
+            rollSegment();
+        }
+    }
+
+    public void appendEnqueued(OutboxEntry entry) throws IOException {
+        append(toRecord(OutboxRecordType.ENQUEUED, entry), true);
+    }
+
+    public void appendAttemptFailed(OutboxEntry entry) throws IOException {
+        final ObjectNode record = newRecord(OutboxRecordType.ATTEMPT_FAILED, entry.getId());
+        record.put("attempts", entry.getAttempts());
+        append(record, false);
+    }
+
+    public void appendDelivered(OutboxEntry entry) throws IOException {
+        append(newRecord(OutboxRecordType.DELIVERED, entry.getId()), false);
+    }
+
+    /**
+     * Records that a callback will not be delivered, and keeps a copy of it in the dead-letter file.
+     */
+    public void appendDeadLettered(OutboxEntry entry, String reason) throws IOException {
+        final ObjectNode deadLetter = toRecord(OutboxRecordType.DEAD_LETTERED, entry);
+        deadLetter.put("reason", reason);
+
+        synchronized (lock) {
+            Files.writeString(directory.resolve(DEAD_LETTER_FILE), mapper.writeValueAsString(deadLetter) + "\n",
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        append(newRecord(OutboxRecordType.DEAD_LETTERED, entry.getId()), false);
+    }
+
+    /**
+     * Replaces all segments with a single segment holding the pending callbacks.
+     *
+     * @param pending supplies the callbacks that are still pending. Called while appends are blocked.
+     * @throws IOException if the new segment cannot be written.
+     */
+    public void compact(Supplier<Collection<OutboxEntry>> pending) throws IOException {
+        final long snapshotSegmentIndex;
+
+        synchronized (lock) {
+            ensureOpen();
+            rollSegment();
+            snapshotSegmentIndex = currentSegmentIndex;
+
+            for (OutboxEntry entry : pending.get()) {
+                write(toRecord(OutboxRecordType.ENQUEUED, entry));
+            }
+
+            currentChannel.force(false);
+        }
+
+        int deleted = 0;
+
+        for (Path segment : listSegments()) {
+            if (segmentIndexOf(segment) < snapshotSegmentIndex) {
+                Files.deleteIfExists(segment);
+                deleted++;
+            }
+        }
+
+        log.debug("Compacted the callback outbox. Deleted {} segment(s)", deleted);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            if (currentChannel != null) {
+                currentChannel.force(false);
+                currentChannel.close();
+            }
+        }
+    }
+
+    private void append(ObjectNode record, boolean force) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+
+            if (currentChannel.size() >= segmentSize) {
+                rollSegment();
+            }
+
+            write(record);
+
+            if (force) {
+                currentChannel.force(false);
+            }
+        }
+    }
+
+    private void write(ObjectNode record) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap((mapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8));
+
+        while (buffer.hasRemaining()) {
+            currentChannel.write(buffer);
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        if (currentChannel != null) {
+            currentChannel.force(false);
+            currentChannel.close();
+        }
+
+        currentSegmentIndex++;
+        final Path path = directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, currentSegmentIndex, SEGMENT_SUFFIX));
+        currentChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        log.debug("Opened callback outbox segment: {}", path);
+    }
+
+    private void ensureOpen() {
+        if (closed || currentChannel == null) {
+            throw new IllegalStateException("The callback outbox log is not open!");
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        final String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentIndexOf(Path segment) {
+        final String name = segment.getFileName().toString();
+
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static ObjectNode newRecord(OutboxRecordType type, String id) {
+        final ObjectNode record = mapper.createObjectNode();
+        record.put("type", type.name());
+        record.put("id", id);
+
+        return record;
+    }
+
+    private static ObjectNode toRecord(OutboxRecordType type, OutboxEntry entry) {
+        final ObjectNode record = newRecord(type, entry.getId());
+        record.put("endpointUrl", entry.getEndpointUrl());
+
+        if (entry.getOrderingKey() != null) {
+            record.put("orderingKey", entry.getOrderingKey());
+        }
+
+        if (entry.getDispatcher() != null) {
+            record.put("dispatcher", entry.getDispatcher());
+        }
+
+        record.put("body", entry.getBody());
+        record.put("enqueuedAt", entry.getEnqueuedAt());
+        record.put("attempts", entry.getAttempts());
+
+        return record;
+    }
+
+    private static void applyRecord(Path segment, String line, Map<String, OutboxEntry> result) {
+        final JsonNode record;
+        final OutboxRecordType type;
+
+        try {
+            record = mapper.readTree(line);
+            type = OutboxRecordType.valueOf(record.get("type").asText());
+        } catch (Exception e) {
+            // a crash might leave a partially written last line behind
+            log.warn("Skipping a corrupt record in outbox segment {}", segment);
+            return;
+        }
+
+        final String id = record.get("id").asText();
+
+        switch (type) {
+            case ENQUEUED -> result.put(id, new OutboxEntry(id,
+                    record.get("endpointUrl").asText(),
+                    record.hasNonNull("orderingKey") ? record.get("orderingKey").asText() : null,
+                    record.hasNonNull("dispatcher") ? record.get("dispatcher").asText() : null,
+                    record.get("body").asText(),
+                    record.get("enqueuedAt").asLong(),
+                    record.get("attempts").asInt()));
+            case ATTEMPT_FAILED -> {
+                final OutboxEntry entry = result.get(id);
+
+                if (entry != null) {
+                    entry.setAttempts(record.get("attempts").asInt());
+                }
+            }
+            case DELIVERED, DEAD_LETTERED -> result.remove(id);
+        }
+    }
+}
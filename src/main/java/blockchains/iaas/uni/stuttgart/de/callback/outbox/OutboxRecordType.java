@@ -0,0 +1,11 @@
+package blockchains.iaas.uni.stuttgart.de.callback.outbox;
+
+/**
+ * The kinds of callback outbox transitions recorded in the {@link OutboxLog}.
+ */
+public enum OutboxRecordType {
+    ENQUEUED,
+    ATTEMPT_FAILED,
+    DELIVERED,
+    DEAD_LETTERED
+}
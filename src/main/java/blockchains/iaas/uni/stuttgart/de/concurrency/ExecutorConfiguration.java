@@ -0,0 +1,56 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.concurrency;
+
+import java.util.concurrent.ExecutorService;
+
+import blockchains.iaas.uni.stuttgart.de.BlockchainManager;
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackConfiguration;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackDispatcher;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the configured {@link ExecutorMode} to the callback dispatchers and to the continuations of adapter futures
+ * in the {@link BlockchainManager}.
+ */
+@Log4j2
+@Component
+public class ExecutorConfiguration {
+    private final ExecutorService continuationExecutor;
+
+    public ExecutorConfiguration(BlockchainManager manager,
+                                 @Value("${" + Constants.EXECUTOR_MODE_PROPERTY + ":PLATFORM}") ExecutorMode mode,
+                                 @Value("${" + Constants.CALLBACKS_VIRTUAL_THREADS_PER_HOST_PROPERTY + ":" + CallbackDispatcher.DEFAULT_VIRTUAL_THREADS_PER_HOST + "}") int virtualThreadsPerHost) {
+        for (CallbackDispatcher dispatcher : CallbackConfiguration.getDispatchers()) {
+            dispatcher.setExecutorMode(mode, virtualThreadsPerHost);
+        }
+
+        this.continuationExecutor = mode == ExecutorMode.VIRTUAL ? VirtualThreads.newVirtualThreadPerTaskExecutor() : null;
+
+        if (continuationExecutor != null) {
+            manager.setContinuationExecutor(continuationExecutor);
+        }
+
+        log.info("Executor mode: {} (virtual threads supported: {})", mode, VirtualThreads.isSupported());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (continuationExecutor != null) {
+            continuationExecutor.shutdown();
+        }
+    }
+}
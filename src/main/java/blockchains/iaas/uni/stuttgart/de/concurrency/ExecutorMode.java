@@ -0,0 +1,15 @@
+package blockchains.iaas.uni.stuttgart.de.concurrency;
+
+/**
+ * The kind of threads used to run blocking work such as callbacks.
+ */
+public enum ExecutorMode {
+    /**
+     * Work runs on (bounded pools of) platform threads.
+     */
+    PLATFORM,
+    /**
+     * Work runs on virtual threads. Requires Java 21 or later; falls back to {@link #PLATFORM} otherwise.
+     */
+    VIRTUAL
+}
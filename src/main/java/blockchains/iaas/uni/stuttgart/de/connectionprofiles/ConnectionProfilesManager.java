@@ -17,7 +17,9 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import blockchains.iaas.uni.stuttgart.de.api.connectionprofiles.AbstractConnectionProfile;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -26,7 +28,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.jsontype.NamedType;
-import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 
 /**
@@ -37,8 +38,7 @@ import lombok.extern.log4j.Log4j2;
 public class ConnectionProfilesManager {
     public static final Path initialConfigurationFilePath = Paths.get(System.getProperty("user.home"), ".bal", "connectionProfiles.json");
     private static ConnectionProfilesManager instance;
-    @Setter
-    private ConnectionProfileListener listener;
+    private final List<ConnectionProfileListener> listeners = new CopyOnWriteArrayList<>();
 
 
     private final Map<String, AbstractConnectionProfile> connectionProfilesMap;
@@ -48,6 +48,17 @@ public class ConnectionProfilesManager {
         this.connectionProfilesMap = new HashMap<>();
     }
 
+    /**
+     * Registers a listener that is notified whenever the connection profiles change.
+     */
+    public void addListener(ConnectionProfileListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(ConnectionProfileListener listener) {
+        this.listeners.remove(listener);
+    }
+
     public Map<String, AbstractConnectionProfile> getConnectionProfiles() {
         return this.connectionProfilesMap;
     }
@@ -67,17 +78,13 @@ public class ConnectionProfilesManager {
     public void loadConnectionProfiles(Map<String, AbstractConnectionProfile> newMap) {
         this.connectionProfilesMap.putAll(newMap);
 
-        if (listener != null) {
-            listener.connectionProfileChanged();
-        }
+        notifyListeners();
     }
 
     public void resetConnectionProfiles() {
         this.connectionProfilesMap.clear();
 
-        if (listener != null) {
-            listener.connectionProfileChanged();
-        }
+        notifyListeners();
     }
 
     public void loadConnectionProfilesFromFile(File file) {
@@ -122,6 +129,12 @@ public class ConnectionProfilesManager {
         instance = null;
     }
 
+    private void notifyListeners() {
+        for (ConnectionProfileListener listener : listeners) {
+            listener.connectionProfileChanged();
+        }
+    }
+
     private void loadInitialConnectionProfilesIfExist() {
         log.info("Loading connection profiles from file: {}", initialConfigurationFilePath);
         File initialFile = initialConfigurationFilePath.toFile();
@@ -0,0 +1,88 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.history;
+
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import blockchains.iaas.uni.stuttgart.de.history.journal.RequestJournal;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Applies the request history settings of the application properties, periodically evicts expired requests, and, if
+ * enabled, recovers the request history from its journal and periodically compacts the journal.
+ */
+@Log4j2
+@Component
+public class RequestHistoryConfiguration {
+    private static final String DEFAULT_JOURNAL_DIR = Paths.get(System.getProperty("user.home"), ".bal", "history").toString();
+    private final RequestJournal journal;
+
+    public RequestHistoryConfiguration(@Value("${" + Constants.HISTORY_MAX_ENTRIES_PROPERTY + ":" + RequestHistoryManager.DEFAULT_MAX_ENTRIES + "}") int maxEntries,
+                                       @Value("${" + Constants.HISTORY_TERMINAL_TTL_SECONDS_PROPERTY + ":3600}") long terminalTtlSeconds,
+                                       @Value("${" + Constants.HISTORY_JOURNAL_ENABLED_PROPERTY + ":false}") boolean journalEnabled,
+                                       @Value("${" + Constants.HISTORY_JOURNAL_DIR_PROPERTY + ":}") String journalDir,
+                                       @Value("${" + Constants.HISTORY_JOURNAL_SEGMENT_SIZE_PROPERTY + ":67108864}") int segmentSize,
+                                       @Value("${" + Constants.HISTORY_JOURNAL_FLUSH_INTERVAL_MILLIS_PROPERTY + ":10}") long flushIntervalMillis) throws IOException {
+        final RequestHistoryManager manager = RequestHistoryManager.getInstance();
+        manager.configure(maxEntries, terminalTtlSeconds * 1000);
+
+        if (journalEnabled) {
+            final Path dir = Paths.get(journalDir == null || journalDir.isBlank() ? DEFAULT_JOURNAL_DIR : journalDir);
+            log.info("Recovering the request history from the journal at: {}", dir);
+            final long start = System.currentTimeMillis();
+            this.journal = new RequestJournal(dir, segmentSize, flushIntervalMillis);
+            manager.restore(journal.replay());
+            journal.start();
+            // the recovered history becomes the first snapshot of the journal
+            journal.compact(manager::forEach);
+            manager.setJournal(journal);
+            log.info("Recovered {} requests in {} millis", manager.size(), System.currentTimeMillis() - start);
+        } else {
+            this.journal = null;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${" + Constants.HISTORY_EVICTION_INTERVAL_MILLIS_PROPERTY + ":60000}")
+    public void evictExpiredRequests() {
+        final RequestHistoryManager manager = RequestHistoryManager.getInstance();
+        manager.evictExpired();
+        log.debug("Request history: size={}, hits={}, misses={}, evictions={}",
+                () -> manager.size(), () -> manager.getHitCount(), () -> manager.getMissCount(), () -> manager.getEvictionCount());
+    }
+
+    @Scheduled(fixedDelayString = "${" + Constants.HISTORY_JOURNAL_COMPACTION_INTERVAL_MILLIS_PROPERTY + ":600000}",
+            initialDelayString = "${" + Constants.HISTORY_JOURNAL_COMPACTION_INTERVAL_MILLIS_PROPERTY + ":600000}")
+    public void compactJournal() {
+        if (journal != null) {
+            try {
+                journal.compact(RequestHistoryManager.getInstance()::forEach);
+            } catch (IOException e) {
+                log.error("Failed to compact the request journal.", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void closeJournal() throws IOException {
+        if (journal != null) {
+            RequestHistoryManager.getInstance().setJournal(null);
+            journal.close();
+        }
+    }
+}
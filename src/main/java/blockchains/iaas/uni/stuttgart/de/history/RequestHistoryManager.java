@@ -1,34 +1,337 @@
 package blockchains.iaas.uni.stuttgart.de.history;
 
+import blockchains.iaas.uni.stuttgart.de.api.model.Transaction;
+import blockchains.iaas.uni.stuttgart.de.api.model.TransactionState;
+import blockchains.iaas.uni.stuttgart.de.history.journal.RequestJournal;
 import blockchains.iaas.uni.stuttgart.de.history.model.RequestDetails;
+import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+/**
+ * Keeps track of the details of the requests received by the gateway. The history is bounded: when the maximum number
+ * of entries is reached, the least recently used entry is evicted, and requests that reached a terminal state are
+ * evicted once they are older than the configured time-to-live.
+ * <p>
+ * The history is split into independently locked stripes (selected by the hash of the correlation id), so that
+ * controller threads and adapter completion threads accessing different requests do not contend on a single lock.
+ * LRU order is maintained per stripe, while the maximum number of entries bounds the whole history: when a write
+ * exceeds it, the least recently used entries of the written stripe are evicted first, and then those of the other
+ * stripes. The evicted entries are therefore the least recently used ones of their stripe, not necessarily of the
+ * whole history.
+ * <p>
+ * Transitions are journaled while the stripe of the request is locked, so the journal records the transitions of a
+ * request in the order they were applied, and a compaction that visits the stripe sees either none or both of the
+ * change and its record.
+ */
 @Log4j2
 public class RequestHistoryManager {
-    private final Map<String, RequestDetails> history;
-    private static RequestHistoryManager instance;
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+    public static final long DEFAULT_TERMINAL_TTL_MILLIS = 60 * 60 * 1000L;
+    static final int STRIPE_COUNT = 16;
+    private final Stripe[] stripes;
+    @Getter
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+    @Getter
+    private volatile long terminalTtlMillis = DEFAULT_TERMINAL_TTL_MILLIS;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicInteger entryCount = new AtomicInteger();
+    private volatile RequestJournal journal;
 
     public static RequestHistoryManager getInstance() {
-        if (instance == null) {
-            instance = new RequestHistoryManager();
+        return InstanceHolder.INSTANCE;
+    }
+
+    private RequestHistoryManager() {
+        stripes = new Stripe[STRIPE_COUNT];
+
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
         }
+    }
 
-        return instance;
+    /**
+     * Changes the bounds of the request history.
+     *
+     * @param maxEntries        the maximum number of requests to keep track of.
+     * @param terminalTtlMillis the number of millis to keep a request after it reaches a terminal state.
+     */
+    public void configure(int maxEntries, long terminalTtlMillis) {
+        if (maxEntries <= 0 || terminalTtlMillis < 0) {
+            throw new IllegalArgumentException("The request history bounds must be positive!");
+        }
+
+        log.info("Configuring request history: maxEntries={}, terminalTtlMillis={}", maxEntries, terminalTtlMillis);
+        this.maxEntries = maxEntries;
+        this.terminalTtlMillis = terminalTtlMillis;
+        this.evictExpired();
+
+        for (Stripe stripe : stripes) {
+            stripe.evictEldest(0);
+        }
     }
 
-    private RequestHistoryManager() {
-        history = new HashMap<>();
+    /**
+     * Makes the history record all request transitions in the given journal. Pass null to stop journaling.
+     *
+     * @param journal the journal to append transitions to.
+     */
+    public void setJournal(RequestJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Loads recovered requests into the history without journaling them again.
+     *
+     * @param recovered the recovered requests in the order they were created.
+     */
+    public void restore(Map<String, RequestDetails> recovered) {
+        final long now = System.currentTimeMillis();
+        recovered.forEach((correlationId, details) -> {
+            if (!isExpired(details, now)) {
+                final int index = stripeIndexOf(correlationId);
+                stripes[index].put(correlationId, details);
+                evictOverflow(index);
+            }
+        });
+    }
+
+    /**
+     * Visits all requests currently kept in the history. Each stripe is locked while it is being visited.
+     *
+     * @param visitor receives the correlation id and the details of each request.
+     */
+    public void forEach(BiConsumer<String, RequestDetails> visitor) {
+        for (Stripe stripe : stripes) {
+            stripe.forEach(visitor);
+        }
     }
 
     public void addRequestDetails(String correlationId, RequestDetails details) {
-        history.put(correlationId, details);
+        final int index = stripeIndexOf(correlationId);
+        final Stripe stripe = stripes[index];
+
+        synchronized (stripe) {
+            stripe.put(correlationId, details);
+            journal(j -> j.appendCreated(correlationId, details));
+        }
+
+        // the other stripes are locked one at a time, and only after the written stripe was released
+        evictOverflow(index);
     }
 
+    /**
+     * Retrieves the details of a request.
+     *
+     * @param correlationId the correlation id of the request.
+     * @return the details of the request, or null if the request is unknown or its details were evicted.
+     */
     public RequestDetails getRequestDetails(String correlationId) {
-        return history.get(correlationId);
+        RequestDetails details = stripeOf(correlationId).get(correlationId, System.currentTimeMillis());
+
+        if (details == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+
+        return details;
+    }
+
+    public void setTransaction(String correlationId, Transaction transaction) {
+        if (!update(correlationId, details -> details.setTransaction(transaction), j -> j.appendTransaction(correlationId, transaction))) {
+            log.warn("Cannot attach a transaction to the unknown (or evicted) request: {}", correlationId);
+        }
+    }
+
+    public void setTxState(String correlationId, TransactionState state) {
+        if (!update(correlationId, details -> details.setTxState(state), j -> j.appendTxState(correlationId, state))) {
+            log.warn("Cannot set the state of the unknown (or evicted) request: {}", correlationId);
+        }
+    }
+
+    public void setException(String correlationId, Throwable exception) {
+        if (!update(correlationId, details -> details.setException(exception), j -> j.appendException(correlationId, exception))) {
+            log.warn("Cannot attach an exception to the unknown (or evicted) request: {}", correlationId);
+        }
+    }
+
+    /**
+     * Removes all requests that reached a terminal state longer than the time-to-live ago.
+     */
+    public void evictExpired() {
+        final long now = System.currentTimeMillis();
+
+        for (Stripe stripe : stripes) {
+            stripe.evictExpired(now);
+        }
+    }
+
+    public int size() {
+        return entryCount.get();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Should only be used for testing purposes!
+     */
+    void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    static int stripeIndexOf(String correlationId) {
+        int hash = correlationId.hashCode();
+        // spread the higher bits, since we only use the lower ones to select the stripe
+        hash ^= (hash >>> 16);
+
+        return hash & (STRIPE_COUNT - 1);
+    }
+
+    private Stripe stripeOf(String correlationId) {
+        return stripes[stripeIndexOf(correlationId)];
+    }
+
+    /**
+     * Evicts least recently used entries until the history is within its bounds again, starting with the stripe that
+     * was just written to.
+     */
+    private void evictOverflow(int writtenIndex) {
+        for (int i = 0; i < STRIPE_COUNT && entryCount.get() > maxEntries; i++) {
+            // the written stripe keeps at least the entry that was just added
+            stripes[(writtenIndex + i) & (STRIPE_COUNT - 1)].evictEldest(i == 0 ? 1 : 0);
+        }
+    }
+
+    /**
+     * Applies a transition to a known request and journals it while the stripe of the request is locked.
+     *
+     * @return false if the request is unknown or its details were evicted.
+     */
+    private boolean update(String correlationId, Consumer<RequestDetails> transition, Consumer<RequestJournal> record) {
+        final Stripe stripe = stripeOf(correlationId);
+
+        synchronized (stripe) {
+            RequestDetails details = getRequestDetails(correlationId);
+
+            if (details == null) {
+                return false;
+            }
+
+            transition.accept(details);
+            journal(record);
+
+            return true;
+        }
+    }
+
+    private void journal(Consumer<RequestJournal> action) {
+        final RequestJournal current = journal;
+
+        if (current != null) {
+            try {
+                action.accept(current);
+            } catch (RuntimeException e) {
+                log.error("Failed to journal a request history transition.", e);
+            }
+        }
+    }
+
+    private boolean isExpired(RequestDetails details, long now) {
+        final long terminatedAt = details.getTerminatedAt();
+
+        return terminatedAt >= 0 && now - terminatedAt >= terminalTtlMillis;
+    }
+
+    private class Stripe {
+        // access-order makes the map iterate from the least recently used entry
+        private final LinkedHashMap<String, RequestDetails> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        synchronized void put(String correlationId, RequestDetails details) {
+            if (entries.put(correlationId, details) == null) {
+                entryCount.incrementAndGet();
+            }
+        }
+
+        synchronized RequestDetails get(String correlationId, long now) {
+            RequestDetails details = entries.get(correlationId);
+
+            if (details != null && isExpired(details, now)) {
+                entries.remove(correlationId);
+                entryCount.decrementAndGet();
+                evictions.increment();
+
+                return null;
+            }
+
+            return details;
+        }
+
+        /**
+         * Evicts the least recently used entries of the stripe while the history exceeds its maximum number of entries.
+         *
+         * @param keep the number of entries the stripe keeps in any case.
+         */
+        synchronized void evictEldest(int keep) {
+            Iterator<String> iterator = entries.keySet().iterator();
+
+            while (entryCount.get() > maxEntries && entries.size() > keep && iterator.hasNext()) {
+                String eldest = iterator.next();
+                iterator.remove();
+                entryCount.decrementAndGet();
+                evictions.increment();
+                log.debug("Request history is full. Evicting the details of request: {}", eldest);
+            }
+        }
+
+        synchronized void evictExpired(long now) {
+            Iterator<RequestDetails> iterator = entries.values().iterator();
+
+            while (iterator.hasNext()) {
+                if (isExpired(iterator.next(), now)) {
+                    iterator.remove();
+                    entryCount.decrementAndGet();
+                    evictions.increment();
+                }
+            }
+        }
+
+        synchronized void forEach(BiConsumer<String, RequestDetails> visitor) {
+            entries.forEach(visitor);
+        }
+
+        synchronized void clear() {
+            entryCount.addAndGet(-entries.size());
+            entries.clear();
+        }
     }
 
+    private static class InstanceHolder {
+        private static final RequestHistoryManager INSTANCE = new RequestHistoryManager();
+    }
 }
@@ -0,0 +1,15 @@
+package blockchains.iaas.uni.stuttgart.de.history.journal;
+
+/**
+ * The kinds of request history transitions recorded in the {@link RequestJournal}.
+ */
+public enum JournalRecordType {
+    CREATED,
+    TRANSACTION_ATTACHED,
+    STATE_CHANGED,
+    EXCEPTION_ATTACHED,
+    /**
+     * Written by compaction: the time at which a request originally reached a terminal state.
+     */
+    TERMINATED_AT
+}
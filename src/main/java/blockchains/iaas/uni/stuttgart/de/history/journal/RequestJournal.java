@@ -0,0 +1,456 @@
+package blockchains.iaas.uni.stuttgart.de.history.journal;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.LinearChainTransaction;
+import blockchains.iaas.uni.stuttgart.de.api.model.Transaction;
+import blockchains.iaas.uni.stuttgart.de.api.model.TransactionState;
+import blockchains.iaas.uni.stuttgart.de.history.model.RecoveredRequestException;
+import blockchains.iaas.uni.stuttgart.de.history.model.RequestDetails;
+import blockchains.iaas.uni.stuttgart.de.history.model.RequestType;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only, memory-mapped write-ahead journal of request history transitions. The journal is made of fixed-size
+ * segment files. Each record is stored as: [int bodyLength][int crc32(body)][body], and a zero length marks the end of
+ * the written part of a segment.
+ * <p>
+ * Appends only copy the record into the mapped segment. A background thread forces the written pages to disk at a
+ * fixed interval, so many appends share a single fsync (group commit). Hence, appends return before their record is
+ * durable: the records of the last flush interval may be lost if the machine crashes (a crash of the process alone
+ * does not lose them, since the mapped pages belong to the operating system). Callers that need durability call
+ * {@link #flush()} after appending.
+ * <p>
+ * Compaction writes a snapshot of the live requests into a fresh segment and deletes all older segments. The snapshot
+ * is appended like any other record, so callers may append to the journal while holding the locks that the visitor of
+ * the live requests takes.
+ */
+@Log4j2
+public class RequestJournal implements Closeable {
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_MESSAGE_LENGTH = 1024;
+    private final Path directory;
+    private final int segmentSize;
+    private final long flushIntervalMillis;
+    private final Object lock = new Object();
+    private final Object compactionLock = new Object();
+    private final LongAdder appendedRecords = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private ScheduledExecutorService flusher;
+    private FileChannel currentChannel;
+    private MappedByteBuffer currentSegment;
+    private long currentSegmentIndex = -1;
+    private boolean dirty;
+    private boolean closed;
+
+    public RequestJournal(Path directory, int segmentSize, long flushIntervalMillis) throws IOException {
+        if (segmentSize <= RECORD_HEADER_SIZE || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid request journal settings!");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Reads all existing segments in order and rebuilds the request details they describe.
+     *
+     * @return the recovered requests in the order they were created.
+     * @throws IOException if a segment cannot be read.
+     */
+    public Map<String, RequestDetails> replay() throws IOException {
+        final Map<String, RequestDetails> result = new LinkedHashMap<>();
+
+        for (Path segment : listSegments()) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                replaySegment(segment, buffer, result);
+            }
+        }
+
+        log.info("Replayed {} requests from the request journal at {}", result.size(), directory);
+
+        return result;
+    }
+
+    /**
+     * Opens a fresh segment for appending and starts the periodic flushing of the journal.
+     *
+     * @throws IOException if the segment cannot be created.
+     */
+    public void start() throws IOException {
+        synchronized (lock) {
+            final List<Path> existing = listSegments();
+            currentSegmentIndex = existing.isEmpty() ? -1 : segmentIndexOf(existing.get(existing.size() - 1));
+            rollSegment();
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "request-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void appendCreated(String correlationId, RequestDetails details) {
+        append(JournalRecordType.CREATED, correlationId, out -> {
+            out.writeByte(details.getType() == null ? -1 : details.getType().ordinal());
+            out.writeUTF(details.getBlockchainId());
+        });
+    }
+
+    public void appendTransaction(String correlationId, Transaction transaction) {
+        append(JournalRecordType.TRANSACTION_ATTACHED, correlationId, out -> writeTransaction(out, transaction));
+    }
+
+    public void appendTxState(String correlationId, TransactionState state) {
+        append(JournalRecordType.STATE_CHANGED, correlationId, out -> out.writeByte(state == null ? -1 : state.ordinal()));
+    }
+
+    public void appendException(String correlationId, Throwable exception) {
+        append(JournalRecordType.EXCEPTION_ATTACHED, correlationId, out -> writeException(out, exception));
+    }
+
+    /**
+     * Replaces all segments with a single snapshot of the live requests.
+     *
+     * @param liveRequests visits every request that is still part of the request history.
+     * @throws IOException if the snapshot segment cannot be created.
+     */
+    public void compact(Consumer<BiConsumer<String, RequestDetails>> liveRequests) throws IOException {
+        final long snapshotSegmentIndex;
+
+        synchronized (compactionLock) {
+            synchronized (lock) {
+                ensureOpen();
+                rollSegment();
+                snapshotSegmentIndex = currentSegmentIndex;
+            }
+
+            // records appended concurrently land in the snapshot segment or a later one, so they are kept
+            liveRequests.accept((correlationId, details) -> {
+                appendCreated(correlationId, details);
+
+                if (details.getTransaction() != null) {
+                    appendTransaction(correlationId, details.getTransaction());
+                }
+
+                if (details.getException() != null) {
+                    appendException(correlationId, details.getException());
+                }
+
+                // the records above are timestamped now, so the time-to-live of terminal requests must not restart
+                if (details.getTerminatedAt() >= 0) {
+                    append(JournalRecordType.TERMINATED_AT, correlationId, out -> out.writeLong(details.getTerminatedAt()));
+                }
+            });
+
+            synchronized (lock) {
+                ensureOpen();
+                forceCurrentSegment();
+            }
+
+            int deleted = 0;
+
+            for (Path segment : listSegments()) {
+                if (segmentIndexOf(segment) < snapshotSegmentIndex) {
+                    Files.deleteIfExists(segment);
+                    deleted++;
+                }
+            }
+
+            log.debug("Compacted the request journal. Deleted {} segment(s)", deleted);
+        }
+    }
+
+    /**
+     * Forces all appended records to disk. Records appended concurrently with a flush are forced by the next one.
+     */
+    public void flush() {
+        final MappedByteBuffer segment;
+
+        synchronized (lock) {
+            if (closed || !dirty) {
+                return;
+            }
+
+            segment = currentSegment;
+            dirty = false;
+        }
+
+        // appenders are not blocked while the pages are written to disk
+        segment.force();
+        flushes.increment();
+    }
+
+    public long getAppendedRecordCount() {
+        return appendedRecords.sum();
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+
+            if (currentSegment != null) {
+                forceCurrentSegment();
+            }
+
+            closed = true;
+
+            if (currentChannel != null) {
+                currentChannel.close();
+            }
+        }
+    }
+
+    private void append(JournalRecordType type, String correlationId, RecordWriter payload) {
+        final byte[] body;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type.ordinal());
+            out.writeLong(System.currentTimeMillis());
+            out.writeUTF(correlationId);
+            payload.write(out);
+            out.flush();
+            body = bytes.toByteArray();
+        } catch (IOException e) {
+            // writing to a byte array does not throw IOExceptions except for oversized strings
+            log.error("Failed to serialize a request journal record for request: {}", correlationId, e);
+            return;
+        }
+
+        if (body.length + 2 * RECORD_HEADER_SIZE > segmentSize) {
+            log.error("The request journal record for request {} is larger than a segment. Skipping it.", correlationId);
+            return;
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+
+        synchronized (lock) {
+            ensureOpen();
+
+            // keep room for the zero-length end marker
+            if (currentSegment.remaining() < body.length + 2 * RECORD_HEADER_SIZE) {
+                try {
+                    rollSegment();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to create a new request journal segment", e);
+                }
+            }
+
+            currentSegment.putInt(body.length);
+            currentSegment.putInt((int) crc.getValue());
+            currentSegment.put(body);
+            dirty = true;
+        }
+
+        appendedRecords.increment();
+    }
+
+    private void rollSegment() throws IOException {
+        if (currentSegment != null) {
+            forceCurrentSegment();
+            currentChannel.close();
+        }
+
+        currentSegmentIndex++;
+        final Path path = directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, currentSegmentIndex, SEGMENT_SUFFIX));
+        currentChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        currentSegment = currentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        log.debug("Opened request journal segment: {}", path);
+    }
+
+    private void forceCurrentSegment() {
+        currentSegment.force();
+        dirty = false;
+        flushes.increment();
+    }
+
+    private void ensureOpen() {
+        if (closed || currentSegment == null) {
+            throw new IllegalStateException("The request journal is not open!");
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        final String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentIndexOf(Path segment) {
+        final String name = segment.getFileName().toString();
+
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static void replaySegment(Path segment, ByteBuffer buffer, Map<String, RequestDetails> result) {
+        final CRC32 crc = new CRC32();
+
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            final int length = buffer.getInt();
+            final int checksum = buffer.getInt();
+
+            if (length <= 0) {
+                // end of the written part of the segment
+                return;
+            }
+
+            if (length > buffer.remaining()) {
+                log.warn("Truncated record found in request journal segment {}. Ignoring the rest of it.", segment);
+                return;
+            }
+
+            final byte[] body = new byte[length];
+            buffer.get(body);
+            crc.reset();
+            crc.update(body);
+
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Corrupted record found in request journal segment {}. Ignoring the rest of it.", segment);
+                return;
+            }
+
+            try {
+                applyRecord(new DataInputStream(new ByteArrayInputStream(body)), result);
+            } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                log.warn("Malformed record found in request journal segment {}. Skipping it.", segment, e);
+            }
+        }
+    }
+
+    private static void applyRecord(DataInputStream record, Map<String, RequestDetails> result) throws IOException {
+        final JournalRecordType type = JournalRecordType.values()[record.readByte()];
+        final long timestamp = record.readLong();
+        final String correlationId = record.readUTF();
+
+        if (type == JournalRecordType.CREATED) {
+            final byte requestType = record.readByte();
+            final String blockchainId = record.readUTF();
+            // a snapshot re-creates requests whose transitions were replayed from older segments already
+            result.putIfAbsent(correlationId, new RequestDetails(requestType < 0 ? null : RequestType.values()[requestType], blockchainId));
+            return;
+        }
+
+        final RequestDetails details = result.get(correlationId);
+
+        if (details == null) {
+            // the creation record was compacted away while this transition was being appended
+            return;
+        }
+
+        if (type == JournalRecordType.TERMINATED_AT) {
+            details.restoreTerminatedAt(record.readLong());
+            return;
+        }
+
+        final boolean wasTerminal = details.isTerminal();
+
+        switch (type) {
+            case TRANSACTION_ATTACHED -> details.setTransaction(readTransaction(record));
+            case STATE_CHANGED -> {
+                final byte state = record.readByte();
+                details.setTxState(state < 0 ? null : TransactionState.values()[state]);
+            }
+            case EXCEPTION_ATTACHED -> {
+                final String originalType = record.readUTF();
+                details.setException(new RecoveredRequestException(originalType, record.readUTF()));
+            }
+            default -> throw new IllegalArgumentException("Unexpected record type: " + type);
+        }
+
+        if (!wasTerminal) {
+            // the request reached its terminal state when this record was appended
+            details.restoreTerminatedAt(timestamp);
+        }
+    }
+
+    private static void writeTransaction(DataOutputStream out, Transaction transaction) throws IOException {
+        out.writeByte(transaction == null || transaction.getState() == null ? -1 : transaction.getState().ordinal());
+        out.writeBoolean(transaction instanceof LinearChainTransaction);
+
+        if (transaction instanceof LinearChainTransaction ltx) {
+            out.writeUTF(ltx.getTransactionHash() == null ? "" : ltx.getTransactionHash());
+        }
+    }
+
+    private static Transaction readTransaction(DataInputStream record) throws IOException {
+        final byte state = record.readByte();
+        final boolean isLinearChainTransaction = record.readBoolean();
+        final Transaction transaction;
+
+        if (isLinearChainTransaction) {
+            LinearChainTransaction ltx = new LinearChainTransaction();
+            final String hash = record.readUTF();
+            ltx.setTransactionHash(hash.isEmpty() ? null : hash);
+            transaction = ltx;
+        } else {
+            transaction = new Transaction();
+        }
+
+        if (state >= 0) {
+            transaction.setState(TransactionState.values()[state]);
+        }
+
+        return transaction;
+    }
+
+    private static void writeException(DataOutputStream out, Throwable exception) throws IOException {
+        final String message = exception.getMessage() == null ? "" : exception.getMessage();
+        out.writeUTF(exception.getClass().getName());
+        out.writeUTF(message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message);
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
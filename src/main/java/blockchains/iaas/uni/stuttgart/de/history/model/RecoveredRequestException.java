@@ -0,0 +1,17 @@
+package blockchains.iaas.uni.stuttgart.de.history.model;
+
+import lombok.Getter;
+
+/**
+ * Stands for an exception that was attached to a request before the gateway restarted. Only the type and message of
+ * the original exception survive a restart.
+ */
+@Getter
+public class RecoveredRequestException extends RuntimeException {
+    private final String originalType;
+
+    public RecoveredRequestException(String originalType, String message) {
+        super(message);
+        this.originalType = originalType;
+    }
+}
@@ -4,34 +4,85 @@ import blockchains.iaas.uni.stuttgart.de.api.model.Transaction;
 import blockchains.iaas.uni.stuttgart.de.api.model.TransactionState;
 import lombok.Getter;
 import lombok.NonNull;
-import lombok.Setter;
 
-@Setter
+/**
+ * The details of a request received by the gateway. Adapter completion threads and controller threads might access
+ * the same instance concurrently, so all state transitions are atomic.
+ */
 @Getter
 public class RequestDetails {
-    private Transaction transaction;
-    private Throwable exception;
+    private volatile Transaction transaction;
+    private volatile Throwable exception;
     final private RequestType type;
     @NonNull final private String blockchainId;
+    /**
+     * The time (in millis) at which the request reached a terminal state, or -1 if it did not reach one yet.
+     */
+    private volatile long terminatedAt = -1;
 
     public RequestDetails(RequestType type, @NonNull String blockchainId) {
         this.type = type;
         this.blockchainId = blockchainId;
     }
 
-    public void setTxState(TransactionState txState) {
+    public synchronized void setTransaction(Transaction transaction) {
+        this.transaction = transaction;
+        markTerminatedIfNeeded();
+    }
+
+    public synchronized void setException(Throwable exception) {
+        this.exception = exception;
+        markTerminatedIfNeeded();
+    }
+
+    public synchronized void setTxState(TransactionState txState) {
         if (transaction == null) {
             transaction = new Transaction();
         }
 
         transaction.setState(txState);
+        markTerminatedIfNeeded();
+    }
+
+    /**
+     * Overrides the time at which the request reached a terminal state. Used when recovering the request history.
+     *
+     * @param terminatedAt the time (in millis) at which the request originally reached a terminal state.
+     */
+    public synchronized void restoreTerminatedAt(long terminatedAt) {
+        if (isTerminal()) {
+            this.terminatedAt = terminatedAt;
+        }
     }
 
     public TransactionState getTxState() {
-        if (transaction == null) {
+        final Transaction current = transaction;
+
+        if (current == null) {
             return TransactionState.UNKNOWN;
         }
 
-        return transaction.getState();
+        return current.getState();
+    }
+
+    /**
+     * A request is terminal if it failed, or if its transaction reached one of the states CONFIRMED, INVALID, or ERRORED.
+     *
+     * @return true if no further state changes are expected for this request.
+     */
+    public boolean isTerminal() {
+        if (exception != null) {
+            return true;
+        }
+
+        TransactionState state = getTxState();
+
+        return state == TransactionState.CONFIRMED || state == TransactionState.INVALID || state == TransactionState.ERRORED;
+    }
+
+    private void markTerminatedIfNeeded() {
+        if (terminatedAt < 0 && isTerminal()) {
+            terminatedAt = System.currentTimeMillis();
+        }
     }
 }
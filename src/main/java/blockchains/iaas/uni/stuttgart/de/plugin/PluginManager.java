@@ -23,6 +23,7 @@ import org.springframework.stereotype.Component;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static blockchains.iaas.uni.stuttgart.de.Constants.PF4J_AUTOLOAD_PROPERTY;
 
@@ -30,6 +31,7 @@ import static blockchains.iaas.uni.stuttgart.de.Constants.PF4J_AUTOLOAD_PROPERTY
 @Component
 public class PluginManager {
     private org.pf4j.PluginManager pluginManager = null;
+    private final List<Runnable> startListeners = new CopyOnWriteArrayList<>();
     private final String pluginDirStr;
     private static final String DEFAULT_PLUGIN_DIR = Paths.get(System.getProperty("user.home"), ".bal", "plugins").toString();
 
@@ -91,9 +93,17 @@ public class PluginManager {
         pluginManager.unloadPlugin(pluginId);
     }
 
+    /**
+     * Registers a listener that is notified whenever plugins are started, i.e., new blockchain adapters might be available.
+     */
+    public void addStartListener(Runnable listener) {
+        this.startListeners.add(listener);
+    }
+
     public void startPlugin(String pluginId) {
         pluginManager.startPlugin(pluginId);
         registerConnectionProfileSubtypeClass(pluginId);
+        notifyStartListeners();
     }
 
     public void startPlugins() {
@@ -103,6 +113,8 @@ public class PluginManager {
         for (PluginWrapper pluginWrapper : plugins) {
             registerConnectionProfileSubtypeClass(pluginWrapper.getPluginId());
         }
+
+        notifyStartListeners();
     }
 
     public List<PluginWrapper> getPlugins(PluginState pluginState) {
@@ -125,6 +137,12 @@ public class PluginManager {
         return pluginManager.getPlugin(pluginId).getPluginState();
     }
 
+    private void notifyStartListeners() {
+        for (Runnable listener : startListeners) {
+            listener.run();
+        }
+    }
+
     private void registerConnectionProfileSubtypeClass(String pluginId) {
         List<IAdapterExtension> adapterExtensions = this.pluginManager.getExtensions(IAdapterExtension.class, pluginId);
         for (IAdapterExtension adapterExtension : adapterExtensions) {
@@ -11,57 +11,108 @@
  ********************************************************************************/
 package blockchains.iaas.uni.stuttgart.de.restapi.callback;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
 
 import blockchains.iaas.uni.stuttgart.de.api.model.LinearChainTransaction;
 import blockchains.iaas.uni.stuttgart.de.api.model.Transaction;
 import blockchains.iaas.uni.stuttgart.de.api.model.TransactionState;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackPayload;
 import blockchains.iaas.uni.stuttgart.de.restapi.model.response.CallbackMessage;
 import blockchains.iaas.uni.stuttgart.de.restapi.model.response.CamundaMessage;
 import blockchains.iaas.uni.stuttgart.de.restapi.model.response.CamundaVariable;
 
+/**
+ * Translates transactions into Camunda callback messages. {@link #stream} writes the same message as {@link #convert}
+ * directly as JSON, without building the message object and its variable map.
+ */
 public class CamundaMessageTranslator {
     public static CallbackMessage convert(String subscriptionId, Transaction transaction, TransactionState state, boolean isErrorMessage, int errorCode) {
         final CamundaMessage result = new CamundaMessage();
-        final String processInstanceId = subscriptionId.substring(subscriptionId.indexOf('_') + 1);
-        final String msgName = (isErrorMessage) ? "error_" : "message_" + subscriptionId;
-        result.setMessageName(msgName);
-        result.setProcessInstanceId(processInstanceId);
-        Map<String, CamundaVariable> variables = result.getProcessVariables();
+        result.setMessageName(messageNameOf(subscriptionId, isErrorMessage));
+        result.setProcessInstanceId(processInstanceIdOf(subscriptionId));
+        final Map<String, CamundaVariable> variables = result.getProcessVariables();
 
-        variables.put("status", new CamundaVariable(state.toString(), "String"));
+        try {
+            translateVariables(transaction, state, (name, value, type) -> variables.put(name, new CamundaVariable(value, type)));
+        } catch (IOException e) {
+            // filling a map does not throw IOExceptions
+            throw new UncheckedIOException(e);
+        }
+
+        return result;
+    }
+
+    public static CallbackMessage convert(String subscriptionId, Transaction transaction, boolean isErrorMessage) {
+        return convert(subscriptionId, transaction, transaction.getState(), isErrorMessage, 0);
+    }
+
+    public static CallbackMessage convert(String subscriptionId, TransactionState state, boolean isErrorMessage, int errorCode) {
+        return convert(subscriptionId, null, state, isErrorMessage, errorCode);
+    }
+
+    public static CallbackPayload stream(String subscriptionId, Transaction transaction, TransactionState state, boolean isErrorMessage, int errorCode) {
+        return generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("processInstanceId", processInstanceIdOf(subscriptionId));
+            generator.writeStringField("messageName", messageNameOf(subscriptionId, isErrorMessage));
+            generator.writeObjectFieldStart("processVariables");
+            translateVariables(transaction, state, (name, value, type) -> {
+                generator.writeObjectFieldStart(name);
+                generator.writeStringField("value", value);
+                generator.writeStringField("type", type);
+                generator.writeEndObject();
+            });
+            generator.writeEndObject();
+            generator.writeEndObject();
+        };
+    }
+
+    public static CallbackPayload stream(String subscriptionId, Transaction transaction, boolean isErrorMessage) {
+        return stream(subscriptionId, transaction, transaction.getState(), isErrorMessage, 0);
+    }
+
+    public static CallbackPayload stream(String subscriptionId, TransactionState state, boolean isErrorMessage, int errorCode) {
+        return stream(subscriptionId, null, state, isErrorMessage, errorCode);
+    }
+
+    private static String processInstanceIdOf(String subscriptionId) {
+        return subscriptionId.substring(subscriptionId.indexOf('_') + 1);
+    }
+
+    private static String messageNameOf(String subscriptionId, boolean isErrorMessage) {
+        return (isErrorMessage) ? "error_" : "message_" + subscriptionId;
+    }
+
+    private static void translateVariables(Transaction transaction, TransactionState state, VariableSink variables) throws IOException {
+        variables.put("status", state.toString(), "String");
 
         // todo handle communication between Camunda and Fabric
         if (transaction instanceof LinearChainTransaction tx) {
 
             if (state != TransactionState.RETURN_VALUE) {
-                variables.put("from", new CamundaVariable(tx.getFrom(), "String"));
-                variables.put("to", new CamundaVariable(tx.getTo(), "String"));
-                variables.put("value", new CamundaVariable(tx.getValueAsString(), "Long"));
-                variables.put("transactionId", new CamundaVariable(tx.getTransactionHash(), "String"));
+                variables.put("from", tx.getFrom(), "String");
+                variables.put("to", tx.getTo(), "String");
+                variables.put("value", tx.getValueAsString(), "Long");
+                variables.put("transactionId", tx.getTransactionHash(), "String");
             } else {
                 for (int i = 0; i < transaction.getReturnValues().size(); i++) {
-                    variables.put("returnValue_" + i, new CamundaVariable(transaction.getReturnValues().get(0).getValue(), "String"));
+                    variables.put("returnValue_" + i, transaction.getReturnValues().get(0).getValue(), "String");
                 }
             }
 
             if (tx.getBlock() != null) { //it could be null if we are accepting transactions with 0 confirmations
-                variables.put("blockId", new CamundaVariable(tx.getBlock().getHash(), "String"));
-                variables.put("blockNumber", new CamundaVariable(String.valueOf(tx.getBlock().getNumberAsLong()), "Long"));
+                variables.put("blockId", tx.getBlock().getHash(), "String");
+                variables.put("blockNumber", String.valueOf(tx.getBlock().getNumberAsLong()), "Long");
             } else {
-                variables.put("blockId", new CamundaVariable("", "String"));
-                variables.put("blockNumber", new CamundaVariable("-1", "Long"));
+                variables.put("blockId", "", "String");
+                variables.put("blockNumber", "-1", "Long");
             }
         }
-
-        return result;
     }
 
-    public static CallbackMessage convert(String subscriptionId, Transaction transaction, boolean isErrorMessage) {
-        return convert(subscriptionId, transaction, transaction.getState(), isErrorMessage, 0);
-    }
-
-    public static CallbackMessage convert(String subscriptionId, TransactionState state, boolean isErrorMessage, int errorCode) {
-        return convert(subscriptionId, null, state, isErrorMessage, errorCode);
+    private interface VariableSink {
+        void put(String name, String value, String type) throws IOException;
     }
 }
@@ -12,58 +12,74 @@
 package blockchains.iaas.uni.stuttgart.de.restapi.callback;
 
 
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackDispatcher;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackOutbox;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackPayload;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackSend;
 import blockchains.iaas.uni.stuttgart.de.restapi.model.response.CallbackMessage;
 import blockchains.iaas.uni.stuttgart.de.restapi.model.response.CamundaMessage;
 
+import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestClient;
-
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 @Log4j2
 public class RestCallbackManager {
-    private static RestCallbackManager instance = null;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+    @Getter
+    private final CallbackDispatcher dispatcher = new CallbackDispatcher("rest");
 
     private RestCallbackManager() {
 
     }
 
     public static RestCallbackManager getInstance() {
-        if (instance == null)
-            instance = new RestCallbackManager();
+        return InstanceHolder.INSTANCE;
+    }
 
-        return instance;
+    public boolean sendCallback(final String endpointUrl, final CallbackMessage responseBody) {
+        return this.sendCallback(endpointUrl, null, responseBody);
     }
 
-    public void sendCallback(final String endpointUrl, final CallbackMessage responseBody) {
+    /**
+     * @return false if the endpoint failed to handle the callback (see {@link CallbackSend#send()}).
+     */
+    public boolean sendCallback(final String endpointUrl, final String correlationId, final CallbackMessage responseBody) {
         log.info("Sending REST callback message {} to ({})", responseBody, endpointUrl);
         if (responseBody instanceof CamundaMessage) {
-            this.sendRestCallback(endpointUrl, responseBody);
+            return this.sendRestCallback(endpointUrl, correlationId, responseBody);
         } else {
             log.error("The specified response message has an unknown callback protocol.");
+            return true;
         }
     }
 
     public void sendCallbackAsync(final String endpointUrl, final CallbackMessage responseBody) {
-        this.executorService.execute(() -> sendCallback(endpointUrl, responseBody));
+        this.sendCallbackAsync(endpointUrl, null, responseBody);
+    }
+
+    /**
+     * Asynchronously sends a callback after all callbacks with the same correlation id that were sent before it.
+     */
+    public void sendCallbackAsync(final String endpointUrl, final String correlationId, final CallbackMessage responseBody) {
+        this.dispatcher.dispatch(endpointUrl, correlationId, responseBody, () -> sendCallback(endpointUrl, correlationId, responseBody));
     }
 
-    private void sendRestCallback(final String endpointUrl, final CallbackMessage responseBody) {
-        ResponseEntity<String> response = RestClient.create()
-                .post()
-                .uri(endpointUrl)
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(responseBody)
-                .retrieve()
-                .toEntity(String.class);
-
-        log.info("Callback client responded with {} (code: {})",
-                () -> response.getBody(), () -> response.getStatusCode());
+    /**
+     * Sends a callback whose body is streamed into the request instead of being built as a message object first.
+     */
+    public boolean sendCallback(final String endpointUrl, final String correlationId, final CallbackPayload payload) {
+        log.info("Sending REST callback message to ({})", endpointUrl);
+        return !CallbackOutbox.getInstance().send(this.dispatcher, endpointUrl, correlationId, payload).endpointFailed();
     }
 
+    public void sendCallbackAsync(final String endpointUrl, final String correlationId, final CallbackPayload payload) {
+        this.dispatcher.dispatch(endpointUrl, correlationId, payload, () -> sendCallback(endpointUrl, correlationId, payload));
+    }
+
+    private boolean sendRestCallback(final String endpointUrl, final String correlationId, final CallbackMessage responseBody) {
+        return !CallbackOutbox.getInstance().send(this.dispatcher, endpointUrl, correlationId, responseBody).endpointFailed();
+    }
 
+    private static class InstanceHolder {
+        private static final RestCallbackManager INSTANCE = new RestCallbackManager();
+    }
 }
@@ -0,0 +1,58 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.restapi.controllers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackConfiguration;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackDispatcher;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackOutbox;
+import blockchains.iaas.uni.stuttgart.de.callback.model.CallbackEndpointMetrics;
+import blockchains.iaas.uni.stuttgart.de.callback.model.CallbackPartitionMetrics;
+import blockchains.iaas.uni.stuttgart.de.callback.model.OutboxMetrics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController()
+@RequestMapping("callbacks")
+public class CallbackMetricsController {
+
+    @GetMapping(path = "/metrics")
+    public Map<String, List<CallbackPartitionMetrics>> getMetrics() {
+        final Map<String, List<CallbackPartitionMetrics>> result = new TreeMap<>();
+
+        for (CallbackDispatcher dispatcher : CallbackConfiguration.getDispatchers()) {
+            result.put(dispatcher.getName(), dispatcher.getMetrics());
+        }
+
+        return result;
+    }
+
+    @GetMapping(path = "/endpoints")
+    public Map<String, List<CallbackEndpointMetrics>> getEndpointMetrics() {
+        final Map<String, List<CallbackEndpointMetrics>> result = new TreeMap<>();
+
+        for (CallbackDispatcher dispatcher : CallbackConfiguration.getDispatchers()) {
+            result.put(dispatcher.getName(), dispatcher.getEndpointMetrics());
+        }
+
+        return result;
+    }
+
+    @GetMapping(path = "/outbox")
+    public OutboxMetrics getOutboxMetrics() {
+        return CallbackOutbox.getInstance().getMetrics();
+    }
+}
@@ -13,15 +13,24 @@
 
 package blockchains.iaas.uni.stuttgart.de.restapi.controllers;
 
+import blockchains.iaas.uni.stuttgart.de.tccsci.DistributedTransactionArchive;
 import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransaction;
 import blockchains.iaas.uni.stuttgart.de.tccsci.DistributedTransactionRepository;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionFilter;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionPage;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionState;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionVerdict;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.UUID;
 
@@ -29,16 +38,63 @@ import java.util.UUID;
 @RequestMapping("distributed-transactions")
 @Log4j2
 public class DistributedTransactionsController {
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
 
+    /**
+     * Lists the distributed transactions matched by the given criteria, ordered by start time. The time bounds are
+     * ISO-8601 instants and apply to the start time. Archived distributed transactions are listed separately, in the
+     * order in which they were archived.
+     */
     @GetMapping()
-    public List<DistributedTransaction> get() {
-        return DistributedTransactionRepository.getInstance().getAll();
+    public ResponseEntity<DistributedTransactionPage> get(@RequestParam(name = "state", required = false) final DistributedTransactionState state,
+                                                          @RequestParam(name = "verdict", required = false) final DistributedTransactionVerdict verdict,
+                                                          @RequestParam(name = "blockchain-id", required = false) final String blockchainId,
+                                                          @RequestParam(name = "from", required = false) final String from,
+                                                          @RequestParam(name = "to", required = false) final String to,
+                                                          @RequestParam(name = "offset", defaultValue = "0") final int offset,
+                                                          @RequestParam(name = "limit", defaultValue = "" + DEFAULT_LIMIT) final int limit,
+                                                          @RequestParam(name = "archived", defaultValue = "false") final boolean archived) throws IOException {
+        final DistributedTransactionFilter filter;
+
+        try {
+            filter = new DistributedTransactionFilter(state, verdict, blockchainId, toMillis(from), toMillis(to));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (offset < 0 || limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        final int pageSize = Math.min(limit, MAX_LIMIT);
+
+        if (archived) {
+            final DistributedTransactionArchive archive = DistributedTransactionRepository.getInstance().getArchive();
+
+            if (archive == null) {
+                return ResponseEntity.ok(new DistributedTransactionPage(List.of(), 0, offset, pageSize));
+            }
+
+            return ResponseEntity.ok(archive.list(filter, offset, pageSize));
+        }
+
+        return ResponseEntity.ok(DistributedTransactionRepository.getInstance().list(filter, offset, pageSize));
     }
 
     @GetMapping(path = "/{dtxId}")
-    public ResponseEntity<DistributedTransaction> getSubscriptionDetails(@PathVariable("dtxId") final String dtxId) {
+    public ResponseEntity<DistributedTransaction> getSubscriptionDetails(@PathVariable("dtxId") final String dtxId) throws IOException {
         UUID uuid = UUID.fromString(dtxId);
         DistributedTransaction dtx = DistributedTransactionRepository.getInstance().getById(uuid);
+
+        if (dtx == null) {
+            final DistributedTransactionArchive archive = DistributedTransactionRepository.getInstance().getArchive();
+
+            if (archive != null) {
+                dtx = archive.find(uuid);
+            }
+        }
+
         if (dtx != null) {
             return ResponseEntity.ok(dtx);
         } else {
@@ -46,4 +102,7 @@ public class DistributedTransactionsController {
         }
     }
 
+    private static Long toMillis(String instant) {
+        return instant == null || instant.isBlank() ? null : Instant.parse(instant).toEpochMilli();
+    }
 }
@@ -0,0 +1,73 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.restapi.controllers;
+
+import java.util.Iterator;
+
+import blockchains.iaas.uni.stuttgart.de.api.exceptions.InvalidScipParameterException;
+import blockchains.iaas.uni.stuttgart.de.api.model.Occurrence;
+import blockchains.iaas.uni.stuttgart.de.scip.query.QueryCursorManager;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Streams the remaining occurrences of a paginated SCIP Query as newline-delimited JSON. The occurrences are written to
+ * the response one by one, so the response is never built in memory.
+ */
+@RestController()
+@RequestMapping("query")
+@Log4j2
+public class QueryController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    @GetMapping(path = "/{cursor}")
+    public ResponseEntity<StreamingResponseBody> streamOccurrences(@PathVariable("cursor") final String cursor) {
+        final Iterator<Occurrence> occurrences;
+
+        try {
+            occurrences = QueryCursorManager.getInstance().drain(cursor);
+        } catch (InvalidScipParameterException e) {
+            return ResponseEntity.notFound().build();
+        }
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                // separates the occurrences by newlines
+                generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+                boolean empty = true;
+
+                while (occurrences.hasNext()) {
+                    mapper.writeValue(generator, occurrences.next());
+                    empty = false;
+                }
+
+                if (!empty) {
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+}
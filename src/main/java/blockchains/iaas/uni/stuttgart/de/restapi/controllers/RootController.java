@@ -11,37 +11,46 @@
  ********************************************************************************/
 package blockchains.iaas.uni.stuttgart.de.restapi.controllers;
 
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import blockchains.iaas.uni.stuttgart.de.scip.ScipRequestContext;
+import blockchains.iaas.uni.stuttgart.de.scip.ScipRequestHandler;
 import blockchains.iaas.uni.stuttgart.de.scip.ScipService;
 import blockchains.iaas.uni.stuttgart.de.BlockchainManager;
 import blockchains.iaas.uni.stuttgart.de.tccsci.DistributedTransactionManager;
-import com.github.arteam.simplejsonrpc.server.JsonRpcServer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 
 @RestController()
 @RequestMapping("/")
 @Log4j2
 public class RootController {
-    private final BlockchainManager manager;
-    private final DistributedTransactionManager distributedTransactionManager;
+    private final ScipRequestHandler handler;
 
-    public RootController(BlockchainManager manager, DistributedTransactionManager distributedTransactionManager) {
-        this.manager = manager;
-        this.distributedTransactionManager = distributedTransactionManager;
+    public RootController(BlockchainManager manager, DistributedTransactionManager distributedTransactionManager,
+                          @Value("${" + Constants.JSON_RPC_BATCH_REQUESTS_MAX_SIZE_PROPERTY + ":" + ScipRequestHandler.DEFAULT_MAX_BATCH_SIZE + "}") int maxBatchSize,
+                          @Value("${" + Constants.JSON_RPC_BATCH_REQUESTS_MAX_PARALLELISM_PROPERTY + ":" + ScipRequestHandler.DEFAULT_MAX_PARALLELISM + "}") int maxParallelism) {
+        this.handler = new ScipRequestHandler(new ScipService(manager, distributedTransactionManager), maxBatchSize, maxParallelism);
     }
 
     @PostMapping
-    public ResponseEntity<String> performJsonRpcCall(@RequestBody String jsonRequest,
-                                                     @RequestParam(name = "blockchain", required = false) final String blockchainType,
-                                                     @RequestParam(name = "blockchain-id", required = false) final String blockchainId,
-                                                     @RequestParam(name = "address", required = false) final String smartContractAddress) {
-        ScipService service = new ScipService(blockchainType, blockchainId, smartContractAddress, manager, distributedTransactionManager);
-        JsonRpcServer server = new JsonRpcServer();
-        String response = server.handle(jsonRequest, service);
-
-        return ResponseEntity.ok(response);
+    public CompletableFuture<ResponseEntity<String>> performJsonRpcCall(@RequestBody String jsonRequest,
+                                                                        @RequestParam(name = "blockchain", required = false) final String blockchainType,
+                                                                        @RequestParam(name = "blockchain-id", required = false) final String blockchainId,
+                                                                        @RequestParam(name = "address", required = false) final String smartContractAddress) {
+        final ScipRequestContext context = new ScipRequestContext(blockchainType, blockchainId, smartContractAddress);
+        // requests waiting for the blockchain complete asynchronously, releasing the servlet thread
+        return handler.handleAsync(jsonRequest, context).thenApply(ResponseEntity::ok);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        handler.shutdown();
     }
 
 }
@@ -13,6 +13,7 @@ package blockchains.iaas.uni.stuttgart.de.restapi.controllers;
 
 import blockchains.iaas.uni.stuttgart.de.BlockchainManager;
 import blockchains.iaas.uni.stuttgart.de.subscription.SubscriptionManager;
+import blockchains.iaas.uni.stuttgart.de.subscription.SubscriptionStore;
 import blockchains.iaas.uni.stuttgart.de.subscription.model.Subscription;
 import blockchains.iaas.uni.stuttgart.de.subscription.model.SubscriptionKey;
 import blockchains.iaas.uni.stuttgart.de.subscription.model.SubscriptionType;
@@ -46,6 +47,9 @@ public abstract class SubscriptionController {
         final SubscriptionManager manager = SubscriptionManager.getInstance();
         final Subscription subscription = manager.getSubscription(subscriptionId, blockchainId, smartContractPath);
 
+        // an explicit cancellation, so the subscription is not re-established after a restart
+        SubscriptionStore.getInstance().remove(subscriptionId, blockchainId, smartContractPath);
+
         if (subscription != null) {
             subscription.unsubscribe();
             // removing the subscription from the list is done elsewhere (in the BlockchainManager)
@@ -0,0 +1,55 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip;
+
+import java.util.function.Supplier;
+
+/**
+ * The target of a SCIP request, as given by the query parameters of the JSON-RPC call. A single {@link ScipService}
+ * handles all requests, so the context of the request being handled is bound to the current thread.
+ *
+ * @param blockchainType    the type of the blockchain (may be null).
+ * @param blockchainId      the id of the blockchain the request refers to (may be null).
+ * @param smartContractPath the address of the smart contract the request refers to (may be null).
+ */
+public record ScipRequestContext(String blockchainType, String blockchainId, String smartContractPath) {
+    private static final ScipRequestContext EMPTY = new ScipRequestContext(null, null, null);
+    private static final ThreadLocal<ScipRequestContext> current = new ThreadLocal<>();
+
+    /**
+     * @return the context of the SCIP request handled by the current thread, or a context without any target if no
+     * request is being handled.
+     */
+    public static ScipRequestContext current() {
+        final ScipRequestContext context = current.get();
+
+        return context == null ? EMPTY : context;
+    }
+
+    /**
+     * Executes the action with this context bound to the current thread.
+     */
+    public <T> T call(Supplier<T> action) {
+        final ScipRequestContext previous = current.get();
+        current.set(this);
+
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+    }
+}
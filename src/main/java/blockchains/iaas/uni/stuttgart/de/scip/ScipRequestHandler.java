@@ -0,0 +1,314 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import blockchains.iaas.uni.stuttgart.de.api.exceptions.BalException;
+import blockchains.iaas.uni.stuttgart.de.api.model.TimeFrame;
+import blockchains.iaas.uni.stuttgart.de.scip.model.common.MemberSignature;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.arteam.simplejsonrpc.core.annotation.JsonRpcError;
+import com.github.arteam.simplejsonrpc.server.JsonRpcServer;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Handles the JSON-RPC requests sent to the SCIP endpoint. A single {@link JsonRpcServer} and {@link ScipService} are
+ * shared by all requests, so that the metadata of the SCIP methods is resolved only once.
+ * <p>
+ * The elements of a batch request are handled concurrently. At most {@code maxParallelism} elements of a batch run at
+ * the same time: the calling thread handles elements itself, helped by up to {@code maxParallelism - 1} threads of a
+ * shared pool. The responses are returned in the order of the requests.
+ * <p>
+ * Single requests can be handled asynchronously (see {@link #handleAsync}), so that SCIP methods waiting for the
+ * blockchain do not hold the request thread.
+ */
+@Log4j2
+public class ScipRequestHandler {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_PARALLELISM = 8;
+    private static final String INVALID_REQUEST_TEMPLATE =
+            "{\"jsonrpc\":\"2.0\",\"error\":{\"code\":-32600,\"message\":\"%s\"},\"id\":null}";
+    private static final int INVALID_PARAMS = -32602;
+    private static final int INTERNAL_ERROR = -32603;
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonRpcServer server;
+    private final ScipService service;
+    private final int maxBatchSize;
+    private final int maxParallelism;
+    private final ExecutorService executor;
+
+    public ScipRequestHandler(ScipService service, int maxBatchSize, int maxParallelism) {
+        this.server = new JsonRpcServer();
+        this.service = service;
+        this.maxBatchSize = maxBatchSize;
+        this.maxParallelism = Math.max(1, maxParallelism);
+        this.executor = this.maxParallelism > 1 ? new ThreadPoolExecutor(this.maxParallelism - 1, this.maxParallelism - 1,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "scip-batch-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+
+        if (executor != null) {
+            ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Handles a single JSON-RPC request or a batch of requests.
+     *
+     * @return the JSON-RPC response, or an empty string if the request consisted only of notifications.
+     */
+    public String handle(String jsonRequest, ScipRequestContext context) {
+        if (!isBatch(jsonRequest)) {
+            return context.call(() -> server.handle(jsonRequest, service));
+        }
+
+        final JsonNode batch;
+
+        try {
+            batch = mapper.readTree(jsonRequest);
+        } catch (JsonProcessingException e) {
+            // produces the proper parse error
+            return context.call(() -> server.handle(jsonRequest, service));
+        }
+
+        if (batch.isEmpty()) {
+            return INVALID_REQUEST_TEMPLATE.formatted("Invalid Request");
+        }
+
+        if (batch.size() > maxBatchSize) {
+            log.warn("Rejecting a JSON-RPC batch of {} requests (the maximum is {})", batch.size(), maxBatchSize);
+            return INVALID_REQUEST_TEMPLATE.formatted("Batch size exceeds " + maxBatchSize);
+        }
+
+        final List<String> requests = new ArrayList<>(batch.size());
+
+        for (JsonNode request : batch) {
+            requests.add(request.toString());
+        }
+
+        return joinResponses(handleAll(requests, context));
+    }
+
+    /**
+     * Handles a JSON-RPC request without waiting for the blockchain. Query and DtxIsAborted requests with named
+     * parameters are dispatched once to the asynchronous variant of the SCIP method, and their response is built when
+     * the blockchain operation completes. All other requests, including the elements of batch requests, are handled
+     * like in {@link #handle}.
+     *
+     * @return a future that completes with the JSON-RPC response, or with an empty string if the request consisted only
+     * of notifications.
+     */
+    public CompletableFuture<String> handleAsync(String jsonRequest, ScipRequestContext context) {
+        if (isBatch(jsonRequest)) {
+            return CompletableFuture.completedFuture(handle(jsonRequest, context));
+        }
+
+        final JsonNode request;
+
+        try {
+            request = mapper.readTree(jsonRequest);
+        } catch (JsonProcessingException e) {
+            // produces the proper parse error
+            return CompletableFuture.completedFuture(context.call(() -> server.handle(jsonRequest, service)));
+        }
+
+        if (!isAsyncMethod(request)) {
+            return CompletableFuture.completedFuture(context.call(() -> server.handle(jsonRequest, service)));
+        }
+
+        final JsonNode id = request.get("id");
+        final CompletableFuture<?> result;
+
+        try {
+            result = context.call(() -> dispatchAsync(request.get("method").asText(), request.get("params")));
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(toResponse(id, null, e));
+        }
+
+        return result.handle((value, e) -> toResponse(id, value, e));
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static boolean isAsyncMethod(JsonNode request) {
+        final JsonNode method = request.get("method");
+
+        return request.isObject()
+                && "2.0".equals(request.path("jsonrpc").asText())
+                && method != null
+                && ("Query".equals(method.asText()) || "DtxIsAborted".equals(method.asText()))
+                && request.path("params").isObject();
+    }
+
+    private CompletableFuture<?> dispatchAsync(String method, JsonNode params) {
+        final ObjectNode arguments = (ObjectNode) params;
+
+        try {
+            if ("Query".equals(method)) {
+                return service.queryAsync(
+                        param(arguments, "signature", MemberSignature.class),
+                        param(arguments, "filter", String.class),
+                        param(arguments, "timeframe", TimeFrame.class),
+                        param(arguments, "pageSize", Integer.class),
+                        param(arguments, "cursor", String.class));
+            }
+
+            final String dtxId = param(arguments, "dtxId", String.class);
+
+            if (dtxId == null) {
+                throw new IllegalArgumentException("Mandatory parameter 'dtxId' is not set");
+            }
+
+            return service.dtxIsAbortedAsync(dtxId);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidParamsException(e);
+        }
+    }
+
+    private <T> T param(ObjectNode params, String name, Class<T> type) {
+        final JsonNode value = params.get(name);
+
+        return value == null || value.isNull() ? null : mapper.convertValue(value, type);
+    }
+
+    /**
+     * Builds the JSON-RPC response of a request handled asynchronously. Errors are reported like the JSON-RPC server
+     * does: with the code and message of the {@link JsonRpcError} annotation of the exception, if any.
+     */
+    private String toResponse(JsonNode id, Object result, Throwable e) {
+        if (id == null) {
+            // notifications have no response
+            return "";
+        }
+
+        final ObjectNode response = mapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+
+        if (e == null) {
+            response.set("result", mapper.valueToTree(result));
+        } else {
+            final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            final JsonRpcError annotation = cause.getClass().getAnnotation(JsonRpcError.class);
+            final ObjectNode error = response.putObject("error");
+
+            if (annotation != null) {
+                error.put("code", annotation.code());
+                error.put("message", annotation.message());
+            } else if (cause instanceof InvalidParamsException) {
+                error.put("code", INVALID_PARAMS);
+                error.put("message", "Invalid params");
+            } else if (cause instanceof BalException balException) {
+                error.put("code", balException.getCode());
+                error.put("message", String.valueOf(balException.getMessage()));
+            } else {
+                log.error("Failed to handle a JSON-RPC request", cause);
+                error.put("code", INTERNAL_ERROR);
+                error.put("message", "Internal error");
+            }
+        }
+
+        response.set("id", id);
+
+        return response.toString();
+    }
+
+    private String[] handleAll(List<String> requests, ScipRequestContext context) {
+        final String[] responses = new String[requests.size()];
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(responses.length);
+        final Runnable worker = () -> context.call(() -> {
+            for (int i = next.getAndIncrement(); i < responses.length; i = next.getAndIncrement()) {
+                try {
+                    responses[i] = server.handle(requests.get(i), service);
+                } catch (RuntimeException e) {
+                    log.error("Failed to handle the JSON-RPC request {} of a batch", i, e);
+                } finally {
+                    done.countDown();
+                }
+            }
+
+            return null;
+        });
+        final int helpers = executor == null ? 0 : Math.min(maxParallelism, requests.size()) - 1;
+
+        for (int i = 0; i < helpers; i++) {
+            executor.execute(worker);
+        }
+
+        // helpers that start late find no work left, so the batch never waits for a busy pool
+        worker.run();
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handling a JSON-RPC batch", e);
+        }
+
+        return responses;
+    }
+
+    private static String joinResponses(String[] responses) {
+        final StringBuilder result = new StringBuilder("[");
+
+        for (String response : responses) {
+            // notifications have no response
+            if (response != null && !response.isEmpty()) {
+                if (result.length() > 1) {
+                    result.append(',');
+                }
+
+                result.append(response);
+            }
+        }
+
+        return result.length() == 1 ? "" : result.append(']').toString();
+    }
+
+    private static boolean isBatch(String jsonRequest) {
+        for (int i = 0; i < jsonRequest.length(); i++) {
+            final char c = jsonRequest.charAt(i);
+
+            if (!Character.isWhitespace(c)) {
+                return c == '[';
+            }
+        }
+
+        return false;
+    }
+
+    private static class InvalidParamsException extends RuntimeException {
+        InvalidParamsException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
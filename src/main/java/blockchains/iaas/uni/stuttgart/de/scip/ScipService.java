@@ -21,6 +21,8 @@ import blockchains.iaas.uni.stuttgart.de.history.RequestHistoryManager;
 import blockchains.iaas.uni.stuttgart.de.history.model.RequestDetails;
 import blockchains.iaas.uni.stuttgart.de.scip.model.common.Argument;
 import blockchains.iaas.uni.stuttgart.de.scip.model.common.MemberSignature;
+import blockchains.iaas.uni.stuttgart.de.scip.model.responses.QueryPage;
+import blockchains.iaas.uni.stuttgart.de.scip.query.QueryCursorManager;
 import blockchains.iaas.uni.stuttgart.de.tccsci.DistributedTransactionManager;
 import com.github.arteam.simplejsonrpc.core.annotation.JsonRpcMethod;
 import com.github.arteam.simplejsonrpc.core.annotation.JsonRpcOptional;
@@ -32,21 +34,23 @@ import lombok.extern.log4j.Log4j2;
 import java.math.BigInteger;
 import java.util.List;
 import java.util.UUID;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Implements the SCIP methods. A single instance serves all requests: the blockchain and smart contract a request
+ * refers to are taken from the {@link ScipRequestContext} bound to the current thread. Methods that wait for the
+ * blockchain (Query and DtxIsAborted) also have an asynchronous variant, which {@link ScipRequestHandler#handleAsync}
+ * uses so that they do not hold the request thread.
+ */
 @JsonRpcService
 @Log4j2
 public class ScipService {
     private static final String DTX_ID_FIELD_NAME = "dtxId";
-    private final String blockchainType;
-    private final String blockchainId;
-    private final String smartContractPath;
     private final BlockchainManager manager;
     private final DistributedTransactionManager dtxManager;
 
-    public ScipService(String blockchainType, String blockchainId, String smartContractPath, BlockchainManager manager, DistributedTransactionManager dtxManager) {
-        this.blockchainType = blockchainType;
-        this.blockchainId = blockchainId;
-        this.smartContractPath = smartContractPath;
+    public ScipService(BlockchainManager manager, DistributedTransactionManager dtxManager) {
         this.manager = manager;
         this.dtxManager = dtxManager;
     }
@@ -66,6 +70,9 @@ public class ScipService {
             @JsonRpcOptional @JsonRpcParam("digitalSignature") String digitalSignature
     ) {
         log.info("SCIP Invoke method is executed!");
+        final ScipRequestContext context = ScipRequestContext.current();
+        final String blockchainId = context.blockchainId();
+        final String smartContractPath = context.smartContractPath();
         List<Parameter> inputs = inputArguments.stream()
                 .map(arg -> Parameter.builder()
                         .name(arg.getName())
@@ -89,6 +96,9 @@ public class ScipService {
             @JsonRpcOptional @JsonRpcParam("filter") String filter
     ) {
         log.info("SCIP Subscribe method is executed!");
+        final ScipRequestContext context = ScipRequestContext.current();
+        final String blockchainId = context.blockchainId();
+        final String smartContractPath = context.smartContractPath();
 
         if (!memberSignature.isFunction()) {
             manager.subscribeToEvent(blockchainId, smartContractPath, memberSignature.getName(), memberSignature.getParameters(), degreeOfConfidence, filter, callbackBinding, callbackUrl, correlationId);
@@ -105,6 +115,9 @@ public class ScipService {
             @JsonRpcOptional @JsonRpcParam("signature") MemberSignature memberSignature,
             @JsonRpcParam("correlationId") String correlationId) {
         log.info("SCIP Unsubscribe method is executed!");
+        final ScipRequestContext context = ScipRequestContext.current();
+        final String blockchainId = context.blockchainId();
+        final String smartContractPath = context.smartContractPath();
 
         if (memberSignature.isFunction()) {
             manager.cancelFunctionSubscriptions(blockchainId, smartContractPath, correlationId, memberSignature.getName(), memberSignature.getParameters());
@@ -115,15 +128,48 @@ public class ScipService {
         return "OK";
     }
 
+    /**
+     * Queries the occurrences of an event. If a page size or a cursor is given, the result is paginated: the
+     * occurrences are kept on the server and returned page by page as {@link QueryPage}s, and the remaining
+     * occurrences of a cursor can also be streamed as NDJSON from {@code GET /query/{cursor}}.
+     *
+     * @param pageSize the maximum number of occurrences to return per page.
+     * @param cursor   the cursor returned with the previous page. If given, all other parameters except the page size
+     *                 are ignored.
+     * @return the whole {@link QueryResult} if neither a page size nor a cursor is given, otherwise a {@link QueryPage}.
+     */
     @JsonRpcMethod
-    public QueryResult Query(
+    public Object Query(
             @JsonRpcOptional @JsonRpcParam("signature") MemberSignature memberSignature,
             @JsonRpcOptional @JsonRpcParam("filter") String filter,
-            @JsonRpcOptional @JsonRpcParam("timeframe") TimeFrame timeFrame) {
+            @JsonRpcOptional @JsonRpcParam("timeframe") TimeFrame timeFrame,
+            @JsonRpcOptional @JsonRpcParam("pageSize") Integer pageSize,
+            @JsonRpcOptional @JsonRpcParam("cursor") String cursor) {
+        return join(queryAsync(memberSignature, filter, timeFrame, pageSize, cursor));
+    }
+
+    /**
+     * Like {@link #Query}, but returns without waiting for the blockchain.
+     */
+    public CompletableFuture<Object> queryAsync(MemberSignature memberSignature, String filter, TimeFrame timeFrame,
+                                                Integer pageSize, String cursor) {
         log.info("SCIP Query method is executed!");
+        final QueryCursorManager cursors = QueryCursorManager.getInstance();
+
+        if (cursor != null) {
+            return CompletableFuture.completedFuture(cursors.nextPage(cursor, pageSize == null ? 0 : pageSize));
+        }
+
+        final ScipRequestContext context = ScipRequestContext.current();
+        final String blockchainId = context.blockchainId();
+        final String smartContractPath = context.smartContractPath();
 
         if (!memberSignature.isFunction()) {
-            return manager.queryEvents(blockchainId, smartContractPath, memberSignature.getName(), memberSignature.getParameters(), filter, timeFrame);
+            return manager.queryEventsAsync(blockchainId, smartContractPath, memberSignature.getName(),
+                            memberSignature.getParameters(), filter, timeFrame)
+                    .thenApply(result -> pageSize == null
+                            ? result
+                            : cursors.nextPage(cursors.open(result.getOccurrences()), pageSize));
         } else {
             log.error("Not all SCIP adapters support querying function occurrences. Cannot process request!");
             throw new InvalidScipParameterException();
@@ -138,10 +184,17 @@ public class ScipService {
 
     @JsonRpcMethod
     public String DtxIsAborted(@JsonRpcParam(DTX_ID_FIELD_NAME) String dtxId) {
+        return join(dtxIsAbortedAsync(dtxId));
+    }
+
+    /**
+     * Like {@link #DtxIsAborted}, but returns without waiting for the blockchain.
+     */
+    public CompletableFuture<String> dtxIsAbortedAsync(String dtxId) {
         log.info("T-SCIP DtxIsAborted method is executed!");
         UUID uuid = UUID.fromString(dtxId);
 
-        return dtxManager.isAbortedInBc(uuid, this.blockchainId);
+        return dtxManager.isAbortedInBcAsync(uuid, ScipRequestContext.current().blockchainId());
     }
 
     @JsonRpcMethod
@@ -197,6 +250,9 @@ public class ScipService {
             @JsonRpcOptional @JsonRpcParam("digitalSignature") String digitalSignature
     ) {
         log.info("B-SCIP SendTx method is executed!");
+        final ScipRequestContext context = ScipRequestContext.current();
+        final String blockchainId = context.blockchainId();
+        final String smartContractPath = context.smartContractPath();
         manager.submitNewTransaction(correlationId, smartContractPath, BigInteger.valueOf(value), blockchainId, degreeOfConfidence, callbackBinding, callbackUrl);
         return "OK";
     }
@@ -211,6 +267,8 @@ public class ScipService {
             @JsonRpcOptional @JsonRpcParam("from") String from
     ) {
         log.info("B-SCIP ReceiveTx method is executed!");
+        final ScipRequestContext context = ScipRequestContext.current();
+        final String blockchainId = context.blockchainId();
         manager.receiveTransaction(correlationId, from, blockchainId, callbackBinding, degreeOfConfidence, callbackUrl);
         return "OK";
     }
@@ -225,9 +283,16 @@ public class ScipService {
             @JsonRpcOptional @JsonRpcParam("timeout") Long timeout
     ) {
         log.info("B-SCIP EnsureState method is executed!");
+        final ScipRequestContext context = ScipRequestContext.current();
+        final String blockchainId = context.blockchainId();
         RequestDetails details = RequestHistoryManager.getInstance().getRequestDetails(ref);
 
-        if (details != null && details.getTransaction() != null && details.getTransaction() instanceof LinearChainTransaction ltx && !Strings.isNullOrEmpty(ltx.getTransactionHash())) {
+        if (details == null) {
+            log.error("The passed reference '{}' is unknown or its request details were evicted from the request history", ref);
+            throw new InvalidScipParameterException("The passed reference '" + ref + "' is unknown or its request details are no longer available in the request history");
+        }
+
+        if (details.getTransaction() != null && details.getTransaction() instanceof LinearChainTransaction ltx && !Strings.isNullOrEmpty(ltx.getTransactionHash())) {
             final String txId = ltx.getTransactionHash();
             manager.ensureTransactionState(correlationId, txId, blockchainId, callbackBinding, degreeOfConfidence, callbackUrl);
             return "OK";
@@ -239,5 +304,18 @@ public class ScipService {
 
     }
 
-
+    /**
+     * Waits for the future and rethrows the exception it failed with, so that the JSON-RPC server reports it.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+
+            throw e;
+        }
+    }
 }
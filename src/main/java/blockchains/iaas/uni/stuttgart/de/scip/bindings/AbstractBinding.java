@@ -18,7 +18,14 @@ import blockchains.iaas.uni.stuttgart.de.scip.model.responses.AsyncScipResponse;
 public interface AbstractBinding {
     String getBindingIdentifier();
 
-    void sendAsyncResponse(String endpointUrl, AsyncScipResponse response);
+    /**
+     * @return false if the endpoint failed to handle the response, i.e., it was unreachable, timed out, or answered
+     * with a status code that indicates an overloaded or broken endpoint.
+     */
+    boolean sendAsyncResponse(String endpointUrl, AsyncScipResponse response);
 
-    void sendAsyncErrorResponse(String endpointUrl, AsynchronousBalException exception);
+    /**
+     * @return false if the endpoint failed to handle the error, like {@link #sendAsyncResponse}.
+     */
+    boolean sendAsyncErrorResponse(String endpointUrl, AsynchronousBalException exception);
 }
\ No newline at end of file
@@ -11,198 +11,237 @@
 
 package blockchains.iaas.uni.stuttgart.de.scip.bindings.camunda;
 
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 
 
 import blockchains.iaas.uni.stuttgart.de.api.exceptions.TimeoutException;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackDispatcher;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackHttpClient;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackOutbox;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackPayload;
 import blockchains.iaas.uni.stuttgart.de.scip.bindings.AbstractBinding;
-import blockchains.iaas.uni.stuttgart.de.scip.bindings.camunda.model.DoubleVariable;
-import blockchains.iaas.uni.stuttgart.de.scip.bindings.camunda.model.LongVariable;
 import blockchains.iaas.uni.stuttgart.de.scip.bindings.camunda.model.Message;
-import blockchains.iaas.uni.stuttgart.de.scip.bindings.camunda.model.StringVariable;
 import blockchains.iaas.uni.stuttgart.de.scip.bindings.camunda.model.Variable;
 import blockchains.iaas.uni.stuttgart.de.scip.model.exceptions.AsynchronousBalException;
 
 import blockchains.iaas.uni.stuttgart.de.scip.model.common.Argument;
 import blockchains.iaas.uni.stuttgart.de.scip.model.responses.*;
+import blockchains.iaas.uni.stuttgart.de.scip.callback.ScipCallbackManager;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestClient;
 
 @Log4j2
 public class CamundaBinding implements AbstractBinding {
-    private final int FORCED_SLEEP_MILLIS = 10 * 1000;
+    @Getter
+    private final CamundaDeliveryScheduler deliveryScheduler;
+
+    public CamundaBinding() {
+        this(new CamundaDeliveryScheduler((endpointUrl, orderingKey, send) ->
+                ScipCallbackManager.getInstance().getDispatcher().dispatch(endpointUrl, orderingKey, null, send)));
+    }
+
+    public CamundaBinding(CamundaDeliveryScheduler deliveryScheduler) {
+        this.deliveryScheduler = deliveryScheduler;
+    }
 
     @Override
     public String getBindingIdentifier() {
         return "camunda";
     }
 
+    /**
+     * Schedules the delayed delivery of the response, which reports the outcome of sending it on its own.
+     */
     @Override
-    public void sendAsyncResponse(String endpointUrl, AsyncScipResponse response) {
-        log.debug("Waiting {} millis before sending callback", FORCED_SLEEP_MILLIS);
+    public boolean sendAsyncResponse(String endpointUrl, AsyncScipResponse response) {
+        final String correlationId = response.getCorrelationId();
+        log.debug("Delaying the callback of {} by at most {} millis", correlationId, deliveryScheduler.getDeliveryDelayMillis());
+        deliveryScheduler.schedule(endpointUrl, correlationId, businessKeyOf(correlationId), messageNameOf("result_", correlationId),
+                () -> this.sendResponse(endpointUrl, response));
 
-        try {
-            Thread.sleep(FORCED_SLEEP_MILLIS);
-        } catch (InterruptedException ignored) {
-        }
+        return true;
+    }
+
+    @Override
+    public boolean sendAsyncErrorResponse(String endpointUrl, AsynchronousBalException exception) {
+        final String correlationId = exception.getCorrelationIdentifier();
+        log.debug("Delaying the error callback of {} by at most {} millis", correlationId, deliveryScheduler.getDeliveryDelayMillis());
+        deliveryScheduler.schedule(endpointUrl, correlationId, businessKeyOf(correlationId), messageNameOf("error_", correlationId),
+                () -> this.sendErrorResponse(endpointUrl, exception));
 
+        return true;
+    }
+
+    protected boolean sendResponse(String endpointUrl, AsyncScipResponse response) {
         if (response instanceof InvokeResponse invokeResponse) {
-            this.sendInvocationResponse(endpointUrl, invokeResponse);
+            return this.sendInvocationResponse(endpointUrl, invokeResponse);
         } else if (response instanceof SubscribeResponse subscribeResponse) {
-            this.sendSubscriptionResponse(endpointUrl, subscribeResponse);
+            return this.sendSubscriptionResponse(endpointUrl, subscribeResponse);
         } else if (response instanceof SendTxResponse sendTxResponse) {
-            this.sendSendTxResponse(endpointUrl, sendTxResponse);
+            return this.sendSendTxResponse(endpointUrl, sendTxResponse);
         } else if (response instanceof ReceiveTxResponse receiveTxResponse) {
-            this.sendReceiveTxResponse(endpointUrl, receiveTxResponse);
+            return this.sendReceiveTxResponse(endpointUrl, receiveTxResponse);
         } else if (response instanceof EnsureStateResponse ensureStateResponse) {
-            this.sendEnsureStateResponse(endpointUrl, ensureStateResponse);
+            return this.sendEnsureStateResponse(endpointUrl, ensureStateResponse);
         }
+
+        return true;
     }
 
-    @Override
-    public void sendAsyncErrorResponse(String endpointUrl, AsynchronousBalException exception) {
+    protected boolean sendErrorResponse(String endpointUrl, AsynchronousBalException exception) {
         try {
-            log.debug("Waiting {} millis before sending callback", FORCED_SLEEP_MILLIS);
-            Thread.sleep(FORCED_SLEEP_MILLIS);
-
-            final Map<String, Variable> variables = new HashMap<>();
-
-            if (exception.getCause() instanceof TimeoutException) {
-                final Variable txHash = new StringVariable(((TimeoutException) exception.getCause()).getTransactionHash());
-                final Variable doc = new DoubleVariable(((TimeoutException) exception.getCause()).getDoc());
-                variables.put("reachedDoC", doc);
-                variables.put("transactionHash", txHash);
-            }
-
-            final Variable errCode = new LongVariable(exception.getCode());
-            final Variable errMessage = new StringVariable(exception.getMessage());
-            final String messageName = "error_" + exception.getCorrelationIdentifier().substring(exception.getCorrelationIdentifier().indexOf("_") + 1);
-            variables.put("errorCode", errCode);
-            variables.put("errorMessage", errMessage);
-            final String businessKey = exception.getCorrelationIdentifier().split("_")[0];
-            Message message = Message
-                    .builder()
-                    .messageName(messageName)
-                    .businessKey(businessKey)
-                    .processVariablesLocal(variables).build();
-
-            sendCamundaMessage(message, endpointUrl);
+            final String correlationId = exception.getCorrelationIdentifier();
+            return sendCamundaMessage(endpointUrl, correlationId, messageNameOf("error_", correlationId), businessKeyOf(correlationId), variables -> {
+                if (exception.getCause() instanceof TimeoutException timeout) {
+                    writeVariable(variables, "reachedDoC", timeout.getDoc());
+                    writeVariable(variables, "transactionHash", timeout.getTransactionHash());
+                }
+
+                writeVariable(variables, "errorCode", (long) exception.getCode());
+                writeVariable(variables, "errorMessage", exception.getMessage());
+            });
         } catch (Exception e) {
             log.error("Failed to send asynchronous error to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    protected void sendInvocationResponse(String endpointUrl, InvokeResponse response) {
+    protected boolean sendInvocationResponse(String endpointUrl, InvokeResponse response) {
         try {
-            sendResultResponse(response.getOutputArguments(),
+            return sendResultResponse(response.getOutputArguments(),
                     response.getTimeStamp(),
                     response.getCorrelationId(),
                     endpointUrl);
         } catch (Exception e) {
             log.error("Failed to send InvokeResponse to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
 
-    protected void sendSubscriptionResponse(String endpointUrl, SubscribeResponse response) {
+    protected boolean sendSubscriptionResponse(String endpointUrl, SubscribeResponse response) {
         try {
-            sendResultResponse(response.getArguments(),
+            return sendResultResponse(response.getArguments(),
                     response.getTimestamp(),
                     response.getCorrelationId(),
                     endpointUrl);
         } catch (Exception e) {
             log.error("Failed to send SubscribeResponse to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    protected void sendSendTxResponse(String endpointUrl, SendTxResponse response) {
+    protected boolean sendSendTxResponse(String endpointUrl, SendTxResponse response) {
         try {
-            sendResultResponse(null,
+            return sendResultResponse(null,
                     response.getTimestamp(),
                     response.getCorrelationId(),
                     endpointUrl);
         } catch (Exception e) {
             log.error("Failed to send SendTxResponse to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    protected void sendEnsureStateResponse(String endpointUrl, EnsureStateResponse response) {
+    protected boolean sendEnsureStateResponse(String endpointUrl, EnsureStateResponse response) {
         try {
-            sendResultResponse(null,
+            return sendResultResponse(null,
                     null,
                     response.getCorrelationId(),
                     endpointUrl);
         } catch (Exception e) {
             log.error("Failed to send EnsureStateResponse to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    protected void sendReceiveTxResponse(String endpointUrl, ReceiveTxResponse response) {
+    protected boolean sendReceiveTxResponse(String endpointUrl, ReceiveTxResponse response) {
         try {
-            final Map<String, Variable> variables = new HashMap<>();
-            variables.put("from", new StringVariable(response.getFrom()));
-            variables.put("value", new LongVariable(response.getValue()));
-
-            if (!(response.getTimestamp() == null || response.getTimestamp().isEmpty())) {
-                variables.put("timestamp", new LongVariable(Long.parseLong(response.getTimestamp())));
-            }
-
-            sendCamundaMessage(response.getCorrelationId(), endpointUrl, variables);
+            final String correlationId = response.getCorrelationId();
+            return sendCamundaMessage(endpointUrl, correlationId, messageNameOf("result_", correlationId), businessKeyOf(correlationId), variables -> {
+                writeVariable(variables, "from", response.getFrom());
+                writeVariable(variables, "value", response.getValue());
+                writeTimestamp(variables, response.getTimestamp());
+            });
         } catch (Exception e) {
             log.error("Failed to send ReceiveTxResponse to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    private void sendResultResponse(List<Argument> arguments, String timestamp, String correlationIdentifier,
+    private boolean sendResultResponse(List<Argument> arguments, String timestamp, String correlationIdentifier,
                                     String endpointUrl) {
-        final Map<String, Variable> variables = parseArguments(arguments);
+        return sendCamundaMessage(endpointUrl, correlationIdentifier, messageNameOf("result_", correlationIdentifier), businessKeyOf(correlationIdentifier), variables -> {
+            if (arguments != null) {
+                for (Argument argument : arguments) {
+                    writeVariable(variables, argument.getName(), argument.getValue());
+                }
+            }
 
-        if (!(timestamp == null || timestamp.isEmpty())) {
-            variables.put("timestamp", new LongVariable(Long.parseLong(timestamp)));
-        }
+            writeTimestamp(variables, timestamp);
+        });
+    }
 
-        sendCamundaMessage(correlationIdentifier, endpointUrl, variables);
+    /**
+     * Sends a Camunda message. The message is written straight into the request body, in the same form as
+     * {@link Message} with its {@link Variable}s.
+     *
+     * @param correlationId orders the message with the other callbacks of its request if it has to be retried.
+     * @param variables     writes the fields of the processVariablesLocal object of the message.
+     * @return false if the endpoint failed to handle the message.
+     */
+    private boolean sendCamundaMessage(String endpointUrl, String correlationId, String messageName, String businessKey,
+                                    CallbackPayload variables) {
+        Objects.requireNonNull(messageName);
+        Objects.requireNonNull(businessKey);
+        log.info("sending camunda message {} (businessKey={}) to client", messageName, businessKey);
+        final CallbackDispatcher dispatcher = ScipCallbackManager.getInstance().getDispatcher();
+        return !CallbackOutbox.getInstance().send(dispatcher, endpointUrl, correlationId, (CallbackPayload) generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("messageName", messageName);
+            generator.writeObjectFieldStart("processVariablesLocal");
+            variables.writeTo(generator);
+            generator.writeEndObject();
+            generator.writeStringField("businessKey", businessKey);
+            generator.writeEndObject();
+        }).endpointFailed();
     }
 
-    private void sendCamundaMessage(String correlationId, String endpointUrl, final Map<String, Variable> variables) {
-        final String businessKey = correlationId.split("_")[0];
-        final Message message = Message
-                .builder()
-                .messageName("result_" + correlationId.substring(correlationId.indexOf("_") + 1))
-                .processVariablesLocal(variables)
-                .businessKey(businessKey)
-                .build();
+    private static void writeTimestamp(JsonGenerator generator, String timestamp) throws IOException {
+        if (!(timestamp == null || timestamp.isEmpty())) {
+            writeVariable(generator, "timestamp", Long.parseLong(timestamp));
+        }
+    }
 
-        sendCamundaMessage(message, endpointUrl);
+    private static void writeVariable(JsonGenerator generator, String name, String value) throws IOException {
+        generator.writeObjectFieldStart(name);
+        generator.writeStringField("type", "String");
+        generator.writeStringField("value", Objects.requireNonNull(value, name));
+        generator.writeEndObject();
     }
 
-    private Map<String, Variable> parseArguments(List<Argument> parameterList) {
-        final Map<String, Variable> variables = new HashMap<>();
-        if (parameterList != null) {
-            parameterList.forEach(parameter -> {
-                Variable current = new StringVariable(parameter.getValue());
-                variables.put(parameter.getName(), current);
-            });
-        }
+    private static void writeVariable(JsonGenerator generator, String name, double value) throws IOException {
+        generator.writeObjectFieldStart(name);
+        generator.writeStringField("type", "Double");
+        generator.writeNumberField("value", value);
+        generator.writeEndObject();
+    }
 
-        return variables;
+    private static void writeVariable(JsonGenerator generator, String name, long value) throws IOException {
+        generator.writeObjectFieldStart(name);
+        generator.writeStringField("type", "Long");
+        generator.writeNumberField("value", value);
+        generator.writeEndObject();
     }
 
-    private void sendCamundaMessage(Message message, String endpointUrl) {
-        log.info("sending camunda message to client: {}", message);
-        ResponseEntity<String> response = RestClient.create()
-                .post()
-                .uri(endpointUrl)
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(message)
-                .retrieve()
-                .toEntity(String.class);
+    private static String businessKeyOf(String correlationId) {
+        return correlationId.split("_")[0];
+    }
 
-        log.info("Callback client responded with {} (code: {})",
-                () -> response.getBody(), () -> response.getStatusCode());
+    private static String messageNameOf(String prefix, String correlationId) {
+        return prefix + correlationId.substring(correlationId.indexOf("_") + 1);
     }
-}
\ No newline at end of file
+}
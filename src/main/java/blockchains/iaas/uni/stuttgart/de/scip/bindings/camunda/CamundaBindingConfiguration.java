@@ -0,0 +1,35 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.bindings.camunda;
+
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import blockchains.iaas.uni.stuttgart.de.scip.bindings.AbstractBinding;
+import blockchains.iaas.uni.stuttgart.de.scip.bindings.BindingsManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the Camunda message delivery settings of the application properties to the Camunda binding.
+ */
+@Component
+public class CamundaBindingConfiguration {
+
+    public CamundaBindingConfiguration(@Value("${" + Constants.CAMUNDA_DELIVERY_DELAY_MILLIS_PROPERTY + ":" + CamundaDeliveryScheduler.DEFAULT_DELIVERY_DELAY_MILLIS + "}") long deliveryDelayMillis,
+                                       @Value("${" + Constants.CAMUNDA_READINESS_PROBE_ENABLED_PROPERTY + ":false}") boolean readinessProbeEnabled,
+                                       @Value("${" + Constants.CAMUNDA_READINESS_PROBE_INTERVAL_MILLIS_PROPERTY + ":" + CamundaDeliveryScheduler.DEFAULT_PROBE_INTERVAL_MILLIS + "}") long probeIntervalMillis) {
+        final AbstractBinding binding = BindingsManager.getInstance().getBinding("camunda");
+
+        if (binding instanceof CamundaBinding camunda) {
+            camunda.getDeliveryScheduler().configure(deliveryDelayMillis, readinessProbeEnabled, probeIntervalMillis);
+        }
+    }
+}
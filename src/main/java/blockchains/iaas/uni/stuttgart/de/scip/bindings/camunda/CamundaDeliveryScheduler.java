@@ -0,0 +1,222 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.bindings.camunda;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackHttpClient;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackSend;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Delays the delivery of Camunda messages, since a process instance might not be waiting for a message yet when the
+ * gateway replies. Pending messages are kept in the delay queue of a single timer thread, so no thread waits per
+ * message. When a message is due, it is handed over to a {@link Delivery} that actually sends it, together with the
+ * correlation id of its request as ordering key. Messages of the same request that are scheduled with the same delay
+ * are delivered in the order they were scheduled.
+ * <p>
+ * If the readiness probe is enabled, the Camunda REST API is polled for an execution that waits for the message, and
+ * the message is delivered as soon as one exists, or when the delay elapses, whichever comes first. The messages of a
+ * request wait in line: only the oldest one is probed, and the next one is probed once it was handed over, so they are
+ * delivered in the order they were scheduled. Probes run on their own threads, so they neither occupy callback
+ * dispatch threads nor count as callbacks to the endpoint.
+ */
+@Log4j2
+public class CamundaDeliveryScheduler {
+    public static final long DEFAULT_DELIVERY_DELAY_MILLIS = 10 * 1000;
+    public static final long DEFAULT_PROBE_INTERVAL_MILLIS = 500;
+    private static final int PROBE_THREADS = 4;
+    private static final String MESSAGE_PATH_SUFFIX = "/message";
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "camunda-delivery-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService probeExecutor = Executors.newFixedThreadPool(PROBE_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "camunda-readiness-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Delivery delivery;
+    // the probed messages of each ordering key, oldest first
+    private final Map<String, Deque<ProbedMessage>> probedMessages = new HashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    @Getter
+    private volatile long deliveryDelayMillis = DEFAULT_DELIVERY_DELAY_MILLIS;
+    private volatile boolean readinessProbeEnabled = false;
+    private volatile long probeIntervalMillis = DEFAULT_PROBE_INTERVAL_MILLIS;
+
+    public CamundaDeliveryScheduler(Delivery delivery) {
+        this.delivery = delivery;
+    }
+
+    public void configure(long deliveryDelayMillis, boolean readinessProbeEnabled, long probeIntervalMillis) {
+        if (deliveryDelayMillis < 0 || probeIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid Camunda delivery settings!");
+        }
+
+        this.deliveryDelayMillis = deliveryDelayMillis;
+        this.readinessProbeEnabled = readinessProbeEnabled;
+        this.probeIntervalMillis = probeIntervalMillis;
+    }
+
+    /**
+     * Schedules a message using the configured delivery delay.
+     */
+    public void schedule(String endpointUrl, String orderingKey, String businessKey, String messageName, CallbackSend send) {
+        this.schedule(endpointUrl, orderingKey, businessKey, messageName, deliveryDelayMillis, send);
+    }
+
+    /**
+     * Schedules a message for delivery.
+     *
+     * @param endpointUrl the url of the Camunda message endpoint, e.g., http://localhost:8080/engine-rest/message
+     * @param orderingKey the correlation id of the request the message belongs to
+     * @param businessKey the business key of the target process instance
+     * @param messageName the name of the message
+     * @param delayMillis the maximum delay before the message is delivered
+     * @param send        sends the message
+     */
+    public void schedule(String endpointUrl, String orderingKey, String businessKey, String messageName, long delayMillis, CallbackSend send) {
+        pending.incrementAndGet();
+        final String probeUrl = readinessProbeEnabled ? probeUrlOf(endpointUrl, businessKey, messageName) : null;
+
+        if (probeUrl == null) {
+            timer.schedule(() -> deliver(endpointUrl, orderingKey, send), delayMillis, TimeUnit.MILLISECONDS);
+        } else {
+            enqueue(new ProbedMessage(endpointUrl, orderingKey, probeUrl, System.currentTimeMillis() + delayMillis, send));
+        }
+    }
+
+    /**
+     * @return the number of messages that are scheduled but not delivered yet.
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    private void deliver(String endpointUrl, String orderingKey, CallbackSend send) {
+        delivery.deliver(endpointUrl, orderingKey, () -> {
+            pending.decrementAndGet();
+
+            return send.send();
+        });
+    }
+
+    private void enqueue(ProbedMessage message) {
+        if (message.orderingKey() != null) {
+            synchronized (probedMessages) {
+                final Deque<ProbedMessage> line = probedMessages.computeIfAbsent(message.orderingKey(), k -> new ArrayDeque<>());
+                line.add(message);
+
+                if (line.size() > 1) {
+                    // probed once the messages ahead of it are handed over
+                    return;
+                }
+            }
+        }
+
+        probeExecutor.execute(() -> probe(message));
+    }
+
+    private void probe(ProbedMessage message) {
+        final long remaining = message.deadline() - System.currentTimeMillis();
+
+        if (remaining > 0 && !isWaitingForMessage(message.probeUrl())) {
+            timer.schedule(() -> probeExecutor.execute(() -> probe(message)), Math.min(probeIntervalMillis, remaining), TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        deliver(message.endpointUrl(), message.orderingKey(), message.send());
+
+        if (message.orderingKey() == null) {
+            return;
+        }
+
+        final ProbedMessage next;
+
+        synchronized (probedMessages) {
+            final Deque<ProbedMessage> line = probedMessages.get(message.orderingKey());
+            line.poll();
+            next = line.peek();
+
+            if (next == null) {
+                probedMessages.remove(message.orderingKey());
+            }
+        }
+
+        if (next != null) {
+            probeExecutor.execute(() -> probe(next));
+        }
+    }
+
+    private static boolean isWaitingForMessage(String probeUrl) {
+        try {
+            final String executions = CallbackHttpClient.getInstance().getRestClient().get().uri(probeUrl).retrieve().body(String.class);
+
+            return executions != null && !executions.isBlank() && !executions.replaceAll("\\s", "").equals("[]");
+        } catch (Exception e) {
+            log.debug("Readiness probe {} failed. Reason: {}", probeUrl, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Derives the url of the Camunda executions waiting for the message from the url of the message endpoint.
+     *
+     * @return the probe url, or null if the endpoint is not a Camunda message endpoint.
+     */
+    static String probeUrlOf(String endpointUrl, String businessKey, String messageName) {
+        if (endpointUrl == null) {
+            return null;
+        }
+
+        final String base = endpointUrl.endsWith("/") ? endpointUrl.substring(0, endpointUrl.length() - 1) : endpointUrl;
+
+        if (!base.endsWith(MESSAGE_PATH_SUFFIX)) {
+            return null;
+        }
+
+        return UriComponentsBuilder
+                .fromHttpUrl(base.substring(0, base.length() - MESSAGE_PATH_SUFFIX.length()) + "/execution")
+                .queryParam("businessKey", businessKey)
+                .queryParam("messageEventSubscriptionName", messageName)
+                .encode()
+                .toUriString();
+    }
+
+    private record ProbedMessage(String endpointUrl, String orderingKey, String probeUrl, long deadline, CallbackSend send) {
+    }
+
+    /**
+     * Sends the messages that are due.
+     */
+    @FunctionalInterface
+    public interface Delivery {
+        /**
+         * @param endpointUrl the url of the Camunda message endpoint
+         * @param orderingKey the correlation id of the request the message belongs to
+         * @param send        sends the message and reports whether the endpoint handled it
+         */
+        void deliver(String endpointUrl, String orderingKey, CallbackSend send);
+    }
+}
@@ -0,0 +1,227 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.bindings.jsonrpc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackDispatcher;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackHttpClient;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackOutbox;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackOutbox.SendResult;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackPayload;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Coalesces the JSON-RPC notifications sent to the same endpoint into JSON-RPC 2.0 batches. A batch is sent once it
+ * reaches the maximum batch size or once the linger time of its first notification elapses.
+ * <p>
+ * Notifications to the same endpoint are sent in the order they were enqueued: at most one batch per endpoint is in
+ * flight at a time. Since a batch mixes the notifications of many requests, this order is what keeps the notifications
+ * of each request in order, so the endpoint url is the ordering key of the flushes and of the retried batches. If the
+ * endpoint rejects a batch, its notifications are re-sent one by one, so that a single bad notification does not take
+ * the others down with it. Errors that the endpoint reports for single batch entries are logged.
+ */
+@Log4j2
+public class JsonRpcBatcher {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+    public static final long DEFAULT_LINGER_MILLIS = 20;
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "json-rpc-batch-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Sends the batches and, with the callback outbox enabled, their retries.
+     */
+    @Getter
+    private final CallbackDispatcher dispatcher;
+    private final Map<String, EndpointBatch> batches = new ConcurrentHashMap<>();
+    @Getter
+    private volatile boolean enabled = false;
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile long lingerMillis = DEFAULT_LINGER_MILLIS;
+
+    public JsonRpcBatcher(CallbackDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public void configure(boolean enabled, int maxBatchSize, long lingerMillis) {
+        if (maxBatchSize <= 0 || lingerMillis < 0) {
+            throw new IllegalArgumentException("Invalid JSON-RPC batching settings!");
+        }
+
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = lingerMillis;
+    }
+
+    /**
+     * Adds a serialized JSON-RPC notification to the batch of its endpoint.
+     */
+    public void enqueue(String endpointUrl, String notification) {
+        this.enqueue(endpointUrl, generator -> generator.writeRawValue(notification));
+    }
+
+    /**
+     * Adds a JSON-RPC notification to the batch of its endpoint. The notification is only written once its batch is
+     * sent.
+     */
+    public void enqueue(String endpointUrl, CallbackPayload notification) {
+        final EndpointBatch batch = batches.computeIfAbsent(endpointUrl, url -> new EndpointBatch());
+        final boolean flushNow;
+        final boolean scheduleFlush;
+
+        synchronized (batch) {
+            batch.pending.add(notification);
+            flushNow = batch.pending.size() >= maxBatchSize && !batch.flushing;
+            scheduleFlush = !flushNow && !batch.flushScheduled;
+
+            if (scheduleFlush) {
+                batch.flushScheduled = true;
+            }
+        }
+
+        if (flushNow) {
+            dispatchFlush(endpointUrl, batch);
+        } else if (scheduleFlush) {
+            timer.schedule(() -> {
+                synchronized (batch) {
+                    batch.flushScheduled = false;
+                }
+
+                dispatchFlush(endpointUrl, batch);
+            }, lingerMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void dispatchFlush(String endpointUrl, EndpointBatch batch) {
+        dispatcher.dispatch(endpointUrl, endpointUrl, null, () -> flush(endpointUrl, batch));
+    }
+
+    /**
+     * @return false if the endpoint failed to handle any of the batches.
+     */
+    private boolean flush(String endpointUrl, EndpointBatch batch) {
+        synchronized (batch) {
+            if (batch.flushing) {
+                // the running flush also sends the notifications that arrived in the meantime
+                return true;
+            }
+
+            batch.flushing = true;
+        }
+
+        boolean handled = true;
+
+        while (true) {
+            final List<CallbackPayload> chunk = new ArrayList<>();
+
+            synchronized (batch) {
+                while (chunk.size() < maxBatchSize && !batch.pending.isEmpty()) {
+                    chunk.add(batch.pending.poll());
+                }
+
+                if (chunk.isEmpty()) {
+                    batch.flushing = false;
+                    return handled;
+                }
+            }
+
+            handled &= sendBatch(endpointUrl, chunk);
+        }
+    }
+
+    private boolean sendBatch(String endpointUrl, List<CallbackPayload> notifications) {
+        try {
+            final SendResult result = post(endpointUrl, generator -> {
+                generator.writeStartArray();
+
+                for (CallbackPayload notification : notifications) {
+                    notification.writeTo(generator);
+                }
+
+                generator.writeEndArray();
+            });
+            logErrors(endpointUrl, result.response());
+
+            return !result.endpointFailed();
+        } catch (RestClientResponseException e) {
+            log.warn("Endpoint {} rejected a batch of {} notifications (code: {}). Sending them one by one.",
+                    endpointUrl, notifications.size(), e.getStatusCode());
+            boolean handled = !CallbackHttpClient.isEndpointFailure(e);
+
+            for (CallbackPayload notification : notifications) {
+                try {
+                    final SendResult result = post(endpointUrl, notification);
+                    logErrors(endpointUrl, result.response());
+                    handled &= !result.endpointFailed();
+                } catch (Exception single) {
+                    log.error("Failed to send notification to {}. Reason: {}", endpointUrl, single.getMessage());
+                    handled &= !CallbackHttpClient.isEndpointFailure(single);
+                }
+            }
+
+            return handled;
+        } catch (Exception e) {
+            log.error("Failed to send a batch of {} notifications to {}. Reason: {}", notifications.size(), endpointUrl, e.getMessage());
+
+            return !CallbackHttpClient.isEndpointFailure(e);
+        }
+    }
+
+    /**
+     * With the callback outbox enabled, failed batches are retried by the outbox as a whole and are not split.
+     */
+    private SendResult post(String endpointUrl, CallbackPayload body) {
+        return CallbackOutbox.getInstance().send(dispatcher, endpointUrl, endpointUrl, body);
+    }
+
+    /**
+     * Notifications do not expect responses, but some endpoints still report errors for single entries of a batch.
+     */
+    private static void logErrors(String endpointUrl, String response) {
+        if (response == null || response.isBlank()) {
+            return;
+        }
+
+        try {
+            final JsonNode node = mapper.readTree(response);
+
+            for (JsonNode entry : node.isArray() ? node : List.of(node)) {
+                if (entry.has("error")) {
+                    log.error("Endpoint {} reported an error for a notification: {}", endpointUrl, entry.get("error"));
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Ignoring a non-JSON response from {}", endpointUrl);
+        }
+    }
+
+    private static class EndpointBatch {
+        private final Deque<CallbackPayload> pending = new ArrayDeque<>();
+        private boolean flushScheduled;
+        private boolean flushing;
+    }
+}
@@ -12,23 +12,34 @@
 package blockchains.iaas.uni.stuttgart.de.scip.bindings.jsonrpc;
 
 import blockchains.iaas.uni.stuttgart.de.api.exceptions.TimeoutException;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackHttpClient;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackOutbox;
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackPayload;
 import blockchains.iaas.uni.stuttgart.de.scip.bindings.AbstractBinding;
+import blockchains.iaas.uni.stuttgart.de.scip.callback.ScipCallbackManager;
+import blockchains.iaas.uni.stuttgart.de.scip.model.common.Argument;
 import blockchains.iaas.uni.stuttgart.de.scip.model.exceptions.AsynchronousBalException;
 import blockchains.iaas.uni.stuttgart.de.scip.model.responses.*;
 import blockchains.iaas.uni.stuttgart.de.tccsci.model.responses.TccsciResponse;
-import com.github.arteam.simplejsonrpc.client.JsonRpcClient;
-import com.github.arteam.simplejsonrpc.client.Transport;
-import com.github.arteam.simplejsonrpc.client.builder.NotificationRequestBuilder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
-import org.jetbrains.annotations.NotNull;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestClient;
 
 import java.io.IOException;
+import java.util.List;
 
 @Log4j2
 public class JsonRpcBinding implements AbstractBinding {
+    @Getter
+    private final JsonRpcBatcher batcher;
+
+    public JsonRpcBinding() {
+        this(new JsonRpcBatcher(ScipCallbackManager.getInstance().getDispatcher()));
+    }
+
+    public JsonRpcBinding(JsonRpcBatcher batcher) {
+        this.batcher = batcher;
+    }
 
     @Override
     public String getBindingIdentifier() {
@@ -36,142 +47,164 @@ public class JsonRpcBinding implements AbstractBinding {
     }
 
     @Override
-    public void sendAsyncResponse(String endpointUrl, AsyncScipResponse response) {
+    public boolean sendAsyncResponse(String endpointUrl, AsyncScipResponse response) {
         if (response instanceof InvokeResponse invokeResponse) {
-            this.sendInvocationResponse(endpointUrl, invokeResponse);
+            return this.sendInvocationResponse(endpointUrl, invokeResponse);
         } else if (response instanceof SubscribeResponse subscribeResponse) {
-            this.sendSubscriptionResponse(endpointUrl, subscribeResponse);
+            return this.sendSubscriptionResponse(endpointUrl, subscribeResponse);
         } else if (response instanceof SendTxResponse sendTxResponse) {
-            this.sendSendTxResponse(endpointUrl, sendTxResponse);
+            return this.sendSendTxResponse(endpointUrl, sendTxResponse);
         } else if (response instanceof ReceiveTxResponse receiveTxResponse) {
-            this.sendReceiveTxResponse(endpointUrl, receiveTxResponse);
+            return this.sendReceiveTxResponse(endpointUrl, receiveTxResponse);
         } else if (response instanceof EnsureStateResponse ensureStateResponse) {
-            this.sendEnsureStateResponse(endpointUrl, ensureStateResponse);
+            return this.sendEnsureStateResponse(endpointUrl, ensureStateResponse);
         } else if (response instanceof TccsciResponse tccsciResponse) {
-            this.sendTccsciResponse(endpointUrl, tccsciResponse);
+            return this.sendTccsciResponse(endpointUrl, tccsciResponse);
         }
+
+        return true;
     }
 
-    protected void sendTccsciResponse(String endpointUrl, TccsciResponse response) {
+    protected boolean sendTccsciResponse(String endpointUrl, TccsciResponse response) {
         try {
-            NotificationRequestBuilder builder = createNotificationBuilder(endpointUrl, false);
-
-            builder.param("correlationIdentifier", response.getCorrelationId())
-                    .param("message", response.getMessage())
-                    .param("verdict", response.getVerdict().toString())
-                    .execute();
+            return sendNotification(endpointUrl, response.getCorrelationId(), false, params -> {
+                params.writeStringField("correlationIdentifier", response.getCorrelationId());
+                params.writeStringField("message", response.getMessage());
+                params.writeStringField("verdict", response.getVerdict().toString());
+            });
         } catch (Exception e) {
             log.error("Failed to send TccsciResponse to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    protected void sendEnsureStateResponse(String endpointUrl, EnsureStateResponse response) {
+    protected boolean sendEnsureStateResponse(String endpointUrl, EnsureStateResponse response) {
         try {
-            NotificationRequestBuilder builder = createNotificationBuilder(endpointUrl, false);
-
-            builder.param("correlationIdentifier", response.getCorrelationId())
-                    .execute();
+            return sendNotification(endpointUrl, response.getCorrelationId(), false, params ->
+                    params.writeStringField("correlationIdentifier", response.getCorrelationId()));
         } catch (Exception e) {
             log.error("Failed to send EnsureStateResponse to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    protected void sendSendTxResponse(String endpointUrl, SendTxResponse response) {
+    protected boolean sendSendTxResponse(String endpointUrl, SendTxResponse response) {
         try {
-            NotificationRequestBuilder builder = createNotificationBuilder(endpointUrl, false);
-
-            builder.param("correlationIdentifier", response.getCorrelationId())
-                    .param("timestamp", response.getTimestamp() == null ? "" : response.getTimestamp())
-                    .execute();
+            return sendNotification(endpointUrl, response.getCorrelationId(), false, params -> {
+                params.writeStringField("correlationIdentifier", response.getCorrelationId());
+                params.writeStringField("timestamp", response.getTimestamp() == null ? "" : response.getTimestamp());
+            });
         } catch (Exception e) {
             log.error("Failed to send Invocation response to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    protected void sendReceiveTxResponse(String endpointUrl, ReceiveTxResponse response) {
+    protected boolean sendReceiveTxResponse(String endpointUrl, ReceiveTxResponse response) {
         try {
-            NotificationRequestBuilder builder = createNotificationBuilder(endpointUrl, false);
-
-            builder.param("correlationIdentifier", response.getCorrelationId())
-                    .param("from", response.getFrom())
-                    .param("value", String.valueOf(response.getValue()))
-                    .param("timestamp", response.getTimestamp() == null ? "" : response.getTimestamp())
-                    .execute();
+            return sendNotification(endpointUrl, response.getCorrelationId(), false, params -> {
+                params.writeStringField("correlationIdentifier", response.getCorrelationId());
+                params.writeStringField("from", response.getFrom());
+                params.writeStringField("value", String.valueOf(response.getValue()));
+                params.writeStringField("timestamp", response.getTimestamp() == null ? "" : response.getTimestamp());
+            });
         } catch (Exception e) {
             log.error("Failed to send ReceiveTxResponse to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    protected void sendInvocationResponse(String endpointUrl, InvokeResponse response) {
+    protected boolean sendInvocationResponse(String endpointUrl, InvokeResponse response) {
         try {
-            NotificationRequestBuilder builder = createNotificationBuilder(endpointUrl, false);
-
-            builder.param("correlationIdentifier", response.getCorrelationId())
-                    .param("parameters", response.getOutputArguments())
-                    .param("timestamp", response.getTimeStamp() == null ? "" : response.getTimeStamp())
-                    .execute();
+            return sendNotification(endpointUrl, response.getCorrelationId(), false, params -> {
+                params.writeStringField("correlationIdentifier", response.getCorrelationId());
+                writeArguments(params, "parameters", response.getOutputArguments());
+                params.writeStringField("timestamp", response.getTimeStamp() == null ? "" : response.getTimeStamp());
+            });
         } catch (Exception e) {
             log.error("Failed to send InvokeResponse to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    protected void sendSubscriptionResponse(String endpointUrl, SubscribeResponse response) {
+    protected boolean sendSubscriptionResponse(String endpointUrl, SubscribeResponse response) {
         try {
-            NotificationRequestBuilder builder = createNotificationBuilder(endpointUrl, false);
-            builder.param("correlationIdentifier", response.getCorrelationId())
-                    .param("parameters", response.getArguments())
-                    .param("timestamp", response.getTimestamp())
-                    .execute();
+            return sendNotification(endpointUrl, response.getCorrelationId(), false, params -> {
+                params.writeStringField("correlationIdentifier", response.getCorrelationId());
+                writeArguments(params, "parameters", response.getArguments());
+                params.writeStringField("timestamp", response.getTimestamp());
+            });
         } catch (Exception e) {
             log.error("Failed to send SubscribeResponse to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
     @Override
-    public void sendAsyncErrorResponse(String endpointUrl, AsynchronousBalException exception) {
+    public boolean sendAsyncErrorResponse(String endpointUrl, AsynchronousBalException exception) {
         try {
-            NotificationRequestBuilder builder = createNotificationBuilder(endpointUrl, true);
-
-            builder = builder.param("errorCode", exception.getCode());
-            builder = builder.param("errorMessage", exception.getMessage());
-            builder = builder.param("correlationIdentifier", exception.getCorrelationIdentifier());
-
-            if (exception.getCause() instanceof TimeoutException) {
-                builder = builder.param("transactionHash",
-                        ((TimeoutException) exception.getCause()).getTransactionHash());
-                builder = builder.param("reachedDoC",
-                        ((TimeoutException) exception.getCause()).getDoc());
-            }
-
-            builder.execute();
+            return sendNotification(endpointUrl, exception.getCorrelationIdentifier(), true, params -> {
+                params.writeNumberField("errorCode", exception.getCode());
+                params.writeStringField("errorMessage", exception.getMessage());
+                params.writeStringField("correlationIdentifier", exception.getCorrelationIdentifier());
+
+                if (exception.getCause() instanceof TimeoutException timeout) {
+                    params.writeStringField("transactionHash", timeout.getTransactionHash());
+                    params.writeNumberField("reachedDoC", timeout.getDoc());
+                }
+            });
         } catch (Exception e) {
             log.error("Failed to send asynchronous error to {}. Reason: {}", endpointUrl, e.getMessage());
+            return !CallbackHttpClient.isEndpointFailure(e);
         }
     }
 
-    private NotificationRequestBuilder createNotificationBuilder(final String endpointUrl, boolean isError) {
+    /**
+     * Sends a JSON-RPC 2.0 notification. The notification is written straight into the request body (or into the
+     * batch of the endpoint) while it is sent.
+     *
+     * @param correlationId orders the notification with the other callbacks of its request if it has to be retried.
+     * @param params        writes the fields of the params object of the notification.
+     * @return false if the endpoint failed to handle the notification. Batched notifications report the outcome
+     * of their batch instead.
+     */
+    private boolean sendNotification(final String endpointUrl, String correlationId, boolean isError, CallbackPayload params) {
         final String METHOD_NAME = isError? "ReceiveError" : "ReceiveResponse";
-        JsonRpcClient client = new JsonRpcClient(new Transport() {
-            @NotNull
-            @Override
-            public String pass(@NotNull String request) throws IOException {
-                ResponseEntity<String> response = RestClient.create()
-                        .post()
-                        .uri(endpointUrl)
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(request)
-                        .retrieve()
-                        .toEntity(String.class);
-
-                log.info("Callback client responded with {} (code: {})",
-                        () -> response.getBody(), () -> response.getStatusCode());
-
-                return response.getBody() != null ? response.getBody() : "";
-            }
-
-        });
-
-        return client.createNotification()
-                .method(METHOD_NAME);
+        final CallbackPayload notification = generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("jsonrpc", "2.0");
+            generator.writeStringField("method", METHOD_NAME);
+            generator.writeObjectFieldStart("params");
+            params.writeTo(generator);
+            generator.writeEndObject();
+            generator.writeEndObject();
+        };
+
+        if (batcher.isEnabled()) {
+            // notifications do not have responses, so the batch can be sent later
+            batcher.enqueue(endpointUrl, notification);
+
+            return true;
+        }
+
+        return !CallbackOutbox.getInstance().send(batcher.getDispatcher(), endpointUrl, correlationId, notification).endpointFailed();
+    }
+
+    private static void writeArguments(JsonGenerator generator, String fieldName, List<Argument> arguments) throws IOException {
+        if (arguments == null) {
+            generator.writeNullField(fieldName);
+            return;
+        }
+
+        generator.writeArrayFieldStart(fieldName);
+
+        for (Argument argument : arguments) {
+            generator.writeStartObject();
+            generator.writeStringField("name", argument.getName());
+            generator.writeStringField("value", argument.getValue());
+            generator.writeEndObject();
+        }
+
+        generator.writeEndArray();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,35 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.bindings.jsonrpc;
+
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import blockchains.iaas.uni.stuttgart.de.scip.bindings.AbstractBinding;
+import blockchains.iaas.uni.stuttgart.de.scip.bindings.BindingsManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the JSON-RPC batching settings of the application properties to the JSON-RPC binding.
+ */
+@Component
+public class JsonRpcBindingConfiguration {
+
+    public JsonRpcBindingConfiguration(@Value("${" + Constants.JSON_RPC_BATCHING_ENABLED_PROPERTY + ":false}") boolean batchingEnabled,
+                                       @Value("${" + Constants.JSON_RPC_BATCHING_MAX_SIZE_PROPERTY + ":" + JsonRpcBatcher.DEFAULT_MAX_BATCH_SIZE + "}") int maxBatchSize,
+                                       @Value("${" + Constants.JSON_RPC_BATCHING_LINGER_MILLIS_PROPERTY + ":" + JsonRpcBatcher.DEFAULT_LINGER_MILLIS + "}") long lingerMillis) {
+        final AbstractBinding binding = BindingsManager.getInstance().getBinding("json-rpc");
+
+        if (binding instanceof JsonRpcBinding jsonRpc) {
+            jsonRpc.getBatcher().configure(batchingEnabled, maxBatchSize, lingerMillis);
+        }
+    }
+}
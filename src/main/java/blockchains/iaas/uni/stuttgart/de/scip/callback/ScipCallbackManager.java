@@ -11,30 +11,25 @@
 
 package blockchains.iaas.uni.stuttgart.de.scip.callback;
 
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackDispatcher;
 import blockchains.iaas.uni.stuttgart.de.scip.bindings.AbstractBinding;
 import blockchains.iaas.uni.stuttgart.de.scip.bindings.BindingsManager;
 import blockchains.iaas.uni.stuttgart.de.scip.model.exceptions.AsynchronousBalException;
 import blockchains.iaas.uni.stuttgart.de.scip.model.responses.AsyncScipResponse;
+import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 @Log4j2
 public class ScipCallbackManager {
-    private static ScipCallbackManager instance = null;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
-
+    @Getter
+    private final CallbackDispatcher dispatcher = new CallbackDispatcher("scip");
 
     private ScipCallbackManager() {
 
     }
 
     public static ScipCallbackManager getInstance() {
-        if (instance == null)
-            instance = new ScipCallbackManager();
-
-        return instance;
+        return InstanceHolder.INSTANCE;
     }
 
     public void sendAsyncResponse(String endpointUrl, String bindingName, AsyncScipResponse response) {
@@ -45,12 +40,17 @@ public class ScipCallbackManager {
                 () -> response.getCorrelationId(),
                 () -> response);
         AbstractBinding binding = BindingsManager.getInstance().getBinding(bindingName);
-        this.executorService.execute(() -> binding.sendAsyncResponse(endpointUrl, response));
+        // responses of the same request (e.g., the occurrences of a subscription) reach the endpoint in order
+        this.dispatcher.dispatch(endpointUrl, response.getCorrelationId(), response, () -> binding.sendAsyncResponse(endpointUrl, response));
     }
 
     public void sendAsyncErrorResponse(String endpointUrl, String bindingName, AsynchronousBalException exception) {
         log.info("Sending asynchronous SCIP error to {} using the binding '{}'.\nException body: {}", endpointUrl, bindingName, exception);
         AbstractBinding binding = BindingsManager.getInstance().getBinding(bindingName);
-        this.executorService.execute(() -> binding.sendAsyncErrorResponse(endpointUrl, exception));
+        this.dispatcher.dispatch(endpointUrl, exception.getCorrelationIdentifier(), exception, () -> binding.sendAsyncErrorResponse(endpointUrl, exception));
+    }
+
+    private static class InstanceHolder {
+        private static final ScipCallbackManager INSTANCE = new ScipCallbackManager();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System - University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *******************************************************************************/
+
+package blockchains.iaas.uni.stuttgart.de.scip.model.responses;
+
+import java.util.List;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.Occurrence;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A page of the occurrences matched by a paginated SCIP Query.
+ */
+@Getter
+@AllArgsConstructor
+public class QueryPage {
+    @NonNull private List<Occurrence> occurrences;
+    /**
+     * The cursor to pass to the next Query in order to get the next page, or null if this is the last page.
+     */
+    private String nextCursor;
+
+    @Override
+    public String toString() {
+        return "QueryPage{" +
+                "occurrences=" + occurrences.size() +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
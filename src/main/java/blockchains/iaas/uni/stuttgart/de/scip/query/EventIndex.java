@@ -0,0 +1,362 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.Occurrence;
+import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * An append-only, on-disk index of the occurrences of a single smart contract event. Occurrences are appended in
+ * timestamp order to segment files with one JSON record per line. Every {@link #SPARSE_INTERVAL}-th occurrence is
+ * recorded in an in-memory sparse index, so that reading a time range starts close to its first occurrence instead of
+ * at the beginning of the index.
+ * <p>
+ * The timestamp of the last indexed occurrence is the checkpoint of the index: occurrences older than the checkpoint
+ * are already covered. Occurrences carry no identity besides their timestamp and content, and distinct occurrences
+ * (e.g., emitted by the same block) may be equal. Hence, the index counts the occurrences of each content at the
+ * checkpoint, so that re-querying the event from the checkpoint on appends only the occurrences that are missing.
+ */
+@Log4j2
+public class EventIndex implements Closeable {
+    static final int SPARSE_INTERVAL = 256;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".ndjson";
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private final Path directory;
+    private final long segmentSize;
+    private final List<SparseEntry> sparseIndex = new ArrayList<>();
+    private final List<Path> segments = new ArrayList<>();
+    private final Map<String, Integer> occurrencesAtCheckpoint = new HashMap<>();
+    private FileChannel currentChannel;
+    private long currentOffset;
+    private long size;
+    private Instant checkpoint;
+
+    /**
+     * Opens the index stored in the directory (creating it if needed), and rebuilds the sparse index and the checkpoint
+     * from the existing segments.
+     */
+    public EventIndex(Path directory, long segmentSize) throws IOException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Invalid event index segment size!");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+
+        for (int i = 0; i < segments.size(); i++) {
+            scan(i);
+        }
+    }
+
+    /**
+     * @return the timestamp of the last indexed occurrence, or null if the index is empty.
+     */
+    public synchronized Instant getCheckpoint() {
+        return checkpoint;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Appends new occurrences in timestamp order, and writes them to disk. Occurrences older than the checkpoint arrived
+     * out of order and are rejected.
+     *
+     * @return the number of appended occurrences.
+     */
+    public synchronized int append(List<Occurrence> occurrences) throws IOException {
+        return append(occurrences, false);
+    }
+
+    /**
+     * Appends the result of a query of the event from the checkpoint on, and writes it to disk. Such a result contains
+     * the occurrences at the checkpoint again: of each content, as many occurrences at the checkpoint as are already
+     * indexed are skipped. Occurrences older than the checkpoint are covered already and skipped as well.
+     *
+     * @return the number of appended occurrences.
+     */
+    public synchronized int appendFromCheckpoint(List<Occurrence> occurrences) throws IOException {
+        return append(occurrences, true);
+    }
+
+    private int append(List<Occurrence> occurrences, boolean fromCheckpoint) throws IOException {
+        final Instant start = checkpoint;
+        final Map<String, Integer> indexed = fromCheckpoint ? new HashMap<>(occurrencesAtCheckpoint) : Map.of();
+        int appended = 0;
+        int rejected = 0;
+
+        for (Occurrence occurrence : occurrences) {
+            final Instant timestamp = QueryResultCache.parseInstant(occurrence.getIsoTimestamp());
+
+            if (timestamp == null) {
+                log.warn("Cannot index an occurrence without a valid timestamp: {}", occurrence.getIsoTimestamp());
+                continue;
+            }
+
+            final String record = toRecord(occurrence);
+
+            if (fromCheckpoint && start != null && timestamp.isBefore(start)) {
+                continue;
+            }
+
+            if (fromCheckpoint && timestamp.equals(start) && indexed.getOrDefault(record, 0) > 0) {
+                indexed.merge(record, -1, Integer::sum);
+                continue;
+            }
+
+            if (checkpoint != null && timestamp.isBefore(checkpoint)) {
+                rejected++;
+                continue;
+            }
+
+            write(timestamp, record);
+            appended++;
+        }
+
+        if (rejected > 0) {
+            log.warn("Rejected {} occurrences of the event index at {} that are older than its checkpoint {}",
+                    rejected, directory, checkpoint);
+        }
+
+        if (appended > 0) {
+            currentChannel.force(false);
+        }
+
+        return appended;
+    }
+
+    /**
+     * Reads the occurrences with a timestamp within the given bounds (both inclusive).
+     *
+     * @param from the lower bound, or null for no lower bound.
+     * @param to   the upper bound, or null for no upper bound.
+     */
+    public synchronized List<Occurrence> read(Instant from, Instant to) throws IOException {
+        final List<Occurrence> result = new ArrayList<>();
+        SparseEntry start = null;
+
+        if (from != null) {
+            // the last sparse entry strictly before the lower bound, so that no occurrence at the bound is missed
+            int low = 0;
+            int high = sparseIndex.size() - 1;
+
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+
+                if (sparseIndex.get(middle).timestamp().isBefore(from)) {
+                    start = sparseIndex.get(middle);
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+        }
+
+        for (int segment = start == null ? 0 : start.segment(); segment < segments.size(); segment++) {
+            final long offset = start != null && segment == start.segment() ? start.offset() : 0;
+
+            try (FileChannel channel = FileChannel.open(segments.get(segment), StandardOpenOption.READ)) {
+                channel.position(offset);
+                final InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+                String line;
+
+                while ((line = readLine(in)) != null) {
+                    final JsonNode record = mapper.readTree(line);
+                    final Instant timestamp = Instant.parse(record.get("t").asText());
+
+                    if (to != null && timestamp.isAfter(to)) {
+                        return result;
+                    }
+
+                    if (from == null || !timestamp.isBefore(from)) {
+                        result.add(toOccurrence(record));
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (currentChannel != null) {
+            currentChannel.close();
+            currentChannel = null;
+        }
+    }
+
+    private void write(Instant timestamp, String record) throws IOException {
+        if (currentChannel == null || currentOffset >= segmentSize) {
+            startSegment();
+        }
+
+        if (size % SPARSE_INTERVAL == 0) {
+            sparseIndex.add(new SparseEntry(timestamp, segments.size() - 1, currentOffset));
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+
+        while (buffer.hasRemaining()) {
+            currentOffset += currentChannel.write(buffer);
+        }
+
+        advanceCheckpoint(timestamp, record);
+        size++;
+    }
+
+    private void startSegment() throws IOException {
+        close();
+        final Path segment = directory.resolve(SEGMENT_PREFIX + String.format("%012d", segments.size()) + SEGMENT_SUFFIX);
+        segments.add(segment);
+        currentChannel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        currentOffset = currentChannel.size();
+    }
+
+    private void scan(int segment) throws IOException {
+        long offset = 0;
+        long validLength = 0;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(segments.get(segment)))) {
+            final ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+
+            while ((b = in.read()) != -1) {
+                offset++;
+
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+
+                final String record = line.toString(StandardCharsets.UTF_8);
+                line.reset();
+                final Instant timestamp = Instant.parse(mapper.readTree(record).get("t").asText());
+
+                if (size % SPARSE_INTERVAL == 0) {
+                    sparseIndex.add(new SparseEntry(timestamp, segment, validLength));
+                }
+
+                advanceCheckpoint(timestamp, record);
+                size++;
+                validLength = offset;
+            }
+        }
+
+        if (validLength < offset) {
+            log.warn("Discarding an incomplete record at the end of the event index segment {}", segments.get(segment));
+
+            try (FileChannel channel = FileChannel.open(segments.get(segment), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+
+        if (segment == segments.size() - 1) {
+            currentChannel = FileChannel.open(segments.get(segment), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            currentOffset = validLength;
+        }
+    }
+
+    private void advanceCheckpoint(Instant timestamp, String record) {
+        if (checkpoint == null || timestamp.isAfter(checkpoint)) {
+            checkpoint = timestamp;
+            occurrencesAtCheckpoint.clear();
+        }
+
+        occurrencesAtCheckpoint.merge(record, 1, Integer::sum);
+    }
+
+    /**
+     * @return the record of the occurrence. Records of occurrences with the same timestamp and content are equal.
+     */
+    static String toRecord(Occurrence occurrence) {
+        final ObjectNode record = mapper.createObjectNode();
+        final Instant timestamp = QueryResultCache.parseInstant(occurrence.getIsoTimestamp());
+        // normalized, so that records of the same occurrence are equal
+        record.put("t", timestamp == null ? null : timestamp.toString());
+        record.put("iso", occurrence.getIsoTimestamp());
+        final ArrayNode parameters = record.putArray("p");
+
+        if (occurrence.getParameters() != null) {
+            for (Parameter parameter : occurrence.getParameters()) {
+                parameters.addObject()
+                        .put("name", parameter.getName())
+                        .put("type", parameter.getType())
+                        .put("value", parameter.getValue());
+            }
+        }
+
+        return record.toString();
+    }
+
+    private static Occurrence toOccurrence(JsonNode record) {
+        final List<Parameter> parameters = new ArrayList<>();
+
+        for (JsonNode parameter : record.get("p")) {
+            parameters.add(new Parameter(parameter.path("name").asText(null), parameter.path("type").asText(null), parameter.path("value").asText(null)));
+        }
+
+        return new Occurrence(parameters, record.get("iso").asText());
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                return line.toString(StandardCharsets.UTF_8);
+            }
+
+            line.write(b);
+        }
+
+        // an incomplete record is being written
+        return null;
+    }
+
+    private record SparseEntry(Instant timestamp, int segment, long offset) {
+    }
+}
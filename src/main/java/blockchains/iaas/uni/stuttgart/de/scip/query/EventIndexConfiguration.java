@@ -0,0 +1,47 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import java.nio.file.Paths;
+
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import blockchains.iaas.uni.stuttgart.de.connectionprofiles.ConnectionProfilesManager;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the event index settings of the application properties, and discards the indexes whenever the connection
+ * profiles change.
+ */
+@Component
+public class EventIndexConfiguration {
+    private static final String DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".bal", "event-index").toString();
+
+    public EventIndexConfiguration(@Value("${" + Constants.EVENT_INDEX_ENABLED_PROPERTY + ":false}") boolean enabled,
+                                   @Value("${" + Constants.EVENT_INDEX_DIRECTORY_PROPERTY + ":}") String directory,
+                                   @Value("${" + Constants.EVENT_INDEX_SEGMENT_SIZE_BYTES_PROPERTY + ":" + EventIndexManager.DEFAULT_SEGMENT_SIZE_BYTES + "}") long segmentSize,
+                                   @Value("${" + Constants.EVENT_INDEX_MAX_INDEXES_PROPERTY + ":" + EventIndexManager.DEFAULT_MAX_INDEXES + "}") int maxIndexes,
+                                   @Value("${" + Constants.EVENT_INDEX_DEGREE_OF_CONFIDENCE_PROPERTY + ":" + EventIndexManager.DEFAULT_DEGREE_OF_CONFIDENCE + "}") double degreeOfConfidence) {
+        final EventIndexManager manager = EventIndexManager.getInstance();
+        manager.configure(enabled, directory == null || directory.isBlank() ? DEFAULT_DIRECTORY : directory, segmentSize, maxIndexes, degreeOfConfidence);
+
+        if (enabled) {
+            ConnectionProfilesManager.getInstance().addListener(() -> manager.closeAll(true));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        EventIndexManager.getInstance().closeAll(false);
+    }
+}
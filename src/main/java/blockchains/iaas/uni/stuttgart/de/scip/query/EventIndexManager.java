@@ -0,0 +1,374 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.Occurrence;
+import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
+import blockchains.iaas.uni.stuttgart.de.api.model.QueryResult;
+import blockchains.iaas.uni.stuttgart.de.api.model.TimeFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Keeps a local {@link EventIndex} per (blockchain, smart contract, event), so that queries over the whole history of
+ * an event are answered from disk instead of by the blockchain node.
+ * <p>
+ * An index is created by the first query of its event. It subscribes to the event first, then queries the node for
+ * the occurrences up to the time of the subscription that are not indexed yet (all of them, or only those since the
+ * checkpoint if the index already has data on disk), and finally appends the occurrences detected by the subscription
+ * in the meantime. From then on, the subscription keeps the index up to date. The subscription delivers occurrences
+ * only once they are confirmed, which may be after the index went live, so occurrences the query returned already
+ * are skipped until the subscription moves past the queried time frame. Queries received while an index is being
+ * built wait for it, and queries fall back to the node whenever an index fails.
+ * <p>
+ * Only queries without a filter (or with the trivial filter "1==1") are served from the indexes. Occurrences are
+ * indexed once they reach the configured degree of confidence, so the indexes lag behind the head of the blockchain.
+ * The only exception are the occurrences that the bootstrap query returns from the last blocks before the subscription:
+ * the subscription does not deliver them, so they are indexed as the node reports them.
+ * Queries that must see the latest occurrences (e.g., those of the T-SCIP protocol) are therefore sent to the node.
+ */
+@Log4j2
+public class EventIndexManager {
+    public static final long DEFAULT_SEGMENT_SIZE_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_MAX_INDEXES = 32;
+    public static final double DEFAULT_DEGREE_OF_CONFIDENCE = 99;
+    private static final String TRIVIAL_FILTER = "1==1";
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private final Map<IndexKey, Entry> indexes = new ConcurrentHashMap<>();
+    @Getter
+    private volatile boolean enabled;
+    @Getter
+    private volatile Path directory;
+    private volatile long segmentSize = DEFAULT_SEGMENT_SIZE_BYTES;
+    private volatile int maxIndexes = DEFAULT_MAX_INDEXES;
+    private volatile double degreeOfConfidence = DEFAULT_DEGREE_OF_CONFIDENCE;
+
+    public static EventIndexManager getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private EventIndexManager() {
+
+    }
+
+    /**
+     * @param enabled            whether queries are served from local event indexes.
+     * @param directory          the directory in which the indexes are stored.
+     * @param segmentSize        the size (in bytes) after which an index starts a new segment file.
+     * @param maxIndexes         the maximum number of events indexed at the same time. Queries of further events are
+     *                           sent to the node.
+     * @param degreeOfConfidence the degree of confidence (in percent) required for an occurrence to be indexed. Low
+     *                           values risk indexing occurrences of blocks that are later reorganized away.
+     */
+    public synchronized void configure(boolean enabled, String directory, long segmentSize, int maxIndexes, double degreeOfConfidence) {
+        if (segmentSize <= 0 || maxIndexes <= 0 || degreeOfConfidence < 0 || degreeOfConfidence > 100) {
+            throw new IllegalArgumentException("Invalid event index settings!");
+        }
+
+        log.info("Configuring event indexes: enabled={}, directory={}, segmentSize={}, maxIndexes={}, degreeOfConfidence={}",
+                enabled, directory, segmentSize, maxIndexes, degreeOfConfidence);
+        closeAll(false);
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSize;
+        this.maxIndexes = maxIndexes;
+        this.degreeOfConfidence = degreeOfConfidence;
+    }
+
+    /**
+     * Answers a query from the index of its event, creating the index if needed.
+     *
+     * @param source accesses the blockchain node to build and update the index, and to answer the query if the index fails.
+     * @return a future that completes with the query result, or null if the query cannot be answered from an index.
+     */
+    public CompletableFuture<QueryResult> queryEvents(String blockchainId, String smartContractPath, String eventIdentifier,
+                                                      List<Parameter> outputParameters, String filter, TimeFrame timeFrame,
+                                                      EventSource source) {
+        if (!enabled || !(filter == null || filter.isBlank() || TRIVIAL_FILTER.equals(filter.replace(" ", "")))) {
+            return null;
+        }
+
+        final Instant from = timeFrame == null ? null : parseBound(timeFrame.getFrom());
+        final Instant to = timeFrame == null ? null : parseBound(timeFrame.getTo());
+
+        if (timeFrame != null && (from == null && timeFrame.getFrom() != null || to == null && timeFrame.getTo() != null)) {
+            return null;
+        }
+
+        final IndexKey key = new IndexKey(blockchainId, smartContractPath, eventIdentifier, outputsOf(outputParameters));
+        final Entry entry = getOrOpen(key, source);
+
+        if (entry == null) {
+            return null;
+        }
+
+        return entry.ready
+                .thenApply(ignored -> {
+                    try {
+                        return QueryResult.builder().occurrences(entry.index.read(from, to)).build();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .exceptionallyCompose(e -> {
+                    log.warn("Cannot answer the query from the event index of {}. Querying the node instead.", key, e);
+                    drop(entry);
+
+                    return source.queryEvents(timeFrame);
+                });
+    }
+
+    public int size() {
+        return indexes.size();
+    }
+
+    /**
+     * Closes all indexes and cancels their subscriptions.
+     *
+     * @param deleteData whether to delete the indexed occurrences from disk, e.g., because the connection profiles
+     *                   changed and they might no longer describe the configured blockchains.
+     */
+    public synchronized void closeAll(boolean deleteData) {
+        for (Entry entry : new ArrayList<>(indexes.values())) {
+            drop(entry);
+        }
+
+        if (deleteData && directory != null && Files.isDirectory(directory)) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            } catch (IOException e) {
+                log.error("Failed to delete the event indexes at {}", directory, e);
+            }
+        }
+    }
+
+    private synchronized Entry getOrOpen(IndexKey key, EventSource source) {
+        Entry entry = indexes.get(key);
+
+        if (entry != null) {
+            return entry;
+        }
+
+        if (indexes.size() >= maxIndexes) {
+            log.debug("Cannot index {}: the maximum number of event indexes is reached.", key);
+            return null;
+        }
+
+        try {
+            entry = new Entry(key, new EventIndex(directory.resolve(key.directoryName()), segmentSize));
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to open the event index of {}", key, e);
+            return null;
+        }
+
+        indexes.put(key, entry);
+        log.info("Building the event index of {} (checkpoint: {})", key, entry.index.getCheckpoint());
+        bootstrap(entry, source);
+
+        return entry;
+    }
+
+    private void bootstrap(Entry entry, EventSource source) {
+        try {
+            // subscribe first, so that no occurrence is missed between the query and the subscription
+            entry.subscription = source.subscribe(degreeOfConfidence).subscribe(entry::onOccurrence, e -> {
+                log.error("The subscription feeding the event index of {} failed.", entry.key, e);
+                drop(entry);
+            });
+            // later occurrences are delivered by the subscription once they are confirmed
+            final Instant subscribedAt = Instant.now();
+            final Instant checkpoint = entry.index.getCheckpoint();
+            final TimeFrame tail = mapper.convertValue(Map.of(
+                    "from", (checkpoint == null ? Instant.EPOCH : checkpoint).toString(),
+                    "to", subscribedAt.toString()), TimeFrame.class);
+            source.queryEvents(tail).whenComplete((result, e) -> {
+                if (e == null) {
+                    try {
+                        entry.goLive(result == null || result.getOccurrences() == null ? List.of() : result.getOccurrences(), subscribedAt);
+                        entry.ready.complete(null);
+                        return;
+                    } catch (IOException ioException) {
+                        e = ioException;
+                    }
+                }
+
+                entry.ready.completeExceptionally(e);
+            });
+        } catch (RuntimeException e) {
+            entry.ready.completeExceptionally(e);
+        }
+    }
+
+    private void drop(Entry entry) {
+        if (!indexes.remove(entry.key, entry)) {
+            return;
+        }
+
+        if (entry.subscription != null) {
+            entry.subscription.dispose();
+        }
+
+        try {
+            entry.index.close();
+        } catch (IOException e) {
+            log.error("Failed to close the event index of {}", entry.key, e);
+        }
+    }
+
+    private static Instant parseBound(String bound) {
+        return bound == null ? null : QueryResultCache.parseInstant(bound);
+    }
+
+    private static String outputsOf(List<Parameter> outputParameters) {
+        return outputParameters == null ? "" : outputParameters.stream()
+                .map(parameter -> parameter.getName() + ":" + parameter.getType())
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Accesses the blockchain node on behalf of an event index.
+     */
+    public interface EventSource {
+        /**
+         * Queries the occurrences of the indexed event within a time frame (null for the whole history).
+         */
+        CompletableFuture<QueryResult> queryEvents(TimeFrame timeFrame);
+
+        /**
+         * Subscribes to the future occurrences of the indexed event.
+         */
+        Observable<Occurrence> subscribe(double degreeOfConfidence);
+    }
+
+    record IndexKey(String blockchainId, String smartContractPath, String eventIdentifier, String outputs) {
+        String directoryName() {
+            return Hashing.sha256()
+                    .hashString(String.join("\n", blockchainId, smartContractPath, eventIdentifier, outputs), StandardCharsets.UTF_8)
+                    .toString();
+        }
+    }
+
+    private static class Entry {
+        private final IndexKey key;
+        private final EventIndex index;
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private final List<Occurrence> buffer = new ArrayList<>();
+        private boolean live;
+        // the queried occurrences the subscription has not delivered (yet), by record
+        private Map<String, Integer> queried = Map.of();
+        private Instant queriedUntil;
+        private volatile Disposable subscription;
+
+        private Entry(IndexKey key, EventIndex index) {
+            this.key = key;
+            this.index = index;
+        }
+
+        private synchronized void onOccurrence(Occurrence occurrence) throws IOException {
+            if (!live) {
+                buffer.add(occurrence);
+            } else if (!wasQueried(occurrence)) {
+                index.append(List.of(occurrence));
+            }
+        }
+
+        /**
+         * Counts a confirmed occurrence against the occurrences the bootstrap query returned already.
+         */
+        private boolean wasQueried(Occurrence occurrence) {
+            if (queried.isEmpty()) {
+                return false;
+            }
+
+            final Instant timestamp = occurrence.getIsoTimestamp() == null ? null : QueryResultCache.parseInstant(occurrence.getIsoTimestamp());
+
+            if (timestamp != null && timestamp.isAfter(queriedUntil)) {
+                // the subscription moved past the queried time frame, so no later occurrence was queried
+                queried = Map.of();
+                return false;
+            }
+
+            final String record = EventIndex.toRecord(occurrence);
+            final int remaining = queried.getOrDefault(record, 0);
+
+            if (remaining == 0) {
+                return false;
+            }
+
+            if (remaining == 1) {
+                queried.remove(record);
+            } else {
+                queried.put(record, remaining - 1);
+            }
+
+            return true;
+        }
+
+        private synchronized void goLive(List<Occurrence> occurrences, Instant queriedUntil) throws IOException {
+            // the query and the subscription overlap, and each of them returns every occurrence of the overlap once.
+            // Hence, of each occurrence, the larger of the two counts is kept.
+            final List<Occurrence> pending = new ArrayList<>(occurrences);
+            final Map<String, Integer> queried = new HashMap<>();
+
+            for (Occurrence occurrence : occurrences) {
+                queried.merge(EventIndex.toRecord(occurrence), 1, Integer::sum);
+            }
+
+            for (Occurrence occurrence : buffer) {
+                final String record = EventIndex.toRecord(occurrence);
+                final int remaining = queried.getOrDefault(record, 0);
+
+                if (remaining > 0) {
+                    queried.put(record, remaining - 1);
+                } else {
+                    pending.add(occurrence);
+                }
+            }
+
+            // the index only accepts occurrences in timestamp order (occurrences without a timestamp are skipped anyway)
+            pending.sort(Comparator.comparing((Occurrence occurrence) -> QueryResultCache.parseInstant(occurrence.getIsoTimestamp()),
+                    Comparator.nullsFirst(Comparator.naturalOrder())));
+            index.appendFromCheckpoint(pending);
+            buffer.clear();
+            queried.values().removeIf(remaining -> remaining == 0);
+            this.queried = queried;
+            this.queriedUntil = queriedUntil;
+            live = true;
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final EventIndexManager INSTANCE = new EventIndexManager();
+    }
+}
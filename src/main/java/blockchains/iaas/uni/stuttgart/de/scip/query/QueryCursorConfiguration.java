@@ -0,0 +1,36 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the query cursor settings of the application properties, and periodically closes expired cursors.
+ */
+@Component
+public class QueryCursorConfiguration {
+
+    public QueryCursorConfiguration(@Value("${" + Constants.QUERY_CURSORS_MAX_PROPERTY + ":" + QueryCursorManager.DEFAULT_MAX_CURSORS + "}") int maxCursors,
+                                    @Value("${" + Constants.QUERY_CURSORS_TTL_MILLIS_PROPERTY + ":" + QueryCursorManager.DEFAULT_TTL_MILLIS + "}") long ttlMillis,
+                                    @Value("${" + Constants.QUERY_MAX_PAGE_SIZE_PROPERTY + ":" + QueryCursorManager.DEFAULT_MAX_PAGE_SIZE + "}") int maxPageSize,
+                                    @Value("${" + Constants.QUERY_CURSORS_MAX_OCCURRENCES_PROPERTY + ":" + QueryCursorManager.DEFAULT_MAX_OCCURRENCES + "}") int maxOccurrences) {
+        QueryCursorManager.getInstance().configure(maxCursors, ttlMillis, maxPageSize, maxOccurrences);
+    }
+
+    @Scheduled(fixedDelayString = "${" + Constants.QUERY_CURSORS_TTL_MILLIS_PROPERTY + ":" + QueryCursorManager.DEFAULT_TTL_MILLIS + "}")
+    public void evictExpiredCursors() {
+        QueryCursorManager.getInstance().evictExpired();
+    }
+}
@@ -0,0 +1,292 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import blockchains.iaas.uni.stuttgart.de.api.exceptions.InvalidScipParameterException;
+import blockchains.iaas.uni.stuttgart.de.api.model.Occurrence;
+import blockchains.iaas.uni.stuttgart.de.scip.model.responses.QueryPage;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Keeps the results of paginated SCIP queries on the server, so that clients can fetch them page by page (or stream
+ * them) using a cursor instead of receiving them in a single response.
+ * <p>
+ * The occurrences of a cursor are released as soon as they were returned, so the memory held by a cursor shrinks as it
+ * is consumed. Cursors that were not accessed for the configured time-to-live are closed, and when the maximum number of
+ * open cursors or the maximum number of occurrences held by all cursors is reached, the least recently accessed cursors
+ * are closed. A result that alone exceeds the maximum number of occurrences is rejected. The occurrences of a drained
+ * cursor no longer count against the bound, since they are released while the response is streamed.
+ */
+@Log4j2
+public class QueryCursorManager {
+    public static final int DEFAULT_MAX_CURSORS = 64;
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000L;
+    public static final int DEFAULT_MAX_PAGE_SIZE = 1_000;
+    public static final int DEFAULT_MAX_OCCURRENCES = 100_000;
+    private final Map<String, Cursor> cursors = new ConcurrentHashMap<>();
+    private final AtomicLong occurrenceCount = new AtomicLong();
+    @Getter
+    private volatile int maxCursors = DEFAULT_MAX_CURSORS;
+    @Getter
+    private volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+    @Getter
+    private volatile int maxPageSize = DEFAULT_MAX_PAGE_SIZE;
+    @Getter
+    private volatile int maxOccurrences = DEFAULT_MAX_OCCURRENCES;
+
+    public static QueryCursorManager getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private QueryCursorManager() {
+
+    }
+
+    /**
+     * Changes the bounds of the query cursors.
+     *
+     * @param maxCursors  the maximum number of cursors that can be open at the same time.
+     * @param ttlMillis   the number of millis after which a cursor that was not accessed is closed.
+     * @param maxPageSize    the maximum number of occurrences returned in a single page.
+     * @param maxOccurrences the maximum number of occurrences held by all open cursors together.
+     */
+    public void configure(int maxCursors, long ttlMillis, int maxPageSize, int maxOccurrences) {
+        if (maxCursors <= 0 || ttlMillis <= 0 || maxPageSize <= 0 || maxOccurrences <= 0) {
+            throw new IllegalArgumentException("The query cursor bounds must be positive!");
+        }
+
+        log.info("Configuring query cursors: maxCursors={}, ttlMillis={}, maxPageSize={}, maxOccurrences={}",
+                maxCursors, ttlMillis, maxPageSize, maxOccurrences);
+        this.maxCursors = maxCursors;
+        this.ttlMillis = ttlMillis;
+        this.maxPageSize = maxPageSize;
+        this.maxOccurrences = maxOccurrences;
+        this.evictExpired();
+    }
+
+    /**
+     * Opens a cursor over the given occurrences.
+     *
+     * @return the id of the new cursor.
+     * @throws InvalidScipParameterException if the occurrences alone exceed the maximum number of held occurrences.
+     */
+    public synchronized String open(List<Occurrence> occurrences) {
+        if (occurrences.size() > maxOccurrences) {
+            log.error("Cannot open a query cursor over {} occurrences since at most {} occurrences can be held",
+                    occurrences.size(), maxOccurrences);
+
+            throw new InvalidScipParameterException("The query result has " + occurrences.size() +
+                    " occurrences, which exceeds the maximum of " + maxOccurrences + ". Narrow the time frame of the query!");
+        }
+
+        evictExpired();
+
+        while (!cursors.isEmpty() &&
+                (cursors.size() >= maxCursors || occurrenceCount.get() + occurrences.size() > maxOccurrences)) {
+            cursors.values().stream()
+                    .min((c1, c2) -> Long.compare(c1.lastAccessed, c2.lastAccessed))
+                    .ifPresent(oldest -> {
+                        log.warn("Closing query cursor {} since the maximum number of open cursors ({}) or held occurrences ({}) is reached",
+                                oldest.id, maxCursors, maxOccurrences);
+                        remove(oldest.id);
+                    });
+        }
+
+        final Cursor cursor = new Cursor(UUID.randomUUID().toString(), occurrences.toArray(new Occurrence[0]), occurrenceCount);
+        cursors.put(cursor.id, cursor);
+        log.debug("Opened query cursor {} over {} occurrences", cursor.id, occurrences.size());
+
+        return cursor.id;
+    }
+
+    /**
+     * Returns the next page of a cursor. The cursor is closed once its last page was returned.
+     *
+     * @param cursorId the id of the cursor.
+     * @param pageSize the requested number of occurrences. Values that are not positive or exceed the maximum page size
+     *                 are replaced by the maximum page size.
+     * @throws InvalidScipParameterException if the cursor is unknown, expired, or already consumed.
+     */
+    public QueryPage nextPage(String cursorId, int pageSize) {
+        final Cursor cursor = get(cursorId);
+        final List<Occurrence> page = cursor.next(pageSize <= 0 ? maxPageSize : Math.min(pageSize, maxPageSize));
+
+        if (cursor.isExhausted()) {
+            remove(cursorId);
+            return new QueryPage(page, null);
+        }
+
+        return new QueryPage(page, cursorId);
+    }
+
+    /**
+     * Closes the cursor and returns an iterator over its remaining occurrences. Each occurrence is released once the
+     * iterator moved past it.
+     *
+     * @throws InvalidScipParameterException if the cursor is unknown, expired, or already consumed.
+     */
+    public Iterator<Occurrence> drain(String cursorId) {
+        final Cursor cursor = cursors.remove(cursorId);
+
+        if (cursor == null) {
+            throw unknownCursor(cursorId);
+        }
+
+        cursor.uncount();
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !cursor.isExhausted();
+            }
+
+            @Override
+            public Occurrence next() {
+                final List<Occurrence> next = cursor.next(1);
+
+                if (next.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+
+                return next.get(0);
+            }
+        };
+    }
+
+    public void close(String cursorId) {
+        remove(cursorId);
+    }
+
+    /**
+     * Closes the cursors that were not accessed for longer than the time-to-live.
+     */
+    public void evictExpired() {
+        final long threshold = System.currentTimeMillis() - ttlMillis;
+        cursors.values().stream()
+                .filter(cursor -> cursor.lastAccessed < threshold)
+                .map(cursor -> cursor.id)
+                .toList()
+                .forEach(this::remove);
+    }
+
+    public int size() {
+        return cursors.size();
+    }
+
+    /**
+     * @return the number of occurrences held by the open cursors.
+     */
+    public long occurrenceCount() {
+        return occurrenceCount.get();
+    }
+
+    public void clear() {
+        cursors.keySet().forEach(this::remove);
+    }
+
+    private void remove(String cursorId) {
+        final Cursor cursor = cursors.remove(cursorId);
+
+        if (cursor != null) {
+            cursor.release();
+        }
+    }
+
+    private Cursor get(String cursorId) {
+        final Cursor cursor = cursorId == null ? null : cursors.get(cursorId);
+
+        if (cursor == null || cursor.lastAccessed < System.currentTimeMillis() - ttlMillis) {
+            if (cursor != null) {
+                remove(cursorId);
+            }
+
+            throw unknownCursor(cursorId);
+        }
+
+        return cursor;
+    }
+
+    private static InvalidScipParameterException unknownCursor(String cursorId) {
+        log.error("The query cursor '{}' is unknown, expired, or already consumed", cursorId);
+
+        return new InvalidScipParameterException("The query cursor '" + cursorId + "' is unknown, expired, or already consumed");
+    }
+
+    private static class Cursor {
+        private final String id;
+        private final Occurrence[] occurrences;
+        private final AtomicLong occurrenceCount;
+        private int position;
+        private boolean counted = true;
+        private volatile long lastAccessed = System.currentTimeMillis();
+
+        Cursor(String id, Occurrence[] occurrences, AtomicLong occurrenceCount) {
+            this.id = id;
+            this.occurrences = occurrences;
+            this.occurrenceCount = occurrenceCount;
+            occurrenceCount.addAndGet(occurrences.length);
+        }
+
+        synchronized List<Occurrence> next(int count) {
+            lastAccessed = System.currentTimeMillis();
+            final int end = Math.min(occurrences.length, position + count);
+            final List<Occurrence> result = Arrays.asList(Arrays.copyOfRange(occurrences, position, end));
+            // release the returned occurrences
+            Arrays.fill(occurrences, position, end, null);
+
+            if (counted) {
+                occurrenceCount.addAndGet(position - end);
+            }
+
+            position = end;
+
+            return result;
+        }
+
+        synchronized boolean isExhausted() {
+            return position >= occurrences.length;
+        }
+
+        /**
+         * Stops counting the remaining occurrences against the bound of the manager.
+         */
+        synchronized void uncount() {
+            if (counted) {
+                counted = false;
+                occurrenceCount.addAndGet(position - occurrences.length);
+            }
+        }
+
+        /**
+         * Releases the remaining occurrences.
+         */
+        synchronized void release() {
+            uncount();
+            Arrays.fill(occurrences, position, occurrences.length, null);
+            position = occurrences.length;
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final QueryCursorManager INSTANCE = new QueryCursorManager();
+    }
+}
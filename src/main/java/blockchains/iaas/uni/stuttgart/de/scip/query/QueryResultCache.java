@@ -0,0 +1,213 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
+import blockchains.iaas.uni.stuttgart.de.api.model.QueryResult;
+import blockchains.iaas.uni.stuttgart.de.api.model.TimeFrame;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Caches the results of event queries over final time frames. A time frame is final if it ends at least the finality
+ * depth in the past: the blocks it covers can no longer be reorganized, so its query result never changes again.
+ * Queries without a time frame, or with a time frame that is not final, are never cached.
+ * <p>
+ * The cache is bounded by the total number of occurrences it holds, and evicts the least recently used results first.
+ * It is invalidated whenever the connection profiles change. Cached results are shared, and must not be modified.
+ */
+@Log4j2
+public class QueryResultCache {
+    public static final long DEFAULT_FINALITY_DEPTH_MILLIS = 15 * 60 * 1000L;
+    public static final int DEFAULT_MAX_OCCURRENCES = 100_000;
+    private final LinkedHashMap<Key, QueryResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long occurrenceCount;
+    private long generation;
+    @Getter
+    private volatile boolean enabled;
+    @Getter
+    private volatile long finalityDepthMillis = DEFAULT_FINALITY_DEPTH_MILLIS;
+    @Getter
+    private volatile int maxOccurrences = DEFAULT_MAX_OCCURRENCES;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public static QueryResultCache getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private QueryResultCache() {
+
+    }
+
+    /**
+     * @param enabled             whether query results are cached.
+     * @param finalityDepthMillis how long ago a time frame must have ended for its query result to be cached.
+     * @param maxOccurrences      the maximum total number of occurrences held by the cached results.
+     */
+    public synchronized void configure(boolean enabled, long finalityDepthMillis, int maxOccurrences) {
+        if (finalityDepthMillis < 0 || maxOccurrences <= 0) {
+            throw new IllegalArgumentException("The finality depth must not be negative, and the cache size must be positive!");
+        }
+
+        log.info("Configuring query result cache: enabled={}, finalityDepthMillis={}, maxOccurrences={}", enabled, finalityDepthMillis, maxOccurrences);
+        this.enabled = enabled;
+        this.finalityDepthMillis = finalityDepthMillis;
+        this.maxOccurrences = maxOccurrences;
+
+        if (enabled) {
+            trim();
+        } else {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the cache key of a query.
+     *
+     * @return the key, or null if the cache is disabled or the query does not cover a final time frame.
+     */
+    public Key keyOf(String blockchainId, String smartContractPath, String eventIdentifier, List<Parameter> outputParameters,
+                     String filter, TimeFrame timeFrame) {
+        if (!enabled || !isFinal(timeFrame)) {
+            return null;
+        }
+
+        final String outputs = outputParameters == null ? "" : outputParameters.stream()
+                .map(parameter -> parameter.getName() + ":" + parameter.getType())
+                .collect(Collectors.joining(","));
+
+        synchronized (this) {
+            return new Key(blockchainId, smartContractPath, eventIdentifier, outputs, filter, timeFrame.getFrom(), timeFrame.getTo(), generation);
+        }
+    }
+
+    public synchronized QueryResult get(Key key) {
+        final QueryResult result = results.get(key);
+
+        if (result == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+
+        return result;
+    }
+
+    /**
+     * Caches the result of a query. Results of queries that started before the last invalidation are ignored.
+     */
+    public synchronized void put(Key key, QueryResult result) {
+        if (!enabled || key.generation() != generation || result == null || result.getOccurrences() == null) {
+            return;
+        }
+
+        final int size = result.getOccurrences().size();
+
+        if (size > maxOccurrences) {
+            log.debug("Not caching a query result of {} occurrences (the maximum is {})", size, maxOccurrences);
+            return;
+        }
+
+        final QueryResult previous = results.put(key, result);
+
+        if (previous != null) {
+            occurrenceCount -= previous.getOccurrences().size();
+        }
+
+        occurrenceCount += size;
+        trim();
+    }
+
+    /**
+     * Drops all cached results, and makes sure that the results of queries running now are not cached.
+     */
+    public synchronized void invalidateAll() {
+        if (!results.isEmpty()) {
+            log.info("Invalidating {} cached query results", results.size());
+        }
+
+        results.clear();
+        occurrenceCount = 0;
+        generation++;
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    boolean isFinal(TimeFrame timeFrame) {
+        if (timeFrame == null || timeFrame.getTo() == null || timeFrame.getTo().isBlank()) {
+            return false;
+        }
+
+        final Instant to = parseInstant(timeFrame.getTo());
+
+        return to != null && !to.isAfter(Instant.now().minusMillis(finalityDepthMillis));
+    }
+
+    private void trim() {
+        final Iterator<QueryResult> iterator = results.values().iterator();
+
+        while (occurrenceCount > maxOccurrences && iterator.hasNext()) {
+            occurrenceCount -= iterator.next().getOccurrences().size();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    static Instant parseInstant(String timestamp) {
+        try {
+            return Instant.parse(timestamp);
+        } catch (DateTimeParseException e) {
+            try {
+                return OffsetDateTime.parse(timestamp).toInstant();
+            } catch (DateTimeParseException e2) {
+                log.debug("Cannot parse the timestamp '{}'", timestamp);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Identifies a query. Each invalidation of the cache starts a new generation of keys.
+     */
+    public record Key(String blockchainId, String smartContractPath, String eventIdentifier, String outputs,
+                      String filter, String from, String to, long generation) {
+    }
+
+    private static class InstanceHolder {
+        private static final QueryResultCache INSTANCE = new QueryResultCache();
+    }
+}
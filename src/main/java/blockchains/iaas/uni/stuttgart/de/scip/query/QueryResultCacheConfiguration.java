@@ -0,0 +1,37 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import blockchains.iaas.uni.stuttgart.de.connectionprofiles.ConnectionProfilesManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the query result cache settings of the application properties, and invalidates the cache whenever the
+ * connection profiles change.
+ */
+@Component
+public class QueryResultCacheConfiguration {
+
+    public QueryResultCacheConfiguration(@Value("${" + Constants.QUERY_CACHE_ENABLED_PROPERTY + ":false}") boolean enabled,
+                                         @Value("${" + Constants.QUERY_CACHE_FINALITY_DEPTH_SECONDS_PROPERTY + ":900}") long finalityDepthSeconds,
+                                         @Value("${" + Constants.QUERY_CACHE_MAX_OCCURRENCES_PROPERTY + ":" + QueryResultCache.DEFAULT_MAX_OCCURRENCES + "}") int maxOccurrences) {
+        final QueryResultCache cache = QueryResultCache.getInstance();
+        cache.configure(enabled, finalityDepthSeconds * 1000, maxOccurrences);
+
+        if (enabled) {
+            ConnectionProfilesManager.getInstance().addListener(cache::invalidateAll);
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.subscription;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import io.reactivex.Observable;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Multiplexes identical upstream observables. All subscribers that ask for the same key share a single upstream
+ * subscription, which is established when the first subscriber arrives and disposed when the last one leaves
+ * (publish().refCount() semantics). The entry of a key is dropped once its upstream terminates or is disposed.
+ *
+ * @param <K> the type of the keys identifying identical upstream observables
+ * @param <T> the type of the emitted items
+ */
+@Log4j2
+public class SharedObservableRegistry<K, T> {
+    private final Map<K, Observable<T>> streams = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the shared observable of the given key, creating it if needed.
+     *
+     * @param key      identifies the upstream observable.
+     * @param upstream creates the upstream observable. Only called if no shared observable exists for the key, while
+     *                 the key is locked, so it must not block (e.g., by connecting to a node).
+     * @return an observable that shares the upstream subscription with all other subscribers of the same key.
+     */
+    public Observable<T> get(K key, Supplier<Observable<T>> upstream) {
+        return streams.computeIfAbsent(key, k -> {
+            final AtomicReference<Observable<T>> self = new AtomicReference<>();
+            final Observable<T> shared = upstream.get()
+                    .doOnSubscribe(d -> log.debug("Opened shared upstream: {}", k))
+                    .doFinally(() -> {
+                        log.debug("Closed shared upstream: {}", k);
+                        // later subscribers of this instance reconnect to a fresh upstream, so removing it is safe
+                        streams.remove(k, self.get());
+                    })
+                    .publish()
+                    .refCount();
+            self.set(shared);
+
+            return shared;
+        });
+    }
+
+    /**
+     * Stops sharing all current upstream observables. Their subscribers keep receiving items, but later subscribers
+     * get fresh upstream observables.
+     */
+    public void clear() {
+        streams.clear();
+    }
+
+    /**
+     * @return the number of upstream observables currently shared.
+     */
+    public int size() {
+        return streams.size();
+    }
+}
@@ -12,12 +12,13 @@
 
 package blockchains.iaas.uni.stuttgart.de.subscription;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
 import blockchains.iaas.uni.stuttgart.de.subscription.model.MonitorOccurrencesSubscription;
@@ -26,34 +27,53 @@ import blockchains.iaas.uni.stuttgart.de.subscription.model.SubscriptionKey;
 import blockchains.iaas.uni.stuttgart.de.subscription.model.SubscriptionType;
 import lombok.extern.log4j.Log4j2;
 
-// todo this class should persist subscriptions to stable storage!
+/**
+ * Keeps track of all active subscriptions. All operations are lock-free: the primary map and the secondary indexes are
+ * concurrent maps that are updated using atomic per-key operations, and listing operations iterate weakly consistent
+ * views, i.e., they reflect the state of the subscriptions at some point during the iteration.
+ */
 // todo rethink subscription logic!
 @Log4j2
 public class SubscriptionManager {
-    private static SubscriptionManager instance = null;
-    private final Map<SubscriptionKey, Subscription> subscriptions = Collections.synchronizedMap(new HashMap<>());
+    private final Map<SubscriptionKey, Subscription> subscriptions = new ConcurrentHashMap<>();
+    /**
+     * Secondary index: subscription type -> keys of all subscriptions of this type.
+     */
+    private final Map<SubscriptionType, Set<SubscriptionKey>> keysByType = new ConcurrentHashMap<>();
+    /**
+     * Secondary index of monitoring subscriptions: (type, blockchain id, smart contract path) -> keys.
+     */
+    private final Map<ContractKey, Set<SubscriptionKey>> keysByContract = new ConcurrentHashMap<>();
+    /**
+     * Secondary index of monitoring subscriptions: (type, blockchain id, smart contract path, signature) -> keys.
+     * The signature combines the monitored identifier with the types of its parameters.
+     */
+    private final Map<SignatureKey, Set<SubscriptionKey>> keysBySignature = new ConcurrentHashMap<>();
 
     private SubscriptionManager() {
 
     }
 
     public static SubscriptionManager getInstance() {
-        if (instance == null) {
-            instance = new SubscriptionManager();
-        }
-
-        return instance;
+        return InstanceHolder.INSTANCE;
     }
 
     public void createSubscription(String subscriptionId, String blockchainId, String smartContractPath, Subscription subscription) {
         SubscriptionKey key = SubscriptionKey.builder().smartContractPath(smartContractPath).blockchainId(blockchainId).correlationId(subscriptionId).build();
-        if (this.subscriptions.containsKey(key)) {
+        final Subscription old = this.subscriptions.putIfAbsent(key, subscription);
+
+        if (old != null) {
             log.error("Subscription key <{}> already exists! Not subscribing!", key);
             // to not keep any loose ends
-            Subscription old = this.subscriptions.get(key);
             old.unsubscribe();
-        } else {
-            this.subscriptions.put(key, subscription);
+            return;
+        }
+
+        this.index(key, subscription);
+
+        // the subscription might have been removed concurrently before it was indexed
+        if (this.subscriptions.get(key) != subscription) {
+            this.unindex(key, subscription);
         }
     }
 
@@ -63,18 +83,27 @@ public class SubscriptionManager {
 
     public Subscription getSubscription(String subscriptionId, String blockchainId, String smartContractPath) {
         SubscriptionKey key = SubscriptionKey.builder().smartContractPath(smartContractPath).blockchainId(blockchainId).correlationId(subscriptionId).build();
-        if (this.subscriptions.containsKey(key)) {
-            return this.subscriptions.get(key);
-        } else {
+        Subscription subscription = this.subscriptions.get(key);
+
+        if (subscription == null) {
             log.info("trying to retrieve a non-existent subscription: <{}>! null is returned", key);
-            return null;
         }
+
+        return subscription;
+    }
+
+    public boolean hasSubscription(String subscriptionId, String blockchainId, String smartContractPath) {
+        SubscriptionKey key = SubscriptionKey.builder().smartContractPath(smartContractPath).blockchainId(blockchainId).correlationId(subscriptionId).build();
+
+        return this.subscriptions.containsKey(key);
     }
 
     public void removeSubscription(String subscriptionId, String blockchainId, String smartContractPath) {
         SubscriptionKey key = SubscriptionKey.builder().smartContractPath(smartContractPath).blockchainId(blockchainId).correlationId(subscriptionId).build();
-        if (this.subscriptions.containsKey(key)) {
-            this.subscriptions.remove(key);
+        Subscription removed = this.subscriptions.remove(key);
+
+        if (removed != null) {
+            this.unindex(key, removed);
         } else {
             log.info("trying to remove a non-existent subscription: <{}>! nothing is removed", subscriptionId);
         }
@@ -85,11 +114,7 @@ public class SubscriptionManager {
     }
 
     public Collection<SubscriptionKey> getAllSubscriptionKeysOfType(SubscriptionType type) {
-        return this.subscriptions
-                .keySet()
-                .stream()
-                .filter(subscriptionKey -> this.subscriptions.get(subscriptionKey).getType() == type)
-                .collect(Collectors.toList());
+        return new ArrayList<>(this.keysByType.getOrDefault(type, Collections.emptySet()));
     }
 
     public Collection<SubscriptionKey> getAllSubscriptionIdsOfFunction(String blockchainId, String smartContractPath, String id, List<Parameter> inputs) {
@@ -104,31 +129,95 @@ public class SubscriptionManager {
         return this.subscriptions;
     }
 
+    /**
+     * Removes all subscriptions without unsubscribing them. Used for testing.
+     */
+    void clear() {
+        this.subscriptions.clear();
+        this.keysByType.clear();
+        this.keysByContract.clear();
+        this.keysBySignature.clear();
+    }
+
     private Collection<SubscriptionKey> getAllSubscriptionIdsOfIdentifiable(String blockchainId, String smartContractPath, String id, List<Parameter> inputs, SubscriptionType type) {
-        return this.subscriptions
-                .keySet()
-                .stream()
-                .filter(subscriptionKey -> {
-                            if (subscriptionKey.getBlockchainId().equals(blockchainId)
-                                    && subscriptionKey.getSmartContractPath().equals(smartContractPath)
-                                    && this.subscriptions.get(subscriptionKey) instanceof MonitorOccurrencesSubscription subscription) {
-                                if (subscription.getType().equals(type)) {
-                                    if (id == null || inputs == null)
-                                        return true;
-                                    if (subscription.getIdentifier().equals(id)) {
-                                        for (int i = 0; i < inputs.size(); i++) {
-                                            if (!subscription.getParameters().get(i).getType().equals(inputs.get(i).getType())) {
-                                                return false;
-                                            }
-                                        }
-
-                                        return true;
-                                    }
-                                }
-                            }
-                            return false;
-                        }
-                )
-                .collect(Collectors.toList());
+        final ContractKey contractKey = new ContractKey(type, blockchainId, smartContractPath);
+        final Set<SubscriptionKey> keys;
+
+        if (id == null || inputs == null) {
+            keys = this.keysByContract.get(contractKey);
+        } else {
+            keys = this.keysBySignature.get(new SignatureKey(contractKey, signatureOf(id, inputs)));
+        }
+
+        return keys == null ? Collections.emptyList() : new ArrayList<>(keys);
+    }
+
+    private void index(SubscriptionKey key, Subscription subscription) {
+        if (subscription.getType() != null) {
+            addToIndex(this.keysByType, subscription.getType(), key);
+        }
+
+        if (subscription instanceof MonitorOccurrencesSubscription monitor) {
+            final ContractKey contractKey = new ContractKey(monitor.getType(), key.getBlockchainId(), key.getSmartContractPath());
+            addToIndex(this.keysByContract, contractKey, key);
+            addToIndex(this.keysBySignature, new SignatureKey(contractKey, signatureOf(monitor.getIdentifier(), monitor.getParameters())), key);
+        }
+    }
+
+    private void unindex(SubscriptionKey key, Subscription subscription) {
+        if (subscription.getType() != null) {
+            removeFromIndex(this.keysByType, subscription.getType(), key);
+        }
+
+        if (subscription instanceof MonitorOccurrencesSubscription monitor) {
+            final ContractKey contractKey = new ContractKey(monitor.getType(), key.getBlockchainId(), key.getSmartContractPath());
+            removeFromIndex(this.keysByContract, contractKey, key);
+            removeFromIndex(this.keysBySignature, new SignatureKey(contractKey, signatureOf(monitor.getIdentifier(), monitor.getParameters())), key);
+        }
+    }
+
+    // compute and computeIfPresent are atomic per index entry, so an entry is never dropped while a key is added to it
+    private static <K> void addToIndex(Map<K, Set<SubscriptionKey>> index, K indexKey, SubscriptionKey key) {
+        index.compute(indexKey, (k, keys) -> {
+            final Set<SubscriptionKey> result = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+            result.add(key);
+            return result;
+        });
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<SubscriptionKey>> index, K indexKey, SubscriptionKey key) {
+        index.computeIfPresent(indexKey, (k, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * Builds the signature of a monitored event or function, e.g., "Transfer(address,uint256)".
+     */
+    static String signatureOf(String identifier, List<Parameter> parameters) {
+        final StringBuilder builder = new StringBuilder(identifier == null ? "" : identifier).append('(');
+
+        if (parameters != null) {
+            for (int i = 0; i < parameters.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+
+                builder.append(parameters.get(i).getType());
+            }
+        }
+
+        return builder.append(')').toString();
+    }
+
+    private record ContractKey(SubscriptionType type, String blockchainId, String smartContractPath) {
+    }
+
+    private record SignatureKey(ContractKey contractKey, String signature) {
+    }
+
+    private static class InstanceHolder {
+        private static final SubscriptionManager INSTANCE = new SubscriptionManager();
     }
 }
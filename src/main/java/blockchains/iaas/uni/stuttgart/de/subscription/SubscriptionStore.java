@@ -0,0 +1,169 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.subscription;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+import blockchains.iaas.uni.stuttgart.de.api.exceptions.BlockchainIdNotFoundException;
+import blockchains.iaas.uni.stuttgart.de.api.exceptions.BlockchainNodeUnreachableException;
+import blockchains.iaas.uni.stuttgart.de.subscription.model.SubscriptionDescriptor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Persists the descriptors of long-lived subscriptions so that they can be re-established after a restart. Each
+ * descriptor is stored as a separate JSON file named after its subscription key, so saving and removing a subscription
+ * does not depend on the number of stored subscriptions. The store does nothing until it is opened.
+ * <p>
+ * A persisted subscription is removed when it is cancelled explicitly, when it completes, or when it fails
+ * permanently. It is kept when it fails because its blockchain is not available yet.
+ */
+@Log4j2
+public class SubscriptionStore {
+    private static final String FILE_SUFFIX = ".json";
+    private static final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private volatile Path directory;
+
+    private SubscriptionStore() {
+
+    }
+
+    public static SubscriptionStore getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    public void open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        log.info("Persisting subscriptions to: {}", directory);
+    }
+
+    /**
+     * Stops persisting subscriptions. Already persisted subscriptions are kept.
+     */
+    public void close() {
+        this.directory = null;
+    }
+
+    public boolean isOpen() {
+        return directory != null;
+    }
+
+    public void save(SubscriptionDescriptor descriptor) {
+        final Path dir = this.directory;
+
+        if (dir == null) {
+            return;
+        }
+
+        final Path file = fileOf(dir, descriptor.getCorrelationId(), descriptor.getBlockchainId(), descriptor.getSmartContractPath());
+
+        try {
+            // write to a temporary file first so that a crash never leaves a half-written descriptor behind
+            final Path temp = Files.createTempFile(dir, "subscription", ".tmp");
+            mapper.writeValue(temp.toFile(), descriptor);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Failed to persist subscription <{}>!", descriptor.getCorrelationId(), e);
+        }
+    }
+
+    public void remove(String correlationId, String blockchainId, String smartContractPath) {
+        final Path dir = this.directory;
+
+        if (dir == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(fileOf(dir, correlationId, blockchainId, smartContractPath));
+        } catch (IOException e) {
+            log.error("Failed to remove the persisted subscription <{}>!", correlationId, e);
+        }
+    }
+
+    public void remove(String correlationId, String blockchainId) {
+        this.remove(correlationId, blockchainId, "");
+    }
+
+    /**
+     * Removes a persisted subscription after it failed, unless the failure is temporary, i.e., the blockchain id is
+     * not known yet, or its adapter is not available yet. Such subscriptions are kept so that they are re-established
+     * once the connection profiles or the plugins are loaded.
+     */
+    public void removeAfterFailure(String correlationId, String blockchainId, String smartContractPath, Throwable failure) {
+        if (isTemporary(failure)) {
+            log.warn("Keeping the persisted subscription <{}> after a temporary failure: {}", correlationId, failure.toString());
+            return;
+        }
+
+        this.remove(correlationId, blockchainId, smartContractPath);
+    }
+
+    public void removeAfterFailure(String correlationId, String blockchainId, Throwable failure) {
+        this.removeAfterFailure(correlationId, blockchainId, "", failure);
+    }
+
+    static boolean isTemporary(Throwable failure) {
+        Throwable cause = failure;
+
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        return cause instanceof BlockchainIdNotFoundException || cause instanceof BlockchainNodeUnreachableException;
+    }
+
+    public List<SubscriptionDescriptor> loadAll() {
+        final Path dir = this.directory;
+        final List<SubscriptionDescriptor> result = new ArrayList<>();
+
+        if (dir == null) {
+            return result;
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX)).forEach(file -> {
+                try {
+                    result.add(mapper.readValue(file.toFile(), SubscriptionDescriptor.class));
+                } catch (IOException e) {
+                    log.error("Failed to read the persisted subscription {}. Skipping it.", file, e);
+                }
+            });
+        } catch (IOException e) {
+            log.error("Failed to list persisted subscriptions!", e);
+        }
+
+        return result;
+    }
+
+    private static Path fileOf(Path dir, String correlationId, String blockchainId, String smartContractPath) {
+        final String key = correlationId + "\n" + blockchainId + "\n" + (smartContractPath == null ? "" : smartContractPath);
+
+        return dir.resolve(UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + FILE_SUFFIX);
+    }
+
+    private static class InstanceHolder {
+        private static final SubscriptionStore INSTANCE = new SubscriptionStore();
+    }
+}
@@ -0,0 +1,159 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.subscription;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import blockchains.iaas.uni.stuttgart.de.BlockchainManager;
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import blockchains.iaas.uni.stuttgart.de.connectionprofiles.ConnectionProfilesManager;
+import blockchains.iaas.uni.stuttgart.de.plugin.PluginManager;
+import blockchains.iaas.uni.stuttgart.de.subscription.model.SubscriptionDescriptor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opens the {@link SubscriptionStore} if subscription persistence is enabled, and re-establishes the persisted
+ * subscriptions once the application is ready. At most maxConcurrency subscriptions are re-established at a time, so
+ * that restarting with many subscriptions does not overwhelm the blockchain nodes.
+ * <p>
+ * Subscriptions whose blockchain is not available yet (e.g., because its plugin is not started, or its connection
+ * profile is not loaded) are kept, and re-established whenever the connection profiles change or plugins are started.
+ */
+@Log4j2
+@Component
+public class SubscriptionStoreConfiguration {
+    private static final String DEFAULT_DIR = Paths.get(System.getProperty("user.home"), ".bal", "subscriptions").toString();
+    private final BlockchainManager manager;
+    private final boolean enabled;
+    private final int maxConcurrency;
+    private final ExecutorService retryExecutor;
+    private volatile boolean ready;
+
+    public SubscriptionStoreConfiguration(BlockchainManager manager,
+                                          PluginManager pluginManager,
+                                          @Value("${" + Constants.SUBSCRIPTIONS_PERSISTENCE_ENABLED_PROPERTY + ":false}") boolean enabled,
+                                          @Value("${" + Constants.SUBSCRIPTIONS_PERSISTENCE_DIR_PROPERTY + ":}") String dir,
+                                          @Value("${" + Constants.SUBSCRIPTIONS_RESTORE_MAX_CONCURRENCY_PROPERTY + ":16}") int maxConcurrency) throws IOException {
+        this.manager = manager;
+        this.enabled = enabled;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+
+        if (enabled) {
+            SubscriptionStore.getInstance().open(Paths.get(dir == null || dir.isBlank() ? DEFAULT_DIR : dir));
+            this.retryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "subscription-restore");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ConnectionProfilesManager.getInstance().addListener(this::scheduleRestore);
+            pluginManager.addStartListener(this::scheduleRestore);
+        } else {
+            this.retryExecutor = null;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restoreSubscriptions() {
+        if (!enabled) {
+            return;
+        }
+
+        ready = true;
+        restorePending();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (retryExecutor != null) {
+            retryExecutor.shutdownNow();
+        }
+    }
+
+    private void scheduleRestore() {
+        // before the application is ready, the persisted subscriptions are restored by restoreSubscriptions()
+        if (ready) {
+            retryExecutor.execute(this::restorePending);
+        }
+    }
+
+    /**
+     * Re-establishes the persisted subscriptions that are not active.
+     */
+    private synchronized void restorePending() {
+        final List<SubscriptionDescriptor> descriptors = SubscriptionStore.getInstance().loadAll()
+                .stream()
+                .filter(descriptor -> !SubscriptionManager.getInstance().hasSubscription(descriptor.getCorrelationId(),
+                        descriptor.getBlockchainId(), pathOf(descriptor)))
+                .toList();
+
+        if (descriptors.isEmpty()) {
+            return;
+        }
+
+        log.info("Re-establishing {} persisted subscriptions...", descriptors.size());
+        final long start = System.currentTimeMillis();
+        final AtomicInteger failures = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrency, descriptors.size()));
+
+        try {
+            CompletableFuture.allOf(descriptors
+                    .stream()
+                    .map(descriptor -> CompletableFuture.runAsync(() -> {
+                        try {
+                            restore(descriptor);
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                            log.error("Failed to re-establish subscription <{}>.", descriptor.getCorrelationId(), e);
+                            SubscriptionStore.getInstance().removeAfterFailure(descriptor.getCorrelationId(),
+                                    descriptor.getBlockchainId(), pathOf(descriptor), e);
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        final long now = System.currentTimeMillis();
+        log.info("Re-established {} of {} subscriptions in {} ms ({} ms after JVM start).",
+                descriptors.size() - failures.get(), descriptors.size(), now - start,
+                now - ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+
+    private void restore(SubscriptionDescriptor descriptor) {
+        switch (descriptor.getType()) {
+            case EVENT_OCCURRENCES -> manager.subscribeToEvent(descriptor.getBlockchainId(), descriptor.getSmartContractPath(),
+                    descriptor.getEventIdentifier(), descriptor.getOutputParameters(), descriptor.getDegreeOfConfidence(),
+                    descriptor.getFilter(), descriptor.getCallbackBinding(), descriptor.getCallbackUrl(), descriptor.getCorrelationId());
+            case RECEIVE_TRANSACTIONS -> manager.receiveTransactions(descriptor.getCorrelationId(), descriptor.getFrom(),
+                    descriptor.getBlockchainId(), descriptor.getDegreeOfConfidence(), descriptor.getCallbackUrl());
+            case ENSURE_TRANSACTION_STATE -> manager.ensureTransactionState(descriptor.getCorrelationId(), descriptor.getTransactionId(),
+                    descriptor.getBlockchainId(), descriptor.getCallbackBinding(), descriptor.getDegreeOfConfidence(), descriptor.getCallbackUrl());
+            default -> throw new IllegalArgumentException("Subscriptions of type " + descriptor.getType() + " cannot be restored");
+        }
+    }
+
+    private static String pathOf(SubscriptionDescriptor descriptor) {
+        return descriptor.getSmartContractPath() == null ? "" : descriptor.getSmartContractPath();
+    }
+}
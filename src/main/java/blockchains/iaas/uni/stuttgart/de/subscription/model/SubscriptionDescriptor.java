@@ -0,0 +1,32 @@
+package blockchains.iaas.uni.stuttgart.de.subscription.model;
+
+import java.util.List;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Everything needed to re-establish a long-lived subscription after the gateway restarts.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubscriptionDescriptor {
+    private SubscriptionType type;
+    private String correlationId;
+    private String blockchainId;
+    @Builder.Default
+    private String smartContractPath = "";
+    private String eventIdentifier;
+    private List<Parameter> outputParameters;
+    private String filter;
+    private String from;
+    private String transactionId;
+    private double degreeOfConfidence;
+    private String callbackBinding;
+    private String callbackUrl;
+}
@@ -0,0 +1,202 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.tccsci;
+
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransaction;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionFilter;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionPage;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionState;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionVerdict;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * An append-only file of committed and aborted distributed transactions that were moved out of the
+ * {@link DistributedTransactionRepository}. Each dtx is stored as a compact JSON record on its own line, in the order
+ * in which the dtxs were archived.
+ * <p>
+ * The archive is not kept in memory: lookups and listings scan the file.
+ */
+@Log4j2
+public class DistributedTransactionArchive implements Closeable {
+    private static final String FILE_NAME = "dtx-archive.ndjson";
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private final Path file;
+    private final FileChannel channel;
+    private long size;
+
+    /**
+     * Opens the archive stored in the directory (creating it if needed), and discards an incomplete record at its end.
+     */
+    public DistributedTransactionArchive(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.file = directory.resolve(FILE_NAME);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = 0;
+        long validLength = 0;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            int b;
+
+            while ((b = in.read()) != -1) {
+                length++;
+
+                if (b == '\n') {
+                    validLength = length;
+                    size++;
+                }
+            }
+        }
+
+        if (validLength < length) {
+            log.warn("Discarding an incomplete record at the end of the dtx archive {}", file);
+            channel.truncate(validLength);
+        }
+
+        channel.position(validLength);
+    }
+
+    /**
+     * @return the number of archived distributed transactions.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Appends the distributed transactions to the archive, and writes them to disk.
+     */
+    public synchronized void append(Collection<DistributedTransaction> dtxs) throws IOException {
+        if (dtxs.isEmpty()) {
+            return;
+        }
+
+        final StringBuilder records = new StringBuilder();
+
+        for (DistributedTransaction dtx : dtxs) {
+            records.append(toRecord(dtx)).append('\n');
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        channel.force(false);
+        size += dtxs.size();
+    }
+
+    /**
+     * @return the archived distributed transaction with the given id, or null if it is not archived.
+     */
+    public DistributedTransaction find(UUID id) throws IOException {
+        final List<DistributedTransaction> found = new ArrayList<>(1);
+        final String idString = id.toString();
+        scan(record -> idString.equals(record.get("id").asText()), dtx -> {
+            found.add(dtx);
+            return false;
+        });
+
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Lists the archived distributed transactions matched by the filter, in the order in which they were archived.
+     */
+    public DistributedTransactionPage list(DistributedTransactionFilter filter, int offset, int limit) throws IOException {
+        final List<DistributedTransaction> items = new ArrayList<>(Math.min(limit, 1024));
+        final long[] total = {0};
+        scan(record -> true, dtx -> {
+            if (filter.matches(dtx)) {
+                if (total[0] >= offset && items.size() < limit) {
+                    items.add(dtx);
+                }
+
+                total[0]++;
+            }
+
+            return true;
+        });
+
+        return new DistributedTransactionPage(items, total[0], offset, limit);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void scan(Predicate<JsonNode> candidate, Predicate<DistributedTransaction> consumer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                final JsonNode record;
+
+                try {
+                    record = mapper.readTree(line);
+                } catch (IOException e) {
+                    // an incomplete record is being written
+                    return;
+                }
+
+                if (candidate.test(record) && !consumer.test(toDistributedTransaction(record))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static String toRecord(DistributedTransaction dtx) {
+        final ObjectNode record = mapper.createObjectNode();
+        record.put("id", dtx.getId().toString());
+        record.put("state", dtx.getState().name());
+        record.put("verdict", dtx.getVerdict().name());
+        final ArrayNode blockchainIds = record.putArray("bc");
+        dtx.getBlockchainIds().forEach(blockchainIds::add);
+        record.put("createdAt", dtx.getCreatedAt());
+        record.put("terminatedAt", dtx.getTerminatedAt());
+
+        return record.toString();
+    }
+
+    private static DistributedTransaction toDistributedTransaction(JsonNode record) {
+        final DistributedTransaction dtx = new DistributedTransaction(UUID.fromString(record.get("id").asText()), record.get("createdAt").asLong());
+        dtx.setState(DistributedTransactionState.valueOf(record.get("state").asText()));
+        dtx.setVerdict(DistributedTransactionVerdict.valueOf(record.get("verdict").asText()));
+        record.get("bc").forEach(blockchainId -> dtx.addBlockchainId(blockchainId.asText()));
+        dtx.setTerminatedAt(record.get("terminatedAt").asLong());
+
+        return dtx;
+    }
+}
@@ -31,10 +31,12 @@ import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Component;
 
 import javax.management.Query;
+import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 
 @Log4j2
@@ -54,19 +56,38 @@ public class DistributedTransactionManager {
     }
 
     public String isAbortedInBc(final UUID  dtxId, final String blockchainIdentifier) {
+        try {
+            return isAbortedInBcAsync(dtxId, blockchainIdentifier).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof BalException balException) {
+                throw balException;
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether the dtx was aborted in the given blockchain without blocking the calling thread.
+     *
+     * @return a future that completes with "true" if the resource manager smart contract emitted an abort event for the
+     * dtx, and with "false" otherwise.
+     */
+    public CompletableFuture<String> isAbortedInBcAsync(final UUID dtxId, final String blockchainIdentifier) {
         ResourceManagerSmartContract rmsc = this.adapterManager.getAdapter(blockchainIdentifier).getResourceManagerSmartContract();
         SmartContractEvent abortEvent = rmsc.getAbortEvent();
-        QueryResult result = this.blockchainManager.queryEvents(blockchainIdentifier, rmsc.getSmartContractPath(), abortEvent.getFunctionIdentifier(), abortEvent.getOutputs(), "1==1", null);
 
-        return String.valueOf(result.getOccurrences().stream().anyMatch(occurrence -> occurrence.getParameters().get(1).getValue().equals(dtxId.toString())));
+        return this.blockchainManager
+                .queryEventsAsync(blockchainIdentifier, rmsc.getSmartContractPath(), abortEvent.getFunctionIdentifier(), abortEvent.getOutputs(), "1==1", null, false)
+                .thenApply(result -> String.valueOf(result.getOccurrences().stream().anyMatch(occurrence -> occurrence.getParameters().get(1).getValue().equals(dtxId.toString()))));
     }
 
     public String registerBc(final UUID dtxId, final String blockchainIdentifier) throws IllegalProtocolStateException {
         log.info("Received register_bc({}) request for dtx: {}", blockchainIdentifier, dtxId);
-        DistributedTransaction dtx = DistributedTransactionRepository.getInstance().getById(dtxId);
+        DistributedTransaction dtx = getStartedDtx(dtxId);
 
         if (dtx.getState() == DistributedTransactionState.STARTED) {
-            if (!dtx.getBlockchainIds().contains(blockchainIdentifier)) {
+            if (DistributedTransactionRepository.getInstance().addBlockchainId(dtx, blockchainIdentifier)) {
 //                ResourceManagerSmartContract rmsc = this.adapterManager.getAdapter(blockchainIdentifier).getResourceManagerSmartContract();
 //                SmartContractEvent abortEvent = rmsc.getAbortEvent();
 //
@@ -79,7 +100,6 @@ public class DistributedTransactionManager {
 //                        .take(1)
 //                        .subscribe(this::handleScError);
 //                log.info("Subscribed to the abort error of blockchain: {} for the dtx: {}", blockchainIdentifier, dtxId);
-                dtx.getBlockchainIds().add(blockchainIdentifier);
             }
 
             final String identity = getBlockchainIdentity(blockchainIdentifier);
@@ -101,7 +121,7 @@ public class DistributedTransactionManager {
 
     public void abortDtx(UUID txId, String callbackUrl) {
         log.info("Received abort_dtx request for dtx: {}", txId);
-        DistributedTransaction dtx = DistributedTransactionRepository.getInstance().getById(txId);
+        DistributedTransaction dtx = getStartedDtx(txId);
 
         if (dtx.getState() == DistributedTransactionState.STARTED) {
             doAbort(txId, false, callbackUrl);
@@ -112,10 +132,10 @@ public class DistributedTransactionManager {
 
     public void commitDtx(UUID txId, String callbackUrl) {
         log.info("Received commit_dtx request for dtx: {}", txId);
-        DistributedTransaction dtx = DistributedTransactionRepository.getInstance().getById(txId);
+        DistributedTransaction dtx = getStartedDtx(txId);
 
         if (dtx.getState() == DistributedTransactionState.STARTED) {
-            dtx.setState(DistributedTransactionState.AWAITING_VOTES);
+            DistributedTransactionRepository.getInstance().setState(dtx, DistributedTransactionState.AWAITING_VOTES);
             List<String> ids = dtx.getBlockchainIds();
 
             CompletableFuture.allOf(ids
@@ -123,20 +143,23 @@ public class DistributedTransactionManager {
                             .map(bcId -> invokePrepare(bcId, txId))
                             .toList()
                             .toArray(new CompletableFuture[ids.size()]))
-                    .thenAccept((result)-> {
+                    .thenCompose((result)-> {
                         log.info("Invoked prepare* of all RMSCs of dtx: {}", txId);
 
-                        for (String blockchainIdentifier : ids) {
-                            analyzeBlockchainVote(blockchainIdentifier, dtx, ids.size(), callbackUrl);
-                        }
+                        return CompletableFuture.allOf(ids
+                                .stream()
+                                .map(blockchainIdentifier -> analyzeBlockchainVote(blockchainIdentifier, dtx, ids.size(), callbackUrl))
+                                .toArray(CompletableFuture[]::new));
                     })
                     .exceptionally(e -> {
-                        log.error("Error detected while invoking prepare* of all RMSCs of dtx: {}", txId, e);
+                        log.error("Error detected while invoking prepare* of, or collecting the votes of all RMSCs of dtx: {}", txId, e);
+                        boolean reported = false;
 
                         if (callbackUrl != null && e.getCause() instanceof BalException) {
                             AsynchronousBalException exception =
                                     new AsynchronousBalException((BalException) e.getCause(), txId.toString());
                             CallbackRouter.getInstance().sendAsyncError(txId.toString(), callbackUrl, "json-rpc", TransactionState.UNKNOWN, exception);
+                            reported = true;
                         }
 
                         // todo must return callback
@@ -144,6 +167,10 @@ public class DistributedTransactionManager {
                             log.info("Manual unsubscription of SC invocation!");
                         }
 
+                        // the dtx cannot be committed without all votes. If the failure was not reported already, the
+                        // client learns about the abort through the commit response.
+                        doAbort(txId, !reported, reported ? null : callbackUrl);
+
                         return null;
                     });
         } else {
@@ -151,6 +178,39 @@ public class DistributedTransactionManager {
         }
     }
 
+    /**
+     * Looks up a dtx that a client request refers to.
+     *
+     * @return the dtx, which is only in the repository while it is not archived.
+     * @throws IllegalProtocolStateException if the dtx is unknown or was already archived, since archived transactions
+     *                                       are terminated and therefore cannot be changed anymore.
+     */
+    private static DistributedTransaction getStartedDtx(UUID dtxId) throws IllegalProtocolStateException {
+        final DistributedTransactionRepository repository = DistributedTransactionRepository.getInstance();
+        final DistributedTransaction dtx = repository.getById(dtxId);
+
+        if (dtx != null) {
+            return dtx;
+        }
+
+        final DistributedTransactionArchive archive = repository.getArchive();
+        DistributedTransaction archived = null;
+
+        if (archive != null && dtxId != null) {
+            try {
+                archived = archive.find(dtxId);
+            } catch (IOException e) {
+                log.error("Failed to look up the dtx: {} in the archive", dtxId, e);
+            }
+        }
+
+        if (archived != null) {
+            throw new IllegalProtocolStateException("The requested operation requires the current transaction to be in the STARTED state, instead: " + archived.getState());
+        }
+
+        throw new IllegalProtocolStateException("The distributed transaction " + dtxId + " is unknown");
+    }
+
     protected String getBlockchainIdentity(String blockchainId) {
         return ConnectionProfilesManager.getInstance().getConnectionProfiles().get(blockchainId).getIdentity();
     }
@@ -162,20 +222,28 @@ public class DistributedTransactionManager {
         doAbort(txId, false, null);
     }
 
-    private void analyzeBlockchainVote(String blockchainIdentifier, DistributedTransaction dtx, int blockchainCount, String callbackUrl) {
+    private CompletableFuture<Void> analyzeBlockchainVote(String blockchainIdentifier, DistributedTransaction dtx, int blockchainCount, String callbackUrl) {
         ResourceManagerSmartContract rmsc = adapterManager.getAdapter(blockchainIdentifier).getResourceManagerSmartContract();
         SmartContractEvent voteEvent = rmsc.getVoteEvent();
         final UUID dtxId = dtx.getId();
         log.info("Querying the Vote event of blockchain: {} for the dtx: {}", blockchainIdentifier, dtxId);
 
-        QueryResult result = blockchainManager.queryEvents(blockchainIdentifier,
+        return blockchainManager.queryEventsAsync(blockchainIdentifier,
                         rmsc.getSmartContractPath(),
                         voteEvent.getFunctionIdentifier(),
                         voteEvent.getOutputs(),
                         null,
-                        null);
-        Occurrence occurrence = result.getOccurrences().stream().filter(o -> o.getParameters().get(1).getValue().equals(dtx.getId().toString())).max((Comparator.comparing(Occurrence::getTimestampObject))).orElse(null);
-        handleVoteEvent(occurrence, dtx, blockchainCount, callbackUrl);
+                        null,
+                        false)
+                .thenAccept(result -> {
+                    Occurrence occurrence = result.getOccurrences().stream().filter(o -> o.getParameters().get(1).getValue().equals(dtxId.toString())).max((Comparator.comparing(Occurrence::getTimestampObject))).orElse(null);
+
+                    if (occurrence == null) {
+                        log.warn("Blockchain: {} did not emit a Vote event for the dtx: {}. Counting it as a no vote.", blockchainIdentifier, dtxId);
+                    }
+
+                    handleVoteEvent(occurrence, dtx, blockchainCount, callbackUrl);
+                });
     }
 
     // todo make synchronized so we do not miss counting votes!
@@ -183,7 +251,7 @@ public class DistributedTransactionManager {
     private void handleVoteEvent(Occurrence voteDetails, DistributedTransaction tx, int bcCount, String callbackUrl) {
         final UUID txId = tx.getId();
         log.info("Handling Vote event for dtx: {}", txId);
-        boolean isYesVote = Boolean.parseBoolean(voteDetails.getParameters().get(2).getValue());
+        boolean isYesVote = voteDetails != null && Boolean.parseBoolean(voteDetails.getParameters().get(2).getValue());
 
         if (!isYesVote) {
             doAbort(txId, true, callbackUrl);
@@ -195,9 +263,14 @@ public class DistributedTransactionManager {
     }
 
     private void doAbort(UUID txId, boolean isUserCommit, String callbackUrl) {
-        log.info("Aborting transaction: {}", txId);
         DistributedTransaction tx = DistributedTransactionRepository.getInstance().getById(txId);
-        tx.setVerdict(DistributedTransactionVerdict.ABORT);
+
+        if (!DistributedTransactionRepository.getInstance().decide(tx, DistributedTransactionVerdict.ABORT)) {
+            log.info("Not aborting transaction: {}. Its verdict is already: {}", txId, tx.getVerdict());
+            return;
+        }
+
+        log.info("Aborting transaction: {}", txId);
 
         CompletableFuture.allOf(tx.getBlockchainIds()
                         .stream()
@@ -222,7 +295,7 @@ public class DistributedTransactionManager {
                 })
                 .whenComplete((v, th) -> {
                     log.info("Invoked abort* of all RMSCs of dtx: {}", txId);
-                    tx.setState(DistributedTransactionState.ABORTED);
+                    DistributedTransactionRepository.getInstance().setState(tx, DistributedTransactionState.ABORTED);
                     if (callbackUrl != null) {
                         if (isUserCommit) {
                             CallbackRouter.getInstance().sendCommitResponse(callbackUrl, tx, false);
@@ -234,9 +307,14 @@ public class DistributedTransactionManager {
     }
 
     private void doCommit(UUID txId, String callbackUrl) {
-        log.info("Committing transaction: {}", txId);
         DistributedTransaction tx = DistributedTransactionRepository.getInstance().getById(txId);
-        tx.setVerdict(DistributedTransactionVerdict.COMMIT);
+
+        if (!DistributedTransactionRepository.getInstance().decide(tx, DistributedTransactionVerdict.COMMIT)) {
+            log.info("Not committing transaction: {}. Its verdict is already: {}", txId, tx.getVerdict());
+            return;
+        }
+
+        log.info("Committing transaction: {}", txId);
 
         CompletableFuture.allOf(tx.getBlockchainIds()
                         .stream()
@@ -261,7 +339,7 @@ public class DistributedTransactionManager {
                 })
                 .whenComplete((v, th) -> {
                     log.info("Invoked commit* of all RMSCs of dtx: {}", txId);
-                    tx.setState(DistributedTransactionState.COMMITTED);
+                    DistributedTransactionRepository.getInstance().setState(tx, DistributedTransactionState.COMMITTED);
 
                     if (callbackUrl != null) {
                         CallbackRouter.getInstance().sendCommitResponse(callbackUrl, tx, true);
@@ -13,58 +13,296 @@
 package blockchains.iaas.uni.stuttgart.de.tccsci;
 
 import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransaction;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionFilter;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionPage;
 import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionState;
 import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionVerdict;
 
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
+/**
+ * Holds the distributed transactions known to the gateway. Transactions are kept in a concurrent map keyed by their
+ * id, and are additionally indexed by state, verdict, and blockchain id, so that neither protocol steps nor lookups
+ * need to scan all transactions.
+ * <p>
+ * To keep the indexes up to date, the state, the verdict, and the blockchain ids of a stored transaction must be
+ * changed through this repository. Lookups re-check the indexed property, so a transaction that was changed directly
+ * is never returned for a value it no longer has.
+ * <p>
+ * If an archive is set, committed and aborted transactions can be moved to it once they are old enough, so that the
+ * repository only holds the recent and the running transactions.
+ */
 public class DistributedTransactionRepository {
-    private final List<DistributedTransaction> distributedTransactions = new ArrayList<>();
-    private static DistributedTransactionRepository instance;
+    private static final Comparator<DistributedTransaction> BY_START_TIME =
+            Comparator.comparingLong(DistributedTransaction::getCreatedAt).thenComparing(DistributedTransaction::getId);
+    private final Map<UUID, DistributedTransaction> distributedTransactions = new ConcurrentHashMap<>();
+    private final Map<DistributedTransactionState, Set<UUID>> byState = createIndex(DistributedTransactionState.class);
+    private final Map<DistributedTransactionVerdict, Set<UUID>> byVerdict = createIndex(DistributedTransactionVerdict.class);
+    private final Map<String, Set<UUID>> byBlockchainId = new ConcurrentHashMap<>();
+    @Getter
+    @Setter
+    private volatile DistributedTransactionArchive archive;
 
     private DistributedTransactionRepository() {
 
     }
 
     public static DistributedTransactionRepository getInstance() {
-        if(instance == null) {
-            instance = new DistributedTransactionRepository();
-        }
-
-        return instance;
+        return InstanceHolder.INSTANCE;
     }
 
     public void addDistributedTransaction(DistributedTransaction tx) {
-        if(getById(tx.getId()) == null) {
-            this.distributedTransactions.add(tx);
-        } else {
-            throw new IllegalArgumentException("A distributed transaction with the same id " + tx.getId() + "already exists!");
+        synchronized (tx) {
+            if (distributedTransactions.putIfAbsent(tx.getId(), tx) != null) {
+                throw new IllegalArgumentException("A distributed transaction with the same id " + tx.getId() + "already exists!");
+            }
+
+            index(byState, tx.getState(), tx.getId());
+            index(byVerdict, tx.getVerdict(), tx.getId());
+
+            for (String bcId : tx.getBlockchainIds()) {
+                byBlockchainId.computeIfAbsent(bcId, key -> ConcurrentHashMap.newKeySet()).add(tx.getId());
+            }
         }
     }
 
     public DistributedTransaction getById(UUID txId) {
-        return distributedTransactions.stream().filter(tx->tx.getId().equals(txId)).findFirst().orElse(null);
+        return txId == null ? null : distributedTransactions.get(txId);
     }
 
     public List<DistributedTransaction> getAll() {
-        return this.distributedTransactions;
+        return new ArrayList<>(distributedTransactions.values());
     }
 
     public Collection<DistributedTransaction> getByState(DistributedTransactionState state) {
-        return distributedTransactions.stream().filter(tx->tx.getState().equals(state)).collect(Collectors.toList());
+        return lookup(byState.get(state), tx -> tx.getState() == state);
     }
 
     public Collection<DistributedTransaction> getByVerdict(DistributedTransactionVerdict verdict) {
-        return distributedTransactions.stream().filter(tx->tx.getVerdict().equals(verdict)).collect(Collectors.toList());
+        return lookup(byVerdict.get(verdict), tx -> tx.getVerdict() == verdict);
     }
 
     public Collection<DistributedTransaction> getByBlockchainId(String bcId) {
-        return distributedTransactions.stream().filter(tx->tx.getBlockchainIds().contains(bcId)).collect(Collectors.toList());
+        return lookup(byBlockchainId.get(bcId), tx -> tx.getBlockchainIds().contains(bcId));
+    }
+
+    /**
+     * Lists the distributed transactions matched by the filter, ordered by start time.
+     */
+    public DistributedTransactionPage list(DistributedTransactionFilter filter, int offset, int limit) {
+        final Collection<DistributedTransaction> candidates;
+
+        // start from the most selective index that applies
+        if (filter.state() != null) {
+            candidates = getByState(filter.state());
+        } else if (filter.blockchainId() != null) {
+            candidates = getByBlockchainId(filter.blockchainId());
+        } else if (filter.verdict() != null) {
+            candidates = getByVerdict(filter.verdict());
+        } else {
+            candidates = distributedTransactions.values();
+        }
+
+        final List<DistributedTransaction> matches = new ArrayList<>();
+
+        for (DistributedTransaction tx : candidates) {
+            if (filter.matches(tx)) {
+                matches.add(tx);
+            }
+        }
+
+        matches.sort(BY_START_TIME);
+        final int from = Math.min(offset, matches.size());
+        final int to = (int) Math.min((long) from + limit, matches.size());
+
+        return new DistributedTransactionPage(new ArrayList<>(matches.subList(from, to)), matches.size(), offset, limit);
+    }
+
+    /**
+     * Moves the distributed transactions that were committed or aborted before the given time to the archive.
+     *
+     * @param terminatedBefore the time (in millis) before which archived transactions were terminated.
+     * @return the number of archived transactions.
+     * @throws IOException if the transactions could not be written to the archive. They are kept in the repository then.
+     */
+    public int archiveTerminatedBefore(long terminatedBefore) throws IOException {
+        final DistributedTransactionArchive current = archive;
+
+        if (current == null) {
+            return 0;
+        }
+
+        final List<DistributedTransaction> expired = new ArrayList<>();
+
+        for (DistributedTransactionState state : List.of(DistributedTransactionState.COMMITTED, DistributedTransactionState.ABORTED)) {
+            for (DistributedTransaction tx : getByState(state)) {
+                if (tx.getTerminatedAt() >= 0 && tx.getTerminatedAt() < terminatedBefore) {
+                    expired.add(tx);
+                }
+            }
+        }
+
+        expired.sort(BY_START_TIME);
+        current.append(expired);
+
+        for (DistributedTransaction tx : expired) {
+            remove(tx);
+        }
+
+        return expired.size();
+    }
+
+    public void setState(DistributedTransaction tx, DistributedTransactionState state) {
+        synchronized (tx) {
+            final DistributedTransactionState previous = tx.getState();
+            tx.setState(state);
+
+            if (tx.isTerminal() && tx.getTerminatedAt() < 0) {
+                tx.setTerminatedAt(System.currentTimeMillis());
+            }
+
+            if (distributedTransactions.get(tx.getId()) == tx) {
+                unindex(byState, previous, tx.getId());
+                index(byState, state, tx.getId());
+            }
+        }
+    }
+
+    public void setVerdict(DistributedTransaction tx, DistributedTransactionVerdict verdict) {
+        synchronized (tx) {
+            final DistributedTransactionVerdict previous = tx.getVerdict();
+            tx.setVerdict(verdict);
+
+            if (distributedTransactions.get(tx.getId()) == tx) {
+                unindex(byVerdict, previous, tx.getId());
+                index(byVerdict, verdict, tx.getId());
+            }
+        }
+    }
+
+    /**
+     * Sets the verdict of a distributed transaction, unless it is decided already.
+     *
+     * @return true if the verdict was set.
+     */
+    public boolean decide(DistributedTransaction tx, DistributedTransactionVerdict verdict) {
+        synchronized (tx) {
+            if (tx.getVerdict() != DistributedTransactionVerdict.NOT_DECIDED) {
+                return false;
+            }
+
+            setVerdict(tx, verdict);
+
+            return true;
+        }
+    }
+
+    /**
+     * Adds a blockchain to a distributed transaction, unless it already takes part in it.
+     *
+     * @return true if the blockchain was added.
+     */
+    public boolean addBlockchainId(DistributedTransaction tx, String bcId) {
+        synchronized (tx) {
+            if (tx.getBlockchainIds().contains(bcId)) {
+                return false;
+            }
+
+            tx.addBlockchainId(bcId);
+
+            if (distributedTransactions.get(tx.getId()) == tx) {
+                byBlockchainId.computeIfAbsent(bcId, key -> ConcurrentHashMap.newKeySet()).add(tx.getId());
+            }
+
+            return true;
+        }
     }
 
+    private void remove(DistributedTransaction tx) {
+        synchronized (tx) {
+            if (!distributedTransactions.remove(tx.getId(), tx)) {
+                return;
+            }
+
+            unindex(byState, tx.getState(), tx.getId());
+            unindex(byVerdict, tx.getVerdict(), tx.getId());
+
+            for (String bcId : tx.getBlockchainIds()) {
+                final Set<UUID> ids = byBlockchainId.get(bcId);
+
+                if (ids != null) {
+                    ids.remove(tx.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all distributed transactions.
+     */
+    void clear() {
+        distributedTransactions.clear();
+        byState.values().forEach(Set::clear);
+        byVerdict.values().forEach(Set::clear);
+        byBlockchainId.clear();
+    }
+
+    private Collection<DistributedTransaction> lookup(Set<UUID> ids, Predicate<DistributedTransaction> stillMatches) {
+        if (ids == null) {
+            return Collections.emptyList();
+        }
 
+        final List<DistributedTransaction> result = new ArrayList<>(ids.size());
+
+        for (UUID id : ids) {
+            final DistributedTransaction tx = distributedTransactions.get(id);
+
+            if (tx != null && stillMatches.test(tx)) {
+                result.add(tx);
+            }
+        }
+
+        return result;
+    }
+
+    private static <K extends Enum<K>> Map<K, Set<UUID>> createIndex(Class<K> keyType) {
+        final Map<K, Set<UUID>> index = new EnumMap<>(keyType);
+
+        for (K key : keyType.getEnumConstants()) {
+            index.put(key, ConcurrentHashMap.newKeySet());
+        }
+
+        // the buckets are concurrent, and the map itself is never modified after this point
+        return Collections.unmodifiableMap(index);
+    }
+
+    private static <K> void index(Map<K, Set<UUID>> index, K key, UUID id) {
+        if (key != null) {
+            index.get(key).add(id);
+        }
+    }
+
+    private static <K> void unindex(Map<K, Set<UUID>> index, K key, UUID id) {
+        if (key != null) {
+            index.get(key).remove(id);
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final DistributedTransactionRepository INSTANCE = new DistributedTransactionRepository();
+    }
 }
@@ -0,0 +1,70 @@
+/********************************************************************************
+ * Copyright (c) 2024 Institute for the Architecture of Application System -
+ * University of Stuttgart
+ * Author: Ghareeb Falazi
+ *
+ * This program and the accompanying materials are made available under the
+ * terms the Apache Software License 2.0
+ * which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package blockchains.iaas.uni.stuttgart.de.tccsci;
+
+import blockchains.iaas.uni.stuttgart.de.Constants;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Applies the dtx retention settings of the application properties. If enabled, opens the dtx archive, and
+ * periodically moves the distributed transactions that were committed or aborted long enough ago to it.
+ */
+@Log4j2
+@Component
+public class DistributedTransactionRetentionConfiguration {
+    private static final String DEFAULT_ARCHIVE_DIR = Paths.get(System.getProperty("user.home"), ".bal", "dtx-archive").toString();
+    private final DistributedTransactionArchive archive;
+    private final long terminalAgeMillis;
+
+    public DistributedTransactionRetentionConfiguration(@Value("${" + Constants.DTX_RETENTION_ENABLED_PROPERTY + ":false}") boolean enabled,
+                                                        @Value("${" + Constants.DTX_RETENTION_TERMINAL_AGE_SECONDS_PROPERTY + ":3600}") long terminalAgeSeconds,
+                                                        @Value("${" + Constants.DTX_ARCHIVE_DIR_PROPERTY + ":}") String archiveDir) throws IOException {
+        this.terminalAgeMillis = terminalAgeSeconds * 1000;
+
+        if (enabled) {
+            final Path dir = Paths.get(archiveDir == null || archiveDir.isBlank() ? DEFAULT_ARCHIVE_DIR : archiveDir);
+            log.info("Opening the dtx archive at: {}", dir);
+            this.archive = new DistributedTransactionArchive(dir);
+            DistributedTransactionRepository.getInstance().setArchive(archive);
+        } else {
+            this.archive = null;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${" + Constants.DTX_RETENTION_INTERVAL_MILLIS_PROPERTY + ":60000}")
+    public void archiveTerminatedTransactions() {
+        if (archive != null) {
+            try {
+                final int archived = DistributedTransactionRepository.getInstance().archiveTerminatedBefore(System.currentTimeMillis() - terminalAgeMillis);
+                log.debug("Archived {} distributed transactions (archive size: {})", archived, archive.size());
+            } catch (IOException e) {
+                log.error("Failed to archive terminated distributed transactions.", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void closeArchive() throws IOException {
+        if (archive != null) {
+            DistributedTransactionRepository.getInstance().setArchive(null);
+            archive.close();
+        }
+    }
+}
@@ -3,9 +3,9 @@ package blockchains.iaas.uni.stuttgart.de.tccsci.model;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Setter
@@ -13,21 +13,41 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class DistributedTransaction {
     private final UUID id;
     private final List<String> blockchainIds;
-    private DistributedTransactionState state;
-    private DistributedTransactionVerdict verdict;
+    private volatile DistributedTransactionState state;
+    private volatile DistributedTransactionVerdict verdict;
     private AtomicInteger yes = new AtomicInteger(0);
+    /**
+     * The time (in millis) at which the dtx was started.
+     */
+    private final long createdAt;
+    /**
+     * The time (in millis) at which the dtx was committed or aborted, or -1 if it is not terminated yet.
+     */
+    private volatile long terminatedAt = -1;
 
-    public DistributedTransaction(UUID id) {
+    public DistributedTransaction(UUID id, long createdAt) {
         this.id = id;
-        this.blockchainIds = new ArrayList<>();
+        this.createdAt = createdAt;
+        this.blockchainIds = new CopyOnWriteArrayList<>();
         this.state = DistributedTransactionState.STARTED;
         this.verdict = DistributedTransactionVerdict.NOT_DECIDED;
     }
 
+    public DistributedTransaction(UUID id) {
+        this(id, System.currentTimeMillis());
+    }
+
     public DistributedTransaction() {
         this(UUID.randomUUID());
     }
 
+    /**
+     * @return true if the dtx was committed or aborted.
+     */
+    public boolean isTerminal() {
+        return state == DistributedTransactionState.COMMITTED || state == DistributedTransactionState.ABORTED;
+    }
+
     public void addBlockchainId(String blockchainId) {
         this.blockchainIds.add(blockchainId);
     }
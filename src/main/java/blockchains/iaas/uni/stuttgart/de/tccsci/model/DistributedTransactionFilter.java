@@ -0,0 +1,23 @@
+package blockchains.iaas.uni.stuttgart.de.tccsci.model;
+
+/**
+ * Selects distributed transactions. Null criteria match all distributed transactions.
+ *
+ * @param createdFrom the earliest start time (in millis, inclusive).
+ * @param createdTo   the latest start time (in millis, inclusive).
+ */
+public record DistributedTransactionFilter(DistributedTransactionState state,
+                                           DistributedTransactionVerdict verdict,
+                                           String blockchainId,
+                                           Long createdFrom,
+                                           Long createdTo) {
+    public static final DistributedTransactionFilter ALL = new DistributedTransactionFilter(null, null, null, null, null);
+
+    public boolean matches(DistributedTransaction dtx) {
+        return (state == null || dtx.getState() == state)
+                && (verdict == null || dtx.getVerdict() == verdict)
+                && (blockchainId == null || dtx.getBlockchainIds().contains(blockchainId))
+                && (createdFrom == null || dtx.getCreatedAt() >= createdFrom)
+                && (createdTo == null || dtx.getCreatedAt() <= createdTo);
+    }
+}
@@ -0,0 +1,22 @@
+package blockchains.iaas.uni.stuttgart.de.tccsci.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.List;
+
+/**
+ * A page of the distributed transactions matched by a listing, ordered by start time.
+ */
+@Getter
+@AllArgsConstructor
+public class DistributedTransactionPage {
+    @NonNull private List<DistributedTransaction> items;
+    /**
+     * The number of distributed transactions matched by the listing across all pages.
+     */
+    private long total;
+    private int offset;
+    private int limit;
+}
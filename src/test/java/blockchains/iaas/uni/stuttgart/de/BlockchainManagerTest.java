@@ -0,0 +1,74 @@
+package blockchains.iaas.uni.stuttgart.de;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import blockchains.iaas.uni.stuttgart.de.adaptation.AdapterManager;
+import blockchains.iaas.uni.stuttgart.de.api.interfaces.BlockchainAdapter;
+import blockchains.iaas.uni.stuttgart.de.api.model.Transaction;
+import blockchains.iaas.uni.stuttgart.de.subscription.SubscriptionManager;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BlockchainManagerTest {
+    private static final String CALLBACK_URL = "http://localhost:9090/callback";
+
+    @Test
+    void receiversWithTheSameKeyShareOneAdapterSubscription() {
+        PublishSubject<Transaction> upstream = PublishSubject.create();
+        AtomicInteger adapterSubscriptions = new AtomicInteger();
+        BlockchainAdapter adapter = mock(BlockchainAdapter.class);
+        when(adapter.receiveTransactions("0xabc", 0.5))
+                .thenReturn(upstream.doOnSubscribe(d -> adapterSubscriptions.incrementAndGet()));
+        BlockchainManager manager = new BlockchainManager(adapterManagerOf("bc1", adapter));
+
+        manager.receiveTransactions("receiver1", "0xabc", "bc1", 50, CALLBACK_URL);
+        manager.receiveTransactions("receiver2", "0xabc", "bc1", 50, CALLBACK_URL);
+
+        verify(adapter, times(1)).receiveTransactions("0xabc", 0.5);
+        assertEquals(1, adapterSubscriptions.get());
+        assertTrue(upstream.hasObservers());
+
+        cancel("receiver1", "bc1");
+        cancel("receiver2", "bc1");
+    }
+
+    @Test
+    void sharedStreamIsDisposedAfterTheLastReceiverCancels() {
+        PublishSubject<Transaction> upstream = PublishSubject.create();
+        BlockchainAdapter adapter = mock(BlockchainAdapter.class);
+        when(adapter.receiveTransactions("0xabc", 0.5)).thenReturn(upstream);
+        BlockchainManager manager = new BlockchainManager(adapterManagerOf("bc1", adapter));
+
+        manager.receiveTransactions("receiver1", "0xabc", "bc1", 50, CALLBACK_URL);
+        manager.receiveTransactions("receiver2", "0xabc", "bc1", 50, CALLBACK_URL);
+        cancel("receiver1", "bc1");
+        assertTrue(upstream.hasObservers());
+        cancel("receiver2", "bc1");
+        assertFalse(upstream.hasObservers());
+
+        // a later receiver opens a fresh adapter subscription
+        manager.receiveTransactions("receiver3", "0xabc", "bc1", 50, CALLBACK_URL);
+        verify(adapter, times(2)).receiveTransactions("0xabc", 0.5);
+        assertTrue(upstream.hasObservers());
+        cancel("receiver3", "bc1");
+    }
+
+    private static AdapterManager adapterManagerOf(String blockchainId, BlockchainAdapter adapter) {
+        AdapterManager adapterManager = mock(AdapterManager.class);
+        when(adapterManager.getAdapter(blockchainId)).thenReturn(adapter);
+
+        return adapterManager;
+    }
+
+    private static void cancel(String correlationId, String blockchainId) {
+        SubscriptionManager.getInstance().getSubscription(correlationId, blockchainId, "").unsubscribe();
+    }
+}
@@ -0,0 +1,331 @@
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import blockchains.iaas.uni.stuttgart.de.callback.model.CallbackEndpointMetrics;
+import blockchains.iaas.uni.stuttgart.de.callback.model.CallbackPartitionMetrics;
+import blockchains.iaas.uni.stuttgart.de.callback.model.CircuitState;
+import blockchains.iaas.uni.stuttgart.de.callback.model.OverloadPolicy;
+import blockchains.iaas.uni.stuttgart.de.concurrency.ExecutorMode;
+import blockchains.iaas.uni.stuttgart.de.concurrency.VirtualThreads;
+import lombok.extern.log4j.Log4j2;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Log4j2
+class CallbackDispatcherTest {
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void testSlowHostDoesNotDelayOtherHosts() throws InterruptedException {
+        CallbackDispatcher dispatcher = new CallbackDispatcher("test");
+        dispatcher.configure(1, 10, OverloadPolicy.BLOCK, null);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+
+        dispatcher.dispatch("http://slow:8080/callback", "slow", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return true;
+        });
+        dispatcher.dispatch("http://fast:8080/callback", "fast", countDown(fastDone));
+
+        assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testHangingEndpointDoesNotStallOtherEndpointsOfTheSameHost() throws InterruptedException {
+        CallbackDispatcher dispatcher = new CallbackDispatcher("test");
+        dispatcher.configure(2, 100, OverloadPolicy.BLOCK, null);
+        dispatcher.configureAdaptiveConcurrency(true, 1, 8, 60_000, 100, 1_000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch healthyDone = new CountDownLatch(1);
+
+        for (int i = 0; i < 10; i++) {
+            dispatcher.dispatch("http://host/hanging", i, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return true;
+            });
+        }
+
+        dispatcher.dispatch("http://host/healthy", "healthy", countDown(healthyDone));
+
+        assertTrue(healthyDone.await(5, TimeUnit.SECONDS));
+        CallbackEndpointMetrics hanging = dispatcher.getEndpointMetrics().get(0);
+        assertEquals("http://host/hanging", hanging.getEndpointUrl());
+        assertEquals(1, hanging.getInFlight());
+        assertEquals(9, hanging.getQueued());
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testCircuitOpensForFailingEndpoint() throws InterruptedException {
+        CallbackDispatcher dispatcher = new CallbackDispatcher("test");
+        dispatcher.configure(1, 100, OverloadPolicy.BLOCK, null);
+        dispatcher.configureAdaptiveConcurrency(true, 1, 8, 60_000, 2, 60_000);
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.dispatch("http://host/failing", i, () -> {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("endpoint is down");
+            });
+        }
+
+        Thread.sleep(500);
+        CallbackEndpointMetrics metrics = dispatcher.getEndpointMetrics().get(0);
+        assertEquals(2, attempts.get());
+        assertEquals(CircuitState.OPEN, metrics.getCircuitState());
+        assertEquals(3, metrics.getQueued());
+        assertEquals(1.0, metrics.getConcurrencyLimit());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testCircuitOpensForEndpointThatReportsFailures() throws InterruptedException {
+        CallbackDispatcher dispatcher = new CallbackDispatcher("test");
+        dispatcher.configure(1, 100, OverloadPolicy.BLOCK, null);
+        dispatcher.configureAdaptiveConcurrency(true, 1, 8, 60_000, 2, 60_000);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // the failures are caught by the binding and only reported through the outcome
+        for (int i = 0; i < 5; i++) {
+            dispatcher.dispatch("http://host/failing", i, () -> attempts.incrementAndGet() < 0);
+        }
+
+        Thread.sleep(500);
+        CallbackEndpointMetrics metrics = dispatcher.getEndpointMetrics().get(0);
+        assertEquals(2, attempts.get());
+        assertEquals(CircuitState.OPEN, metrics.getCircuitState());
+        assertEquals(3, metrics.getQueued());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testCallbacksWithTheSameKeyAreSentInOrder() throws InterruptedException {
+        final int keyCount = 10;
+        final int callbacksPerKey = 50;
+        CallbackDispatcher dispatcher = new CallbackDispatcher("test");
+        dispatcher.configure(4, 1_000, OverloadPolicy.BLOCK, null);
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(keyCount * callbacksPerKey);
+
+        for (int i = 0; i < callbacksPerKey; i++) {
+            for (int k = 0; k < keyCount; k++) {
+                final String key = "correlation-" + k;
+                final int sequence = i;
+                dispatcher.dispatch("http://host/callback", key, sequence, () -> {
+                    try {
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    received.computeIfAbsent(key, x -> Collections.synchronizedList(new ArrayList<>())).add(sequence);
+                    done.countDown();
+
+                    return true;
+                });
+            }
+        }
+
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+
+        for (List<Integer> sequences : received.values()) {
+            for (int i = 0; i < callbacksPerKey; i++) {
+                assertEquals(i, sequences.get(i));
+            }
+        }
+
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testOverloadPolicies() throws Exception {
+        CallbackDispatcher dispatcher = new CallbackDispatcher("test");
+        dispatcher.configure(1, 1, OverloadPolicy.DROP_OLDEST, spillDirectory);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // occupies the only thread, then fills the queue, then replaces the queued callback
+        dispatcher.dispatch("http://host/a", "a", blocking(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch("http://host/b", "b", () -> true);
+        dispatcher.dispatch("http://host/c", "c", () -> true);
+        dispatcher.configure(1, 1, OverloadPolicy.SPILL, spillDirectory);
+        dispatcher.dispatch("http://host/d", "d", () -> true);
+
+        CallbackPartitionMetrics metrics = dispatcher.getMetrics().get(0);
+        assertEquals("host", metrics.getHost());
+        assertEquals(1, metrics.getQueueDepth());
+        assertEquals(1, metrics.getDropped());
+        assertEquals(1, metrics.getSpilled());
+        List<String> spilled = Files.readAllLines(spillDirectory.resolve("callbacks-test.ndjson"));
+        assertEquals(1, spilled.size());
+        assertTrue(spilled.get(0).contains("http://host/d"));
+
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testOrderingLanesShareTheQueueBudgetOfTheHost() throws Exception {
+        CallbackDispatcher dispatcher = new CallbackDispatcher("test");
+        dispatcher.configure(2, 2, OverloadPolicy.SPILL, spillDirectory);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // "a" and "b" are mapped to different lanes
+        dispatcher.dispatch("http://host/callback", "a", 0, blocking(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch("http://host/callback", "a", 1, () -> true);
+        dispatcher.dispatch("http://host/callback", "a", 2, () -> true);
+        // the lane of "b" is idle, but the budget of the host is used up
+        dispatcher.dispatch("http://host/callback", "b", 3, () -> true);
+
+        CallbackPartitionMetrics metrics = dispatcher.getMetrics().get(0);
+        assertEquals(2, metrics.getQueueDepth());
+        assertEquals(1, metrics.getSpilled());
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testBlockingIsTimeBounded() throws Exception {
+        CallbackDispatcher dispatcher = new CallbackDispatcher("test");
+        dispatcher.configure(1, 1, OverloadPolicy.BLOCK, spillDirectory);
+        dispatcher.setBlockTimeoutMillis(100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        dispatcher.dispatch("http://host/a", "a", blocking(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch("http://host/b", "b", () -> true);
+        final long start = System.nanoTime();
+        dispatcher.dispatch("http://host/c", "c", () -> true);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1, dispatcher.getMetrics().get(0).getDropped());
+        assertEquals(0, dispatcher.getMetrics().get(0).getSpilled());
+        assertFalse(Files.exists(spillDirectory.resolve("callbacks-test.ndjson")));
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testBlockingWaitsForRoomByDefault() throws Exception {
+        CallbackDispatcher dispatcher = new CallbackDispatcher("test");
+        dispatcher.configure(1, 1, OverloadPolicy.BLOCK, spillDirectory);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(1);
+
+        dispatcher.dispatch("http://host/a", "a", blocking(started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch("http://host/b", "b", () -> true);
+        Thread dispatching = new Thread(() -> dispatcher.dispatch("http://host/c", "c", () -> {
+            delivered.countDown();
+            return true;
+        }));
+        dispatching.start();
+        dispatching.join(200);
+
+        assertTrue(dispatching.isAlive());
+        release.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.getMetrics().get(0).getDropped());
+        assertEquals(0, dispatcher.getMetrics().get(0).getSpilled());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testLoadInPlatformAndVirtualModes() throws InterruptedException {
+        final long platformMillis = runBlockingCallbacks(ExecutorMode.PLATFORM);
+        log.info("Sent blocking callbacks on platform threads in {} ms", platformMillis);
+        Assumptions.assumeTrue(VirtualThreads.isSupported(), "Virtual threads require Java 21");
+        final long virtualMillis = runBlockingCallbacks(ExecutorMode.VIRTUAL);
+        log.info("Sent blocking callbacks on virtual threads in {} ms", virtualMillis);
+        assertTrue(virtualMillis < platformMillis);
+    }
+
+    private static CallbackSend countDown(CountDownLatch latch) {
+        return () -> {
+            latch.countDown();
+
+            return true;
+        };
+    }
+
+    private static CallbackSend blocking(CountDownLatch started, CountDownLatch release) {
+        return () -> {
+            started.countDown();
+
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return true;
+        };
+    }
+
+    private static long runBlockingCallbacks(ExecutorMode mode) throws InterruptedException {
+        final int callbackCount = 1_000;
+        CallbackDispatcher dispatcher = new CallbackDispatcher("load");
+        dispatcher.configure(16, callbackCount, OverloadPolicy.BLOCK, null);
+        dispatcher.setExecutorMode(mode, callbackCount);
+        CountDownLatch done = new CountDownLatch(callbackCount);
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < callbackCount; i++) {
+            // simulates a slow endpoint
+            dispatcher.dispatch("http://endpoint/callback", i, () -> {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                done.countDown();
+
+                return true;
+            });
+        }
+
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        dispatcher.shutdown();
+
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,73 @@
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+import lombok.extern.log4j.Log4j2;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Log4j2
+class CallbackHttpClientTest {
+    private MockWebServer mockWebServer;
+
+    @BeforeEach
+    void init() throws IOException {
+        this.mockWebServer = new MockWebServer();
+        this.mockWebServer.setDispatcher(new Dispatcher() {
+            @NotNull
+            @Override
+            public MockResponse dispatch(@NotNull RecordedRequest request) {
+                return new MockResponse().setResponseCode(200).setBody("ok");
+            }
+        });
+        this.mockWebServer.start();
+    }
+
+    @AfterEach
+    void destroy() throws IOException {
+        this.mockWebServer.close();
+    }
+
+    @Test
+    @Tag("benchmark")
+    void testSharedClientThroughput() {
+        final int callbackCount = 2_000;
+        final String endpointUrl = this.mockWebServer.url("/callback").toString();
+
+        final double perMessageRate = sendCallbacks(endpointUrl, callbackCount, RestClient::create);
+        log.info("A new client per callback: {} callbacks/s", String.format("%.1f", perMessageRate));
+        final double sharedRate = sendCallbacks(endpointUrl, callbackCount, () -> CallbackHttpClient.getInstance().getRestClient());
+        log.info("The shared pooled client: {} callbacks/s", String.format("%.1f", sharedRate));
+
+        assertEquals(2L * callbackCount, this.mockWebServer.getRequestCount());
+    }
+
+    private static double sendCallbacks(String endpointUrl, int count, Supplier<RestClient> client) {
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < count; i++) {
+            String body = client.get()
+                    .post()
+                    .uri(endpointUrl)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("{\"index\":" + i + "}")
+                    .retrieve()
+                    .body(String.class);
+            assertEquals("ok", body);
+        }
+
+        return count / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+}
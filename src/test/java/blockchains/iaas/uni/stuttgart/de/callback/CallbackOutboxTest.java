@@ -0,0 +1,138 @@
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import blockchains.iaas.uni.stuttgart.de.callback.model.CallbackPartitionMetrics;
+import blockchains.iaas.uni.stuttgart.de.callback.model.OutboxMetrics;
+import blockchains.iaas.uni.stuttgart.de.callback.outbox.OutboxLog;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackOutboxTest {
+    @TempDir
+    Path outboxDir;
+    private MockWebServer mockWebServer;
+    private final CallbackOutbox outbox = CallbackOutbox.getInstance();
+
+    @BeforeEach
+    void init() throws IOException {
+        this.mockWebServer = new MockWebServer();
+        outbox.configure(3, 50, 200, CallbackOutbox.DEFAULT_RETRY_THREADS);
+        outbox.open(outboxDir, 1024 * 1024);
+    }
+
+    @AfterEach
+    void destroy() throws IOException {
+        outbox.close();
+        outbox.configure(CallbackOutbox.DEFAULT_MAX_ATTEMPTS, CallbackOutbox.DEFAULT_INITIAL_BACKOFF_MILLIS,
+                CallbackOutbox.DEFAULT_MAX_BACKOFF_MILLIS, CallbackOutbox.DEFAULT_RETRY_THREADS);
+        this.mockWebServer.close();
+    }
+
+    @Test
+    void retryWithTheSameIdempotencyKey() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        OutboxMetrics before = outbox.getMetrics();
+
+        CallbackOutbox.SendResult result = outbox.send(mockWebServer.url("/").toString(), "{\"a\":1}");
+
+        assertNull(result.response());
+        assertTrue(result.endpointFailed());
+
+        RecordedRequest first = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        RecordedRequest second = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotNull(first.getHeader(CallbackOutbox.IDEMPOTENCY_KEY_HEADER));
+        assertEquals(first.getHeader(CallbackOutbox.IDEMPOTENCY_KEY_HEADER), second.getHeader(CallbackOutbox.IDEMPOTENCY_KEY_HEADER));
+        assertEquals("{\"a\":1}", second.getBody().readUtf8());
+        awaitPending(0);
+        assertEquals(before.getRetried() + 1, outbox.getMetrics().getRetried());
+        assertEquals(before.getDelivered() + 1, outbox.getMetrics().getDelivered());
+    }
+
+    @Test
+    void retriesAreSentByTheDispatcherOfTheCallback() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        CallbackDispatcher dispatcher = new CallbackDispatcher("test");
+
+        assertNull(outbox.send(dispatcher, mockWebServer.url("/").toString(), "correlation", "{\"a\":1}").response());
+
+        assertNotNull(mockWebServer.takeRequest(1, TimeUnit.SECONDS));
+        assertNotNull(mockWebServer.takeRequest(1, TimeUnit.SECONDS));
+        awaitPending(0);
+        CallbackPartitionMetrics metrics = dispatcher.getMetrics().get(0);
+        assertEquals(1, metrics.getCompleted());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void deadLetterAfterMaxAttemptsAndOnClientErrors() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+        }
+
+        mockWebServer.enqueue(new MockResponse().setResponseCode(400));
+        OutboxMetrics before = outbox.getMetrics();
+        String endpointUrl = mockWebServer.url("/").toString();
+
+        outbox.send(endpointUrl, "{\"a\":1}");
+        awaitPending(0);
+        assertEquals(3, mockWebServer.getRequestCount());
+        // client errors are not retried
+        outbox.send(endpointUrl, "{\"a\":2}");
+        assertEquals(4, mockWebServer.getRequestCount());
+        assertEquals(before.getDeadLettered() + 2, outbox.getMetrics().getDeadLettered());
+        assertEquals(2, Files.readAllLines(outboxDir.resolve(OutboxLog.DEAD_LETTER_FILE)).size());
+    }
+
+    @Test
+    void deliverPendingCallbacksAfterRestart() throws Exception {
+        outbox.configure(3, 60_000, 60_000, CallbackOutbox.DEFAULT_RETRY_THREADS);
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+        outbox.send(mockWebServer.url("/").toString(), "{\"a\":1}");
+        RecordedRequest first = mockWebServer.takeRequest(1, TimeUnit.SECONDS);
+        assertEquals(1, outbox.getMetrics().getPending());
+
+        outbox.close();
+        outbox.open(outboxDir, 1024 * 1024);
+
+        RecordedRequest second = mockWebServer.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertEquals(first.getHeader(CallbackOutbox.IDEMPOTENCY_KEY_HEADER), second.getHeader(CallbackOutbox.IDEMPOTENCY_KEY_HEADER));
+        awaitPending(0);
+    }
+
+    @Test
+    void backoffGrowsExponentiallyWithinBounds() {
+        for (int attempts = 1; attempts <= 5; attempts++) {
+            long window = Math.min(200, 50L << (attempts - 1));
+            long backoff = outbox.backoffOf(attempts);
+            assertTrue(backoff >= window / 2 && backoff <= window, "attempt " + attempts + ": " + backoff);
+        }
+    }
+
+    private void awaitPending(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+
+        while (outbox.getMetrics().getPending() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(expected, outbox.getMetrics().getPending());
+    }
+}
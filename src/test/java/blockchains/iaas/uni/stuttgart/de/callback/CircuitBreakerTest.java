@@ -0,0 +1,53 @@
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import blockchains.iaas.uni.stuttgart.de.callback.model.CircuitState;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    @Test
+    void openAfterConsecutiveFailures() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(2, 100);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertTrue(breaker.getRemainingOpenMillis() > 0);
+
+        Thread.sleep(150);
+        // a single trial request after the open period
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitState.OPEN, breaker.getState());
+
+        Thread.sleep(150);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void cancelledTrialLetsTheNextRequestThrough() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Thread.sleep(100);
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        // the trial was discarded before it was sent
+        breaker.cancelTrial();
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+    }
+}
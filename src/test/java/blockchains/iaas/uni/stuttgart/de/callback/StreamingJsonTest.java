@@ -0,0 +1,85 @@
+package blockchains.iaas.uni.stuttgart.de.callback;
+
+import java.lang.management.ManagementFactory;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.Transaction;
+import blockchains.iaas.uni.stuttgart.de.api.model.TransactionState;
+import blockchains.iaas.uni.stuttgart.de.restapi.callback.CamundaMessageTranslator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.log4j.Log4j2;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Log4j2
+class StreamingJsonTest {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void streamedCamundaMessageMatchesMappedOne() throws Exception {
+        Transaction transaction = new Transaction();
+        transaction.setState(TransactionState.CONFIRMED);
+
+        assertEquals(mapper.readTree(mapper.writeValueAsString(CamundaMessageTranslator.convert("sub_123", transaction, false))),
+                mapper.readTree(StreamingJson.toJson(CamundaMessageTranslator.stream("sub_123", transaction, false))));
+        assertEquals(mapper.readTree(mapper.writeValueAsString(CamundaMessageTranslator.convert("sub_456", TransactionState.ERRORED, true, 5))),
+                mapper.readTree(StreamingJson.toJson(CamundaMessageTranslator.stream("sub_456", TransactionState.ERRORED, true, 5))));
+    }
+
+    @Test
+    void toJsonReusesBufferAcrossCalls() {
+        CallbackPayload first = generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("value", "x".repeat(4096));
+            generator.writeEndObject();
+        };
+        CallbackPayload second = generator -> {
+            generator.writeStartArray();
+            generator.writeNumber(1);
+            generator.writeEndArray();
+        };
+
+        assertEquals(4096 + "{\"value\":\"\"}".length(), StreamingJson.toJson(first).length());
+        assertEquals("[1]", StreamingJson.toJson(second));
+    }
+
+    /**
+     * Compares the bytes allocated per serialized Camunda message when going through the intermediate model and
+     * ObjectMapper versus when streaming the message.
+     */
+    @Test
+    @Tag("benchmark")
+    void allocationsPerMessage() throws Exception {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        final int iterations = 50_000;
+        final Transaction transaction = new Transaction();
+        transaction.setState(TransactionState.CONFIRMED);
+
+        // warm-up
+        for (int i = 0; i < iterations; i++) {
+            mapper.writeValueAsString(CamundaMessageTranslator.convert("sub_" + i, transaction, false));
+            StreamingJson.toJson(CamundaMessageTranslator.stream("sub_" + i, transaction, false));
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < iterations; i++) {
+            mapper.writeValueAsString(CamundaMessageTranslator.convert("sub_" + i, transaction, false));
+        }
+
+        final long mapped = (threads.getThreadAllocatedBytes(threadId) - start) / iterations;
+        start = threads.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < iterations; i++) {
+            StreamingJson.toJson(CamundaMessageTranslator.stream("sub_" + i, transaction, false));
+        }
+
+        final long streamed = (threads.getThreadAllocatedBytes(threadId) - start) / iterations;
+        log.info("Bytes allocated per Camunda message: mapped={}, streamed={}", mapped, streamed);
+    }
+}
@@ -1,14 +1,34 @@
 package blockchains.iaas.uni.stuttgart.de.history;
 
 import blockchains.iaas.uni.stuttgart.de.api.model.TransactionState;
+import blockchains.iaas.uni.stuttgart.de.history.journal.RequestJournal;
 import blockchains.iaas.uni.stuttgart.de.history.model.RequestDetails;
 import blockchains.iaas.uni.stuttgart.de.history.model.RequestType;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class RequestHistoryManagerTest {
 
+    @AfterEach
+    void tearDown() {
+        RequestHistoryManager instance = RequestHistoryManager.getInstance();
+        instance.configure(RequestHistoryManager.DEFAULT_MAX_ENTRIES, RequestHistoryManager.DEFAULT_TERMINAL_TTL_MILLIS);
+        instance.clear();
+    }
+
     @Test
     void getInstance() {
         RequestHistoryManager instance1 = RequestHistoryManager.getInstance();
@@ -43,4 +63,153 @@ class RequestHistoryManagerTest {
         assertEquals("bc2", details.getBlockchainId());
     }
 
-}
\ No newline at end of file
+    @Test
+    void evictLeastRecentlyUsed() {
+        RequestHistoryManager instance = RequestHistoryManager.getInstance();
+        instance.configure(2, RequestHistoryManager.DEFAULT_TERMINAL_TTL_MILLIS);
+        List<String> ids = sameStripeIds(3);
+        instance.addRequestDetails(ids.get(0), new RequestDetails(RequestType.SendTx, "bc1"));
+        instance.addRequestDetails(ids.get(1), new RequestDetails(RequestType.SendTx, "bc1"));
+        // ids[1] becomes the least recently used entry
+        assertNotNull(instance.getRequestDetails(ids.get(0)));
+        instance.addRequestDetails(ids.get(2), new RequestDetails(RequestType.SendTx, "bc1"));
+        assertEquals(2, instance.size());
+        assertNull(instance.getRequestDetails(ids.get(1)));
+        assertNotNull(instance.getRequestDetails(ids.get(0)));
+        assertNotNull(instance.getRequestDetails(ids.get(2)));
+        assertEquals(1, instance.getEvictionCount());
+        assertEquals(3, instance.getHitCount());
+        assertEquals(1, instance.getMissCount());
+    }
+
+    @Test
+    void maxEntriesBoundsAllStripes() {
+        RequestHistoryManager instance = RequestHistoryManager.getInstance();
+        instance.configure(5, RequestHistoryManager.DEFAULT_TERMINAL_TTL_MILLIS);
+
+        for (int i = 0; i < 100; i++) {
+            instance.addRequestDetails("request_" + i, new RequestDetails(RequestType.SendTx, "bc1"));
+            assertTrue(instance.size() <= 5);
+            // the entry that was just added is never evicted
+            assertNotNull(instance.getRequestDetails("request_" + i));
+        }
+
+        assertEquals(5, instance.size());
+        assertEquals(95, instance.getEvictionCount());
+        int kept = 0;
+
+        for (int i = 0; i < 100; i++) {
+            if (instance.getRequestDetails("request_" + i) != null) {
+                kept++;
+            }
+        }
+
+        assertEquals(5, kept);
+
+        // lowering the bound evicts the surplus right away
+        instance.configure(2, RequestHistoryManager.DEFAULT_TERMINAL_TTL_MILLIS);
+        assertEquals(2, instance.size());
+    }
+
+    @Test
+    void boundedUnderConcurrentAccess(@TempDir Path journalDirectory) throws Exception {
+        final int threadCount = 16;
+        final int requestsPerThread = 5_000;
+        final int sharedCount = 64;
+        final int maxEntries = 1_024;
+        RequestHistoryManager instance = RequestHistoryManager.getInstance();
+        instance.configure(maxEntries, RequestHistoryManager.DEFAULT_TERMINAL_TTL_MILLIS);
+        RequestJournal journal = new RequestJournal(journalDirectory, 1024 * 1024, 10);
+        journal.start();
+        instance.setJournal(journal);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger lostUpdates = new AtomicInteger();
+
+        for (int i = 0; i < sharedCount; i++) {
+            instance.addRequestDetails("shared_" + i, new RequestDetails(RequestType.SendTx, "bc1"));
+        }
+
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            // the threads race to change the states of the shared requests
+            final TransactionState sharedState = thread % 2 == 0 ? TransactionState.PENDING : TransactionState.NOT_FOUND;
+            executor.execute(() -> {
+                try {
+                    start.await();
+
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        final String id = thread + "_" + i;
+                        instance.addRequestDetails(id, new RequestDetails(RequestType.SendTx, "bc1"));
+                        instance.setTxState(id, TransactionState.PENDING);
+                        RequestDetails details = instance.getRequestDetails(id);
+
+                        if (details != null && details.getTxState() != TransactionState.PENDING) {
+                            lostUpdates.incrementAndGet();
+                        }
+
+                        instance.setTxState("shared_" + (i % sharedCount), sharedState);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        instance.setJournal(null);
+        journal.close();
+        assertEquals(0, lostUpdates.get());
+        assertTrue(instance.size() <= maxEntries);
+        assertEquals((long) sharedCount + (long) threadCount * requestsPerThread - instance.size(), instance.getEvictionCount());
+
+        // the journal recorded the last state of every shared request that is still known
+        Map<String, RequestDetails> recovered = new RequestJournal(journalDirectory, 1024 * 1024, 10).replay();
+        int sharedKept = 0;
+
+        for (int i = 0; i < sharedCount; i++) {
+            final String id = "shared_" + i;
+            RequestDetails details = instance.getRequestDetails(id);
+
+            if (details != null) {
+                assertEquals(details.getTxState(), recovered.get(id).getTxState());
+                sharedKept++;
+            }
+        }
+
+        assertTrue(sharedKept > 0);
+    }
+
+    @Test
+    void evictTerminalRequestsAfterTtl() {
+        RequestHistoryManager instance = RequestHistoryManager.getInstance();
+        instance.configure(RequestHistoryManager.STRIPE_COUNT * 10, 0);
+        instance.addRequestDetails("abc1", new RequestDetails(RequestType.SendTx, "bc1"));
+        instance.addRequestDetails("abc2", new RequestDetails(RequestType.SendTx, "bc1"));
+        instance.setTxState("abc1", TransactionState.PENDING);
+        instance.setTxState("abc2", TransactionState.CONFIRMED);
+        instance.evictExpired();
+        assertNotNull(instance.getRequestDetails("abc1"));
+        assertNull(instance.getRequestDetails("abc2"));
+        instance.setException("abc1", new RuntimeException());
+        assertNull(instance.getRequestDetails("abc1"));
+        assertEquals(0, instance.size());
+        // updating evicted requests is tolerated
+        instance.setTxState("abc1", TransactionState.CONFIRMED);
+    }
+
+    private static List<String> sameStripeIds(int count) {
+        List<String> result = new ArrayList<>();
+        int stripe = RequestHistoryManager.stripeIndexOf("abc0");
+
+        for (int i = 0; result.size() < count; i++) {
+            if (RequestHistoryManager.stripeIndexOf("abc" + i) == stripe) {
+                result.add("abc" + i);
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+package blockchains.iaas.uni.stuttgart.de.history.journal;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.LinearChainTransaction;
+import blockchains.iaas.uni.stuttgart.de.api.model.TransactionState;
+import blockchains.iaas.uni.stuttgart.de.history.model.RecoveredRequestException;
+import blockchains.iaas.uni.stuttgart.de.history.model.RequestDetails;
+import blockchains.iaas.uni.stuttgart.de.history.model.RequestType;
+import lombok.extern.log4j.Log4j2;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Log4j2
+class RequestJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayRecordedTransitions() throws IOException {
+        RequestJournal journal = new RequestJournal(directory, 1024 * 1024, 10);
+        journal.start();
+        journal.appendCreated("abc1", new RequestDetails(RequestType.SendTx, "bc1"));
+        journal.appendCreated("abc2", new RequestDetails(RequestType.InvokeSCFunction, "bc2"));
+        LinearChainTransaction tx = new LinearChainTransaction();
+        tx.setTransactionHash("0x123");
+        tx.setState(TransactionState.PENDING);
+        journal.appendTransaction("abc1", tx);
+        journal.appendTxState("abc1", TransactionState.CONFIRMED);
+        journal.appendException("abc2", new IllegalStateException("failed"));
+        journal.close();
+
+        Map<String, RequestDetails> recovered = new RequestJournal(directory, 1024 * 1024, 10).replay();
+        assertEquals(2, recovered.size());
+        RequestDetails details = recovered.get("abc1");
+        assertEquals(RequestType.SendTx, details.getType());
+        assertEquals("bc1", details.getBlockchainId());
+        assertEquals(TransactionState.CONFIRMED, details.getTxState());
+        assertEquals("0x123", ((LinearChainTransaction) details.getTransaction()).getTransactionHash());
+        assertTrue(details.getTerminatedAt() > 0);
+        details = recovered.get("abc2");
+        assertEquals(RequestType.InvokeSCFunction, details.getType());
+        assertInstanceOf(RecoveredRequestException.class, details.getException());
+        assertEquals(IllegalStateException.class.getName(), ((RecoveredRequestException) details.getException()).getOriginalType());
+        assertEquals("failed", details.getException().getMessage());
+    }
+
+    @Test
+    void compactionDropsOldSegments() throws IOException {
+        final int requestCount = 1_000;
+        RequestJournal journal = new RequestJournal(directory, 4 * 1024, 10);
+        journal.start();
+        Map<String, RequestDetails> live = new LinkedHashMap<>();
+
+        for (int i = 0; i < requestCount; i++) {
+            RequestDetails details = new RequestDetails(RequestType.SendTx, "bc1");
+            journal.appendCreated("abc" + i, details);
+            journal.appendTxState("abc" + i, TransactionState.PENDING);
+
+            if (i % 10 == 0) {
+                details.setTxState(TransactionState.PENDING);
+                live.put("abc" + i, details);
+            }
+        }
+
+        final long segmentsBefore = countSegments();
+        assertTrue(segmentsBefore > 1);
+        journal.compact(visitor -> live.forEach(visitor));
+        assertTrue(countSegments() < segmentsBefore);
+        journal.appendTxState("abc0", TransactionState.CONFIRMED);
+        journal.close();
+
+        Map<String, RequestDetails> recovered = new RequestJournal(directory, 4 * 1024, 10).replay();
+        assertEquals(live.keySet(), recovered.keySet());
+        assertEquals(TransactionState.CONFIRMED, recovered.get("abc0").getTxState());
+        assertEquals(TransactionState.PENDING, recovered.get("abc10").getTxState());
+    }
+
+    @Test
+    void compactionKeepsTheOriginalTerminationTime() throws IOException {
+        RequestJournal journal = new RequestJournal(directory, 4 * 1024, 10);
+        journal.start();
+        RequestDetails details = new RequestDetails(RequestType.SendTx, "bc1");
+        details.setTxState(TransactionState.CONFIRMED);
+        details.restoreTerminatedAt(1_000L);
+        journal.appendCreated("abc", details);
+        journal.appendTxState("abc", TransactionState.CONFIRMED);
+        journal.compact(visitor -> visitor.accept("abc", details));
+        journal.close();
+
+        assertEquals(1_000L, new RequestJournal(directory, 4 * 1024, 10).replay().get("abc").getTerminatedAt());
+    }
+
+    @Test
+    void repeatedCreationRecordsKeepReplayedTransitions() throws IOException {
+        RequestJournal journal = new RequestJournal(directory, 4 * 1024, 10);
+        journal.start();
+        RequestDetails details = new RequestDetails(RequestType.SendTx, "bc1");
+        journal.appendCreated("abc", details);
+        journal.appendTxState("abc", TransactionState.CONFIRMED);
+        // e.g., the snapshot of a compaction that crashed before deleting the older segments
+        journal.appendCreated("abc", details);
+        journal.close();
+
+        assertEquals(TransactionState.CONFIRMED, new RequestJournal(directory, 4 * 1024, 10).replay().get("abc").getTxState());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void groupCommitAndReplayThroughput() throws IOException {
+        final int requestCount = 100_000;
+        RequestJournal journal = new RequestJournal(directory, 16 * 1024 * 1024, 10);
+        journal.start();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < requestCount; i++) {
+            journal.appendCreated("request-" + i, new RequestDetails(RequestType.SendTx, "bc1"));
+            journal.appendTxState("request-" + i, TransactionState.CONFIRMED);
+        }
+
+        journal.flush();
+        log.info("Appended {} records in {} ms using {} flushes", journal.getAppendedRecordCount(),
+                (System.nanoTime() - start) / 1_000_000, journal.getFlushCount());
+        assertTrue(journal.getFlushCount() < journal.getAppendedRecordCount());
+        journal.close();
+
+        start = System.nanoTime();
+        Map<String, RequestDetails> recovered = new RequestJournal(directory, 16 * 1024 * 1024, 10).replay();
+        log.info("Replayed {} requests in {} ms", recovered.size(), (System.nanoTime() - start) / 1_000_000);
+        assertEquals(requestCount, recovered.size());
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package blockchains.iaas.uni.stuttgart.de.restapi.controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import blockchains.iaas.uni.stuttgart.de.BlockchainManager;
+import blockchains.iaas.uni.stuttgart.de.scip.ScipRequestContext;
+import blockchains.iaas.uni.stuttgart.de.scip.ScipRequestHandler;
+import blockchains.iaas.uni.stuttgart.de.scip.ScipService;
+import blockchains.iaas.uni.stuttgart.de.tccsci.DistributedTransactionManager;
+import com.github.arteam.simplejsonrpc.server.JsonRpcServer;
+import lombok.extern.log4j.Log4j2;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Log4j2
+class RootControllerTest {
+    private static final String IS_ABORTED_REQUEST =
+            "{\"jsonrpc\":\"2.0\",\"method\":\"DtxIsAborted\",\"params\":{\"dtxId\":\"" + UUID.randomUUID() + "\"},\"id\":1}";
+
+    @Test
+    void concurrentRequestsSeeTheirOwnContext() throws Exception {
+        RootController controller = new RootController(mock(BlockchainManager.class), echoingDtxManager(),
+                ScipRequestHandler.DEFAULT_MAX_BATCH_SIZE, ScipRequestHandler.DEFAULT_MAX_PARALLELISM);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        for (int i = 0; i < 1_000; i++) {
+            final String blockchainId = "bc" + i;
+            results.add(executor.submit(() -> controller
+                    .performJsonRpcCall(IS_ABORTED_REQUEST, "ethereum", blockchainId, "0x1")
+                    .join()
+                    .getBody()
+                    .contains("\"result\":\"" + blockchainId + "\"")));
+        }
+
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertNull(ScipRequestContext.current().blockchainId());
+    }
+
+    /**
+     * Compares the JSON-RPC requests per second handled through the shared dispatcher with creating the server and
+     * service for every request, as done before.
+     */
+    @Test
+    @Tag("benchmark")
+    void requestsPerSecond() throws Exception {
+        final int threads = 8;
+        final int requestsPerThread = 5_000;
+        final BlockchainManager manager = mock(BlockchainManager.class);
+        final DistributedTransactionManager dtxManager = echoingDtxManager();
+        final RootController controller = new RootController(manager, dtxManager,
+                ScipRequestHandler.DEFAULT_MAX_BATCH_SIZE, ScipRequestHandler.DEFAULT_MAX_PARALLELISM);
+
+        final double perRequest = measure(threads, requestsPerThread, () -> {
+            ScipService service = new ScipService(manager, dtxManager);
+            new ScipRequestContext("ethereum", "bc1", "0x1").call(() -> new JsonRpcServer().handle(IS_ABORTED_REQUEST, service));
+        });
+        final double shared = measure(threads, requestsPerThread,
+                () -> controller.performJsonRpcCall(IS_ABORTED_REQUEST, "ethereum", "bc1", "0x1").join());
+        log.info("JSON-RPC requests per second: new server per request={}, shared server={}",
+                String.format("%.0f", perRequest), String.format("%.0f", shared));
+    }
+
+    private static double measure(int threads, int requestsPerThread, Runnable request) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // warm-up
+        for (int i = 0; i < requestsPerThread; i++) {
+            request.run();
+        }
+
+        final long start = System.nanoTime();
+
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < requestsPerThread; i++) {
+                    request.run();
+                }
+            });
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        return (double) threads * requestsPerThread / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static DistributedTransactionManager echoingDtxManager() {
+        DistributedTransactionManager dtxManager = mock(DistributedTransactionManager.class);
+        when(dtxManager.isAbortedInBcAsync(any(UUID.class), anyString()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(1)));
+
+        return dtxManager;
+    }
+}
@@ -0,0 +1,196 @@
+package blockchains.iaas.uni.stuttgart.de.scip;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import blockchains.iaas.uni.stuttgart.de.BlockchainManager;
+import blockchains.iaas.uni.stuttgart.de.api.exceptions.InvalidScipParameterException;
+import blockchains.iaas.uni.stuttgart.de.api.model.QueryResult;
+import blockchains.iaas.uni.stuttgart.de.tccsci.DistributedTransactionManager;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScipRequestHandlerTest {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final ScipRequestContext CONTEXT = new ScipRequestContext("ethereum", "bc1", "0x1");
+    private ScipRequestHandler handler;
+
+    @AfterEach
+    void tearDown() {
+        if (handler != null) {
+            handler.shutdown();
+        }
+    }
+
+    @Test
+    void singleRequest() throws Exception {
+        handler = new ScipRequestHandler(new ScipService(mock(BlockchainManager.class), echoingDtxManager()), 10, 4);
+        JsonNode response = mapper.readTree(handler.handle(isAborted(7), CONTEXT));
+
+        assertEquals(7, response.get("id").asInt());
+        assertEquals("bc1", response.get("result").asText());
+    }
+
+    @Test
+    void batchResponsesKeepRequestOrder() throws Exception {
+        handler = new ScipRequestHandler(new ScipService(mock(BlockchainManager.class), echoingDtxManager()), 100, 4);
+        StringBuilder batch = new StringBuilder("[");
+
+        for (int i = 0; i < 50; i++) {
+            batch.append(i == 0 ? "" : ",").append(isAborted(i));
+        }
+
+        // a notification and an invalid request
+        batch.append(",").append(isAborted(0).replace(",\"id\":0", "")).append(",1]");
+        JsonNode responses = mapper.readTree(handler.handle(batch.toString(), CONTEXT));
+
+        assertEquals(51, responses.size());
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, responses.get(i).get("id").asInt());
+            assertEquals("bc1", responses.get(i).get("result").asText());
+        }
+
+        assertEquals(-32600, responses.get(50).get("error").get("code").asInt());
+    }
+
+    @Test
+    void batchElementsRunConcurrentlyWithBoundedParallelism() throws Exception {
+        final int parallelism = 3;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch overlapped = new CountDownLatch(1);
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        DistributedTransactionManager dtxManager = mock(DistributedTransactionManager.class);
+        when(dtxManager.isAbortedInBcAsync(any(UUID.class), anyString())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            threads.add(Thread.currentThread().getName());
+
+            if (running.get() > 1) {
+                overlapped.countDown();
+            }
+
+            overlapped.await(100, TimeUnit.MILLISECONDS);
+            running.decrementAndGet();
+
+            return CompletableFuture.completedFuture(invocation.getArgument(1));
+        });
+        handler = new ScipRequestHandler(new ScipService(mock(BlockchainManager.class), dtxManager), 100, parallelism);
+
+        JsonNode responses = mapper.readTree(handler.handle("[" + isAborted(1) + "," + isAborted(2) + "," + isAborted(3) + ","
+                + isAborted(4) + "," + isAborted(5) + "," + isAborted(6) + "]", CONTEXT));
+
+        assertEquals(6, responses.size());
+        assertTrue(maxRunning.get() > 1);
+        assertTrue(maxRunning.get() <= parallelism);
+        assertTrue(threads.size() <= parallelism);
+    }
+
+    @Test
+    void asyncRequestDoesNotWaitForTheBlockchain() throws Exception {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        DistributedTransactionManager dtxManager = mock(DistributedTransactionManager.class);
+        when(dtxManager.isAbortedInBcAsync(any(UUID.class), anyString())).thenReturn(pending);
+        handler = new ScipRequestHandler(new ScipService(mock(BlockchainManager.class), dtxManager), 10, 4);
+
+        CompletableFuture<String> response = handler.handleAsync(isAborted(3), CONTEXT);
+        assertFalse(response.isDone());
+        pending.complete("true");
+        JsonNode result = mapper.readTree(response.get(5, TimeUnit.SECONDS));
+
+        assertEquals(3, result.get("id").asInt());
+        assertEquals("true", result.get("result").asText());
+        // the operation is started only once
+        verify(dtxManager, times(1)).isAbortedInBcAsync(any(UUID.class), anyString());
+    }
+
+    @Test
+    void asyncRequestReportsFailures() throws Exception {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        DistributedTransactionManager dtxManager = mock(DistributedTransactionManager.class);
+        when(dtxManager.isAbortedInBcAsync(any(UUID.class), anyString())).thenReturn(pending);
+        handler = new ScipRequestHandler(new ScipService(mock(BlockchainManager.class), dtxManager), 10, 4);
+
+        CompletableFuture<String> response = handler.handleAsync(isAborted(4), CONTEXT);
+        pending.completeExceptionally(new InvalidScipParameterException("unknown blockchain"));
+        JsonNode result = mapper.readTree(response.get(5, TimeUnit.SECONDS));
+
+        assertEquals(4, result.get("id").asInt());
+        assertTrue(result.has("error"));
+    }
+
+    @Test
+    void asyncQueryIsDispatchedOnce() throws Exception {
+        CompletableFuture<QueryResult> pending = new CompletableFuture<>();
+        BlockchainManager manager = mock(BlockchainManager.class);
+        when(manager.queryEventsAsync(anyString(), anyString(), anyString(), anyList(), any(), any())).thenReturn(pending);
+        handler = new ScipRequestHandler(new ScipService(manager, echoingDtxManager()), 10, 4);
+
+        CompletableFuture<String> response = handler.handleAsync("{\"jsonrpc\":\"2.0\",\"method\":\"Query\",\"params\":{"
+                + "\"signature\":{\"name\":\"Vote\",\"function\":false,\"parameters\":[]}},\"id\":5}", CONTEXT);
+        assertFalse(response.isDone());
+        pending.complete(QueryResult.builder().occurrences(List.of()).build());
+        JsonNode result = mapper.readTree(response.get(5, TimeUnit.SECONDS));
+
+        assertEquals(5, result.get("id").asInt());
+        assertTrue(result.get("result").get("occurrences").isEmpty());
+        verify(manager, times(1)).queryEventsAsync(eq("bc1"), eq("0x1"), eq("Vote"), anyList(), any(), any());
+    }
+
+    @Test
+    void asyncRequestRejectsInvalidParams() throws Exception {
+        DistributedTransactionManager dtxManager = echoingDtxManager();
+        handler = new ScipRequestHandler(new ScipService(mock(BlockchainManager.class), dtxManager), 10, 4);
+
+        JsonNode result = mapper.readTree(handler.handleAsync("{\"jsonrpc\":\"2.0\",\"method\":\"DtxIsAborted\","
+                + "\"params\":{\"dtxId\":\"not-a-uuid\"},\"id\":6}", CONTEXT).get(5, TimeUnit.SECONDS));
+
+        assertEquals(6, result.get("id").asInt());
+        assertEquals(-32602, result.get("error").get("code").asInt());
+        verify(dtxManager, times(0)).isAbortedInBcAsync(any(UUID.class), anyString());
+    }
+
+    @Test
+    void rejectInvalidBatches() throws Exception {
+        handler = new ScipRequestHandler(new ScipService(mock(BlockchainManager.class), echoingDtxManager()), 2, 4);
+
+        assertEquals(-32600, mapper.readTree(handler.handle(" [ ]", CONTEXT)).get("error").get("code").asInt());
+        assertEquals(-32600, mapper.readTree(handler.handle("[" + isAborted(1) + "," + isAborted(2) + "," + isAborted(3) + "]", CONTEXT))
+                .get("error").get("code").asInt());
+        assertEquals(-32700, mapper.readTree(handler.handle("[{\"jsonrpc\":", CONTEXT)).get("error").get("code").asInt());
+        // only notifications
+        assertEquals("", handler.handle("[" + isAborted(1).replace(",\"id\":1", "") + "]", CONTEXT));
+    }
+
+    private static String isAborted(int id) {
+        return "{\"jsonrpc\":\"2.0\",\"method\":\"DtxIsAborted\",\"params\":{\"dtxId\":\"" + UUID.randomUUID() + "\"},\"id\":" + id + "}";
+    }
+
+    private static DistributedTransactionManager echoingDtxManager() {
+        DistributedTransactionManager dtxManager = mock(DistributedTransactionManager.class);
+        when(dtxManager.isAbortedInBcAsync(any(UUID.class), anyString()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.getArgument(1)));
+
+        return dtxManager;
+    }
+}
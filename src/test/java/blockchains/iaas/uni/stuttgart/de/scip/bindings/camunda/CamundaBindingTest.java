@@ -21,7 +21,10 @@ import blockchains.iaas.uni.stuttgart.de.scip.model.exceptions.AsynchronousBalEx
 
 import blockchains.iaas.uni.stuttgart.de.scip.model.common.Argument;
 import blockchains.iaas.uni.stuttgart.de.scip.model.responses.InvokeResponse;
+import blockchains.iaas.uni.stuttgart.de.scip.model.responses.ReceiveTxResponse;
 import blockchains.iaas.uni.stuttgart.de.scip.model.responses.SubscribeResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.log4j.Log4j2;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
@@ -101,6 +104,27 @@ class CamundaBindingTest {
         // todo test contents of request message
     }
 
+    @Test
+    void sendReceiveTxResponseKeepsLongValuesExact() throws Exception {
+        // above 2^53, i.e., not representable as a double
+        final long value = (1L << 53) + 1;
+        ReceiveTxResponse response = ReceiveTxResponse
+                .builder()
+                .correlationId("1234_tx")
+                .from("0xabc")
+                .value(value)
+                .timestamp(String.valueOf(value + 2))
+                .build();
+        String endpointUrl = this.mockWebServer.url("/").toString();
+        CamundaBinding binding = new CamundaBinding();
+        binding.sendReceiveTxResponse(endpointUrl, response);
+        RecordedRequest recordedRequest = this.mockWebServer.takeRequest();
+        JsonNode variables = new ObjectMapper().readTree(recordedRequest.getBody().readUtf8()).get("processVariablesLocal");
+        Assertions.assertEquals("Long", variables.get("value").get("type").asText());
+        Assertions.assertEquals(value, variables.get("value").get("value").longValue());
+        Assertions.assertEquals(value + 2, variables.get("timestamp").get("value").longValue());
+    }
+
     private static Stream<Arguments> sendInvocationResponse() {
         Argument param1 = Argument
                 .builder()
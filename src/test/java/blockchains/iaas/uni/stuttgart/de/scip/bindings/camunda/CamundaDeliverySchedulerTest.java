@@ -0,0 +1,120 @@
+package blockchains.iaas.uni.stuttgart.de.scip.bindings.camunda;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackSend;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CamundaDeliverySchedulerTest {
+
+    @Test
+    void testManyPendingMessagesWithoutParkedThreads() throws InterruptedException {
+        final int messageCount = 5_000;
+        CamundaDeliveryScheduler scheduler = new CamundaDeliveryScheduler((endpointUrl, orderingKey, send) -> send.send());
+        scheduler.configure(500, false, CamundaDeliveryScheduler.DEFAULT_PROBE_INTERVAL_MILLIS);
+        CountDownLatch delivered = new CountDownLatch(messageCount);
+        final int threadsBefore = Thread.activeCount();
+
+        for (int i = 0; i < messageCount; i++) {
+            scheduler.schedule("http://localhost:8080/engine-rest/message", "bk" + i + "_" + i, "bk" + i, "result_" + i, countDown(delivered));
+        }
+
+        assertTrue(scheduler.getPendingCount() > 0);
+        assertTrue(Thread.activeCount() <= threadsBefore + 1);
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    void testPerMessageDelay() throws InterruptedException {
+        CamundaDeliveryScheduler scheduler = new CamundaDeliveryScheduler((endpointUrl, orderingKey, send) -> send.send());
+        CountDownLatch delivered = new CountDownLatch(1);
+        // the default delay of 10 seconds is overridden for this message
+        scheduler.schedule("http://localhost:8080/engine-rest/message", "bk_1", "bk", "result_1", 0, countDown(delivered));
+        assertTrue(delivered.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testDeliveryKeepsTheOrderingKey() throws InterruptedException {
+        List<String> keys = new CopyOnWriteArrayList<>();
+        CamundaDeliveryScheduler scheduler = new CamundaDeliveryScheduler((endpointUrl, orderingKey, send) -> {
+            keys.add(orderingKey);
+            send.send();
+        });
+        CountDownLatch delivered = new CountDownLatch(2);
+        scheduler.schedule("http://localhost:8080/engine-rest/message", "bk_1", "bk", "result_1", 0, countDown(delivered));
+        scheduler.schedule("http://localhost:8080/engine-rest/message", "bk_1", "bk", "error_1", 0, countDown(delivered));
+        assertTrue(delivered.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of("bk_1", "bk_1"), keys);
+    }
+
+    @Test
+    void testProbedMessagesOfARequestAreDeliveredInOrder() throws Exception {
+        try (MockWebServer camunda = new MockWebServer()) {
+            // an execution waits for the second message only
+            camunda.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull RecordedRequest request) {
+                    final boolean ready = request.getPath() != null && request.getPath().contains("messageEventSubscriptionName=error_1");
+
+                    return new MockResponse().setResponseCode(200).setBody(ready ? "[{\"id\":\"1\"}]" : "[]");
+                }
+            });
+            AtomicInteger deliveries = new AtomicInteger();
+            CamundaDeliveryScheduler scheduler = new CamundaDeliveryScheduler((endpointUrl, orderingKey, send) -> {
+                deliveries.incrementAndGet();
+                send.send();
+            });
+            scheduler.configure(300, true, 20);
+            List<String> delivered = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(2);
+            final String endpointUrl = camunda.url("/engine-rest/message").toString();
+
+            scheduler.schedule(endpointUrl, "bk_1", "bk", "result_1", record(delivered, "result_1", done));
+            scheduler.schedule(endpointUrl, "bk_1", "bk", "error_1", record(delivered, "error_1", done));
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of("result_1", "error_1"), delivered);
+            // the probes are not delivered as callbacks
+            assertEquals(2, deliveries.get());
+        }
+    }
+
+    @Test
+    void testProbeUrl() {
+        assertEquals("http://localhost:8080/engine-rest/execution?businessKey=bk&messageEventSubscriptionName=result_1",
+                CamundaDeliveryScheduler.probeUrlOf("http://localhost:8080/engine-rest/message", "bk", "result_1"));
+        assertNull(CamundaDeliveryScheduler.probeUrlOf("http://localhost:8080/callback", "bk", "result_1"));
+    }
+
+    private static CallbackSend record(List<String> delivered, String messageName, CountDownLatch latch) {
+        return () -> {
+            delivered.add(messageName);
+            latch.countDown();
+
+            return true;
+        };
+    }
+
+    private static CallbackSend countDown(CountDownLatch latch) {
+        return () -> {
+            latch.countDown();
+
+            return true;
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package blockchains.iaas.uni.stuttgart.de.scip.bindings.jsonrpc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import blockchains.iaas.uni.stuttgart.de.callback.CallbackDispatcher;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonRpcBatcherTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private MockWebServer mockWebServer;
+
+    @BeforeEach
+    void init() {
+        this.mockWebServer = new MockWebServer();
+    }
+
+    @AfterEach
+    void destroy() throws IOException {
+        this.mockWebServer.close();
+    }
+
+    @Test
+    void flushOnSizeAndLinger() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        String endpointUrl = mockWebServer.url("/").toString();
+        JsonRpcBatcher batcher = new JsonRpcBatcher(new CallbackDispatcher("test"));
+        batcher.configure(true, 3, 50);
+
+        for (int i = 0; i < 5; i++) {
+            batcher.enqueue(endpointUrl, notification(i));
+        }
+
+        // the first three notifications reach the maximum batch size
+        assertEquals(List.of(0, 1, 2), idsOf(mockWebServer.takeRequest(1, TimeUnit.SECONDS)));
+        // the remaining two are sent once the linger time elapses
+        assertEquals(List.of(3, 4), idsOf(mockWebServer.takeRequest(1, TimeUnit.SECONDS)));
+        assertNull(mockWebServer.takeRequest(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void resendIndividuallyWhenBatchIsRejected() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(400));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        String endpointUrl = mockWebServer.url("/").toString();
+        JsonRpcBatcher batcher = new JsonRpcBatcher(new CallbackDispatcher("test"));
+        batcher.configure(true, 3, 1_000);
+
+        for (int i = 0; i < 3; i++) {
+            batcher.enqueue(endpointUrl, notification(i));
+        }
+
+        assertEquals(List.of(0, 1, 2), idsOf(mockWebServer.takeRequest(1, TimeUnit.SECONDS)));
+
+        // a failing notification does not prevent the ones after it
+        for (int i = 0; i < 3; i++) {
+            JsonNode single = mapper.readTree(mockWebServer.takeRequest(1, TimeUnit.SECONDS).getBody().readUtf8());
+            assertFalse(single.isArray());
+            assertEquals(i, single.get("params").get("id").asInt());
+        }
+    }
+
+    private static String notification(int id) {
+        return "{\"jsonrpc\":\"2.0\",\"method\":\"ReceiveResponse\",\"params\":{\"id\":" + id + "}}";
+    }
+
+    private List<Integer> idsOf(RecordedRequest request) throws IOException {
+        assertNotNull(request);
+        JsonNode batch = mapper.readTree(request.getBody().readUtf8());
+        assertTrue(batch.isArray());
+        List<Integer> ids = new ArrayList<>();
+        batch.forEach(entry -> ids.add(entry.get("params").get("id").asInt()));
+
+        return ids;
+    }
+}
@@ -0,0 +1,80 @@
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.Occurrence;
+import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
+import blockchains.iaas.uni.stuttgart.de.api.model.QueryResult;
+import blockchains.iaas.uni.stuttgart.de.api.model.TimeFrame;
+import io.reactivex.Observable;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class EventIndexManagerTest {
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() {
+        EventIndexManager.getInstance().configure(false, dir.toString(), EventIndexManager.DEFAULT_SEGMENT_SIZE_BYTES,
+                EventIndexManager.DEFAULT_MAX_INDEXES, EventIndexManager.DEFAULT_DEGREE_OF_CONFIDENCE);
+    }
+
+    @Test
+    void skipsConfirmedOccurrencesTheBootstrapQueryReturnedAlready() throws Exception {
+        EventIndexManager manager = EventIndexManager.getInstance();
+        manager.configure(true, dir.toString(), EventIndexManager.DEFAULT_SEGMENT_SIZE_BYTES,
+                EventIndexManager.DEFAULT_MAX_INDEXES, EventIndexManager.DEFAULT_DEGREE_OF_CONFIDENCE);
+        PublishSubject<Occurrence> confirmed = PublishSubject.create();
+        List<TimeFrame> queries = new ArrayList<>();
+        Occurrence mined = occurrence(START, "1");
+        // mined between the subscription and the query, so the query returns it before it is confirmed
+        Occurrence minedDuringBootstrap = occurrence(START.plusSeconds(1), "2");
+        EventIndexManager.EventSource source = new EventIndexManager.EventSource() {
+            @Override
+            public CompletableFuture<QueryResult> queryEvents(TimeFrame timeFrame) {
+                queries.add(timeFrame);
+                return CompletableFuture.completedFuture(QueryResult.builder().occurrences(List.of(mined, minedDuringBootstrap)).build());
+            }
+
+            @Override
+            public Observable<Occurrence> subscribe(double degreeOfConfidence) {
+                return confirmed;
+            }
+        };
+
+        assertEquals(2, query(manager, source).size());
+        // the bootstrap query ends at the time of the subscription
+        assertNotNull(queries.get(0).getTo());
+
+        // the subscription confirms the occurrence after the index went live
+        confirmed.onNext(occurrence(START.plusSeconds(1), "2"));
+        confirmed.onNext(occurrence(START.plusSeconds(2), "3"));
+        List<Occurrence> indexed = query(manager, source);
+
+        assertEquals(1, queries.size());
+        assertEquals(3, indexed.size());
+        assertEquals("3", indexed.get(2).getParameters().get(0).getValue());
+    }
+
+    private static List<Occurrence> query(EventIndexManager manager, EventIndexManager.EventSource source) {
+        return manager.queryEvents("bc1", "0xcontract", "Transfer", List.of(), null, null, source)
+                .join()
+                .getOccurrences();
+    }
+
+    private static Occurrence occurrence(Instant timestamp, String value) {
+        return new Occurrence(List.of(new Parameter("value", "uint256", value)), timestamp.toString());
+    }
+}
@@ -0,0 +1,116 @@
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.Occurrence;
+import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventIndexTest {
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsTimeRangesAcrossSegments() throws Exception {
+        try (EventIndex index = new EventIndex(dir, 4096)) {
+            assertNull(index.getCheckpoint());
+            assertEquals(2000, index.append(occurrences(0, 2000)));
+
+            try (Stream<Path> segments = Files.list(dir)) {
+                assertTrue(segments.count() > 1);
+            }
+
+            assertEquals(2000, index.read(null, null).size());
+            List<Occurrence> range = index.read(START.plusSeconds(1000), START.plusSeconds(1099));
+            assertEquals(100, range.size());
+            assertEquals("1000", range.get(0).getParameters().get(0).getValue());
+            assertEquals("1099", range.get(99).getParameters().get(0).getValue());
+            assertEquals(START.plusSeconds(1999), index.getCheckpoint());
+        }
+    }
+
+    @Test
+    void ignoresOccurrencesThatAreAlreadyIndexed() throws Exception {
+        try (EventIndex index = new EventIndex(dir, 4096)) {
+            index.append(occurrences(0, 10));
+            List<Occurrence> overlapping = new ArrayList<>(occurrences(5, 15));
+            // another occurrence at the checkpoint is not a duplicate
+            overlapping.add(0, occurrence(START.plusSeconds(9), "other"));
+
+            assertEquals(6, index.appendFromCheckpoint(overlapping));
+            assertEquals(16, index.size());
+        }
+    }
+
+    @Test
+    void keepsEqualOccurrencesAtTheSameTimestamp() throws Exception {
+        try (EventIndex index = new EventIndex(dir, 4096)) {
+            Occurrence occurrence = occurrence(START, "same");
+
+            assertEquals(2, index.append(List.of(occurrence, occurrence)));
+            assertEquals(1, index.append(List.of(occurrence)));
+            // a query from the checkpoint on returns the three indexed occurrences, and a fourth one
+            assertEquals(1, index.appendFromCheckpoint(List.of(occurrence, occurrence, occurrence, occurrence)));
+            assertEquals(4, index.read(null, null).size());
+        }
+    }
+
+    @Test
+    void rejectsOccurrencesOutOfOrder() throws Exception {
+        try (EventIndex index = new EventIndex(dir, 4096)) {
+            index.append(occurrences(0, 10));
+
+            assertEquals(1, index.append(List.of(occurrence(START.plusSeconds(5), "late"), occurrence(START.plusSeconds(10), "10"))));
+            assertEquals(11, index.size());
+            assertEquals(START.plusSeconds(10), index.getCheckpoint());
+        }
+    }
+
+    @Test
+    void recoversFromDiskAndDropsIncompleteRecords() throws Exception {
+        try (EventIndex index = new EventIndex(dir, 4096)) {
+            index.append(occurrences(0, 600));
+        }
+
+        try (Stream<Path> segments = Files.list(dir)) {
+            Path last = segments.sorted().reduce((first, second) -> second).orElseThrow();
+            Files.write(last, "{\"t\":\"2024".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        }
+
+        try (EventIndex index = new EventIndex(dir, 4096)) {
+            assertEquals(600, index.size());
+            assertEquals(START.plusSeconds(599), index.getCheckpoint());
+            assertEquals(0, index.appendFromCheckpoint(occurrences(590, 600)));
+            assertEquals(1, index.append(occurrences(600, 601)));
+            assertEquals(11, index.read(START.plusSeconds(590), null).size());
+        }
+    }
+
+    private static List<Occurrence> occurrences(int from, int to) {
+        List<Occurrence> occurrences = new ArrayList<>();
+
+        for (int i = from; i < to; i++) {
+            occurrences.add(occurrence(START.plusSeconds(i), String.valueOf(i)));
+        }
+
+        return occurrences;
+    }
+
+    private static Occurrence occurrence(Instant timestamp, String value) {
+        return new Occurrence(List.of(new Parameter("value", "uint256", value)), timestamp.toString());
+    }
+}
@@ -0,0 +1,138 @@
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import blockchains.iaas.uni.stuttgart.de.api.exceptions.InvalidScipParameterException;
+import blockchains.iaas.uni.stuttgart.de.api.model.Occurrence;
+import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
+import blockchains.iaas.uni.stuttgart.de.scip.model.responses.QueryPage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCursorManagerTest {
+
+    @AfterEach
+    void tearDown() {
+        QueryCursorManager manager = QueryCursorManager.getInstance();
+        manager.configure(QueryCursorManager.DEFAULT_MAX_CURSORS, QueryCursorManager.DEFAULT_TTL_MILLIS, QueryCursorManager.DEFAULT_MAX_PAGE_SIZE, QueryCursorManager.DEFAULT_MAX_OCCURRENCES);
+        manager.clear();
+    }
+
+    @Test
+    void pageThroughOccurrences() {
+        QueryCursorManager manager = QueryCursorManager.getInstance();
+        String cursor = manager.open(occurrences(25));
+        List<String> seen = new ArrayList<>();
+        QueryPage page;
+
+        do {
+            page = manager.nextPage(cursor, 10);
+            assertTrue(page.getOccurrences().size() <= 10);
+            page.getOccurrences().forEach(occurrence -> seen.add(occurrence.getIsoTimestamp()));
+        } while (page.getNextCursor() != null);
+
+        assertEquals(25, seen.size());
+        assertEquals("0", seen.get(0));
+        assertEquals("24", seen.get(24));
+        assertEquals(0, manager.size());
+        assertThrows(InvalidScipParameterException.class, () -> manager.nextPage(cursor, 10));
+    }
+
+    @Test
+    void pageSizeIsBounded() {
+        QueryCursorManager manager = QueryCursorManager.getInstance();
+        manager.configure(QueryCursorManager.DEFAULT_MAX_CURSORS, QueryCursorManager.DEFAULT_TTL_MILLIS, 5, QueryCursorManager.DEFAULT_MAX_OCCURRENCES);
+        String cursor = manager.open(occurrences(12));
+
+        assertEquals(5, manager.nextPage(cursor, 100).getOccurrences().size());
+        assertEquals(5, manager.nextPage(cursor, 0).getOccurrences().size());
+        QueryPage last = manager.nextPage(cursor, 5);
+        assertEquals(2, last.getOccurrences().size());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void drainClosesCursor() {
+        QueryCursorManager manager = QueryCursorManager.getInstance();
+        String cursor = manager.open(occurrences(7));
+        manager.nextPage(cursor, 3);
+        Iterator<Occurrence> remaining = manager.drain(cursor);
+        int count = 0;
+
+        while (remaining.hasNext()) {
+            assertEquals(String.valueOf(3 + count), remaining.next().getIsoTimestamp());
+            count++;
+        }
+
+        assertEquals(4, count);
+        assertThrows(InvalidScipParameterException.class, () -> manager.drain(cursor));
+    }
+
+    @Test
+    void leastRecentlyAccessedCursorIsClosedWhenFull() throws InterruptedException {
+        QueryCursorManager manager = QueryCursorManager.getInstance();
+        manager.configure(2, QueryCursorManager.DEFAULT_TTL_MILLIS, QueryCursorManager.DEFAULT_MAX_PAGE_SIZE, QueryCursorManager.DEFAULT_MAX_OCCURRENCES);
+        String first = manager.open(occurrences(10));
+        Thread.sleep(5);
+        String second = manager.open(occurrences(10));
+        Thread.sleep(5);
+        manager.nextPage(first, 1);
+        manager.open(occurrences(10));
+
+        assertEquals(2, manager.size());
+        assertNotNull(manager.nextPage(first, 1));
+        assertThrows(InvalidScipParameterException.class, () -> manager.nextPage(second, 1));
+    }
+
+    @Test
+    void cursorsAreBoundedByHeldOccurrences() throws InterruptedException {
+        QueryCursorManager manager = QueryCursorManager.getInstance();
+        manager.configure(QueryCursorManager.DEFAULT_MAX_CURSORS, QueryCursorManager.DEFAULT_TTL_MILLIS,
+                QueryCursorManager.DEFAULT_MAX_PAGE_SIZE, 20);
+        String first = manager.open(occurrences(10));
+        Thread.sleep(5);
+        String second = manager.open(occurrences(10));
+        assertEquals(20, manager.occurrenceCount());
+
+        // consumed occurrences no longer count against the bound
+        manager.nextPage(second, 5);
+        assertEquals(15, manager.occurrenceCount());
+
+        manager.open(occurrences(10));
+        assertEquals(2, manager.size());
+        assertEquals(15, manager.occurrenceCount());
+        assertThrows(InvalidScipParameterException.class, () -> manager.nextPage(first, 1));
+        assertThrows(InvalidScipParameterException.class, () -> manager.open(occurrences(21)));
+
+        manager.drain(second);
+        assertEquals(10, manager.occurrenceCount());
+        manager.clear();
+        assertEquals(0, manager.occurrenceCount());
+    }
+
+    @Test
+    void expiredCursorsAreClosed() throws InterruptedException {
+        QueryCursorManager manager = QueryCursorManager.getInstance();
+        manager.configure(QueryCursorManager.DEFAULT_MAX_CURSORS, 1, QueryCursorManager.DEFAULT_MAX_PAGE_SIZE, QueryCursorManager.DEFAULT_MAX_OCCURRENCES);
+        String cursor = manager.open(occurrences(10));
+        Thread.sleep(5);
+        manager.evictExpired();
+
+        assertEquals(0, manager.size());
+        assertThrows(InvalidScipParameterException.class, () -> manager.nextPage(cursor, 1));
+    }
+
+    private static List<Occurrence> occurrences(int count) {
+        List<Occurrence> result = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            result.add(new Occurrence(List.of(new Parameter("value", "uint256", String.valueOf(i))), String.valueOf(i)));
+        }
+
+        return result;
+    }
+}
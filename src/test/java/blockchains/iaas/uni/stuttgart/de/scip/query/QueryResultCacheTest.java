@@ -0,0 +1,109 @@
+package blockchains.iaas.uni.stuttgart.de.scip.query;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.Occurrence;
+import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
+import blockchains.iaas.uni.stuttgart.de.api.model.QueryResult;
+import blockchains.iaas.uni.stuttgart.de.api.model.TimeFrame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryResultCacheTest {
+    private static final List<Parameter> OUTPUTS = List.of(new Parameter("txId", "string", null));
+
+    @BeforeEach
+    void init() {
+        QueryResultCache.getInstance().configure(true, 60_000, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        QueryResultCache.getInstance().configure(false, QueryResultCache.DEFAULT_FINALITY_DEPTH_MILLIS, QueryResultCache.DEFAULT_MAX_OCCURRENCES);
+    }
+
+    @Test
+    void onlyFinalTimeFramesAreCacheable() {
+        QueryResultCache cache = QueryResultCache.getInstance();
+
+        assertNotNull(cache.keyOf("bc1", "0x1", "Abort", OUTPUTS, "1==1", timeFrame(Instant.now().minusSeconds(120))));
+        assertNull(cache.keyOf("bc1", "0x1", "Abort", OUTPUTS, "1==1", timeFrame(Instant.now().minusSeconds(30))));
+        assertNull(cache.keyOf("bc1", "0x1", "Abort", OUTPUTS, "1==1", null));
+        assertNull(cache.keyOf("bc1", "0x1", "Abort", OUTPUTS, "1==1", timeFrame("yesterday")));
+        cache.configure(false, 60_000, 10);
+        assertNull(cache.keyOf("bc1", "0x1", "Abort", OUTPUTS, "1==1", timeFrame(Instant.now().minusSeconds(120))));
+    }
+
+    @Test
+    void cachedResultsAreReturnedForIdenticalQueries() {
+        QueryResultCache cache = QueryResultCache.getInstance();
+        TimeFrame frame = timeFrame(Instant.now().minusSeconds(120));
+        QueryResultCache.Key key = cache.keyOf("bc1", "0x1", "Abort", OUTPUTS, "1==1", frame);
+        QueryResult result = result(3);
+        cache.put(key, result);
+
+        assertSame(result, cache.get(cache.keyOf("bc1", "0x1", "Abort", List.of(new Parameter("txId", "string", "x")), "1==1", frame)));
+        assertNull(cache.get(cache.keyOf("bc1", "0x1", "Abort", OUTPUTS, "2==2", frame)));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void leastRecentlyUsedResultsAreEvictedWhenFull() {
+        QueryResultCache cache = QueryResultCache.getInstance();
+        TimeFrame frame = timeFrame(Instant.now().minusSeconds(120));
+        QueryResultCache.Key first = cache.keyOf("bc1", "0x1", "E1", OUTPUTS, null, frame);
+        QueryResultCache.Key second = cache.keyOf("bc1", "0x1", "E2", OUTPUTS, null, frame);
+        QueryResultCache.Key third = cache.keyOf("bc1", "0x1", "E3", OUTPUTS, null, frame);
+        cache.put(first, result(4));
+        cache.put(second, result(4));
+        assertNotNull(cache.get(first));
+        cache.put(third, result(4));
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+        // larger than the whole cache
+        cache.put(cache.keyOf("bc1", "0x1", "E4", OUTPUTS, null, frame), result(11));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void invalidationDropsResultsOfRunningQueries() {
+        QueryResultCache cache = QueryResultCache.getInstance();
+        TimeFrame frame = timeFrame(Instant.now().minusSeconds(120));
+        QueryResultCache.Key cached = cache.keyOf("bc1", "0x1", "E1", OUTPUTS, null, frame);
+        cache.put(cached, result(1));
+        QueryResultCache.Key running = cache.keyOf("bc1", "0x1", "E2", OUTPUTS, null, frame);
+        cache.invalidateAll();
+        cache.put(running, result(1));
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(cache.keyOf("bc1", "0x1", "E1", OUTPUTS, null, frame)));
+    }
+
+    private static TimeFrame timeFrame(Instant to) {
+        return timeFrame(to.toString());
+    }
+
+    private static TimeFrame timeFrame(String to) {
+        TimeFrame frame = mock(TimeFrame.class);
+        when(frame.getFrom()).thenReturn("2020-01-01T00:00:00Z");
+        when(frame.getTo()).thenReturn(to);
+
+        return frame;
+    }
+
+    private static QueryResult result(int size) {
+        QueryResult result = mock(QueryResult.class);
+        when(result.getOccurrences()).thenReturn(Collections.nCopies(size, new Occurrence(OUTPUTS, "")));
+
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+package blockchains.iaas.uni.stuttgart.de.subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class SharedObservableRegistryTest {
+
+    @Test
+    void testSharingAndTearDown() {
+        SharedObservableRegistry<String, Integer> registry = new SharedObservableRegistry<>();
+        PublishSubject<Integer> upstream = PublishSubject.create();
+        AtomicInteger upstreamSubscriptions = new AtomicInteger();
+        AtomicInteger upstreamCreations = new AtomicInteger();
+        List<Integer> first = new ArrayList<>();
+        List<Integer> second = new ArrayList<>();
+
+        Disposable d1 = registry.get("key", () -> {
+            upstreamCreations.incrementAndGet();
+            return upstream.doOnSubscribe(d -> upstreamSubscriptions.incrementAndGet());
+        }).subscribe(first::add);
+        Disposable d2 = registry.get("key", () -> {
+            upstreamCreations.incrementAndGet();
+            return Observable.never();
+        }).subscribe(second::add);
+
+        upstream.onNext(1);
+        assertEquals(1, upstreamCreations.get());
+        assertEquals(1, upstreamSubscriptions.get());
+        assertEquals(List.of(1), first);
+        assertEquals(List.of(1), second);
+        assertEquals(1, registry.size());
+
+        d1.dispose();
+        upstream.onNext(2);
+        assertEquals(List.of(1), first);
+        assertEquals(List.of(1, 2), second);
+        d2.dispose();
+        assertFalse(upstream.hasObservers());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void testClearStopsSharingCurrentUpstreams() {
+        SharedObservableRegistry<String, Integer> registry = new SharedObservableRegistry<>();
+        PublishSubject<Integer> oldUpstream = PublishSubject.create();
+        PublishSubject<Integer> newUpstream = PublishSubject.create();
+        List<Integer> first = new ArrayList<>();
+        List<Integer> second = new ArrayList<>();
+
+        Disposable d1 = registry.get("key", () -> oldUpstream).subscribe(first::add);
+        registry.clear();
+        Disposable d2 = registry.get("key", () -> newUpstream).subscribe(second::add);
+
+        oldUpstream.onNext(1);
+        newUpstream.onNext(2);
+        assertEquals(List.of(1), first);
+        assertEquals(List.of(2), second);
+        assertEquals(1, registry.size());
+
+        // the subscribers of the old upstream do not remove the entry of the new one
+        d1.dispose();
+        assertEquals(1, registry.size());
+        d2.dispose();
+        assertEquals(0, registry.size());
+    }
+}
@@ -12,21 +12,31 @@
 package blockchains.iaas.uni.stuttgart.de.subscription;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
 
 import blockchains.iaas.uni.stuttgart.de.subscription.model.MonitorOccurrencesSubscription;
 import blockchains.iaas.uni.stuttgart.de.subscription.SubscriptionManager;
 import blockchains.iaas.uni.stuttgart.de.subscription.model.SubscriptionType;
+import lombok.extern.log4j.Log4j2;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+@Log4j2
 @SpringBootTest
 class SubscriptionManagerTest {
     @Test
     void testReplacingSubscription() {
         SubscriptionManager manager = SubscriptionManager.getInstance();
-        manager.getAllSubscriptions().clear();
+        manager.clear();
         manager.createSubscription(
                 "abc",
                 "cba",
@@ -40,4 +50,62 @@ class SubscriptionManagerTest {
                 new MonitorOccurrencesSubscription(null, SubscriptionType.EVENT_OCCURRENCES, "myId", Collections.emptyList()));
         assertEquals(1, manager.getAllSubscriptions().size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testIndexedLookups() {
+        SubscriptionManager manager = SubscriptionManager.getInstance();
+        manager.clear();
+        List<Parameter> params = List.of(new Parameter("to", "address", null));
+        manager.createSubscription("s1", "bc1", "a/a",
+                new MonitorOccurrencesSubscription(null, SubscriptionType.EVENT_OCCURRENCES, "Transfer", params));
+        manager.createSubscription("s2", "bc1", "a/a",
+                new MonitorOccurrencesSubscription(null, SubscriptionType.EVENT_OCCURRENCES, "Transfer", List.of(new Parameter("to", "uint256", null))));
+        manager.createSubscription("s3", "bc1", "a/a",
+                new MonitorOccurrencesSubscription(null, SubscriptionType.FUNCTION_INVOCATIONS, "Transfer", params));
+        manager.createSubscription("s4", "bc2", "a/a",
+                new MonitorOccurrencesSubscription(null, SubscriptionType.EVENT_OCCURRENCES, "Transfer", params));
+
+        assertEquals(1, manager.getAllSubscriptionIdsOfEvent("bc1", "a/a", "Transfer", params).size());
+        assertEquals("s1", manager.getAllSubscriptionIdsOfEvent("bc1", "a/a", "Transfer", params).iterator().next().getCorrelationId());
+        assertEquals(2, manager.getAllSubscriptionIdsOfEvent("bc1", "a/a", null, null).size());
+        assertEquals(1, manager.getAllSubscriptionIdsOfFunction("bc1", "a/a", "Transfer", params).size());
+        assertEquals(3, manager.getAllSubscriptionKeysOfType(SubscriptionType.EVENT_OCCURRENCES).size());
+
+        manager.removeSubscription("s1", "bc1", "a/a");
+        assertTrue(manager.getAllSubscriptionIdsOfEvent("bc1", "a/a", "Transfer", params).isEmpty());
+        assertEquals(2, manager.getAllSubscriptionKeysOfType(SubscriptionType.EVENT_OCCURRENCES).size());
+    }
+
+    @Test
+    void testConcurrentSubscribeAndCancel() throws InterruptedException {
+        final int threadCount = 16;
+        final int operationCount = 10_000;
+        SubscriptionManager manager = SubscriptionManager.getInstance();
+        manager.clear();
+        List<Parameter> params = List.of(new Parameter("to", "address", null));
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < operationCount; i++) {
+            final String id = "s" + i;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    manager.createSubscription(id, "bc1", "a/a",
+                            new MonitorOccurrencesSubscription(null, SubscriptionType.EVENT_OCCURRENCES, "Transfer", params));
+                    manager.getAllSubscriptionIdsOfEvent("bc1", "a/a", "Transfer", params);
+                    manager.removeSubscription(id, "bc1", "a/a");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        assertTrue(manager.getAllSubscriptions().isEmpty());
+        assertTrue(manager.getAllSubscriptionIdsOfEvent("bc1", "a/a", "Transfer", params).isEmpty());
+        assertTrue(manager.getAllSubscriptionKeysOfType(SubscriptionType.EVENT_OCCURRENCES).isEmpty());
+    }
+}
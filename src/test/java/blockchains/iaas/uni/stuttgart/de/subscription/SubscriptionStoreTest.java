@@ -0,0 +1,81 @@
+package blockchains.iaas.uni.stuttgart.de.subscription;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import blockchains.iaas.uni.stuttgart.de.api.exceptions.BlockchainIdNotFoundException;
+import blockchains.iaas.uni.stuttgart.de.api.exceptions.BlockchainNodeUnreachableException;
+import blockchains.iaas.uni.stuttgart.de.api.exceptions.InvalidScipParameterException;
+import blockchains.iaas.uni.stuttgart.de.api.model.Parameter;
+import blockchains.iaas.uni.stuttgart.de.subscription.model.SubscriptionDescriptor;
+import blockchains.iaas.uni.stuttgart.de.subscription.model.SubscriptionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubscriptionStoreTest {
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        SubscriptionStore.getInstance().close();
+    }
+
+    @Test
+    void testSaveLoadAndRemove() throws IOException {
+        SubscriptionStore store = SubscriptionStore.getInstance();
+        // nothing is persisted before the store is opened
+        store.save(SubscriptionDescriptor.builder().type(SubscriptionType.RECEIVE_TRANSACTIONS).correlationId("abc0").blockchainId("bc1").build());
+        store.open(directory);
+        assertTrue(store.loadAll().isEmpty());
+
+        store.save(SubscriptionDescriptor.builder()
+                .type(SubscriptionType.EVENT_OCCURRENCES)
+                .correlationId("abc1")
+                .blockchainId("bc1")
+                .smartContractPath("a/a")
+                .eventIdentifier("Transfer")
+                .outputParameters(List.of(new Parameter("to", "address", null)))
+                .degreeOfConfidence(99)
+                .callbackUrl("http://localhost:8080")
+                .build());
+        store.save(SubscriptionDescriptor.builder().type(SubscriptionType.RECEIVE_TRANSACTIONS).correlationId("abc2").blockchainId("bc1").build());
+        // saving the same subscription again replaces it
+        store.save(SubscriptionDescriptor.builder().type(SubscriptionType.RECEIVE_TRANSACTIONS).correlationId("abc2").blockchainId("bc1").from("0x1").build());
+
+        List<SubscriptionDescriptor> loaded = store.loadAll();
+        assertEquals(2, loaded.size());
+        SubscriptionDescriptor event = loaded.stream().filter(d -> d.getCorrelationId().equals("abc1")).findFirst().orElseThrow();
+        assertEquals("Transfer", event.getEventIdentifier());
+        assertEquals("address", event.getOutputParameters().get(0).getType());
+        assertEquals(99, event.getDegreeOfConfidence());
+        SubscriptionDescriptor receive = loaded.stream().filter(d -> d.getCorrelationId().equals("abc2")).findFirst().orElseThrow();
+        assertEquals("0x1", receive.getFrom());
+        assertEquals("", receive.getSmartContractPath());
+
+        store.remove("abc1", "bc1", "a/a");
+        store.remove("abc2", "bc1");
+        assertTrue(store.loadAll().isEmpty());
+    }
+
+    @Test
+    void testTemporaryFailuresKeepTheSubscription() throws IOException {
+        SubscriptionStore store = SubscriptionStore.getInstance();
+        store.open(directory);
+        store.save(SubscriptionDescriptor.builder().type(SubscriptionType.RECEIVE_TRANSACTIONS).correlationId("abc1").blockchainId("bc1").build());
+
+        // e.g., the connection profiles or the adapter plugins are not loaded yet
+        store.removeAfterFailure("abc1", "bc1", new BlockchainIdNotFoundException("bc1"));
+        store.removeAfterFailure("abc1", "bc1", new CompletionException(new BlockchainNodeUnreachableException("no adapter")));
+        assertEquals(1, store.loadAll().size());
+
+        store.removeAfterFailure("abc1", "bc1", new InvalidScipParameterException());
+        assertTrue(store.loadAll().isEmpty());
+    }
+}
@@ -0,0 +1,100 @@
+package blockchains.iaas.uni.stuttgart.de.tccsci;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransaction;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionFilter;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionPage;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionState;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionVerdict;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistributedTransactionArchiveTest {
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void clear() {
+        DistributedTransactionRepository.getInstance().setArchive(null);
+        DistributedTransactionRepository.getInstance().clear();
+    }
+
+    @Test
+    void findsAndListsArchivedTransactions() throws Exception {
+        List<DistributedTransaction> dtxs = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            DistributedTransaction dtx = new DistributedTransaction(UUID.randomUUID(), 1000L * i);
+            dtx.addBlockchainId("bc" + (i % 2));
+            dtx.setVerdict(i < 5 ? DistributedTransactionVerdict.COMMIT : DistributedTransactionVerdict.ABORT);
+            dtx.setState(i < 5 ? DistributedTransactionState.COMMITTED : DistributedTransactionState.ABORTED);
+            dtx.setTerminatedAt(1000L * i + 1);
+            dtxs.add(dtx);
+        }
+
+        try (DistributedTransactionArchive archive = new DistributedTransactionArchive(dir)) {
+            archive.append(dtxs);
+        }
+
+        Path file;
+
+        try (var files = Files.list(dir)) {
+            file = files.findFirst().orElseThrow();
+        }
+
+        Files.write(file, "{\"id\":".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (DistributedTransactionArchive archive = new DistributedTransactionArchive(dir)) {
+            assertEquals(10, archive.size());
+            DistributedTransaction found = archive.find(dtxs.get(3).getId());
+            assertEquals(3000L, found.getCreatedAt());
+            assertEquals(3001L, found.getTerminatedAt());
+            assertEquals(DistributedTransactionState.COMMITTED, found.getState());
+            assertEquals(List.of("bc1"), found.getBlockchainIds());
+            assertNull(archive.find(UUID.randomUUID()));
+
+            DistributedTransactionPage page = archive.list(new DistributedTransactionFilter(DistributedTransactionState.ABORTED, null, "bc0", null, null), 1, 1);
+            assertEquals(2, page.getTotal());
+            assertEquals(dtxs.get(8).getId(), page.getItems().get(0).getId());
+            assertEquals(2, archive.list(new DistributedTransactionFilter(null, null, null, 2000L, 3000L), 0, 10).getTotal());
+        }
+    }
+
+    @Test
+    void movesOldTerminatedTransactionsToTheArchive() throws Exception {
+        DistributedTransactionRepository repository = DistributedTransactionRepository.getInstance();
+        DistributedTransaction running = new DistributedTransaction();
+        DistributedTransaction committed = new DistributedTransaction();
+        repository.addDistributedTransaction(running);
+        repository.addDistributedTransaction(committed);
+        repository.addBlockchainId(committed, "bc1");
+        repository.setVerdict(committed, DistributedTransactionVerdict.COMMIT);
+        repository.setState(committed, DistributedTransactionState.COMMITTED);
+        assertTrue(committed.getTerminatedAt() > 0);
+
+        try (DistributedTransactionArchive archive = new DistributedTransactionArchive(dir)) {
+            repository.setArchive(archive);
+            assertEquals(0, repository.archiveTerminatedBefore(committed.getTerminatedAt()));
+            assertEquals(1, repository.archiveTerminatedBefore(committed.getTerminatedAt() + 1));
+
+            assertNull(repository.getById(committed.getId()));
+            assertTrue(repository.getByBlockchainId("bc1").isEmpty());
+            assertSame(running, repository.getById(running.getId()));
+            assertEquals(1, repository.list(DistributedTransactionFilter.ALL, 0, 10).getTotal());
+            assertEquals(committed.getId(), archive.find(committed.getId()).getId());
+        }
+    }
+}
@@ -16,8 +16,10 @@ import lombok.extern.log4j.Log4j2;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 
@@ -309,6 +311,34 @@ class DistributedTransactionManagerTest {
         assertFalse(manager.emitVotes(uuid, "bc2", true));
     }
 
+    @Test
+    void testRequestsForUnknownOrArchivedDtx(@TempDir Path dir) throws Exception {
+        AdapterManager adapterManager = generateAdapterManager();
+        MockBlockchainManager manager = new MockBlockchainManager(adapterManager);
+        DistributedTransactionManager dManager = getDistributedTransactionManager(adapterManager, manager);
+        DistributedTransaction archived = new DistributedTransaction(UUID.randomUUID(), 0L);
+        archived.setVerdict(DistributedTransactionVerdict.COMMIT);
+        archived.setState(DistributedTransactionState.COMMITTED);
+        archived.setTerminatedAt(1L);
+
+        try (DistributedTransactionArchive archive = new DistributedTransactionArchive(dir)) {
+            archive.append(List.of(archived));
+            DistributedTransactionRepository.getInstance().setArchive(archive);
+
+            IllegalProtocolStateException e = assertThrows(IllegalProtocolStateException.class, () -> dManager.registerBc(archived.getId(), "bc1"));
+            assertTrue(e.getMessage().contains("COMMITTED"));
+            assertThrows(IllegalProtocolStateException.class, () -> dManager.abortDtx(archived.getId(), null));
+            assertThrows(IllegalProtocolStateException.class, () -> dManager.commitDtx(archived.getId(), null));
+
+            UUID unknown = UUID.randomUUID();
+            assertThrows(IllegalProtocolStateException.class, () -> dManager.registerBc(unknown, "bc1"));
+            assertThrows(IllegalProtocolStateException.class, () -> dManager.abortDtx(unknown, null));
+            assertThrows(IllegalProtocolStateException.class, () -> dManager.commitDtx(unknown, null));
+        } finally {
+            DistributedTransactionRepository.getInstance().setArchive(null);
+        }
+    }
+
     static class MockBlockchainManager extends BlockchainManager {
 
         Map<String, List<SmartContractFunction>> functionInvocations = new HashMap<>();
@@ -0,0 +1,165 @@
+package blockchains.iaas.uni.stuttgart.de.tccsci;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransaction;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionFilter;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionPage;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionState;
+import blockchains.iaas.uni.stuttgart.de.tccsci.model.DistributedTransactionVerdict;
+import lombok.extern.log4j.Log4j2;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Log4j2
+class DistributedTransactionRepositoryTest {
+    private final DistributedTransactionRepository repository = DistributedTransactionRepository.getInstance();
+
+    @AfterEach
+    void clear() {
+        repository.clear();
+    }
+
+    @Test
+    void indexesFollowTransitions() {
+        DistributedTransaction dtx = new DistributedTransaction();
+        repository.addDistributedTransaction(dtx);
+
+        assertSame(dtx, repository.getById(dtx.getId()));
+        assertNull(repository.getById(UUID.randomUUID()));
+        assertThrows(IllegalArgumentException.class, () -> repository.addDistributedTransaction(dtx));
+        assertEquals(List.of(dtx), List.copyOf(repository.getByState(DistributedTransactionState.STARTED)));
+
+        assertTrue(repository.addBlockchainId(dtx, "bc1"));
+        assertFalse(repository.addBlockchainId(dtx, "bc1"));
+        repository.setState(dtx, DistributedTransactionState.AWAITING_VOTES);
+        repository.setVerdict(dtx, DistributedTransactionVerdict.COMMIT);
+
+        assertTrue(repository.getByState(DistributedTransactionState.STARTED).isEmpty());
+        assertEquals(List.of(dtx), List.copyOf(repository.getByState(DistributedTransactionState.AWAITING_VOTES)));
+        assertTrue(repository.getByVerdict(DistributedTransactionVerdict.NOT_DECIDED).isEmpty());
+        assertEquals(List.of(dtx), List.copyOf(repository.getByVerdict(DistributedTransactionVerdict.COMMIT)));
+        assertEquals(List.of(dtx), List.copyOf(repository.getByBlockchainId("bc1")));
+        assertTrue(repository.getByBlockchainId("bc2").isEmpty());
+
+        // changed without the repository: stale index entries are never returned
+        dtx.setState(DistributedTransactionState.ABORTED);
+        assertTrue(repository.getByState(DistributedTransactionState.AWAITING_VOTES).isEmpty());
+    }
+
+    @Test
+    void listsPagesOrderedByStartTime() {
+        List<DistributedTransaction> dtxs = new ArrayList<>();
+
+        for (int i = 0; i < 25; i++) {
+            DistributedTransaction dtx = new DistributedTransaction(UUID.randomUUID(), 1000L * (25 - i));
+            repository.addDistributedTransaction(dtx);
+            repository.addBlockchainId(dtx, i % 5 == 0 ? "bc1" : "bc2");
+            dtxs.add(0, dtx);
+        }
+
+        DistributedTransactionPage page = repository.list(DistributedTransactionFilter.ALL, 10, 10);
+        assertEquals(25, page.getTotal());
+        assertEquals(dtxs.subList(10, 20), page.getItems());
+        assertEquals(5, repository.list(DistributedTransactionFilter.ALL, 20, 10).getItems().size());
+        assertTrue(repository.list(DistributedTransactionFilter.ALL, 30, 10).getItems().isEmpty());
+
+        page = repository.list(new DistributedTransactionFilter(DistributedTransactionState.STARTED, null, "bc1", 5000L, null), 0, 10);
+        assertEquals(List.of(dtxs.get(4), dtxs.get(9), dtxs.get(14), dtxs.get(19), dtxs.get(24)), page.getItems());
+    }
+
+    @Test
+    void concurrentProtocolSteps() throws Exception {
+        final int count = 10_000;
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < count; i++) {
+                final int n = i;
+                futures.add(executor.submit(() -> {
+                    DistributedTransaction dtx = new DistributedTransaction();
+                    repository.addDistributedTransaction(dtx);
+                    repository.addBlockchainId(dtx, "bc" + (n % 4));
+                    repository.setState(dtx, DistributedTransactionState.AWAITING_VOTES);
+
+                    if (n % 2 == 0) {
+                        repository.setVerdict(dtx, DistributedTransactionVerdict.COMMIT);
+                        repository.setState(dtx, DistributedTransactionState.COMMITTED);
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(count, repository.getAll().size());
+        assertEquals(count / 2, repository.getByState(DistributedTransactionState.COMMITTED).size());
+        assertEquals(count / 2, repository.getByState(DistributedTransactionState.AWAITING_VOTES).size());
+        assertEquals(count / 2, repository.getByVerdict(DistributedTransactionVerdict.NOT_DECIDED).size());
+        assertEquals(count / 4, repository.getByBlockchainId("bc3").size());
+    }
+
+    /**
+     * Measures protocol step lookups and secondary index lookups with 100k distributed transactions in the repository.
+     */
+    @Test
+    @Tag("benchmark")
+    void lookupsWith100kTransactions() {
+        final int count = 100_000;
+        final List<UUID> ids = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            DistributedTransaction dtx = new DistributedTransaction();
+            repository.addDistributedTransaction(dtx);
+            repository.addBlockchainId(dtx, "bc" + (i % 10));
+
+            if (i % 100 == 0) {
+                repository.setState(dtx, DistributedTransactionState.AWAITING_VOTES);
+            }
+
+            ids.add(dtx.getId());
+        }
+
+        // warm-up
+        for (UUID id : ids) {
+            repository.getById(id);
+        }
+
+        long start = System.nanoTime();
+
+        for (UUID id : ids) {
+            assertEquals(id, repository.getById(id).getId());
+        }
+
+        final long getByIdNanos = (System.nanoTime() - start) / count;
+        start = System.nanoTime();
+        assertEquals(count / 100, repository.getByState(DistributedTransactionState.AWAITING_VOTES).size());
+        final long getByStateMicros = (System.nanoTime() - start) / 1000;
+        start = System.nanoTime();
+        assertEquals(count / 10, repository.getByBlockchainId("bc7").size());
+        final long getByBlockchainIdMicros = (System.nanoTime() - start) / 1000;
+
+        log.info("With {} dtxs: getById={}ns, getByState({} results)={}us, getByBlockchainId({} results)={}us",
+                count, getByIdNanos, count / 100, getByStateMicros, count / 10, getByBlockchainIdMicros);
+    }
+}